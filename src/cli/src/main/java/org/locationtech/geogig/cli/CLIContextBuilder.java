@@ -29,6 +29,7 @@ import org.locationtech.geogig.storage.bdbje.JEObjectDatabase_v0_2;
 import org.locationtech.geogig.storage.bdbje.JEStagingDatabase_v0_1;
 import org.locationtech.geogig.storage.bdbje.JEStagingDatabase_v0_2;
 import org.locationtech.geogig.storage.fs.FileRefDatabase;
+import org.locationtech.geogig.storage.fs.MappedObjectDatabase;
 import org.locationtech.geogig.storage.mongo.MongoGraphDatabase;
 import org.locationtech.geogig.storage.mongo.MongoObjectDatabase;
 import org.locationtech.geogig.storage.mongo.MongoStagingDatabase;
@@ -95,6 +96,12 @@ public class CLIContextBuilder extends ContextBuilder {
                             new VersionedFormat(SQLiteStorage.FORMAT_NAME, SQLiteStorage.VERSION))//
                     .to(XerialObjectDatabase.class)//
                     .in(Scopes.SINGLETON);
+            objectPlugins //
+                    .addBinding(
+                            new VersionedFormat(MappedObjectDatabase.FORMAT_NAME,
+                                    MappedObjectDatabase.VERSION))//
+                    .to(MappedObjectDatabase.class)//
+                    .in(Scopes.SINGLETON);
             MapBinder<VersionedFormat, StagingDatabase> stagingPlugins = MapBinder.newMapBinder(
                     binder(), VersionedFormat.class, StagingDatabase.class);
             stagingPlugins //
@@ -0,0 +1,40 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.cli.plumbing;
+
+import java.io.IOException;
+
+import org.locationtech.geogig.api.plumbing.BuildMappedObjectDatabase;
+import org.locationtech.geogig.cli.AbstractCommand;
+import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.cli.annotation.ObjectDatabaseReadOnly;
+
+import com.beust.jcommander.Parameters;
+
+/**
+ * Builds a read optimized, memory mapped object database out of the repository objects, and
+ * switches the repository to it.
+ * 
+ * @see BuildMappedObjectDatabase
+ */
+@ObjectDatabaseReadOnly
+@Parameters(commandNames = "build-mapped-objects", commandDescription = "Builds a read optimized object database and switches the repository to it.")
+public class BuildMappedObjects extends AbstractCommand implements CLICommand {
+
+    @Override
+    public void runInternal(GeogigCLI cli) throws IOException {
+        Integer refTargets = cli.getGeogig().command(BuildMappedObjectDatabase.class)
+                .setProgressListener(cli.getProgressListener()).call();
+        cli.getConsole().println(
+                "Imported the objects reachable from " + refTargets
+                        + " ref targets. The repository will use them from now on.");
+    }
+}
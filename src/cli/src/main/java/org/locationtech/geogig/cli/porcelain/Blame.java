@@ -19,6 +19,9 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
 
 import jline.console.ConsoleReader;
 
@@ -28,6 +31,7 @@ import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.porcelain.BlameException;
 import org.locationtech.geogig.api.porcelain.BlameOp;
 import org.locationtech.geogig.api.porcelain.BlameReport;
+import org.locationtech.geogig.api.porcelain.BlameTreeOp;
 import org.locationtech.geogig.api.porcelain.ValueAndCommit;
 import org.locationtech.geogig.cli.AbstractCommand;
 import org.locationtech.geogig.cli.GeogigCLI;
@@ -41,11 +45,11 @@ import com.google.common.base.Optional;
 
 /**
  * Shows information about the commits and authors that have modified the current attributes of a
- * given feature
+ * given feature, or of all the features under a given tree
  * 
  */
 @ReadOnly
-@Parameters(commandNames = "blame", commandDescription = "Shows information about authors of modifications for a single feature")
+@Parameters(commandNames = "blame", commandDescription = "Shows information about authors of modifications for a single feature, or the features of a tree")
 public class Blame extends AbstractCommand {
 
     /**
@@ -60,6 +64,9 @@ public class Blame extends AbstractCommand {
     @Parameter(names = { "--no-values" }, description = "Do not show values, only attribute names")
     private boolean noValues = false;
 
+    @Parameter(names = { "--tree" }, description = "Blame all the features under the given tree, prefixing each line with the feature path")
+    private boolean tree = false;
+
     @Override
     public void runInternal(GeogigCLI cli) throws IOException {
         checkParameter(paths.size() < 2, "Only one path allowed");
@@ -71,44 +78,15 @@ public class Blame extends AbstractCommand {
         String path = paths.get(0);
 
         try {
-            BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
-
-            Map<String, ValueAndCommit> changes = report.getChanges();
-            Iterator<String> iter = changes.keySet().iterator();
-            while (iter.hasNext()) {
-                String attrib = iter.next();
-                ValueAndCommit valueAndCommit = changes.get(attrib);
-                RevCommit commit = valueAndCommit.commit;
-                Optional<?> value = valueAndCommit.value;
-                if (porcelain) {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(attrib).append(' ');
-                    sb.append(commit.getId().toString()).append(' ');
-                    sb.append(commit.getAuthor().getName().or("")).append(' ');
-                    sb.append(commit.getAuthor().getEmail().or("")).append(' ');
-                    sb.append(Long.toString(commit.getAuthor().getTimestamp())).append(' ');
-                    sb.append(Integer.toString(commit.getAuthor().getTimeZoneOffset()));
-                    if (!noValues) {
-                        sb.append(" ").append(
-                                TextValueSerializer.asString(Optional.of((Object) value.orNull())));
-                    }
-                    console.println(sb.toString());
-                } else {
-                    Ansi ansi = newAnsi(console.getTerminal());
-                    ansi.fg(GREEN).a(attrib + ": ").reset();
-                    if (!noValues) {
-                        String s = value.isPresent() ? value.get().toString() : "NULL";
-                        ansi.fg(YELLOW).a(s).a(" ").reset();
-                    }
-                    ansi.a(commit.getId().toString().substring(0, 7)).a(" ");
-                    ansi.a(commit.getAuthor().getName().or("")).a(" ");
-                    ansi.a(commit.getAuthor().getEmail().or("")).a(" ");
-                    SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
-                    String date = formatter.format(new Date(commit.getAuthor().getTimestamp()
-                            + commit.getAuthor().getTimeZoneOffset()));
-                    ansi.a(date);
-                    console.println(ansi.toString());
+            if (tree) {
+                Map<String, BlameReport> reports = geogig.command(BlameTreeOp.class)
+                        .setPath(path).call();
+                for (String featurePath : new TreeSet<String>(reports.keySet())) {
+                    print(console, featurePath, reports.get(featurePath));
                 }
+            } else {
+                BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
+                print(console, null, report);
             }
         } catch (BlameException e) {
             switch (e.statusCode) {
@@ -117,7 +95,58 @@ public class Blame extends AbstractCommand {
             case PATH_NOT_FEATURE:
                 throw new InvalidParameterException(
                         "The supplied path does not resolve to a feature", e);
+            case PATH_NOT_TREE:
+                throw new InvalidParameterException(
+                        "The supplied path does not resolve to a tree", e);
+            default:
+                throw e;
+            }
+        }
+    }
 
+    private void print(ConsoleReader console, @Nullable String featurePath, BlameReport report)
+            throws IOException {
+        Map<String, ValueAndCommit> changes = report.getChanges();
+        Iterator<String> iter = changes.keySet().iterator();
+        while (iter.hasNext()) {
+            String attrib = iter.next();
+            ValueAndCommit valueAndCommit = changes.get(attrib);
+            RevCommit commit = valueAndCommit.commit;
+            Optional<?> value = valueAndCommit.value;
+            if (porcelain) {
+                StringBuilder sb = new StringBuilder();
+                if (featurePath != null) {
+                    sb.append(featurePath).append(' ');
+                }
+                sb.append(attrib).append(' ');
+                sb.append(commit.getId().toString()).append(' ');
+                sb.append(commit.getAuthor().getName().or("")).append(' ');
+                sb.append(commit.getAuthor().getEmail().or("")).append(' ');
+                sb.append(Long.toString(commit.getAuthor().getTimestamp())).append(' ');
+                sb.append(Integer.toString(commit.getAuthor().getTimeZoneOffset()));
+                if (!noValues) {
+                    sb.append(" ").append(
+                            TextValueSerializer.asString(Optional.of((Object) value.orNull())));
+                }
+                console.println(sb.toString());
+            } else {
+                Ansi ansi = newAnsi(console.getTerminal());
+                if (featurePath != null) {
+                    ansi.a(featurePath).a(" ");
+                }
+                ansi.fg(GREEN).a(attrib + ": ").reset();
+                if (!noValues) {
+                    String s = value.isPresent() ? value.get().toString() : "NULL";
+                    ansi.fg(YELLOW).a(s).a(" ").reset();
+                }
+                ansi.a(commit.getId().toString().substring(0, 7)).a(" ");
+                ansi.a(commit.getAuthor().getName().or("")).a(" ");
+                ansi.a(commit.getAuthor().getEmail().or("")).a(" ");
+                SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+                String date = formatter.format(new Date(commit.getAuthor().getTimestamp()
+                        + commit.getAuthor().getTimeZoneOffset()));
+                ansi.a(date);
+                console.println(ansi.toString());
             }
         }
     }
@@ -47,6 +47,21 @@ Feature: "blame" command
      When I run the command "blame Points"
      Then the response should contain "The supplied path does not resolve to a feature"
      
+  Scenario: Try to run blame on a feature type with the --tree switch
+    Given I have a repository
+      And I have several commits
+     When I run the command "blame --porcelain --tree Points"
+     Then the response should contain 9 lines
+      And the response should contain "Points/Points.1"
+      And the response should contain "Points/Points.2"
+      And the response should contain "1001"
+
+  Scenario: Try to run blame on a feature with the --tree switch
+    Given I have a repository
+      And I have several commits
+     When I run the command "blame --tree Points/Points.1"
+     Then the response should contain "The supplied path does not resolve to a tree"
+
   Scenario: Try to reset from an empty directory
     Given I am in an empty directory
      When I run the command "blame"
@@ -191,8 +191,8 @@ public class GeogigTransaction implements Context {
     }
 
     /**
-     * The set of refs that have either changed since, or didn't exist at, the time the transaction
-     * was created.
+     * The set of refs the transaction changed, that either have a different value than the one
+     * they had when the transaction first changed them, or didn't exist at that time.
      */
     public ImmutableSet<Ref> getChangedRefs() {
         Set<String> changedRefNames = transactionRefDatabase.getChangedRefs();
@@ -14,15 +14,21 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.geotools.filter.text.cql2.CQL;
 import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.opengis.feature.Feature;
 import org.opengis.filter.Filter;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Provides a filter for sparse repositories. A default filter can be applied to all feature types,
@@ -34,6 +40,11 @@ public class RepositoryFilter {
 
     private List<FilterDescription> filterDescriptions;
 
+    /**
+     * Memoized {@link #getBounds(String)} results, cleared when filters are added
+     */
+    private Map<String, Optional<Envelope>> boundsByPath;
+
     /**
      * Provides a text description of a particular filter.
      */
@@ -86,6 +97,7 @@ public class RepositoryFilter {
     public RepositoryFilter() {
         repositoryFilters = new HashMap<String, Filter>();
         filterDescriptions = new LinkedList<FilterDescription>();
+        boundsByPath = new HashMap<String, Optional<Envelope>>();
     }
 
     /**
@@ -109,6 +121,7 @@ public class RepositoryFilter {
             try {
                 Filter newFilter = CQL.toFilter(filterText);
                 repositoryFilters.put(featurePath, newFilter);
+                boundsByPath.clear();
                 filterDescriptions.add(new FilterDescription(featurePath, filterType, filterText));
             } catch (CQLException e) {
                 Throwables.propagate(e);
@@ -130,14 +143,101 @@ public class RepositoryFilter {
             FeatureBuilder builder = new FeatureBuilder(type);
             Feature feature = builder.build("TEMP_ID", revFeature);
 
-            Filter typeFilter = repositoryFilters.get(featurePath);
-            if (typeFilter == null) {
-                typeFilter = repositoryFilters.get("default");
-            }
+            Filter typeFilter = getFilter(featurePath);
             if (typeFilter.evaluate(feature)) {
                 return true;
             }
         }
         return false;
     }
+
+    @Nullable
+    private Filter getFilter(String featurePath) {
+        Filter typeFilter = repositoryFilters.get(featurePath);
+        if (typeFilter == null) {
+            typeFilter = repositoryFilters.get("default");
+        }
+        return typeFilter;
+    }
+
+    /**
+     * Returns the extent outside of which no feature under the given path can lie within this
+     * filter, so that features and trees whose bounds don't intersect it can be discarded without
+     * evaluating the filter.
+     * 
+     * @param featurePath the path of the features (without the feature ID)
+     * @return the extent of the filter for the given path, or {@link Optional#absent() absent} if
+     *         it's not constrained to an extent in the features coordinate reference system
+     */
+    public Optional<Envelope> getBounds(String featurePath) {
+        Optional<Envelope> bounds = boundsByPath.get(featurePath);
+        if (bounds == null) {
+            bounds = extractBounds(getFilter(featurePath));
+            boundsByPath.put(featurePath, bounds);
+        }
+        return bounds;
+    }
+
+    private static Optional<Envelope> extractBounds(@Nullable Filter typeFilter) {
+        if (typeFilter == null) {
+            return Optional.absent();
+        }
+        Envelope bounds = (Envelope) typeFilter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                null);
+        if (bounds == null) {
+            return Optional.absent();
+        }
+        if (bounds.isNull()) {
+            // nothing can match
+            return Optional.of(new Envelope());
+        }
+        if (Double.isInfinite(bounds.getWidth()) || Double.isInfinite(bounds.getHeight())) {
+            return Optional.absent();
+        }
+        if (bounds instanceof ReferencedEnvelope
+                && ((ReferencedEnvelope) bounds).getCoordinateReferenceSystem() != null) {
+            // the filter may reproject the features before evaluating them
+            return Optional.absent();
+        }
+        return Optional.of(new Envelope(bounds));
+    }
+
+    /**
+     * @return the union of the {@link #getBounds(String) extent} of all the filters, or
+     *         {@link Optional#absent() absent} if any of them is not constrained to an extent
+     */
+    public Optional<Envelope> getBounds() {
+        if (repositoryFilters.isEmpty()) {
+            return Optional.absent();
+        }
+        Envelope union = new Envelope();
+        for (String featurePath : repositoryFilters.keySet()) {
+            Optional<Envelope> bounds = getBounds(featurePath);
+            if (!bounds.isPresent()) {
+                return Optional.absent();
+            }
+            union.expandToInclude(bounds.get());
+        }
+        return Optional.of(union);
+    }
+
+    /**
+     * @return a textual representation of the filter that applies to the given path, which is the
+     *         same for equal filters
+     */
+    public String getFilterKey(String featurePath) {
+        FilterDescription typeDescription = null;
+        FilterDescription defaultDescription = null;
+        for (FilterDescription d : filterDescriptions) {
+            if (d.getFeaturePath().equals(featurePath)) {
+                typeDescription = d;
+            } else if (d.getFeaturePath().equals("default")) {
+                defaultDescription = d;
+            }
+        }
+        FilterDescription description = typeDescription == null ? defaultDescription
+                : typeDescription;
+        return description == null ? "" : description.getFilterType() + ":"
+                + description.getFilter();
+    }
 }
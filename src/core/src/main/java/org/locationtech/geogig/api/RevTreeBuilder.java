@@ -22,6 +22,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.Nullable;
 
@@ -39,6 +44,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -58,6 +64,18 @@ public class RevTreeBuilder {
      */
     public static final int DEFAULT_NORMALIZATION_THRESHOLD = 1000 * 1000;
 
+    /**
+     * Minimum number of changes to a bucketed tree for its changed bucket trees to be built in
+     * parallel, below it the overhead of forking isn't worth it
+     */
+    private static final int PARALLEL_NORMALIZATION_THRESHOLD = 10 * 1000;
+
+    /**
+     * Fork-join pool where bucket trees are built when the build is not started from a fork-join
+     * task already. Its worker threads are daemon threads, so it doesn't need to be shut down.
+     */
+    private static final ForkJoinPool BUCKETS_POOL = new ForkJoinPool();
+
     private final ObjectDatabase db;
 
     private final Set<String> deletes;
@@ -76,7 +94,11 @@ public class RevTreeBuilder {
 
     protected NodePathStorageOrder storageOrder = new NodePathStorageOrder();
 
-    private Map<ObjectId, RevTree> pendingWritesCache;
+    /**
+     * Bucket trees not saved yet, shared by this builder and the builders of its bucket trees,
+     * which may be running concurrently
+     */
+    private ConcurrentMap<ObjectId, RevTree> pendingWritesCache;
 
     /**
      * Empty tree constructor, used to create trees from scratch
@@ -97,21 +119,21 @@ public class RevTreeBuilder {
         featureChanges = Maps.newTreeMap();
         deletes = Sets.newTreeSet();
         bucketTreesByBucket = Maps.newTreeMap();
-        pendingWritesCache = Maps.newTreeMap();
+        pendingWritesCache = Maps.newConcurrentMap();
     }
 
     /**
      * Copy constructor with tree depth
      */
     public RevTreeBuilder(ObjectDatabase db, @Nullable final RevTree copy) {
-        this(db, copy, 0, new TreeMap<ObjectId, RevTree>());
+        this(db, copy, 0, Maps.<ObjectId, RevTree> newConcurrentMap());
     }
 
     /**
      * Copy constructor
      */
     private RevTreeBuilder(final ObjectDatabase db, @Nullable final RevTree copy, final int depth,
-            final Map<ObjectId, RevTree> pendingWritesCache) {
+            final ConcurrentMap<ObjectId, RevTree> pendingWritesCache) {
 
         checkNotNull(db);
         checkNotNull(pendingWritesCache);
@@ -259,8 +281,12 @@ public class RevTreeBuilder {
                     .size(), (topLevelTree ? "writing top level tree" : "there are "
                     + pendingWritesCache.size() + " pending bucket writes"));
             Stopwatch sw2 = Stopwatch.createStarted();
-            db.putAll(pendingWritesCache.values().iterator());
-            pendingWritesCache.clear();
+            // other bucket builders may be adding to the cache meanwhile, only remove what's saved
+            List<RevTree> pendingWrites = ImmutableList.copyOf(pendingWritesCache.values());
+            db.putAll(pendingWrites.iterator());
+            for (RevTree written : pendingWrites) {
+                pendingWritesCache.remove(written.getId(), written);
+            }
             LOGGER.debug("done in {}", sw2.stop());
         }
         this.initialSize = unnamedTree.size();
@@ -341,24 +367,13 @@ public class RevTreeBuilder {
 
             changedBucketIndexes = ImmutableSet.copyOf(changesByBucket.keySet());
             final Map<Integer, RevTree> bucketTrees = getBucketTrees(changedBucketIndexes);
+            final Map<Integer, RevTree> modifiedBucketTrees = buildBucketTrees(changesByBucket,
+                    bucketTrees);
             List<RevTree> newLeafTreesToSave = Lists.newArrayList();
 
             for (Integer bucketIndex : changedBucketIndexes) {
                 final RevTree currentBucketTree = bucketTrees.get(bucketIndex);
-                final int bucketDepth = this.depth + 1;
-                final RevTreeBuilder bucketTreeBuilder = new RevTreeBuilder(this.db,
-                        currentBucketTree, bucketDepth, this.pendingWritesCache);
-                {
-                    final Collection<Node> bucketEntries = changesByBucket.removeAll(bucketIndex);
-                    for (Node node : bucketEntries) {
-                        if (node.getObjectId().isNull()) {
-                            bucketTreeBuilder.remove(node.getName());
-                        } else {
-                            bucketTreeBuilder.put(node);
-                        }
-                    }
-                }
-                final RevTree modifiedBucketTree = bucketTreeBuilder.build();
+                final RevTree modifiedBucketTree = modifiedBucketTrees.get(bucketIndex);
                 final long bucketSizeDelta = modifiedBucketTree.size() - currentBucketTree.size();
                 final int bucketTreesDelta = modifiedBucketTree.numTrees()
                         - currentBucketTree.numTrees();
@@ -414,6 +429,77 @@ public class RevTreeBuilder {
         return unnamedTree;
     }
 
+    /**
+     * Builds the new version of each changed bucket tree, in parallel if there are enough changes
+     * 
+     * @return the new bucket trees by bucket index
+     */
+    private Map<Integer, RevTree> buildBucketTrees(final Multimap<Integer, Node> changesByBucket,
+            final Map<Integer, RevTree> bucketTrees) {
+
+        final List<BucketTreeTask> tasks = new ArrayList<>(bucketTrees.size());
+        for (Integer bucketIndex : changesByBucket.keySet()) {
+            tasks.add(new BucketTreeTask(bucketIndex, bucketTrees.get(bucketIndex),
+                    changesByBucket.get(bucketIndex)));
+        }
+        if (tasks.size() > 1 && changesByBucket.size() >= PARALLEL_NORMALIZATION_THRESHOLD) {
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                BUCKETS_POOL.invoke(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            }
+        }
+        Map<Integer, RevTree> modifiedBucketTrees = new HashMap<>();
+        for (BucketTreeTask task : tasks) {
+            // returns the result right away if already computed, computes it otherwise
+            modifiedBucketTrees.put(task.bucketIndex, task.invoke());
+        }
+        return modifiedBucketTrees;
+    }
+
+    /**
+     * Applies the changes to a bucket tree with a builder of its own, sharing the pending writes
+     * cache with this builder
+     */
+    private class BucketTreeTask extends RecursiveTask<RevTree> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Integer bucketIndex;
+
+        private final RevTree currentBucketTree;
+
+        private final Collection<Node> changes;
+
+        BucketTreeTask(Integer bucketIndex, RevTree currentBucketTree, Collection<Node> changes) {
+            this.bucketIndex = bucketIndex;
+            this.currentBucketTree = currentBucketTree;
+            this.changes = changes;
+        }
+
+        @Override
+        protected RevTree compute() {
+            final int bucketDepth = RevTreeBuilder.this.depth + 1;
+            final RevTreeBuilder bucketTreeBuilder = new RevTreeBuilder(db, currentBucketTree,
+                    bucketDepth, pendingWritesCache);
+            for (Node node : changes) {
+                if (node.getObjectId().isNull()) {
+                    bucketTreeBuilder.remove(node.getName());
+                } else {
+                    bucketTreeBuilder.put(node);
+                }
+            }
+            return bucketTreeBuilder.build();
+        }
+    }
+
     private Map<Integer, RevTree> getBucketTrees(ImmutableSet<Integer> changedBucketIndexes) {
         Map<Integer, RevTree> bucketTrees = new HashMap<>();
         List<Integer> missing = new ArrayList<>(changedBucketIndexes.size());
@@ -522,6 +608,44 @@ public class RevTreeBuilder {
         return this;
     }
 
+    /**
+     * Applies a stream of changes sorted in {@link NodePathStorageOrder storage order}, where a
+     * node with a {@link ObjectId#NULL NULL} object id stands for the removal of the node of the
+     * same name.
+     * <p>
+     * Since all the changes to a bucket come together in storage order, each bucket tree is built
+     * and saved as soon as the changes for the next bucket start, instead of holding all the
+     * changes until {@link #build()} or the normalization threshold is hit, and without building
+     * any bucket tree more than once.
+     * 
+     * @param sortedChanges the changes, in storage order
+     * @return {@code this}
+     * @throws IllegalArgumentException if the changes are not in storage order
+     */
+    public RevTreeBuilder putAllSorted(final Iterator<Node> sortedChanges) {
+        Integer currentBucket = null;
+        while (sortedChanges.hasNext()) {
+            final Node node = sortedChanges.next();
+            final Integer bucket = computeBucket(node.getName());
+            if (currentBucket != null && !currentBucket.equals(bucket)) {
+                checkArgument(bucket.intValue() > currentBucket.intValue(),
+                        "changes are not in storage order at %s", node.getName());
+                // all the changes to the current bucket are in, unless this is going to be a leaf
+                // tree build the bucket now
+                if (!bucketTreesByBucket.isEmpty() || numPendingChanges() > NORMALIZED_SIZE_LIMIT) {
+                    normalize();
+                }
+            }
+            currentBucket = bucket;
+            if (node.getObjectId().isNull()) {
+                remove(node.getName());
+            } else {
+                put(node);
+            }
+        }
+        return this;
+    }
+
     /**
      * Removes an element from the tree
      * 
@@ -49,11 +49,15 @@ public class CommandHookChain {
         AbstractGeoGigOp<?> command = target;
         // run pre-hooks
         for (CommandHook hook : Lists.reverse(hooks)) {
+            LOGGER.debug("Running pre command hook {}", hook);
+            final long startTime = System.currentTimeMillis();
+            final long startNanos = System.nanoTime();
+            boolean success = false;
             try {
-                LOGGER.debug("Running pre command hook {}", hook);
                 command = hook.pre(command);
-            } catch (CannotRunGeogigOperationException e) {
-                throw e;
+                success = true;
+            } finally {
+                hookRan(hook, true, startTime, startNanos, success);
             }
         }
     }
@@ -62,14 +66,20 @@ public class CommandHookChain {
         AbstractGeoGigOp<?> command = target;
 
         for (CommandHook hook : hooks) {
+            final long startTime = System.currentTimeMillis();
+            final long startNanos = System.nanoTime();
+            boolean success = false;
             try {
                 retVal = hook.post(command, retVal, exception);
+                success = true;
             } catch (Exception e) {
                 // this exception should not be thrown in a post-execution hook, but just in case,
                 // we swallow it and ignore it
                 LOGGER.warn(
                         "Post-command hook {} for command {} threw an exception that will not be propagated",
                         hook, command.getClass().getName(), e);
+            } finally {
+                hookRan(hook, false, startTime, startNanos, success);
             }
         }
 
@@ -77,6 +87,18 @@ public class CommandHookChain {
 
     }
 
+    private void hookRan(CommandHook hook, boolean pre, long startTime, long startNanos,
+            boolean success) {
+        final long ellapsedNanos = System.nanoTime() - startNanos;
+        for (CommandHookListener listener : Hookables.hookListeners()) {
+            try {
+                listener.hookRan(target, hook, pre, startTime, ellapsedNanos, success);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Command hook listener {} threw an exception", listener, e);
+            }
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
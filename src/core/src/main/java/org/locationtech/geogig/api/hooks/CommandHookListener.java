@@ -0,0 +1,42 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.hooks;
+
+import java.util.ServiceLoader;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+
+/**
+ * Gets notified of every {@link CommandHook} run, for example to keep track of how long hooks
+ * take.
+ * <p>
+ * Implementations of this interface are discovered using the standard Java {@link ServiceLoader}
+ * SPI lookup, by looking for implementing class names at
+ * {@code META-INF/services/org.locationtech.geogig.api.hooks.CommandHookListener} resources.
+ * <p>
+ * Implementations must have a default constructor (or no explicit constructor at all), and must be
+ * thread safe.
+ */
+@ThreadSafe
+public interface CommandHookListener {
+
+    /**
+     * @param command the command the hook ran for
+     * @param hook the hook that ran, script hooks' {@code toString()} is their file name
+     * @param pre {@code true} if it ran before the command, {@code false} if after
+     * @param startTimeMillis when the hook started running
+     * @param ellapsedNanos how long it took
+     * @param success whether the hook finished without throwing an exception
+     */
+    public void hookRan(AbstractGeoGigOp<?> command, CommandHook hook, boolean pre,
+            long startTimeMillis, long ellapsedNanos, boolean success);
+}
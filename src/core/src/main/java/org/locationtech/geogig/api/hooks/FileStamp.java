@@ -0,0 +1,52 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.hooks;
+
+import java.io.File;
+
+/**
+ * The modification time and length of a file or directory at the time it was read, used to tell
+ * whether what was read from it is still up to date.
+ * <p>
+ * File systems may have a coarse modification time resolution, so a file modified too close to the
+ * time it was read is never considered up to date, as it could have been modified again without
+ * its modification time changing.
+ */
+final class FileStamp {
+
+    private static final long RESOLUTION_MILLIS = 2000;
+
+    private final long lastModified;
+
+    private final long length;
+
+    private final long readTime;
+
+    private FileStamp(long lastModified, long length, long readTime) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.readTime = readTime;
+    }
+
+    /**
+     * @return the current stamp of {@code file}, to be taken before reading it
+     */
+    public static FileStamp of(File file) {
+        return new FileStamp(file.lastModified(), file.length(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return whether {@code file} is known not to have changed since this stamp was taken
+     */
+    public boolean isCurrent(File file) {
+        return readTime - lastModified > RESOLUTION_MILLIS && file.lastModified() == lastModified
+                && file.length() == length;
+    }
+}
@@ -22,6 +22,8 @@ import org.locationtech.geogig.api.Context;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
@@ -37,6 +39,29 @@ public class Hookables {
         classPathHooks = Hookables.loadClasspathHooks();
     }
 
+    private static final ImmutableList<CommandHookListener> hookListeners = ImmutableList
+            .copyOf(ServiceLoader.load(CommandHookListener.class).iterator());
+
+    /**
+     * The script hooks found in a repository's hooks directory for a given operation, keyed by the
+     * operation hook name prefixed with the directory path. Entries are ignored once the directory
+     * changes.
+     */
+    private static final Cache<String, ScriptHooks> scriptHooks = CacheBuilder.newBuilder()
+            .maximumSize(1000).build();
+
+    private static class ScriptHooks {
+
+        private final FileStamp stamp;
+
+        private final ImmutableList<CommandHook> hooks;
+
+        ScriptHooks(FileStamp stamp, ImmutableList<CommandHook> hooks) {
+            this.stamp = stamp;
+            this.hooks = hooks;
+        }
+    }
+
     /**
      * Returns the filename to be used for a script corresponding to the hook for a given GeoGig
      * operation. Returns {@link Optional.absent} if the specified operation does not allows hooks
@@ -60,6 +85,13 @@ public class Hookables {
         return SPIHooks;
     }
 
+    /**
+     * @return the {@link CommandHookListener}s found in the classpath
+     */
+    static ImmutableList<CommandHookListener> hookListeners() {
+        return hookListeners;
+    }
+
     public static boolean hasClasspathHooks(Class<? extends AbstractGeoGigOp<?>> commandClass) {
         for (CommandHook hook : classPathHooks) {
             if (hook.appliesTo(commandClass)) {
@@ -98,10 +130,29 @@ public class Hookables {
             return hooks;
         }
 
-        if (name.isPresent()) {
-            String preHookName = "pre_" + name.get().toLowerCase();
-            String postHookName = "post_" + name.get().toLowerCase();
-            File[] files = hooksDir.listFiles();
+        hooks.addAll(findScriptHooks(hooksDir, name.get()));
+        return hooks;
+
+    }
+
+    /**
+     * Lists the script hooks for the given operation hook name in {@code hooksDir}, or returns the
+     * ones found last time if the directory didn't change since then.
+     */
+    private static ImmutableList<CommandHook> findScriptHooks(final File hooksDir,
+            final String name) {
+        final String key = hooksDir.getAbsolutePath() + File.pathSeparator + name;
+        ScriptHooks cached = scriptHooks.getIfPresent(key);
+        if (cached != null && cached.stamp.isCurrent(hooksDir)) {
+            return cached.hooks;
+        }
+
+        final FileStamp stamp = FileStamp.of(hooksDir);
+        ImmutableList.Builder<CommandHook> hooks = ImmutableList.builder();
+        String preHookName = "pre_" + name.toLowerCase();
+        String postHookName = "post_" + name.toLowerCase();
+        File[] files = hooksDir.listFiles();
+        if (files != null) {
             for (File file : files) {
                 String filename = file.getName();
                 if (isHook(filename, preHookName)) {
@@ -112,8 +163,9 @@ public class Hookables {
                 }
             }
         }
-        return hooks;
-
+        cached = new ScriptHooks(stamp, hooks.build());
+        scriptHooks.put(key, cached);
+        return cached.hooks;
     }
 
     /**
@@ -60,4 +60,9 @@ class JVMScriptHook implements CommandHook {
         return true;
     }
 
+    @Override
+    public String toString() {
+        return (preScript == null ? postScript : preScript).getName();
+    }
+
 }
@@ -12,16 +12,20 @@ package org.locationtech.geogig.api.hooks;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -32,6 +36,7 @@ import org.locationtech.geogig.repository.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -51,6 +56,17 @@ public class Scripting {
 
     private static ScriptEngineManager factory = new ScriptEngineManager();
 
+    /**
+     * Script engines are not required to be thread safe, so each thread gets its own engines and
+     * scripts compiled by them
+     */
+    private static final ThreadLocal<ScriptCache> SCRIPTS = new ThreadLocal<ScriptCache>() {
+        @Override
+        protected ScriptCache initialValue() {
+            return new ScriptCache();
+        }
+    };
+
     /**
      * Runs a script
      * 
@@ -67,19 +83,16 @@ public class Scripting {
         checkArgument(scriptFile.exists(), "Script file does not exist %s", scriptFile.getPath());
 
         LOGGER.info("Running jvm script {}", scriptFile.getAbsolutePath());
-        final String filename = scriptFile.getName();
-        final String ext = Files.getFileExtension(filename);
-
-        final ScriptEngine engine = factory.getEngineByExtension(ext);
-
         try {
+            final CachedScript script = SCRIPTS.get().script(scriptFile);
+            final Bindings bindings = script.createBindings();
             Map<String, Object> params = getParamMap(operation);
-            engine.put(PARAMS, params);
+            bindings.put(PARAMS, params);
             Repository repo = operation.command(ResolveRepository.class).call();
             GeoGigAPI api = new GeoGigAPI(repo);
-            engine.put(GEOGIG, api);
-            engine.eval(new FileReader(scriptFile));
-            Object map = engine.get(PARAMS);
+            bindings.put(GEOGIG, api);
+            script.eval(bindings);
+            Object map = bindings.get(PARAMS);
             setParamMap((Map<String, Object>) map, operation);
         } catch (ScriptException e) {
             Throwable cause = Throwables.getRootCause(e);
@@ -253,7 +266,7 @@ public class Scripting {
         final File postScript = preHook ? null : file;
 
         final CommandHook hook;
-        final ScriptEngine engine = factory.getEngineByExtension(ext);
+        final ScriptEngine engine = SCRIPTS.get().engine(ext);
         if (engine == null) {
             hook = new ShellScriptHook(preScript, postScript);
         } else {
@@ -261,4 +274,83 @@ public class Scripting {
         }
         return hook;
     }
+
+    /**
+     * The script engines and compiled scripts of a thread
+     */
+    private static class ScriptCache {
+
+        private final Map<String, Optional<ScriptEngine>> engines = Maps.newHashMap();
+
+        private final Map<File, CachedScript> scripts = Maps.newHashMap();
+
+        @Nullable
+        public ScriptEngine engine(final String extension) {
+            Optional<ScriptEngine> engine = engines.get(extension);
+            if (engine == null) {
+                engine = Optional.fromNullable(factory.getEngineByExtension(extension));
+                engines.put(extension, engine);
+            }
+            return engine.orNull();
+        }
+
+        /**
+         * @return the compiled script, compiling it again if the file changed since it was last
+         *         compiled
+         */
+        public CachedScript script(final File scriptFile) throws IOException, ScriptException {
+            CachedScript script = scripts.get(scriptFile);
+            if (script == null || !script.stamp.isCurrent(scriptFile)) {
+                final String ext = Files.getFileExtension(scriptFile.getName());
+                final ScriptEngine engine = engine(ext);
+                checkArgument(engine != null, "No script engine for %s", scriptFile.getPath());
+                script = new CachedScript(engine, scriptFile);
+                scripts.put(scriptFile, script);
+            }
+            return script;
+        }
+    }
+
+    /**
+     * A script file compiled by its engine, or just its contents if the engine can't compile
+     * scripts
+     */
+    private static class CachedScript {
+
+        private final FileStamp stamp;
+
+        private final ScriptEngine engine;
+
+        @Nullable
+        private final CompiledScript compiled;
+
+        @Nullable
+        private final String source;
+
+        public CachedScript(ScriptEngine engine, File scriptFile) throws IOException,
+                ScriptException {
+            this.stamp = FileStamp.of(scriptFile);
+            this.engine = engine;
+            String source = Files.toString(scriptFile, Charset.defaultCharset());
+            if (engine instanceof Compilable) {
+                LOGGER.debug("Compiling jvm script {}", scriptFile.getAbsolutePath());
+                this.compiled = ((Compilable) engine).compile(source);
+                this.source = null;
+            } else {
+                this.compiled = null;
+                this.source = source;
+            }
+        }
+
+        public Bindings createBindings() {
+            return engine.createBindings();
+        }
+
+        public Object eval(Bindings bindings) throws ScriptException {
+            if (compiled != null) {
+                return compiled.eval(bindings);
+            }
+            return engine.eval(source, bindings);
+        }
+    }
 }
@@ -60,4 +60,9 @@ class ShellScriptHook implements CommandHook {
         return true;
     }
 
+    @Override
+    public String toString() {
+        return (preScript == null ? postScript : preScript).getName();
+    }
+
 }
@@ -0,0 +1,293 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.ChangedPathFilter;
+import org.locationtech.geogig.api.plumbing.diff.CommitChangeCounts;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.api.porcelain.BranchListOp;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Computes and stores the {@link ChangedPathFilter changed paths filter} of the commits reachable
+ * from the given tips, so that path filtered history queries can skip the commits that didn't
+ * touch the requested paths, as well as their {@link CommitChangeCounts change counts}, so that
+ * history statistics don't need to diff the commits. The {@link BuildHistorySummary history
+ * summaries} of the tips are updated afterwards.
+ * <p>
+ * The history is walked from the tips down to the given boundary commits, and unless
+ * {@link #setRebuild(boolean) rebuild} is set, down to the commits that already have a filter and
+ * change counts, assuming their ancestors have them too. If no tip is given, all the local and remote branches are
+ * used. Commits with no parents, or whose parents are not in the repository (e.g. at the bottom of
+ * a shallow clone), get no filter.
+ */
+public class BuildChangedPathIndex extends AbstractGeoGigOp<Integer> {
+
+    private List<ObjectId> tips = Lists.newArrayList();
+
+    private Set<ObjectId> boundaries = Sets.newHashSet();
+
+    private boolean rebuild;
+
+    /**
+     * @param commitId a commit to start walking the history from
+     * @return {@code this}
+     */
+    public BuildChangedPathIndex addTip(ObjectId commitId) {
+        this.tips.add(commitId);
+        return this;
+    }
+
+    /**
+     * @param commitId a commit at which to stop walking the history, its filter is not computed
+     * @return {@code this}
+     */
+    public BuildChangedPathIndex addBoundary(ObjectId commitId) {
+        this.boundaries.add(commitId);
+        return this;
+    }
+
+    /**
+     * @param rebuild whether to recompute the filters, change counts and history summaries of the
+     *        commits that already have them, as {@link RebuildGraphOp} does
+     * @return {@code this}
+     */
+    public BuildChangedPathIndex setRebuild(boolean rebuild) {
+        this.rebuild = rebuild;
+        return this;
+    }
+
+    /**
+     * @return the number of commits whose filter was computed
+     */
+    @Override
+    protected Integer _call() {
+        final Repository repository = repository();
+        final GraphDatabase graphDb = graphDatabase();
+
+        Deque<ObjectId> queue = new ArrayDeque<ObjectId>(tips);
+        if (queue.isEmpty()) {
+            List<Ref> branches = command(BranchListOp.class).setLocal(true).setRemotes(true)
+                    .call();
+            for (Ref ref : branches) {
+                queue.add(ref.getObjectId());
+            }
+        }
+
+        final List<ObjectId> heads = Lists.newArrayList(queue);
+        // the commits whose counts were recomputed, and so their summaries need to be too
+        final Set<ObjectId> rebuilt = Sets.newHashSet();
+        Set<ObjectId> visited = Sets.newHashSet(boundaries);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            if (getProgressListener().isCanceled()) {
+                break;
+            }
+            final ObjectId commitId = queue.pop();
+            if (commitId.isNull() || !visited.add(commitId)) {
+                continue;
+            }
+            if (!repository.commitExists(commitId) || !graphDb.exists(commitId)) {
+                continue;
+            }
+            if (!rebuild && ChangedPathFilter.read(graphDb, commitId).isPresent()
+                    && CommitChangeCounts.read(graphDb, commitId).isPresent()) {
+                continue;
+            }
+            final RevCommit commit = repository.getCommit(commitId);
+            if (build(commit, repository, graphDb)) {
+                count++;
+                if (rebuild) {
+                    rebuilt.add(commitId);
+                }
+            }
+            queue.addAll(commit.getParentIds());
+        }
+        if (!getProgressListener().isCanceled()) {
+            // now that the change counts are there, bring the history summaries up to date
+            for (ObjectId head : heads) {
+                if (!head.isNull() && !boundaries.contains(head)) {
+                    command(BuildHistorySummary.class).setCommit(head).setStale(rebuilt).call();
+                }
+            }
+        }
+        return Integer.valueOf(count);
+    }
+
+    private boolean build(RevCommit commit, Repository repository, GraphDatabase graphDb) {
+        if (commit.getParentIds().isEmpty()) {
+            return false;
+        }
+        final ObjectDatabase objectDb = objectDatabase();
+        final RevTree tree = repository.getTree(commit.getTreeId());
+        ChangedPathsCollector collector = new ChangedPathsCollector(objectDb);
+        // change counts are relative to the first parent only
+        collector.counts = CommitChangeCounts.builder();
+        for (ObjectId parentId : commit.getParentIds()) {
+            if (!repository.commitExists(parentId)) {
+                return false;
+            }
+            RevCommit parent = repository.getCommit(parentId);
+            RevTree parentTree = repository.getTree(parent.getTreeId());
+            new PreOrderDiffWalk(parentTree, tree, objectDb, objectDb).walk(collector);
+            if (collector.counts != null) {
+                collector.counts.build().write(graphDb, commit.getId());
+                collector.counts = null;
+            }
+        }
+        ChangedPathFilter filter = ChangedPathFilter.create(collector.treePaths,
+                collector.featurePaths, collector.includesFeatures);
+        filter.write(graphDb, commit.getId());
+        return true;
+    }
+
+    /**
+     * Collects the paths of the changed trees, and the changed features up to
+     * {@link ChangedPathFilter#MAX_FEATURE_PATHS}, and counts the changed features and records
+     * the added and removed trees if {@link #counts} is set.
+     * <p>
+     * Once the feature paths are no longer collected, trees and buckets that were added or removed
+     * as a whole and have no subtrees are not walked, their features are counted out of the tree
+     * size instead, so that committing a large import doesn't visit each of its features.
+     */
+    private static class ChangedPathsCollector implements PreOrderDiffWalk.Consumer {
+
+        private final ObjectDatabase objectDb;
+
+        @Nullable
+        CommitChangeCounts.Builder counts;
+
+        final Set<String> treePaths = Sets.newHashSet();
+
+        final Set<String> featurePaths = Sets.newHashSet();
+
+        boolean includesFeatures = true;
+
+        private final Deque<String> currentPath = new ArrayDeque<String>();
+
+        ChangedPathsCollector(ObjectDatabase objectDb) {
+            this.objectDb = objectDb;
+        }
+
+        @Override
+        public boolean tree(@Nullable Node left, @Nullable Node right) {
+            final String name = (left == null ? right : left).getName();
+            final String path = NodeRef.ROOT.equals(name) ? NodeRef.ROOT : NodeRef.appendChild(
+                    currentPath.peek(), name);
+            currentPath.push(path);
+            if (!path.isEmpty()) {
+                treePaths.add(path);
+                if (counts != null && left == null) {
+                    counts.treeAdded(path);
+                } else if (counts != null && right == null) {
+                    counts.treeRemoved(path);
+                }
+            }
+            if (left == null || right == null) {
+                return !countWholeTree(left == null ? right.getObjectId() : left.getObjectId(),
+                        left == null);
+            }
+            return true;
+        }
+
+        @Override
+        public void endTree(@Nullable Node left, @Nullable Node right) {
+            currentPath.pop();
+        }
+
+        @Override
+        public boolean bucket(int bucketIndex, int bucketDepth, @Nullable Bucket left,
+                @Nullable Bucket right) {
+            if (left == null || right == null) {
+                return !countWholeTree(left == null ? right.id() : left.id(), left == null);
+            }
+            return true;
+        }
+
+        /**
+         * Counts the features of a tree (or bucket tree) that was added or removed as a whole
+         * under the current path, if it has no subtrees and its feature paths don't need to be
+         * collected.
+         * 
+         * @return {@code true} if the tree's features were counted and it doesn't need to be
+         *         walked
+         */
+        private boolean countWholeTree(ObjectId treeId, boolean added) {
+            final RevTree tree = objectDb.getTree(treeId);
+            if (tree.numTrees() > 0) {
+                return false;
+            }
+            if (includesFeatures) {
+                if (featurePaths.size() + tree.size() <= ChangedPathFilter.MAX_FEATURE_PATHS) {
+                    return false;
+                }
+                // all of them are changes, so there will be too many to collect anyway
+                includesFeatures = false;
+                featurePaths.clear();
+            }
+            if (counts != null) {
+                if (added) {
+                    counts.added(currentPath.peek(), tree.size());
+                } else {
+                    counts.removed(currentPath.peek(), tree.size());
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void endBucket(int bucketIndex, int bucketDepth, @Nullable Bucket left,
+                @Nullable Bucket right) {
+            // nothing to do
+        }
+
+        @Override
+        public void feature(@Nullable Node left, @Nullable Node right) {
+            if (counts != null) {
+                if (left == null) {
+                    counts.added(currentPath.peek());
+                } else if (right == null) {
+                    counts.removed(currentPath.peek());
+                } else {
+                    counts.modified(currentPath.peek());
+                }
+            }
+            if (!includesFeatures) {
+                return;
+            }
+            final String name = (left == null ? right : left).getName();
+            featurePaths.add(NodeRef.appendChild(currentPath.peek(), name));
+            if (featurePaths.size() > ChangedPathFilter.MAX_FEATURE_PATHS) {
+                includesFeatures = false;
+                featurePaths.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.CommitChangeCounts;
+import org.locationtech.geogig.api.plumbing.diff.CommitHistorySummary;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.GraphDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Returns the {@link CommitHistorySummary history summary} of a commit, computing and storing it
+ * if it's not stored yet, along with the missing summaries of its first-parent ancestors.
+ * <p>
+ * A summary is computed out of the summary of the commit's first parent and the commit's
+ * {@link CommitChangeCounts change counts}, so once a commit's summary is stored, summarizing its
+ * children costs a single step each. The tree sizes of the commits with no change counts, such as
+ * the first commit of the history, are read from their trees instead. A first parent that is not
+ * in the repository (e.g. at the bottom of a shallow clone) is treated as the start of the
+ * history, and commits that aren't in the {@link GraphDatabase} get no summary.
+ */
+public class BuildHistorySummary extends AbstractGeoGigOp<Optional<CommitHistorySummary>> {
+
+    private ObjectId commitId;
+
+    private Set<ObjectId> stale = Sets.newHashSet();
+
+    /**
+     * @param commitId the commit to get the summary of
+     * @return {@code this}
+     */
+    public BuildHistorySummary setCommit(ObjectId commitId) {
+        this.commitId = commitId;
+        return this;
+    }
+
+    /**
+     * Used by {@link BuildChangedPathIndex} when rebuilding the change counts, so that the
+     * summaries computed out of the previous counts are recomputed too.
+     * 
+     * @param stale the commits whose stored summaries are to be ignored and recomputed, they are
+     *        removed from the set as their summaries are recomputed so that the set can be shared
+     *        by the calls for several branches
+     * @return {@code this}
+     */
+    BuildHistorySummary setStale(Set<ObjectId> stale) {
+        this.stale = stale;
+        return this;
+    }
+
+    /**
+     * @return the history summary of the commit, or {@link Optional#absent() absent} if the commit
+     *         is not in the graph database
+     */
+    @Override
+    protected Optional<CommitHistorySummary> _call() {
+        checkState(commitId != null, "commit not provided");
+        final Repository repository = repository();
+        final GraphDatabase graphDb = graphDatabase();
+        if (!repository.commitExists(commitId) || !graphDb.exists(commitId)) {
+            return Optional.absent();
+        }
+
+        // the commits with no summary, newest first
+        Deque<RevCommit> pending = new ArrayDeque<RevCommit>();
+        CommitHistorySummary summary = null;
+        ObjectId id = commitId;
+        while (true) {
+            Optional<CommitHistorySummary> stored = stale.contains(id) ? Optional
+                    .<CommitHistorySummary> absent() : CommitHistorySummary.read(graphDb, id);
+            if (stored.isPresent()) {
+                summary = stored.get();
+                break;
+            }
+            RevCommit commit = repository.getCommit(id);
+            pending.push(commit);
+            Optional<ObjectId> parentId = commit.parentN(0);
+            if (!parentId.isPresent() || !repository.commitExists(parentId.get())
+                    || !graphDb.exists(parentId.get())) {
+                break;
+            }
+            id = parentId.get();
+        }
+
+        while (!pending.isEmpty()) {
+            final RevCommit commit = pending.pop();
+            if (summary == null) {
+                summary = CommitHistorySummary.root(commit, treeSizes(commit));
+            } else {
+                Optional<CommitChangeCounts> counts = CommitChangeCounts.read(graphDb,
+                        commit.getId());
+                if (counts.isPresent()) {
+                    summary = summary.child(commit, counts.get());
+                } else {
+                    summary = summary.child(commit, treeSizes(commit));
+                }
+            }
+            summary.write(graphDb, commit.getId());
+            stale.remove(commit.getId());
+        }
+        return Optional.of(summary);
+    }
+
+    private Map<String, Long> treeSizes(RevCommit commit) {
+        final Repository repository = repository();
+        final RevTree tree = repository.getTree(commit.getTreeId());
+        Map<String, Long> sizes = Maps.newHashMap();
+        Iterator<NodeRef> trees = new DepthTreeIterator(NodeRef.ROOT, ObjectId.NULL, tree,
+                objectDatabase(), DepthTreeIterator.Strategy.RECURSIVE_TREES_ONLY);
+        while (trees.hasNext()) {
+            NodeRef treeRef = trees.next();
+            sizes.put(treeRef.path(), Long.valueOf(repository.getTree(treeRef.objectId()).size()));
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,72 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Set;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.repository.RepositoryConnectionException.StorageType;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.fs.MappedObjectDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Sets;
+
+/**
+ * Builds a {@link MappedObjectDatabase read optimized object database} out of the objects
+ * reachable from all the refs of the repository, and switches the repository to it.
+ * <p>
+ * The switch takes effect the next time the repository is opened. The previous object database is
+ * left in place, and can be removed once the repository is known to work with the new one. An
+ * interrupted build can be resumed by running the command again.
+ */
+public class BuildMappedObjectDatabase extends AbstractGeoGigOp<Integer> {
+
+    /**
+     * @return the number of distinct objects the refs point to that the new database was built
+     *         from
+     */
+    @Override
+    protected Integer _call() {
+        final ConfigDatabase config = configDatabase();
+        final String storageKey = "storage." + StorageType.OBJECT.key;
+        final Optional<String> current = config.get(storageKey);
+        checkState(!MappedObjectDatabase.FORMAT_NAME.equals(current.orNull()),
+                "The repository objects are already stored in the %s format",
+                MappedObjectDatabase.FORMAT_NAME);
+
+        final ObjectDatabase source = objectDatabase();
+        Set<ObjectId> tips = Sets.newLinkedHashSet();
+        for (Ref ref : command(ForEachRef.class).call()) {
+            ObjectId id = ref.getObjectId();
+            if (!id.isNull() && source.exists(id)) {
+                tips.add(id);
+            }
+        }
+
+        MappedObjectDatabase target = new MappedObjectDatabase(platform(),
+                "objects.mapped", config, false);
+        target.open();
+        try {
+            target.importFrom(source, tips, graphDatabase());
+        } finally {
+            target.close();
+        }
+
+        config.put(storageKey, MappedObjectDatabase.FORMAT_NAME);
+        config.put(MappedObjectDatabase.FORMAT_NAME + ".version", MappedObjectDatabase.VERSION);
+        return tips.size();
+    }
+}
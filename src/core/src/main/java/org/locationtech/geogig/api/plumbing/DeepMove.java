@@ -31,6 +31,7 @@ import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.repository.StagingArea;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
@@ -218,7 +219,7 @@ public class DeepMove extends AbstractGeoGigOp<ObjectId> {
             final DeletingListener deletingListener = new DeletingListener(deletingService, from);
 
             // store objects into the target db and remove them from the origin db in one shot
-            to.putAll(from.getAll(ids), deletingListener);
+            RawObject.transfer(from, to, ids, deletingListener);
             // in case there are some deletes pending cause the iterator finished and the listener
             // didn't fill its buffer
             deletingListener.deleteInserted();
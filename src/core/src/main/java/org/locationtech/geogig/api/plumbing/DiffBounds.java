@@ -43,16 +43,23 @@ import org.opengis.referencing.operation.TransformException;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Computes the bounds of the difference between the two trees instead of the actual diffs.
- * 
+ * <p>
+ * Results are cached by tree ids, path filters, and target CRS, since the bounds of the
+ * differences between two given trees never change.
  */
 public class DiffBounds extends AbstractGeoGigOp<DiffSummary<BoundingBox, BoundingBox>> {
 
+    private static final Cache<List<Object>, DiffSummary<BoundingBox, BoundingBox>> CACHE = CacheBuilder
+            .newBuilder().maximumSize(1000).build();
+
     private String oldVersion;
 
     private String newVersion;
@@ -112,11 +119,18 @@ public class DiffBounds extends AbstractGeoGigOp<DiffSummary<BoundingBox, Boundi
 
         RevTree left = resolveTree(leftRefSpec);
         RevTree right = resolveTree(rightRefSpec);
+        CoordinateReferenceSystem crs = resolveCrs();
+
+        final List<Object> cacheKey = ImmutableList.<Object> of(left.getId(), right.getId(),
+                pathFilters, crs);
+        DiffSummary<BoundingBox, BoundingBox> cached = CACHE.getIfPresent(cacheKey);
+        if (cached != null) {
+            return copy(cached);
+        }
 
         ObjectDatabase leftSource = resolveSafeDb(leftRefSpec);
         ObjectDatabase rightSource = resolveSafeDb(rightRefSpec);
         PreOrderDiffWalk visitor = new PreOrderDiffWalk(left, right, leftSource, rightSource);
-        CoordinateReferenceSystem crs = resolveCrs();
         BoundsWalk walk = new BoundsWalk(crs, stagingDatabase());
         PreOrderDiffWalk.Consumer consumer = walk;
         if (!pathFilters.isEmpty()) {
@@ -124,9 +138,21 @@ public class DiffBounds extends AbstractGeoGigOp<DiffSummary<BoundingBox, Boundi
         }
         visitor.walk(consumer);
         DiffSummary<BoundingBox, BoundingBox> diffBounds = walk.getResult();
+        CACHE.put(cacheKey, copy(diffBounds));
         return diffBounds;
     }
 
+    private static DiffSummary<BoundingBox, BoundingBox> copy(
+            DiffSummary<BoundingBox, BoundingBox> summary) {
+        BoundingBox merged = summary.getMergedResult().orNull();
+        return new DiffSummary<BoundingBox, BoundingBox>(copy(summary.getLeft()),
+                copy(summary.getRight()), merged == null ? null : copy(merged));
+    }
+
+    private static BoundingBox copy(BoundingBox bounds) {
+        return new ReferencedEnvelope(bounds);
+    }
+
     private CoordinateReferenceSystem resolveCrs() {
         if (this.crs != null) {
             return this.crs;
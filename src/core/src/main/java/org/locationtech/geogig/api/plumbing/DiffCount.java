@@ -18,10 +18,12 @@ import javax.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.CachingDiffCountConsumer;
 import org.locationtech.geogig.api.plumbing.diff.DiffCountConsumer;
 import org.locationtech.geogig.api.plumbing.diff.DiffObjectCount;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.api.plumbing.diff.PathFilteringDiffConsumer;
+import org.locationtech.geogig.api.plumbing.diff.TreeDiffCountCache;
 import org.locationtech.geogig.storage.StagingDatabase;
 
 import com.google.common.base.Optional;
@@ -29,8 +31,13 @@ import com.google.common.collect.Lists;
 
 /**
  * Counts differences between two trees.
+ * <p>
+ * Counts are cached by tree ids and path filters, and unfiltered counts reuse the cached counts of
+ * the subtrees that didn't change since a previous call, so repeatedly counting the differences
+ * between, for example, the index and the working tree only walks the paths updated in between.
  * 
  * @see DiffCountConsumer
+ * @see TreeDiffCountCache
  */
 public class DiffCount extends AbstractGeoGigOp<DiffObjectCount> {
 
@@ -81,18 +88,28 @@ public class DiffCount extends AbstractGeoGigOp<DiffObjectCount> {
         final RevTree oldTree = getTree(oldRefSpec);
         final RevTree newTree = getTree(newRefSpec);
 
+        Optional<DiffObjectCount> cached = TreeDiffCountCache.get(oldTree.getId(),
+                newTree.getId(), pathFilters);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         DiffObjectCount diffCount;
         StagingDatabase index = stagingDatabase();
         PreOrderDiffWalk visitor = new PreOrderDiffWalk(oldTree, newTree, index, index);
 
         DiffCountConsumer counter = new DiffCountConsumer(index);
-        PreOrderDiffWalk.Consumer filter = counter;
-        if (!pathFilters.isEmpty()) {
+        PreOrderDiffWalk.Consumer filter;
+        if (pathFilters.isEmpty()) {
+            // reuse and update the cached counts of any unchanged pair of subtrees
+            filter = new CachingDiffCountConsumer(counter);
+        } else {
             filter = new PathFilteringDiffConsumer(pathFilters, counter);
         }
         visitor.walk(filter);
         diffCount = counter.get();
 
+        TreeDiffCountCache.put(oldTree.getId(), newTree.getId(), pathFilters, diffCount);
         return diffCount;
     }
 
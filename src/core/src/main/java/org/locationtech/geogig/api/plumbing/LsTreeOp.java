@@ -231,6 +231,8 @@ public class LsTreeOp extends AbstractGeoGigOp<Iterator<NodeRef>> implements
             DepthTreeIterator iter = new DepthTreeIterator(path, metadataId, tree, database,
                     iterStrategy);
             iter.setBoundsFilter(refBoundsFilter);
+            iter.setPrefetch(configDatabase().get(ObjectDatabase.PREFETCH_CONFIG_KEY,
+                    Boolean.class).or(Boolean.FALSE));
             return iter;
         default:
             throw new IllegalArgumentException(String.format("Invalid reference: %s", ref));
@@ -20,6 +20,7 @@ import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.porcelain.BranchListOp;
 import org.locationtech.geogig.api.porcelain.LogOp;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.CommitMetadata;
 import org.locationtech.geogig.storage.GraphDatabase;
 
 import com.google.common.base.Preconditions;
@@ -28,6 +29,9 @@ import com.google.common.collect.ImmutableList;
 /**
  * Rebuilds the {@link GraphDatabase} and returns a list of {@link ObjectId}s that were found to be
  * missing or incomplete.
+ * <p>
+ * The {@link BuildChangedPathIndex changed paths index}, change counts and history summaries
+ * stored in the graph are rebuilt too.
  */
 public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
 
@@ -55,9 +59,15 @@ public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
                 if (graphDb.put(next.getId(), next.getParentIds())) {
                     updated.add(next.getId());
                 }
+                if (!CommitMetadata.read(graphDb, next.getId()).isPresent()) {
+                    CommitMetadata.of(next).write(graphDb);
+                }
             }
         }
 
+        command(BuildChangedPathIndex.class).setRebuild(true)
+                .setProgressListener(getProgressListener()).call();
+
         return ImmutableList.copyOf(updated);
     }
 }
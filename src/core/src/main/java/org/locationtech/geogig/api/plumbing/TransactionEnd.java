@@ -15,6 +15,7 @@ import javax.annotation.Nullable;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.GeogigTransaction;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.SymRef;
 import org.locationtech.geogig.api.hooks.Hookable;
@@ -39,7 +40,8 @@ import com.google.common.collect.ImmutableSet;
  * to the value of the transaction ref.
  * <p>
  * If the repository ref was updated while the transaction occurred, the changes will be brought
- * together via a merge or rebase operation and the new ref will be updated to the result.
+ * together via a merge or rebase operation and the new ref will be updated to the result, as long
+ * as it was not updated again meanwhile, otherwise the merge or rebase is tried again.
  * 
  * @see GeogigTransaction
  */
@@ -48,6 +50,11 @@ public class TransactionEnd extends AbstractGeoGigOp<Boolean> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionEnd.class);
 
+    /**
+     * How many times to try updating a ref that keeps being changed by other transactions
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+
     private boolean cancel = false;
 
     private GeogigTransaction transaction = null;
@@ -132,72 +139,101 @@ public class TransactionEnd extends AbstractGeoGigOp<Boolean> {
         }
 
         ImmutableSet<Ref> changedRefs = getChangedRefs();
+        // Update refs
+        for (Ref ref : changedRefs) {
+            if (!ref.getName().startsWith(Ref.REFS_PREFIX)) {
+                continue;
+            }
+            Ref updatedRef = updateRef(ref);
+
+            if (currentBranch.equals(ref.getName())) {
+                updateHeads(ref.getName(), updatedRef.getObjectId());
+            }
+        }
+
+        // TODO: What happens if there are unstaged or staged changes in the repository when
+        // a transaction is committed?
+    }
+
+    /**
+     * Updates the repository ref with the transaction changes. If the repository ref was changed
+     * since the transaction started, the changes are merged or rebased onto it without holding
+     * any lock, and the repository ref is only updated if it didn't change again meanwhile,
+     * starting over otherwise. This way transactions changing different refs don't wait for each
+     * other.
+     */
+    private Ref updateRef(final Ref ref) {
+        for (int attempt = 1;; attempt++) {
+            Ref updatedRef = ref;
+
+            Optional<Ref> repoRef = command(RefParse.class).setName(ref.getName()).call();
+            if (repoRef.isPresent() && repositoryChanged(repoRef.get())) {
+                if (rebase) {
+                    // Try to rebase
+                    transaction.command(CheckoutOp.class).setSource(ref.getName()).setForce(true)
+                            .call();
+                    try {
+                        transaction.command(RebaseOp.class)
+                                .setUpstream(Suppliers.ofInstance(repoRef.get().getObjectId()))
+                                .call();
+                    } catch (RebaseConflictsException e) {
+                        Throwables.propagate(e);
+                    }
+                    updatedRef = transaction.command(RefParse.class).setName(ref.getName()).call()
+                            .get();
+                } else {
+                    // sync transactions have to use merge to prevent divergent history
+                    transaction.command(CheckoutOp.class).setSource(ref.getName()).setForce(true)
+                            .call();
+                    try {
+                        transaction.command(MergeOp.class)
+                                .setAuthor(authorName.orNull(), authorEmail.orNull())
+                                .addCommit(Suppliers.ofInstance(repoRef.get().getObjectId()))
+                                .call();
+                    } catch (NothingToCommitException e) {
+                        // The repo commit is already in our history, this is a fast
+                        // forward.
+                    }
+                    updatedRef = transaction.command(RefParse.class).setName(ref.getName()).call()
+                            .get();
+                }
+            }
+
+            final ObjectId expectedValue = repoRef.isPresent() ? repoRef.get().getObjectId()
+                    : null;
+            // through UpdateRef for the update-ref hooks to run
+            Optional<Ref> updated = command(UpdateRef.class).setName(ref.getName())
+                    .setNewValue(updatedRef.getObjectId()).setExpectedValue(expectedValue).call();
+            if (updated.isPresent()) {
+                LOGGER.debug(String.format("commit %s %s -> %s", ref.getName(),
+                        ref.getObjectId(), updatedRef.getObjectId()));
+                return updatedRef;
+            }
+            Preconditions.checkState(attempt < MAX_UPDATE_ATTEMPTS,
+                    "Unable to update %s, it kept changing after %s attempts", ref.getName(),
+                    attempt);
+            LOGGER.debug("{} changed while ending the transaction, trying again", ref.getName());
+        }
+    }
+
+    /**
+     * Updates HEAD, WORK_HEAD and STAGE_HEAD to the new commit of the current branch, unless a
+     * transaction ending later already changed the branch, in which case it updates them itself.
+     */
+    private void updateHeads(final String branch, final ObjectId commitId) {
         // Lock the repository
         try {
             refDatabase().lock();
         } catch (TimeoutException e) {
             Throwables.propagate(e);
         }
-
         try {
-            // Update refs
-            for (Ref ref : changedRefs) {
-                if (!ref.getName().startsWith(Ref.REFS_PREFIX)) {
-                    continue;
-                }
-                Ref updatedRef = ref;
-
-                Optional<Ref> repoRef = command(RefParse.class).setName(ref.getName()).call();
-                if (repoRef.isPresent() && repositoryChanged(repoRef.get())) {
-                    if (rebase) {
-                        // Try to rebase
-                        transaction.command(CheckoutOp.class).setSource(ref.getName())
-                                .setForce(true).call();
-                        try {
-                            transaction.command(RebaseOp.class)
-                                    .setUpstream(Suppliers.ofInstance(repoRef.get().getObjectId()))
-                                    .call();
-                        } catch (RebaseConflictsException e) {
-                            Throwables.propagate(e);
-                        }
-                        updatedRef = transaction.command(RefParse.class).setName(ref.getName())
-                                .call().get();
-                    } else {
-                        // sync transactions have to use merge to prevent divergent history
-                        transaction.command(CheckoutOp.class).setSource(ref.getName())
-                                .setForce(true).call();
-                        try {
-                            transaction.command(MergeOp.class)
-                                    .setAuthor(authorName.orNull(), authorEmail.orNull())
-                                    .addCommit(Suppliers.ofInstance(repoRef.get().getObjectId()))
-                                    .call();
-                        } catch (NothingToCommitException e) {
-                            // The repo commit is already in our history, this is a fast
-                            // forward.
-                        }
-                        updatedRef = transaction.command(RefParse.class).setName(ref.getName())
-                                .call().get();
-                    }
-                }
-
-                LOGGER.debug(String.format("commit %s %s -> %s", ref.getName(), ref.getObjectId(),
-                        updatedRef.getObjectId()));
-
-                command(UpdateRef.class).setName(ref.getName())
-                        .setNewValue(updatedRef.getObjectId()).call();
-
-                if (currentBranch.equals(ref.getName())) {
-                    // Update HEAD, WORK_HEAD and STAGE_HEAD
-                    command(UpdateSymRef.class).setName(Ref.HEAD).setNewValue(ref.getName()).call();
-                    command(UpdateRef.class).setName(Ref.WORK_HEAD)
-                            .setNewValue(updatedRef.getObjectId()).call();
-                    command(UpdateRef.class).setName(Ref.STAGE_HEAD)
-                            .setNewValue(updatedRef.getObjectId()).call();
-                }
+            Optional<Ref> branchRef = command(RefParse.class).setName(branch).call();
+            if (branchRef.isPresent() && commitId.equals(branchRef.get().getObjectId())) {
+                command(UpdateSymRef.class).setName(Ref.HEAD).setNewValue(branch).call();
+                command(UpdateRef.class).setName(Ref.WORK_HEAD).setNewValue(commitId).call();
+                command(UpdateRef.class).setName(Ref.STAGE_HEAD).setNewValue(commitId).call();
             }
-
-            // TODO: What happens if there are unstaged or staged changes in the repository when
-            // a transaction is committed?
         } finally {
             // Unlock the repository
             refDatabase().unlock();
@@ -9,6 +9,8 @@
  */
 package org.locationtech.geogig.api.plumbing;
 
+import javax.annotation.Nullable;
+
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Ref;
@@ -31,6 +33,11 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
 
     private String oldValue;
 
+    private boolean compareAndSet;
+
+    @Nullable
+    private String expectedValue;
+
     private boolean delete;
 
     private String reason;
@@ -70,6 +77,22 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
         return this;
     }
 
+    /**
+     * Makes the update conditional on the ref having the given value, checked atomically with the
+     * update. Unlike {@link #setOldValue}, a mismatch is not an error: the ref is left untouched
+     * and the command returns {@link Optional#absent()}, so the caller can try again. Can't be
+     * used to delete a ref, nor on symbolic refs.
+     * 
+     * @param expectedValue the value the ref is expected to have, or {@code null} if it's expected
+     *        not to exist
+     * @return {@code this}
+     */
+    public UpdateRef setExpectedValue(@Nullable ObjectId expectedValue) {
+        this.compareAndSet = true;
+        this.expectedValue = expectedValue == null ? null : expectedValue.toString();
+        return this;
+    }
+
     /**
      * @param delete if {@code true}, the ref will be deleted
      * @return {@code this}
@@ -92,13 +115,36 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
     /**
      * Executes the operation.
      * 
-     * @return the new value of the ref
+     * @return the new value of the ref, or {@link Optional#absent()} if an
+     *         {@link #setExpectedValue expected value} was given and didn't match
      */
     @Override
     protected Optional<Ref> _call() {
         Preconditions.checkState(name != null, "name has not been set");
         Preconditions.checkState(delete || newValue != null, "value has not been set");
+        Preconditions.checkState(!(delete && compareAndSet),
+                "an expected value can't be used to delete a ref");
+
+        if (compareAndSet) {
+            if (!refDatabase().compareAndSet(name, expectedValue, newValue.toString())) {
+                return Optional.absent();
+            }
+            return command(RefParse.class).setName(name).call();
+        }
 
+        if (oldValue != null && !delete) {
+            try {
+                // checked and updated atomically
+                if (refDatabase().compareAndSet(name, oldValue, newValue.toString())) {
+                    return command(RefParse.class).setName(name).call();
+                }
+                String storedValue = refDatabase().getRef(name);
+                throw new IllegalStateException("Old value (" + storedValue
+                        + ") doesn't match expected value '" + oldValue + "'");
+            } catch (IllegalArgumentException e) {
+                // may be updating what used to be a symref to be a direct ref, checked below
+            }
+        }
         if (oldValue != null) {
             String storedValue;
             try {
@@ -0,0 +1,118 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Optional;
+
+/**
+ * A {@link DiffCountConsumer} decorator that uses the {@link TreeDiffCountCache} to avoid walking
+ * down pairs of trees and buckets whose count of differences is already known, and caches the
+ * counts of the ones it had to walk.
+ * <p>
+ * Must wrap the {@link DiffCountConsumer} directly, as the cached counts are only valid for
+ * unfiltered walks.
+ */
+public class CachingDiffCountConsumer extends PreOrderDiffWalk.ForwardingConsumer {
+
+    /**
+     * Marker for a tree or bucket pair whose count is not being computed by this consumer
+     */
+    private static final DiffObjectCount NOT_CACHING = new DiffObjectCount();
+
+    private final DiffCountConsumer counter;
+
+    /**
+     * The count snapshots taken when entering each tree or bucket pair, to compute their number of
+     * differences when leaving them
+     */
+    private final Deque<DiffObjectCount> snapshots = new ArrayDeque<DiffObjectCount>();
+
+    public CachingDiffCountConsumer(DiffCountConsumer counter) {
+        super(counter);
+        this.counter = counter;
+    }
+
+    @Override
+    public boolean tree(@Nullable Node left, @Nullable Node right) {
+        final boolean descend = super.tree(left, right);
+        if (descend && left != null && right != null) {
+            return enter(left.getObjectId(), right.getObjectId());
+        }
+        snapshots.push(NOT_CACHING);
+        return descend;
+    }
+
+    @Override
+    public void endTree(@Nullable Node left, @Nullable Node right) {
+        if (left != null && right != null) {
+            exit(left.getObjectId(), right.getObjectId());
+        } else {
+            snapshots.pop();
+        }
+        super.endTree(left, right);
+    }
+
+    @Override
+    public boolean bucket(int bucketIndex, int bucketDepth, @Nullable Bucket left,
+            @Nullable Bucket right) {
+        final boolean descend = super.bucket(bucketIndex, bucketDepth, left, right);
+        if (descend && left != null && right != null) {
+            return enter(left.id(), right.id());
+        }
+        snapshots.push(NOT_CACHING);
+        return descend;
+    }
+
+    @Override
+    public void endBucket(int bucketIndex, int bucketDepth, @Nullable Bucket left,
+            @Nullable Bucket right) {
+        if (left != null && right != null) {
+            exit(left.id(), right.id());
+        } else {
+            snapshots.pop();
+        }
+        super.endBucket(bucketIndex, bucketDepth, left, right);
+    }
+
+    /**
+     * @return whether to walk down the pair of trees, {@code false} if their count of differences
+     *         was cached, in which case it's already been added to the count
+     */
+    private boolean enter(ObjectId left, ObjectId right) {
+        Optional<DiffObjectCount> cached = TreeDiffCountCache.get(left, right, null);
+        if (cached.isPresent()) {
+            counter.get().add(cached.get());
+            snapshots.push(NOT_CACHING);
+            return false;
+        }
+        snapshots.push(new DiffObjectCount(counter.get()));
+        return true;
+    }
+
+    private void exit(ObjectId left, ObjectId right) {
+        DiffObjectCount snapshot = snapshots.pop();
+        if (snapshot == NOT_CACHING) {
+            return;
+        }
+        DiffObjectCount delta = counter.get().since(snapshot);
+        if (delta.count() >= TreeDiffCountCache.MIN_CACHED_CHANGES) {
+            TreeDiffCountCache.put(left, right, null, delta);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.plumbing.BuildChangedPathIndex;
+import org.locationtech.geogig.storage.GraphDatabase;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * A Bloom filter of the paths a commit changed with respect to its parents, used to quickly rule
+ * out commits that can't have touched a given path without looking at their trees.
+ * <p>
+ * The filter contains the paths of all the trees that changed, and the paths of the features that
+ * changed unless there were too many of them, in which case a feature is considered to have
+ * possibly changed if its parent tree did. Like with any Bloom filter,
+ * {@link #mightHaveChanged(String)} may return false positives but never false negatives.
+ * <p>
+ * Filters are stored as a property of the commit node in the {@link GraphDatabase}, and computed
+ * by {@link BuildChangedPathIndex}.
+ */
+public final class ChangedPathFilter {
+
+    /**
+     * Name of the commit graph node property holding the filter
+     */
+    private static final String GRAPH_PROPERTY = "changedPaths";
+
+    /**
+     * Version of the encoded filter, filters with a different version are ignored
+     */
+    private static final String VERSION = "1";
+
+    /**
+     * Maximum number of feature paths added to a filter, beyond which only tree paths are added
+     */
+    public static final int MAX_FEATURE_PATHS = 10 * 1000;
+
+    /**
+     * Bits per path and number of hash functions for a false positive probability of about 1%
+     */
+    private static final int BITS_PER_PATH = 10;
+
+    private static final int NUM_HASHES = 7;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final long[] bits;
+
+    private final boolean includesFeatures;
+
+    private ChangedPathFilter(long[] bits, boolean includesFeatures) {
+        this.bits = bits;
+        this.includesFeatures = includesFeatures;
+    }
+
+    /**
+     * @param treePaths the paths of all the trees that changed
+     * @param featurePaths the paths of the features that changed, ignored if
+     *        {@code includesFeatures == false}
+     * @param includesFeatures whether {@code featurePaths} are all the features that changed
+     */
+    public static ChangedPathFilter create(Collection<String> treePaths,
+            Collection<String> featurePaths, boolean includesFeatures) {
+        int size = treePaths.size() + (includesFeatures ? featurePaths.size() : 0);
+        int numLongs = Math.max(1, (size * BITS_PER_PATH + 63) / 64);
+        ChangedPathFilter filter = new ChangedPathFilter(new long[numLongs], includesFeatures);
+        for (String path : treePaths) {
+            filter.put(path);
+        }
+        if (includesFeatures) {
+            for (String path : featurePaths) {
+                filter.put(path);
+            }
+        }
+        return filter;
+    }
+
+    private void put(String path) {
+        final long numBits = 64L * bits.length;
+        final long hash = HASH.hashString(path, Charsets.UTF_8).asLong();
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= NUM_HASHES; i++) {
+            long index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    private boolean mightContain(String path) {
+        final long numBits = 64L * bits.length;
+        final long hash = HASH.hashString(path, Charsets.UTF_8).asLong();
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= NUM_HASHES; i++) {
+            long index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the commit definitely didn't change {@code path}, {@code true} if
+     *         it might have
+     */
+    public boolean mightHaveChanged(String path) {
+        if (path.isEmpty() || mightContain(path)) {
+            return true;
+        }
+        if (includesFeatures) {
+            return false;
+        }
+        // only trees were recorded, a feature may only have changed if its parent tree did
+        String parentPath = NodeRef.parentPath(path);
+        return parentPath.isEmpty() || mightContain(parentPath);
+    }
+
+    /**
+     * @return {@code false} if the commit definitely didn't change any of the {@code paths},
+     *         {@code true} if it might have
+     */
+    public boolean mightHaveChangedAny(Iterable<String> paths) {
+        for (String path : paths) {
+            if (mightHaveChanged(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the changed paths filter of the given commit, or {@link Optional#absent() absent} if
+     *         it hasn't been computed
+     */
+    public static Optional<ChangedPathFilter> read(GraphDatabase graphDb, ObjectId commitId) {
+        Optional<String> encoded = graphDb.getProperty(commitId, GRAPH_PROPERTY);
+        if (!encoded.isPresent()) {
+            return Optional.absent();
+        }
+        return decode(encoded.get());
+    }
+
+    /**
+     * Stores this filter as the changed paths filter of the given commit
+     */
+    public void write(GraphDatabase graphDb, ObjectId commitId) {
+        checkNotNull(commitId);
+        graphDb.setProperty(commitId, GRAPH_PROPERTY, encode());
+    }
+
+    String encode() {
+        ByteBuffer buff = ByteBuffer.allocate(8 * bits.length);
+        buff.asLongBuffer().put(bits);
+        return VERSION + ';' + (includesFeatures ? 'f' : 't') + ';'
+                + BaseEncoding.base64().encode(buff.array());
+    }
+
+    static Optional<ChangedPathFilter> decode(String encoded) {
+        String[] parts = encoded.split(";");
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            return Optional.absent();
+        }
+        final boolean includesFeatures = "f".equals(parts[1]);
+        final byte[] bytes;
+        try {
+            bytes = BaseEncoding.base64().decode(parts[2]);
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+        if (bytes.length == 0 || bytes.length % 8 != 0) {
+            return Optional.absent();
+        }
+        long[] bits = new long[bytes.length / 8];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(bits);
+        return Optional.of(new ChangedPathFilter(bits, includesFeatures));
+    }
+}
@@ -0,0 +1,296 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.plumbing.BuildChangedPathIndex;
+import org.locationtech.geogig.storage.GraphDatabase;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * The number of features a commit added, modified and removed with respect to its first parent,
+ * per feature tree, so that history statistics don't need to diff each commit's trees.
+ * <p>
+ * Counts are stored as a property of the commit node in the {@link GraphDatabase}, and computed by
+ * {@link BuildChangedPathIndex} along with the {@link ChangedPathFilter changed paths filter}.
+ * Commits with no parents, or whose first parent is not in the repository, have no counts.
+ * <p>
+ * The trees the commit added or removed as a whole are recorded too, even if they have no
+ * features, so that {@link CommitHistorySummary history summaries} can keep track of empty trees.
+ */
+public final class CommitChangeCounts {
+
+    /**
+     * Name of the commit graph node property holding the counts
+     */
+    private static final String GRAPH_PROPERTY = "changeCounts";
+
+    /**
+     * Version of the encoded counts, counts with a different version are ignored
+     */
+    private static final String VERSION = "2";
+
+    private static final int ADDED = 0, MODIFIED = 1, REMOVED = 2;
+
+    /**
+     * Index of the value telling whether the tree was added ({@code 1}) or removed ({@code -1}) as
+     * a whole, or is in both versions ({@code 0})
+     */
+    private static final int TREE = 3;
+
+    /**
+     * Added, modified and removed counts and tree change, keyed by the path of the tree the
+     * features are in
+     */
+    private final ImmutableSortedMap<String, long[]> counts;
+
+    private CommitChangeCounts(ImmutableSortedMap<String, long[]> counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * Accumulates the counts of a commit's changed features
+     */
+    public static class Builder {
+
+        private final Map<String, long[]> counts = Maps.newHashMap();
+
+        public void added(String treePath) {
+            increment(treePath, ADDED, 1);
+        }
+
+        public void modified(String treePath) {
+            increment(treePath, MODIFIED, 1);
+        }
+
+        public void removed(String treePath) {
+            increment(treePath, REMOVED, 1);
+        }
+
+        /**
+         * Counts {@code count} features added at once, e.g. all the features of a new tree
+         */
+        public void added(String treePath, long count) {
+            increment(treePath, ADDED, count);
+        }
+
+        /**
+         * Counts {@code count} features removed at once, e.g. all the features of a deleted tree
+         */
+        public void removed(String treePath, long count) {
+            increment(treePath, REMOVED, count);
+        }
+
+        /**
+         * Records that the tree at {@code treePath} didn't exist in the first parent
+         */
+        public void treeAdded(String treePath) {
+            get(treePath)[TREE] = 1;
+        }
+
+        /**
+         * Records that the tree at {@code treePath} doesn't exist in the commit
+         */
+        public void treeRemoved(String treePath) {
+            get(treePath)[TREE] = -1;
+        }
+
+        private void increment(String treePath, int index, long count) {
+            get(treePath)[index] += count;
+        }
+
+        private long[] get(String treePath) {
+            long[] treeCounts = counts.get(treePath);
+            if (treeCounts == null) {
+                treeCounts = new long[4];
+                counts.put(treePath, treeCounts);
+            }
+            return treeCounts;
+        }
+
+        public CommitChangeCounts build() {
+            return new CommitChangeCounts(ImmutableSortedMap.copyOf(counts));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return whether the counts of the features under {@code path} can be told from these counts,
+     *         that is, if {@code path} is {@code null} or empty, or it's the path of a tree the
+     *         commit changed features in or the path of one of its parents. Otherwise the path may
+     *         either be a tree with no changes or a feature.
+     */
+    public boolean covers(@Nullable String path) {
+        if (path == null || path.isEmpty()) {
+            return true;
+        }
+        for (String treePath : counts.keySet()) {
+            if (isUnder(treePath, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of features added under {@code path}, or in the whole commit if
+     *         {@code null}
+     */
+    public long getAdded(@Nullable String path) {
+        return sum(path, ADDED);
+    }
+
+    /**
+     * @return the number of features modified under {@code path}, or in the whole commit if
+     *         {@code null}
+     */
+    public long getModified(@Nullable String path) {
+        return sum(path, MODIFIED);
+    }
+
+    /**
+     * @return the number of features removed under {@code path}, or in the whole commit if
+     *         {@code null}
+     */
+    public long getRemoved(@Nullable String path) {
+        return sum(path, REMOVED);
+    }
+
+    /**
+     * @return the paths of the trees the commit changed features in
+     */
+    Set<String> treePaths() {
+        return counts.keySet();
+    }
+
+    /**
+     * @return whether the commit added the tree at {@code treePath}
+     */
+    boolean isTreeAdded(String treePath) {
+        long[] treeCounts = counts.get(treePath);
+        return treeCounts != null && treeCounts[TREE] > 0;
+    }
+
+    /**
+     * @return whether the commit removed the tree at {@code treePath}
+     */
+    boolean isTreeRemoved(String treePath) {
+        long[] treeCounts = counts.get(treePath);
+        return treeCounts != null && treeCounts[TREE] < 0;
+    }
+
+    /**
+     * @return the number of features added minus the number of features removed directly in the
+     *         tree at {@code treePath}, not counting its subtrees
+     */
+    long netAdded(String treePath) {
+        long[] treeCounts = counts.get(treePath);
+        return treeCounts == null ? 0 : treeCounts[ADDED] - treeCounts[REMOVED];
+    }
+
+    private long sum(@Nullable String path, int index) {
+        long sum = 0;
+        for (Entry<String, long[]> entry : counts.entrySet()) {
+            if (path == null || path.isEmpty() || isUnder(entry.getKey(), path)) {
+                sum += entry.getValue()[index];
+            }
+        }
+        return sum;
+    }
+
+    private static boolean isUnder(String treePath, String path) {
+        return treePath.equals(path)
+                || (treePath.startsWith(path) && treePath.charAt(path.length()) == NodeRef.PATH_SEPARATOR);
+    }
+
+    /**
+     * @return the stored counts of the given commit, or {@link Optional#absent() absent} if they
+     *         haven't been computed
+     */
+    public static Optional<CommitChangeCounts> read(GraphDatabase graphDb, ObjectId commitId) {
+        Optional<String> encoded = graphDb.getProperty(commitId, GRAPH_PROPERTY);
+        if (!encoded.isPresent()) {
+            return Optional.absent();
+        }
+        return decode(encoded.get());
+    }
+
+    /**
+     * Stores the counts as a property of the commit node, which must already be in the graph
+     */
+    public void write(GraphDatabase graphDb, ObjectId commitId) {
+        graphDb.setProperty(commitId, GRAPH_PROPERTY, encode());
+    }
+
+    /**
+     * Encodes the counts as {@code 2;<tree path>=<added>,<modified>,<removed>,<tree change>;...},
+     * with tree paths base64 encoded to allow any character in them
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder(VERSION);
+        for (Entry<String, long[]> entry : counts.entrySet()) {
+            long[] treeCounts = entry.getValue();
+            sb.append(';')
+                    .append(BaseEncoding.base64().encode(entry.getKey().getBytes(Charsets.UTF_8)))
+                    .append('=').append(treeCounts[ADDED]).append(',')
+                    .append(treeCounts[MODIFIED]).append(',').append(treeCounts[REMOVED])
+                    .append(',').append(treeCounts[TREE]);
+        }
+        return sb.toString();
+    }
+
+    static Optional<CommitChangeCounts> decode(String encoded) {
+        checkNotNull(encoded);
+        String[] parts = encoded.split(";");
+        if (parts.length == 0 || !VERSION.equals(parts[0])) {
+            return Optional.absent();
+        }
+        Map<String, long[]> counts = Maps.newHashMap();
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i];
+                // base64 padding may contain '=' too
+                int separator = part.lastIndexOf('=');
+                if (separator == -1) {
+                    return Optional.absent();
+                }
+                String path = new String(BaseEncoding.base64().decode(
+                        part.substring(0, separator)), Charsets.UTF_8);
+                String[] values = part.substring(separator + 1).split(",");
+                if (values.length != 4) {
+                    return Optional.absent();
+                }
+                counts.put(path, new long[] { Long.parseLong(values[ADDED]),
+                        Long.parseLong(values[MODIFIED]), Long.parseLong(values[REMOVED]),
+                        Long.parseLong(values[TREE]) });
+            }
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+        return Optional.of(new CommitChangeCounts(ImmutableSortedMap.copyOf(counts)));
+    }
+}
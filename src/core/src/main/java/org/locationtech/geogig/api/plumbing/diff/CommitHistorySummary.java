@@ -0,0 +1,477 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevPerson;
+import org.locationtech.geogig.api.RevPersonImpl;
+import org.locationtech.geogig.api.plumbing.BuildHistorySummary;
+import org.locationtech.geogig.storage.GraphDatabase;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Statistics of the first-parent history of a commit: how many commits it has, its oldest commit,
+ * the authors that contributed to it, and the number of features in each tree of the commit, so
+ * that history statistics don't need to walk the history nor the trees.
+ * <p>
+ * Summaries are stored as a property of the commit node in the {@link GraphDatabase}, and computed
+ * by {@link BuildHistorySummary} out of the first parent's summary and the commit's
+ * {@link CommitChangeCounts change counts}. Trees with no features are included in the tree sizes
+ * as long as they exist.
+ * <p>
+ * To keep the graph small, most commits only store what changed with respect to their first
+ * parent's summary: the commit's author and the sizes of the trees that changed. The full summary
+ * is stored every {@link #SNAPSHOT_INTERVAL} commits and wherever the first parent has no summary,
+ * so reading a summary replays at most that many changes.
+ */
+public final class CommitHistorySummary {
+
+    /**
+     * Name of the commit graph node property holding the summary
+     */
+    private static final String GRAPH_PROPERTY = "historySummary";
+
+    /**
+     * Version of the encoded summary, summaries with a different version are ignored
+     */
+    private static final String VERSION = "2";
+
+    /**
+     * Encoded value of an absent author name or email
+     */
+    private static final String ABSENT = "-";
+
+    /**
+     * Marker of a full summary, as opposed to {@code d<first parent id>} for the changes against
+     * the first parent's summary
+     */
+    private static final String FULL = "f";
+
+    /**
+     * Number of commits between two full summaries in a first-parent history
+     */
+    static final int SNAPSHOT_INTERVAL = 64;
+
+    private final long numCommits;
+
+    private final ObjectId rootCommitId;
+
+    /**
+     * The position in the history of the latest commit of each author, keyed by name and email
+     */
+    private final ImmutableMap<List<Optional<String>>, Long> authors;
+
+    /**
+     * Number of features under each tree, keyed by tree path
+     */
+    private final ImmutableSortedMap<String, Long> treeSizes;
+
+    /**
+     * The changes against the first parent's summary, if this summary was computed out of it
+     */
+    @Nullable
+    private final Delta delta;
+
+    /**
+     * What changed between a summary and its first parent's summary
+     */
+    private static final class Delta {
+
+        final ObjectId parentId;
+
+        /**
+         * The name and email of the commit's author, or {@code null} if it has none
+         */
+        @Nullable
+        final List<Optional<String>> author;
+
+        /**
+         * The sizes of the trees that were added or changed size
+         */
+        final ImmutableSortedMap<String, Long> treeSizes;
+
+        final ImmutableSortedSet<String> removedTrees;
+
+        Delta(ObjectId parentId, @Nullable List<Optional<String>> author,
+                Map<String, Long> treeSizes, Set<String> removedTrees) {
+            this.parentId = parentId;
+            this.author = author;
+            this.treeSizes = ImmutableSortedMap.copyOf(treeSizes);
+            this.removedTrees = ImmutableSortedSet.copyOf(removedTrees);
+        }
+    }
+
+    private CommitHistorySummary(long numCommits, ObjectId rootCommitId,
+            Map<List<Optional<String>>, Long> authors, Map<String, Long> treeSizes,
+            @Nullable Delta delta) {
+        this.numCommits = numCommits;
+        this.rootCommitId = rootCommitId;
+        this.authors = ImmutableMap.copyOf(authors);
+        this.treeSizes = ImmutableSortedMap.copyOf(treeSizes);
+        this.delta = delta;
+    }
+
+    /**
+     * @param commit the oldest commit of the history, usually one with no parents
+     * @param treeSizes the number of features under each tree of the commit
+     * @return the summary of the history made only of {@code commit}
+     */
+    public static CommitHistorySummary root(RevCommit commit, Map<String, Long> treeSizes) {
+        Map<List<Optional<String>>, Long> authors = Maps.newHashMap();
+        List<Optional<String>> author = authorKey(commit);
+        if (author != null) {
+            authors.put(author, Long.valueOf(1));
+        }
+        return new CommitHistorySummary(1, commit.getId(), authors, withoutRoot(treeSizes), null);
+    }
+
+    /**
+     * @param commit a commit whose first parent is the commit this summary belongs to
+     * @param counts the change counts of {@code commit}
+     * @return the summary of {@code commit}
+     */
+    public CommitHistorySummary child(RevCommit commit, CommitChangeCounts counts) {
+        Map<String, Long> sizes = Maps.newHashMap(treeSizes);
+        for (String treePath : counts.treePaths()) {
+            if (treePath.isEmpty()) {
+                continue;
+            }
+            final long delta = counts.netAdded(treePath);
+            if (delta != 0) {
+                for (String path : NodeRef.allPathsTo(treePath)) {
+                    Long size = sizes.get(path);
+                    sizes.put(path, Long.valueOf((size == null ? 0 : size.longValue()) + delta));
+                }
+            }
+            if (counts.isTreeAdded(treePath) && !sizes.containsKey(treePath)) {
+                sizes.put(treePath, Long.valueOf(0));
+            }
+        }
+        for (String treePath : counts.treePaths()) {
+            if (counts.isTreeRemoved(treePath)) {
+                sizes.remove(treePath);
+            }
+        }
+        return child(commit, sizes);
+    }
+
+    /**
+     * @param commit a commit whose first parent is the commit this summary belongs to
+     * @param treeSizes the number of features under each tree of {@code commit}
+     * @return the summary of {@code commit}
+     */
+    public CommitHistorySummary child(RevCommit commit, Map<String, Long> treeSizes) {
+        final long numCommits = this.numCommits + 1;
+        final Map<String, Long> sizes = withoutRoot(treeSizes);
+        Map<List<Optional<String>>, Long> authors = Maps.newHashMap(this.authors);
+        List<Optional<String>> author = authorKey(commit);
+        if (author != null) {
+            authors.put(author, Long.valueOf(numCommits));
+        }
+        Delta delta = null;
+        Optional<ObjectId> parentId = commit.parentN(0);
+        if (parentId.isPresent()) {
+            Map<String, Long> changed = Maps.newHashMap();
+            for (Entry<String, Long> entry : sizes.entrySet()) {
+                if (!entry.getValue().equals(this.treeSizes.get(entry.getKey()))) {
+                    changed.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Set<String> removed = Sets.difference(this.treeSizes.keySet(), sizes.keySet());
+            delta = new Delta(parentId.get(), author, changed, removed);
+        }
+        return new CommitHistorySummary(numCommits, rootCommitId, authors, sizes, delta);
+    }
+
+    /**
+     * Uses the committer for the commits with no author name nor email, and ignores the commits
+     * with neither of them
+     * 
+     * @return the name and email of the commit's author, or {@code null} if it is to be ignored
+     */
+    @Nullable
+    private static List<Optional<String>> authorKey(RevCommit commit) {
+        RevPerson author = commit.getAuthor();
+        if (!author.getName().isPresent() && !author.getEmail().isPresent()) {
+            author = commit.getCommitter();
+        }
+        if (author.getName().isPresent() || author.getEmail().isPresent()) {
+            return ImmutableList.of(author.getName(), author.getEmail());
+        }
+        return null;
+    }
+
+    private static Map<String, Long> withoutRoot(Map<String, Long> treeSizes) {
+        Map<String, Long> sizes = Maps.newHashMap(treeSizes);
+        sizes.remove(NodeRef.ROOT);
+        return sizes;
+    }
+
+    /**
+     * @return the number of commits in the first-parent history, including this one
+     */
+    public long getNumCommits() {
+        return numCommits;
+    }
+
+    /**
+     * @return the oldest commit of the first-parent history
+     */
+    public ObjectId getRootCommitId() {
+        return rootCommitId;
+    }
+
+    /**
+     * @return the authors of the first-parent history, most recent first, with no time stamps
+     */
+    public List<RevPerson> getAuthors() {
+        List<Entry<List<Optional<String>>, Long>> entries = Lists.newArrayList(authors.entrySet());
+        Collections.sort(entries, new Comparator<Entry<List<Optional<String>>, Long>>() {
+            @Override
+            public int compare(Entry<List<Optional<String>>, Long> e1,
+                    Entry<List<Optional<String>>, Long> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+        List<RevPerson> persons = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry<List<Optional<String>>, Long> entry : entries) {
+            List<Optional<String>> key = entry.getKey();
+            persons.add(new RevPersonImpl(key.get(0).orNull(), key.get(1).orNull(), 0L, 0));
+        }
+        return persons;
+    }
+
+    /**
+     * @param parentPath the path of a tree, or {@code null} or empty for the root tree
+     * @return the number of features under each of the direct child trees of {@code parentPath},
+     *         keyed by tree path
+     */
+    public ImmutableSortedMap<String, Long> getTreeSizes(@Nullable String parentPath) {
+        final String parent = parentPath == null ? NodeRef.ROOT : parentPath;
+        ImmutableSortedMap.Builder<String, Long> sizes = ImmutableSortedMap.naturalOrder();
+        for (Entry<String, Long> entry : treeSizes.entrySet()) {
+            if (NodeRef.isDirectChild(parent, entry.getKey())) {
+                sizes.put(entry);
+            }
+        }
+        return sizes.build();
+    }
+
+    /**
+     * @return the stored summary of the given commit, or {@link Optional#absent() absent} if it
+     *         hasn't been computed, or the summaries it was stored against are missing
+     */
+    public static Optional<CommitHistorySummary> read(GraphDatabase graphDb, ObjectId commitId) {
+        // the stored changes from the closest full summary, newest first
+        Deque<String[]> deltas = new ArrayDeque<String[]>();
+        ObjectId id = commitId;
+        try {
+            while (true) {
+                Optional<String> encoded = graphDb.getProperty(id, GRAPH_PROPERTY);
+                if (!encoded.isPresent()) {
+                    return Optional.absent();
+                }
+                String[] parts = split(encoded.get());
+                if (parts == null) {
+                    return Optional.absent();
+                }
+                if (FULL.equals(parts[3])) {
+                    CommitHistorySummary summary = decode(parts, null);
+                    while (!deltas.isEmpty()) {
+                        summary = decode(deltas.pop(), summary);
+                    }
+                    return Optional.of(summary);
+                }
+                if (!parts[3].startsWith("d") || deltas.size() >= SNAPSHOT_INTERVAL) {
+                    return Optional.absent();
+                }
+                deltas.push(parts);
+                id = ObjectId.valueOf(parts[3].substring(1));
+            }
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Stores the summary as a property of the commit node, which must already be in the graph,
+     * either in full or as the changes against the first parent's summary, which must be already
+     * stored
+     */
+    public void write(GraphDatabase graphDb, ObjectId commitId) {
+        final boolean full = delta == null || numCommits % SNAPSHOT_INTERVAL == 0;
+        graphDb.setProperty(commitId, GRAPH_PROPERTY, full ? encode() : encodeDelta());
+    }
+
+    /**
+     * Encodes the full summary as
+     * {@code 2;<commits>;<root commit>;f;a<name>,<email>,<position>;...;t<tree path>=<size>;...},
+     * with names, emails and tree paths base64 encoded to allow any character in them
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder(VERSION);
+        sb.append(';').append(numCommits).append(';').append(rootCommitId).append(';')
+                .append(FULL);
+        for (Entry<List<Optional<String>>, Long> entry : authors.entrySet()) {
+            appendAuthor(sb, entry.getKey(), entry.getValue().longValue());
+        }
+        appendTreeSizes(sb, treeSizes);
+        return sb.toString();
+    }
+
+    /**
+     * Encodes the changes against the first parent's summary as
+     * {@code 2;<commits>;<root commit>;d<first parent>;a<name>,<email>,<commits>}, with the
+     * author entry only if the commit has an author, followed by a {@code t<tree path>=<size>}
+     * entry for each tree that changed size and a {@code r<tree path>} entry for each tree that
+     * was removed
+     */
+    String encodeDelta() {
+        checkState(delta != null, "summary was not computed out of its first parent's");
+        StringBuilder sb = new StringBuilder(VERSION);
+        sb.append(';').append(numCommits).append(';').append(rootCommitId).append(";d")
+                .append(delta.parentId);
+        if (delta.author != null) {
+            appendAuthor(sb, delta.author, numCommits);
+        }
+        appendTreeSizes(sb, delta.treeSizes);
+        for (String path : delta.removedTrees) {
+            sb.append(";r").append(encode(Optional.of(path)));
+        }
+        return sb.toString();
+    }
+
+    private static void appendAuthor(StringBuilder sb, List<Optional<String>> author,
+            long position) {
+        sb.append(";a").append(encode(author.get(0))).append(',').append(encode(author.get(1)))
+                .append(',').append(position);
+    }
+
+    private static void appendTreeSizes(StringBuilder sb, Map<String, Long> treeSizes) {
+        for (Entry<String, Long> entry : treeSizes.entrySet()) {
+            sb.append(";t").append(encode(Optional.of(entry.getKey()))).append('=')
+                    .append(entry.getValue());
+        }
+    }
+
+    private static String encode(Optional<String> value) {
+        if (!value.isPresent()) {
+            return ABSENT;
+        }
+        return BaseEncoding.base64().encode(value.get().getBytes(Charsets.UTF_8));
+    }
+
+    private static Optional<String> decode(String value, boolean allowAbsent) {
+        if (ABSENT.equals(value)) {
+            if (!allowAbsent) {
+                throw new IllegalArgumentException("absent value");
+            }
+            return Optional.absent();
+        }
+        return Optional.of(new String(BaseEncoding.base64().decode(value), Charsets.UTF_8));
+    }
+
+    /**
+     * @return the parts of the encoded summary, or {@code null} if it's not a summary of the
+     *         current version
+     */
+    @Nullable
+    private static String[] split(String encoded) {
+        checkNotNull(encoded);
+        String[] parts = encoded.split(";");
+        if (parts.length < 4 || !VERSION.equals(parts[0])) {
+            return null;
+        }
+        return parts;
+    }
+
+    /**
+     * @return the decoded full summary, or {@link Optional#absent() absent} if it's not a full
+     *         summary of the current version
+     */
+    static Optional<CommitHistorySummary> decode(String encoded) {
+        String[] parts = split(encoded);
+        if (parts == null || !FULL.equals(parts[3])) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(decode(parts, null));
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Decodes a full summary if {@code parent} is {@code null}, or applies the changes against
+     * {@code parent} otherwise
+     * 
+     * @throws IllegalArgumentException if the summary is malformed
+     */
+    private static CommitHistorySummary decode(String[] parts,
+            @Nullable CommitHistorySummary parent) {
+        final long numCommits = Long.parseLong(parts[1]);
+        final ObjectId rootCommitId = ObjectId.valueOf(parts[2]);
+        Map<List<Optional<String>>, Long> authors = Maps.newHashMap();
+        Map<String, Long> treeSizes = Maps.newHashMap();
+        if (parent != null) {
+            checkArgument(numCommits == parent.numCommits + 1, "not a child summary");
+            authors.putAll(parent.authors);
+            treeSizes.putAll(parent.treeSizes);
+        }
+        for (int i = 4; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.startsWith("a")) {
+                String[] values = part.substring(1).split(",");
+                checkArgument(values.length == 3, "malformed author");
+                List<Optional<String>> key = ImmutableList.of(decode(values[0], true),
+                        decode(values[1], true));
+                authors.put(key, Long.valueOf(values[2]));
+            } else if (part.startsWith("t")) {
+                // base64 padding may contain '=' too
+                int separator = part.lastIndexOf('=');
+                checkArgument(separator != -1, "malformed tree size");
+                String path = decode(part.substring(1, separator), false).get();
+                treeSizes.put(path, Long.valueOf(part.substring(separator + 1)));
+            } else if (part.startsWith("r") && parent != null) {
+                treeSizes.remove(decode(part.substring(1), false).get());
+            } else {
+                throw new IllegalArgumentException("unknown entry");
+            }
+        }
+        return new CommitHistorySummary(numCommits, rootCommitId, authors, treeSizes, null);
+    }
+}
@@ -12,6 +12,15 @@ package org.locationtech.geogig.api.plumbing.diff;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -20,6 +29,7 @@ import org.locationtech.geogig.api.Bucket;
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.storage.ObjectDatabase;
@@ -28,14 +38,64 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * An iterator over a {@link RevTree} that can return different results depending on the
  * {@link #Strategy} given;
+ * <p>
+ * If {@link #setPrefetch(boolean) enabled}, the sibling buckets of a bucket tree and the direct
+ * subtrees of a tree are requested to the object database with a single
+ * {@link ObjectDatabase#getAll(Iterable) getAll} call on a background thread, and the contents of
+ * the next sibling bucket are resolved while the current one is being traversed, so that the next
+ * level of the tree is being fetched while the iterator is consumed. The iteration order is the
+ * same whether prefetching is enabled or not.
+ * <p>
+ * Prefetching only pays off for object databases where each read is a blocking disk or network
+ * access, so it's disabled by default. The storage backends that benefit from it set the
+ * {@link ObjectDatabase#PREFETCH_CONFIG_KEY} repository config key when the repository is
+ * created, and the commands that traverse whole trees enable it accordingly.
  */
 public class DepthTreeIterator extends AbstractIterator<NodeRef> {
+
+    private static final int PREFETCH_THREADS = Math.max(2, Runtime.getRuntime()
+            .availableProcessors());
+
+    /**
+     * Shared by all the iterators, bounded in both threads and queued requests. When it's
+     * saturated the trees are just read when they're reached.
+     */
+    private static final ThreadPoolExecutor PREFETCH_EXECUTOR = new ThreadPoolExecutor(
+            PREFETCH_THREADS, PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(4 * PREFETCH_THREADS), new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("DepthTreeIterator-prefetch-%d").build());
+
+    static {
+        PREFETCH_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Function<Bucket, ObjectId> BUCKET_ID = new Function<Bucket, ObjectId>() {
+        @Override
+        public ObjectId apply(Bucket bucket) {
+            return bucket.id();
+        }
+    };
+
+    private static final Function<Node, ObjectId> NODE_ID = new Function<Node, ObjectId>() {
+        @Override
+        public ObjectId apply(Node node) {
+            return node.getObjectId();
+        }
+    };
+
     public enum Strategy {
         /**
          * Default strategy, list the all direct child entries of a tree, no recursion
@@ -82,6 +142,8 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
 
     private ObjectId metadataId;
 
+    private boolean prefetch;
+
     private static class NodeToRef implements Function<Node, NodeRef> {
 
         private final String treePath;
@@ -121,6 +183,66 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         this.boundsFilter = boundsFilter == null ? alwaysTrue : boundsFilter;
     }
 
+    /**
+     * @param prefetch whether to fetch subtrees and buckets ahead of time on a background thread,
+     *        defaults to {@code false}, meaning each tree is read only when it's reached, from the
+     *        calling thread
+     */
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Requests the trees with the given ids from the object database in a single call on a
+     * background thread, if prefetching is enabled, there's more than one, and the prefetching
+     * threads aren't saturated.
+     */
+    private Future<Map<ObjectId, RevTree>> fetchTrees(final List<ObjectId> treeIds) {
+        if (!prefetch || treeIds.size() < 2) {
+            // each tree is just read when reached
+            return Futures.immediateFuture(ImmutableMap.<ObjectId, RevTree> of());
+        }
+        Callable<Map<ObjectId, RevTree>> fetch = new Callable<Map<ObjectId, RevTree>>() {
+            @Override
+            public Map<ObjectId, RevTree> call() {
+                Map<ObjectId, RevTree> trees = Maps.newHashMap();
+                Iterator<RevObject> objects = source.getAll(treeIds);
+                while (objects.hasNext()) {
+                    RevObject object = objects.next();
+                    if (object instanceof RevTree) {
+                        trees.put(object.getId(), (RevTree) object);
+                    }
+                }
+                return trees;
+            }
+        };
+        try {
+            return PREFETCH_EXECUTOR.submit(fetch);
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFuture(ImmutableMap.<ObjectId, RevTree> of());
+        }
+    }
+
+    /**
+     * @return the tree with the given id out of the fetched ones, or read from the object database
+     *         if it wasn't fetched
+     */
+    private RevTree getTree(Future<Map<ObjectId, RevTree>> fetched, ObjectId treeId) {
+        RevTree tree;
+        try {
+            tree = fetched.get().get(treeId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        if (tree == null) {
+            tree = source.getTree(treeId);
+        }
+        return tree;
+    }
+
     @Override
     protected NodeRef computeNext() {
         if (iterator == null) {
@@ -166,6 +288,12 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
 
         private NodeToRef functor;
 
+        /**
+         * The direct subtrees of the tree being traversed, only fetched ahead of time when the
+         * tree is not split into buckets
+         */
+        private Future<Map<ObjectId, RevTree>> subtrees;
+
         public Recursive(String treePath, ObjectId metadataId, RevTree tree, boolean features,
                 boolean trees) {
             Preconditions.checkArgument(features || trees);
@@ -177,6 +305,13 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
             } else {
                 this.myEntries = new Children(tree);
             }
+            List<ObjectId> subtreeIds = ImmutableList.of();
+            if (tree.trees().isPresent()) {
+                subtreeIds = Lists.transform(
+                        ImmutableList.copyOf(Iterators.filter(tree.trees().get().iterator(),
+                                boundsFilter)), NODE_ID);
+            }
+            this.subtrees = fetchTrees(subtreeIds);
             currEntryIterator = Iterators.emptyIterator();
         }
 
@@ -202,7 +337,7 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
             Preconditions.checkArgument(TYPE.TREE.equals(next.getType()));
 
             ObjectId treeId = next.getObjectId();
-            RevTree childTree = source.getTree(treeId);
+            RevTree childTree = getTree(subtrees, treeId);
 
             String childTreePath = NodeRef.appendChild(this.functor.treePath, next.getName());
             Iterator<NodeRef> children = new Recursive(childTreePath, next.getMetadataId().or(
@@ -286,38 +421,60 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
 
     /**
      * Returns all direct children of a buckets tree
+     * <p>
+     * All the sibling buckets are fetched at once, and the entries of the bucket next to the one
+     * being traversed are resolved in advance, so that its own buckets or subtrees are being
+     * fetched meanwhile.
      */
     private class Buckets extends AbstractIterator<Node> {
 
         private Iterator<Bucket> buckets;
 
+        private Future<Map<ObjectId, RevTree>> bucketTrees;
+
         private Iterator<Node> bucketEntries;
 
+        @Nullable
+        private Iterator<Node> nextBucketEntries;
+
         public Buckets(RevTree tree) {
             Preconditions.checkArgument(tree.buckets().isPresent());
-            buckets = Iterators.filter(tree.buckets().get().values().iterator(), boundsFilter);
+            List<Bucket> filtered = ImmutableList.copyOf(Iterators.filter(tree.buckets().get()
+                    .values().iterator(), boundsFilter));
+            buckets = filtered.iterator();
+            bucketTrees = fetchTrees(Lists.transform(filtered, BUCKET_ID));
             bucketEntries = Iterators.emptyIterator();
         }
 
         @Override
         protected Node computeNext() {
             while (!bucketEntries.hasNext()) {
-                if (buckets.hasNext()) {
-                    Bucket nextBucket = buckets.next();
-                    bucketEntries = resolveBucketEntries(nextBucket.id());
-                } else {
+                if (nextBucketEntries == null) {
+                    nextBucketEntries = resolveNextBucket();
+                }
+                if (nextBucketEntries == null) {
                     return endOfData();
                 }
+                bucketEntries = nextBucketEntries;
+                nextBucketEntries = resolveNextBucket();
             }
             return bucketEntries.next();
         }
 
+        @Nullable
+        private Iterator<Node> resolveNextBucket() {
+            if (buckets.hasNext()) {
+                Bucket nextBucket = buckets.next();
+                return resolveBucketEntries(getTree(bucketTrees, nextBucket.id()));
+            }
+            return null;
+        }
+
         /**
-         * @param bucketId
+         * @param bucketTree
          * @return
          */
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (bucketTree.buckets().isPresent()) {
                 return new Buckets(bucketTree);
             }
@@ -335,8 +492,7 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         }
 
         @Override
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (bucketTree.numTrees() == 0) {
                 return Iterators.emptyIterator();
             }
@@ -360,8 +516,7 @@ public class DepthTreeIterator extends AbstractIterator<NodeRef> {
         }
 
         @Override
-        protected Iterator<Node> resolveBucketEntries(ObjectId bucketId) {
-            RevTree bucketTree = source.getTree(bucketId);
+        protected Iterator<Node> resolveBucketEntries(RevTree bucketTree) {
             if (bucketTree.buckets().isPresent()) {
                 return new FeatureBuckets(bucketTree);
             }
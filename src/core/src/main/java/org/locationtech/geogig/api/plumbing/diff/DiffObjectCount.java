@@ -19,6 +19,16 @@ public class DiffObjectCount {
 
     private int treesAdded, treesRemoved, treesChanged;
 
+    public DiffObjectCount() {
+    }
+
+    /**
+     * Copy constructor
+     */
+    public DiffObjectCount(DiffObjectCount count) {
+        add(count);
+    }
+
     /**
      * Returns the total count of modified elements (i.e. sum of added, changed, and removed trees
      * and features)
@@ -83,6 +93,33 @@ public class DiffObjectCount {
         treesChanged += count;
     }
 
+    /**
+     * Adds up all the counts of {@code count} to this one
+     */
+    void add(DiffObjectCount count) {
+        featuresAdded += count.featuresAdded;
+        featuresRemoved += count.featuresRemoved;
+        featuresChanged += count.featuresChanged;
+        treesAdded += count.treesAdded;
+        treesRemoved += count.treesRemoved;
+        treesChanged += count.treesChanged;
+    }
+
+    /**
+     * @return a new count with the difference between this count and {@code previous}, which is
+     *         expected to be a snapshot of this same count taken earlier
+     */
+    DiffObjectCount since(DiffObjectCount previous) {
+        DiffObjectCount delta = new DiffObjectCount();
+        delta.featuresAdded = featuresAdded - previous.featuresAdded;
+        delta.featuresRemoved = featuresRemoved - previous.featuresRemoved;
+        delta.featuresChanged = featuresChanged - previous.featuresChanged;
+        delta.treesAdded = treesAdded - previous.treesAdded;
+        delta.treesRemoved = treesRemoved - previous.treesRemoved;
+        delta.treesChanged = treesChanged - previous.treesChanged;
+        return delta;
+    }
+
     public long getFeaturesAdded() {
         return featuresAdded;
     }
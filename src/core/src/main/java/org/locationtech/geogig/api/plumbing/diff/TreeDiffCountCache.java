@@ -0,0 +1,114 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A process wide cache of the {@link DiffObjectCount difference counts} between pairs of trees,
+ * optionally restricted to a list of path filters.
+ * <p>
+ * Since trees are identified by the hash of their contents, the count of differences between two
+ * given tree ids never changes, so the entries need no invalidation and are valid for any
+ * repository, transaction, or working tree holding those trees.
+ * <p>
+ * Besides the counts for whole root trees, the {@link CachingDiffCountConsumer} stores the counts
+ * for the subtrees and buckets with a significant number of changes, so that when a working tree
+ * or index update changes a single subtree, counting the differences against it only needs to
+ * walk down the changed path and use the cached counts for the rest.
+ */
+public final class TreeDiffCountCache {
+
+    /**
+     * Minimum number of changes between two subtrees or buckets for their count to be cached
+     */
+    static final long MIN_CACHED_CHANGES = 32;
+
+    private static final int MAX_ENTRIES = 100 * 1000;
+
+    private static final Cache<Key, DiffObjectCount> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ENTRIES).concurrencyLevel(4).build();
+
+    private TreeDiffCountCache() {
+        // static utility class
+    }
+
+    /**
+     * @return a copy of the cached count of differences between the two trees for the given path
+     *         filters, if present
+     */
+    public static Optional<DiffObjectCount> get(ObjectId leftTree, ObjectId rightTree,
+            @Nullable List<String> pathFilters) {
+        DiffObjectCount count = CACHE.getIfPresent(new Key(leftTree, rightTree, pathFilters));
+        if (count == null) {
+            return Optional.absent();
+        }
+        return Optional.of(new DiffObjectCount(count));
+    }
+
+    /**
+     * Caches a copy of the count of differences between the two trees for the given path filters
+     */
+    public static void put(ObjectId leftTree, ObjectId rightTree,
+            @Nullable List<String> pathFilters, DiffObjectCount count) {
+        checkNotNull(count);
+        CACHE.put(new Key(leftTree, rightTree, pathFilters), new DiffObjectCount(count));
+    }
+
+    /**
+     * Discards all the cached counts
+     */
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+
+    private static final class Key {
+
+        private final ObjectId left;
+
+        private final ObjectId right;
+
+        private final List<String> pathFilters;
+
+        Key(ObjectId left, ObjectId right, @Nullable List<String> pathFilters) {
+            this.left = checkNotNull(left);
+            this.right = checkNotNull(right);
+            this.pathFilters = pathFilters == null ? ImmutableList.<String> of() : ImmutableList
+                    .copyOf(pathFilters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return left.equals(k.left) && right.equals(k.right)
+                    && pathFilters.equals(k.pathFilters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(left, right, pathFilters);
+        }
+    }
+}
@@ -19,7 +19,7 @@ public class BlameException extends RuntimeException {
      * Possible status codes for Blame exceptions.
      */
     public enum StatusCode {
-        FEATURE_NOT_FOUND, PATH_NOT_FEATURE
+        FEATURE_NOT_FOUND, PATH_NOT_FEATURE, PATH_NOT_TREE
     }
 
     public StatusCode statusCode;
@@ -9,35 +9,26 @@
  */
 package org.locationtech.geogig.api.porcelain;
 
-import java.util.Iterator;
 import java.util.Map;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
-import org.locationtech.geogig.api.Ref;
-import org.locationtech.geogig.api.RevCommit;
-import org.locationtech.geogig.api.RevFeature;
-import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.RevObject.TYPE;
-import org.locationtech.geogig.api.plumbing.DiffFeature;
-import org.locationtech.geogig.api.plumbing.ResolveFeatureType;
-import org.locationtech.geogig.api.plumbing.ResolveObjectType;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
-import org.locationtech.geogig.api.plumbing.RevParse;
-import org.locationtech.geogig.api.plumbing.diff.AttributeDiff;
-import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
-import org.locationtech.geogig.api.plumbing.diff.FeatureDiff;
 import org.locationtech.geogig.api.porcelain.BlameException.StatusCode;
 import org.locationtech.geogig.di.CanRunDuringConflict;
-import org.opengis.feature.type.PropertyDescriptor;
 
 import com.google.common.base.Optional;
-import com.google.common.base.Suppliers;
+import com.google.common.collect.Iterators;
 
 /**
  * Creates a report that contains information about who was the last to change each attribute in a
  * feature
+ * <p>
+ * History is walked only once and only as far back as needed to attribute every attribute, and
+ * the feature is only decoded at the commits that changed it.
  * 
+ * @see BlameTreeOp
  */
 @CanRunDuringConflict
 public class BlameOp extends AbstractGeoGigOp<BlameReport> {
@@ -70,64 +61,15 @@ public class BlameOp extends AbstractGeoGigOp<BlameReport> {
 
     @Override
     protected  BlameReport _call() {
-        String fullPath = (commit != null ? commit.toString() : Ref.HEAD) + ":" + path;
-        Optional<ObjectId> id = command(RevParse.class).setRefSpec(fullPath).call();
-        if (!id.isPresent()) {
+        Optional<NodeRef> feature = BlameWalk.findNode(context, commit, path);
+        if (!feature.isPresent()) {
             throw new BlameException(StatusCode.FEATURE_NOT_FOUND);
         }
-        TYPE type = command(ResolveObjectType.class).setObjectId(id.get()).call();
-        if (!type.equals(TYPE.FEATURE)) {
+        if (!TYPE.FEATURE.equals(feature.get().getType())) {
             throw new BlameException(StatusCode.PATH_NOT_FEATURE);
         }
-        Optional<RevFeatureType> featureType = command(ResolveFeatureType.class).setRefSpec(path)
-                .call();
-
-        BlameReport report = new BlameReport(featureType.get());
-
-        Iterator<RevCommit> log = command(LogOp.class).addPath(path).setUntil(commit).call();
-        RevCommit commit = log.next();
-        RevObjectParse revObjectParse = command(RevObjectParse.class);
-        DiffOp diffOp = command(DiffOp.class);
-        DiffFeature diffFeature = command(DiffFeature.class);
-
-        while (!report.isComplete()) {
-            if (!log.hasNext()) {
-                String refSpec = commit.getId().toString() + ":" + path;
-                RevFeature feature = revObjectParse.setRefSpec(refSpec).call(RevFeature.class)
-                        .get();
-                report.setFirstVersion(feature, commit);
-                break;
-            }
-            RevCommit commitB = log.next();
-            Iterator<DiffEntry> diffs = diffOp.setNewVersion(commit.getId())
-                    .setOldVersion(commitB.getId()).setReportTrees(false).call();
-
-            while (diffs.hasNext()) {
-                DiffEntry diff = diffs.next();
-                if (path.equals(diff.newPath())) {
-                    if (diff.isAdd()) {
-                        String refSpec = commit.getId().toString() + ":" + path;
-                        RevFeature feature = revObjectParse.setRefSpec(refSpec)
-                                .call(RevFeature.class).get();
-                        report.setFirstVersion(feature, commit);
-                        break;
-                    }
-                    FeatureDiff featureDiff = diffFeature
-                            .setNewVersion(Suppliers.ofInstance(diff.getNewObject()))
-                            .setOldVersion(Suppliers.ofInstance(diff.getOldObject())).call();
-                    Map<PropertyDescriptor, AttributeDiff> attribDiffs = featureDiff.getDiffs();
-                    Iterator<PropertyDescriptor> iter = attribDiffs.keySet().iterator();
-                    while (iter.hasNext()) {
-                        PropertyDescriptor key = iter.next();
-                        Optional<?> value = attribDiffs.get(key).getNewValue();
-                        String attribute = key.getName().toString();
-                        report.addDiff(attribute, value, commit);
-                    }
-                }
-
-            }
-            commit = commitB;
-        }
-        return report;
+        Map<String, BlameReport> reports = new BlameWalk(context).run(commit, path,
+                Iterators.singletonIterator(feature.get()));
+        return reports.get(path);
     }
 }
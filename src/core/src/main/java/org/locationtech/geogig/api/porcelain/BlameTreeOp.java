@@ -0,0 +1,80 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.porcelain;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.api.porcelain.BlameException.StatusCode;
+import org.locationtech.geogig.di.CanRunDuringConflict;
+
+import com.google.common.base.Optional;
+
+/**
+ * Creates a {@link BlameReport} for each feature under a tree, walking the tree's history only
+ * once for all of them, which is much cheaper than calling {@link BlameOp} for each feature.
+ * <p>
+ * The result maps the full path of each feature to its report.
+ * 
+ * @see BlameOp
+ */
+@CanRunDuringConflict
+public class BlameTreeOp extends AbstractGeoGigOp<Map<String, BlameReport>> {
+
+    private String path;
+
+    private ObjectId commit;
+
+    /**
+     * Sets the path of the tree whose features to blame
+     * 
+     * @param String path
+     * @return
+     */
+    public BlameTreeOp setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * Sets the commit to blame from
+     * 
+     * @param ObjectId commit
+     * @return
+     */
+    public BlameTreeOp setCommit(ObjectId commit) {
+        this.commit = commit;
+        return this;
+    }
+
+    @Override
+    protected  Map<String, BlameReport> _call() {
+        checkArgument(path != null && !path.isEmpty(), "tree path not specified");
+        Optional<NodeRef> treeRef = BlameWalk.findNode(context, commit, path);
+        if (!treeRef.isPresent()) {
+            throw new BlameException(StatusCode.FEATURE_NOT_FOUND);
+        }
+        if (!TYPE.TREE.equals(treeRef.get().getType())) {
+            throw new BlameException(StatusCode.PATH_NOT_TREE);
+        }
+        RevTree tree = objectDatabase().getTree(treeRef.get().objectId());
+        DepthTreeIterator features = new DepthTreeIterator(path, treeRef.get().getMetadataId(),
+                tree, objectDatabase(), Strategy.RECURSIVE_FEATURES_ONLY);
+        return new BlameWalk(context).run(commit, path, features);
+    }
+}
@@ -0,0 +1,166 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.porcelain;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.DiffTree;
+import org.locationtech.geogig.api.plumbing.FindTreeChild;
+import org.locationtech.geogig.api.plumbing.ResolveTreeish;
+import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.type.PropertyDescriptor;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Blames a set of features in a single walk over the history of the path that contains them.
+ * <p>
+ * Consecutive commits of the history are compared with {@link DiffTree}, which skips any subtree
+ * whose object id didn't change, so only the features whose object id changed are decoded and
+ * compared attribute by attribute. A feature leaves the walk as soon as all its attributes are
+ * attributed to a commit, and the walk stops as soon as there are no features left.
+ *
+ * @see BlameOp
+ * @see BlameTreeOp
+ */
+class BlameWalk {
+
+    private final Context context;
+
+    private final ObjectDatabase objectDb;
+
+    private final Map<ObjectId, RevFeatureType> featureTypes = Maps.newHashMap();
+
+    BlameWalk(Context context) {
+        this.context = context;
+        this.objectDb = context.objectDatabase();
+    }
+
+    /**
+     * @return the node at {@code path} in the tree of {@code commit}, or of {@code HEAD} if
+     *         {@code commit} is {@code null}
+     */
+    static Optional<NodeRef> findNode(Context context, @Nullable ObjectId commit, String path) {
+        Optional<ObjectId> rootTreeId = context.command(ResolveTreeish.class)
+                .setTreeish(commit != null ? commit.toString() : Ref.HEAD).call();
+        if (!rootTreeId.isPresent()) {
+            return Optional.absent();
+        }
+        RevTree rootTree = context.command(RevObjectParse.class).setObjectId(rootTreeId.get())
+                .call(RevTree.class).get();
+        return context.command(FindTreeChild.class).setParent(rootTree).setChildPath(path).call();
+    }
+
+    /**
+     * @param until the commit to blame from, or {@code null} for {@code HEAD}
+     * @param path the path whose history to walk, the features must be at or under it
+     * @param features the features to blame, as found in {@code until}
+     * @return the blame reports keyed by feature path, in the order of {@code features}
+     */
+    Map<String, BlameReport> run(@Nullable ObjectId until, String path, Iterator<NodeRef> features) {
+        Map<String, BlameReport> reports = Maps.newLinkedHashMap();
+        // the version of the features not fully attributed yet, as of the current commit
+        Map<String, NodeRef> pending = Maps.newHashMap();
+        while (features.hasNext()) {
+            NodeRef feature = features.next();
+            reports.put(feature.path(), new BlameReport(featureType(feature.getMetadataId())));
+            pending.put(feature.path(), feature);
+        }
+
+        LogOp logOp = context.command(LogOp.class).setUntil(until);
+        if (!path.isEmpty()) {
+            logOp.addPath(path);
+        }
+        Iterator<RevCommit> log = logOp.call();
+        if (!log.hasNext()) {
+            return reports;
+        }
+        RevCommit commit = log.next();
+        while (!pending.isEmpty() && log.hasNext()) {
+            RevCommit parent = log.next();
+            Iterator<DiffEntry> diffs = context.command(DiffTree.class)
+                    .setOldTree(parent.getTreeId()).setNewTree(commit.getTreeId())
+                    .setPathFilter(path.isEmpty() ? null : path).setReportTrees(false).call();
+            while (diffs.hasNext()) {
+                DiffEntry diff = diffs.next();
+                NodeRef newRef = diff.getNewObject();
+                if (newRef == null || !pending.containsKey(newRef.path())) {
+                    continue;
+                }
+                BlameReport report = reports.get(newRef.path());
+                NodeRef oldRef = diff.getOldObject();
+                if (oldRef == null) {
+                    report.setFirstVersion(objectDb.getFeature(newRef.objectId()), commit);
+                } else {
+                    compare(report, oldRef, newRef, commit);
+                }
+                if (report.isComplete()) {
+                    pending.remove(newRef.path());
+                } else {
+                    pending.put(newRef.path(), oldRef);
+                }
+            }
+            commit = parent;
+        }
+        // whatever is left was introduced by the oldest commit in the path's history
+        for (Map.Entry<String, NodeRef> feature : pending.entrySet()) {
+            reports.get(feature.getKey()).setFirstVersion(
+                    objectDb.getFeature(feature.getValue().objectId()), commit);
+        }
+        return reports;
+    }
+
+    /**
+     * Attributes to {@code commit} the attributes whose value differs between both versions of a
+     * feature, or that the old version doesn't have
+     */
+    private void compare(BlameReport report, NodeRef oldRef, NodeRef newRef, RevCommit commit) {
+        ImmutableList<Optional<Object>> oldValues = objectDb.getFeature(oldRef.objectId())
+                .getValues();
+        ImmutableList<Optional<Object>> newValues = objectDb.getFeature(newRef.objectId())
+                .getValues();
+        ImmutableList<PropertyDescriptor> oldAttributes = featureType(oldRef.getMetadataId())
+                .sortedDescriptors();
+        ImmutableList<PropertyDescriptor> newAttributes = featureType(newRef.getMetadataId())
+                .sortedDescriptors();
+        final boolean sameType = oldRef.getMetadataId().equals(newRef.getMetadataId());
+        for (int i = 0; i < newAttributes.size(); i++) {
+            int oldIndex = sameType ? i : oldAttributes.indexOf(newAttributes.get(i));
+            Optional<Object> newValue = newValues.get(i);
+            if (oldIndex == -1 || !oldValues.get(oldIndex).equals(newValue)) {
+                String attribute = newAttributes.get(i).getName().getLocalPart();
+                report.addDiff(attribute, newValue, commit);
+            }
+        }
+    }
+
+    private RevFeatureType featureType(ObjectId metadataId) {
+        RevFeatureType featureType = featureTypes.get(metadataId);
+        if (featureType == null) {
+            featureType = objectDb.getFeatureType(metadataId);
+            featureTypes.put(metadataId, featureType);
+        }
+        return featureType;
+    }
+}
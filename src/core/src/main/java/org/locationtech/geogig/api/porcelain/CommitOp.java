@@ -28,6 +28,7 @@ import org.locationtech.geogig.api.RevPerson;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SymRef;
 import org.locationtech.geogig.api.hooks.Hookable;
+import org.locationtech.geogig.api.plumbing.BuildChangedPathIndex;
 import org.locationtech.geogig.api.plumbing.RefParse;
 import org.locationtech.geogig.api.plumbing.ResolveTreeish;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
@@ -363,6 +364,13 @@ public class CommitOp extends AbstractGeoGigOp<RevCommit> {
 
         checkState(currentBranch.equals(((SymRef) newHead.get()).getTarget()));
 
+        BuildChangedPathIndex buildChangedPaths = command(BuildChangedPathIndex.class).addTip(
+                commit.getId());
+        for (ObjectId parentId : commit.getParentIds()) {
+            buildChangedPaths.addBoundary(parentId);
+        }
+        buildChangedPaths.call();
+
         Optional<ObjectId> treeId = command(ResolveTreeish.class).setTreeish(
                 branchHead.get().getObjectId()).call();
         checkState(treeId.isPresent());
@@ -20,6 +20,7 @@ import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.Remote;
 import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.BuildChangedPathIndex;
 import org.locationtech.geogig.api.plumbing.LsRemote;
 import org.locationtech.geogig.api.plumbing.RefParse;
 import org.locationtech.geogig.api.plumbing.UpdateRef;
@@ -288,6 +289,14 @@ public class FetchOp extends AbstractGeoGigOp<TransferSummary> {
                         // Update the ref
                         Ref updatedRef = updateLocalRef(newRef, remote, localRemoteRefs);
                         ref.setNewRef(updatedRef);
+
+                        // index the changed paths of the fetched commits
+                        BuildChangedPathIndex buildChangedPaths = command(
+                                BuildChangedPathIndex.class).addTip(updatedRef.getObjectId());
+                        if (ref.getOldRef() != null) {
+                            buildChangedPaths.addBoundary(ref.getOldRef().getObjectId());
+                        }
+                        buildChangedPaths.call();
                     }
                 }
 
@@ -13,6 +13,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Stack;
 import java.util.regex.Matcher;
@@ -27,10 +28,13 @@ import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.plumbing.RevParse;
+import org.locationtech.geogig.api.plumbing.diff.ChangedPathFilter;
 import org.locationtech.geogig.di.CanRunDuringConflict;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.CommitMetadata;
 import org.locationtech.geogig.storage.GraphDatabase;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -191,6 +195,9 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
     /**
      * Show only commits that affect any of the specified paths.
+     * <p>
+     * Commits with a {@link ChangedPathFilter changed paths filter} that rules out all the paths are
+     * skipped without looking at their trees.
      * 
      * @param path
      * @return {@code this}
@@ -254,23 +261,50 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             }
         }
 
-        Iterator<RevCommit> history;
-        if (firstParent) {
-            history = new LinearHistoryIterator(newestCommitId, repository());
+        final LogFilter filter = new LogFilter(oldestCommitId, timeRange, paths, author,
+                commiter);
+        Iterator<RevCommit> filteredCommits;
+        if (firstParent || topo) {
+            Iterator<RevCommit> history;
+            if (firstParent) {
+                history = new LinearHistoryIterator(newestCommitId, repository());
+            } else {
+                if (commits.isEmpty()) {
+                    commits.add(newestCommitId);
+                }
+                history = new TopologicalHistoryIterator(commits, repository(), graphDatabase());
+            }
+            filteredCommits = Iterators.filter(history, filter);
+            if (skip != null) {
+                Iterators.advance(filteredCommits, skip.intValue());
+            }
         } else {
             if (commits.isEmpty()) {
                 commits.add(newestCommitId);
             }
-            if (topo) {
-                history = new TopologicalHistoryIterator(commits, repository(), graphDatabase());
-            } else {
-                history = new ChronologicalHistoryIterator(commits, repository());
+            // walk and filter on the commits metadata, and only fetch the commits that may be
+            // returned
+            Iterator<CommitMetadata> history = new ChronologicalHistoryIterator(commits,
+                    repository(), graphDatabase());
+            Iterator<CommitMetadata> candidates = Iterators.filter(history,
+                    filter.metadataFilter());
+            if (skip != null && paths == null) {
+                Iterators.advance(candidates, skip.intValue());
+            }
+            final Repository repository = repository();
+            filteredCommits = Iterators.transform(candidates,
+                    new Function<CommitMetadata, RevCommit>() {
+                        @Override
+                        public RevCommit apply(CommitMetadata metadata) {
+                            return repository.getCommit(metadata.getId());
+                        }
+                    });
+            if (paths != null) {
+                filteredCommits = Iterators.filter(filteredCommits, filter.pathFilter());
+                if (skip != null) {
+                    Iterators.advance(filteredCommits, skip.intValue());
+                }
             }
-        }
-        LogFilter filter = new LogFilter(oldestCommitId, timeRange, paths, author, commiter);
-        Iterator<RevCommit> filteredCommits = Iterators.filter(history, filter);
-        if (skip != null) {
-            Iterators.advance(filteredCommits, skip.intValue());
         }
         if (limit != null) {
             filteredCommits = Iterators.limit(filteredCommits, limit.intValue());
@@ -279,64 +313,71 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
     }
 
     /**
-     * Iterator that traverses the commit history backwards starting from the provided commit, in
-     * chronological order. It performs a reverse breadth-first search
-     * 
+     * Iterator that traverses the commit history backwards starting from the provided commits, in
+     * chronological order. The pending commits are kept in a priority queue ordered by committer
+     * timestamp, and only their {@link CommitMetadata metadata} is loaded, falling back to the
+     * full commit for the ones that have no metadata stored in the graph database.
      */
-    private static class ChronologicalHistoryIterator extends AbstractIterator<RevCommit> {
+    private static class ChronologicalHistoryIterator extends AbstractIterator<CommitMetadata> {
 
         private final Repository repo;
 
-        private Set<RevCommit> parents;
+        private final GraphDatabase graphDb;
+
+        private final PriorityQueue<CommitMetadata> pending;
+
+        private final Set<ObjectId> seen;
 
         /**
-         * Constructs a new {@code LinearHistoryIterator} with the given parameters.
+         * Constructs a new {@code ChronologicalHistoryIterator} with the given parameters.
          * 
-         * @param tip the first commit in the history
+         * @param tips the commits to start traversing the history from
          * @param repo the repository where the commits are stored.
+         * @param graphDb the graph database where the commits metadata is stored
          */
-        public ChronologicalHistoryIterator(final List<ObjectId> tips, final Repository repo) {
-            parents = Sets.newHashSet();
+        public ChronologicalHistoryIterator(final List<ObjectId> tips, final Repository repo,
+                final GraphDatabase graphDb) {
+            this.repo = repo;
+            this.graphDb = graphDb;
+            this.pending = new PriorityQueue<CommitMetadata>(11, CommitMetadata.MOST_RECENT_FIRST);
+            this.seen = Sets.newHashSet();
             for (ObjectId tip : tips) {
-                if (!tip.isNull()) {
-                    final RevCommit commit = repo.getCommit(tip);
-                    parents.add(commit);
+                if (!tip.isNull() && seen.add(tip)) {
+                    Optional<CommitMetadata> metadata = CommitMetadata.read(graphDb, tip);
+                    pending.add(metadata.isPresent() ? metadata.get() : CommitMetadata.of(repo
+                            .getCommit(tip)));
                 }
             }
-            this.repo = repo;
         }
 
         /**
          * Calculates the next commit in the history.
          * 
-         * @return the next {@link RevCommit commit} in the history
+         * @return the {@link CommitMetadata metadata} of the next commit in the history
          */
         @Override
-        protected RevCommit computeNext() {
-            if (parents.isEmpty()) {
+        protected CommitMetadata computeNext() {
+            final CommitMetadata mostRecent = pending.poll();
+            if (mostRecent == null) {
                 return endOfData();
-            } else {
-                Iterator<RevCommit> iter = parents.iterator();
-                // TODO: Maybe we should make RevCommit implement Comparable?
-                RevCommit mostRecent = iter.next();
-                while (iter.hasNext()) {
-                    RevCommit commit = iter.next();
-                    if (mostRecent.getCommitter().getTimestamp() < commit.getCommitter()
-                            .getTimestamp()) {
-                        mostRecent = commit;
-                    }
-                }
-                parents.remove(mostRecent);
-                RevCommit commit;
-                for (ObjectId parent : mostRecent.getParentIds()) {
-                    if (repo.commitExists(parent)) {
-                        commit = repo.getCommit(parent);
-                        parents.add(commit);
+            }
+            for (ObjectId parentId : mostRecent.getParentIds()) {
+                if (seen.add(parentId)) {
+                    Optional<CommitMetadata> parent = load(parentId);
+                    if (parent.isPresent()) {
+                        pending.add(parent.get());
                     }
                 }
-                return mostRecent;
             }
+            return mostRecent;
+        }
 
+        private Optional<CommitMetadata> load(ObjectId commitId) {
+            Optional<CommitMetadata> metadata = CommitMetadata.read(graphDb, commitId);
+            if (!metadata.isPresent() && repo.commitExists(commitId)) {
+                metadata = Optional.of(CommitMetadata.of(repo.getCommit(commitId)));
+            }
+            return metadata;
         }
     }
 
@@ -518,6 +559,35 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          */
         @Override
         public boolean apply(final RevCommit commit) {
+            return apply(CommitMetadata.of(commit)) && appliesToPaths(commit);
+        }
+
+        /**
+         * @return a predicate evaluating all the filter criteria but the paths, which only needs
+         *         the commits metadata
+         */
+        public Predicate<CommitMetadata> metadataFilter() {
+            return new Predicate<CommitMetadata>() {
+                @Override
+                public boolean apply(CommitMetadata metadata) {
+                    return LogFilter.this.apply(metadata);
+                }
+            };
+        }
+
+        /**
+         * @return a predicate evaluating the paths filter criteria only
+         */
+        public Predicate<RevCommit> pathFilter() {
+            return new Predicate<RevCommit>() {
+                @Override
+                public boolean apply(RevCommit commit) {
+                    return appliesToPaths(commit);
+                }
+            };
+        }
+
+        private boolean apply(final CommitMetadata commit) {
             if (toReached) {
                 return false;
             }
@@ -525,60 +595,65 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
                 toReached = true;
                 return false;
             }
-            Optional<String> authorName = commit.getAuthor().getName();
+            Optional<String> authorName = commit.getAuthorName();
             if (author != null && authorName.isPresent()) {
                 Matcher authorMatcher = author.matcher(authorName.get());
                 if (!authorMatcher.matches()) {
                     return false;
                 }
             }
-            Optional<String> committerName = commit.getCommitter().getName();
+            Optional<String> committerName = commit.getCommitterName();
             if (committer != null && committerName.isPresent()) {
                 Matcher committerMatcher = committer.matcher(committerName.get());
                 if (!committerMatcher.matches()) {
                     return false;
                 }
             }
-            boolean applies = timeRange
-                    .contains(Long.valueOf(commit.getCommitter().getTimestamp()));
-            if (!applies) {
+            return timeRange.contains(Long.valueOf(commit.getCommitterTimestamp()));
+        }
+
+        private boolean appliesToPaths(final RevCommit commit) {
+            if (paths == null) {
+                return true;
+            }
+            // rule out the commit without looking at its trees if possible
+            Optional<ChangedPathFilter> changedPaths = ChangedPathFilter.read(graphDatabase(),
+                    commit.getId());
+            if (changedPaths.isPresent() && !changedPaths.get().mightHaveChangedAny(paths)) {
                 return false;
             }
-            if (paths != null) {
-                applies = false;
-                final Repository repository = repository();
-                // did this commit touch any of the paths?
-                RevTree commitTree = repository.getTree(commit.getTreeId());
-                ObjectId currentValue, parentValue;
-                for (String path : paths) {
-                    currentValue = getPathHash(commitTree, path);
-                    // See if the new value is different from any of the parents.
-                    int parentIndex = 0;
-                    do {
-                        ObjectId parentId = commit.parentN(parentIndex++).or(ObjectId.NULL);
-                        if (parentId.isNull() || !repository.commitExists(parentId)) {
-                            // we have reached the bottom of a shallow clone or the end of history.
-                            if (!currentValue.isNull()) {
-                                applies = true;
-                                break;
-                            }
-                        } else {
-                            RevCommit otherCommit = repository.getCommit(parentId);
-                            RevTree parentTree = repository.getTree(otherCommit.getTreeId());
-                            parentValue = getPathHash(parentTree, path);
-                            if (!parentValue.equals(currentValue)) {
-                                applies = true;
-                                break;
-                            }
+            boolean applies = false;
+            final Repository repository = repository();
+            // did this commit touch any of the paths?
+            RevTree commitTree = repository.getTree(commit.getTreeId());
+            ObjectId currentValue, parentValue;
+            for (String path : paths) {
+                currentValue = getPathHash(commitTree, path);
+                // See if the new value is different from any of the parents.
+                int parentIndex = 0;
+                do {
+                    ObjectId parentId = commit.parentN(parentIndex++).or(ObjectId.NULL);
+                    if (parentId.isNull() || !repository.commitExists(parentId)) {
+                        // we have reached the bottom of a shallow clone or the end of history.
+                        if (!currentValue.isNull()) {
+                            applies = true;
+                            break;
+                        }
+                    } else {
+                        RevCommit otherCommit = repository.getCommit(parentId);
+                        RevTree parentTree = repository.getTree(otherCommit.getTreeId());
+                        parentValue = getPathHash(parentTree, path);
+                        if (!parentValue.equals(currentValue)) {
+                            applies = true;
+                            break;
                         }
-                    } while (parentIndex < commit.getParentIds().size());
-
-                    if (applies) {
-                        break;
                     }
+                } while (parentIndex < commit.getParentIds().size());
+
+                if (applies) {
+                    break;
                 }
             }
-
             return applies;
         }
 
@@ -15,6 +15,7 @@ import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.CommitMetadata;
 import org.locationtech.geogig.storage.ForwardingObjectDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
@@ -27,8 +28,8 @@ import com.google.inject.Provider;
 import com.google.inject.util.Providers;
 
 /**
- * Method interceptor for {@link ObjectDatabase#put(RevObject)} that adds new commits to the graph
- * database.
+ * Method interceptor for {@link ObjectDatabase#put(RevObject)} that adds new commits, and their
+ * {@link CommitMetadata metadata}, to the graph database.
  */
 class ObjectDatabasePutInterceptor implements Decorator {
 
@@ -67,7 +68,9 @@ class ObjectDatabasePutInterceptor implements Decorator {
 
             if (inserted && RevObject.TYPE.COMMIT.equals(object.getType())) {
                 RevCommit commit = (RevCommit) object;
-                graphDb.get().put(commit.getId(), commit.getParentIds());
+                GraphDatabase graphDatabase = graphDb.get();
+                graphDatabase.put(commit.getId(), commit.getParentIds());
+                CommitMetadata.of(commit).write(graphDatabase);
             }
             return inserted;
         }
@@ -94,6 +97,7 @@ class ObjectDatabasePutInterceptor implements Decorator {
                                 ObjectId commitId = commit.getId();
                                 ImmutableList<ObjectId> parentIds = commit.getParentIds();
                                 graphDatabase.put(commitId, parentIds);
+                                CommitMetadata.of(commit).write(graphDatabase);
 
                                 // addedCommits.add((RevCommit) input);
                             }
@@ -215,6 +215,17 @@ public final class BinaryPackedObjects {
      * @return the number of objects parsed from the input stream
      */
     public IngestResults ingest(final InputStream in, final Callback callback) {
+        return ingest(in, callback, false);
+    }
+
+    /**
+     * @param deferDurability whether the object database may defer durability while inserting the
+     *        objects, as when they're going into a repository that's been just created
+     * @return the number of objects parsed from the input stream
+     * @see BulkOpListener#isDurabilityDeferred()
+     */
+    public IngestResults ingest(final InputStream in, final Callback callback,
+            final boolean deferDurability) {
         Iterator<RevObject> objects = streamToObjects(in);
 
         BulkOpListener listener = new BulkOpListener() {
@@ -231,6 +242,9 @@ public final class BinaryPackedObjects {
 
         CountingListener countingListener = BulkOpListener.newCountingListener();
         listener = BulkOpListener.composite(countingListener, listener);
+        if (deferDurability) {
+            listener = BulkOpListener.deferDurability(listener);
+        }
         database.putAll(objects, listener);
         return new IngestResults(countingListener.inserted(), countingListener.found());
     }
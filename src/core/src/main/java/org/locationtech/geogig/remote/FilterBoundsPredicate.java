@@ -0,0 +1,144 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.Bounded;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RepositoryFilter;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.plumbing.DiffTree;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A {@link DiffTree#setCustomFilter custom diff filter} that prunes the feature nodes and buckets
+ * that can't contain changes to be sent to a sparse clone, because they don't intersect the
+ * {@link RepositoryFilter#getBounds() extent} of its filter nor any of the features it already
+ * tracks, so that the features in them are not even decoded.
+ * <p>
+ * Tree nodes are never pruned, the features that pass the predicate still need to be evaluated
+ * against the filter. Buckets are not pruned either if some of the tracked features have no
+ * geometry, since there's no telling which buckets they're in.
+ * <p>
+ * The changes pruned never reach the {@link FilteredDiffIterator}, so the predicate records
+ * whether it pruned anything for the iterator to {@link FilteredDiffIterator#wasFiltered()
+ * report} it.
+ *
+ * @see FilteredDiffIterator
+ */
+public class FilterBoundsPredicate implements Predicate<Bounded> {
+
+    private final Envelope filterBounds;
+
+    private final Set<ObjectId> tracked;
+
+    private final List<Envelope> trackedBounds;
+
+    private final boolean trackedWithoutBounds;
+
+    private volatile boolean pruned;
+
+    private FilterBoundsPredicate(Envelope filterBounds, Set<ObjectId> tracked,
+            List<Envelope> trackedBounds, boolean trackedWithoutBounds) {
+        this.filterBounds = filterBounds;
+        this.tracked = tracked;
+        this.trackedBounds = trackedBounds;
+        this.trackedWithoutBounds = trackedWithoutBounds;
+    }
+
+    /**
+     * @param filter the sparse repository filter
+     * @param tracked the ids of the features the sparse clone tracks regardless of the filter
+     * @param source where to read the tracked features from
+     * @return the predicate, or {@link Optional#absent() absent} if the filter is not constrained
+     *         to an extent and hence nothing can be pruned
+     */
+    public static Optional<FilterBoundsPredicate> create(RepositoryFilter filter,
+            Set<ObjectId> tracked, ObjectDatabase source) {
+        Optional<Envelope> filterBounds = filter.getBounds();
+        if (!filterBounds.isPresent()) {
+            return Optional.absent();
+        }
+        ImmutableList.Builder<Envelope> trackedBounds = ImmutableList.builder();
+        boolean trackedWithoutBounds = false;
+        for (ObjectId id : tracked) {
+            RevFeature feature = source.getIfPresent(id, RevFeature.class);
+            if (feature == null) {
+                trackedWithoutBounds = true;
+                continue;
+            }
+            Envelope bounds = new Envelope();
+            for (Optional<Object> value : feature.getValues()) {
+                if (value.isPresent() && value.get() instanceof Geometry) {
+                    bounds.expandToInclude(((Geometry) value.get()).getEnvelopeInternal());
+                }
+            }
+            if (bounds.isNull()) {
+                trackedWithoutBounds = true;
+            } else {
+                trackedBounds.add(bounds);
+            }
+        }
+        FilterBoundsPredicate predicate = new FilterBoundsPredicate(filterBounds.get(),
+                ImmutableSet.copyOf(tracked), trackedBounds.build(), trackedWithoutBounds);
+        return Optional.of(predicate);
+    }
+
+    /**
+     * @return {@code true} if any feature node or bucket was pruned so far
+     */
+    public boolean prunedAny() {
+        return pruned;
+    }
+
+    @Override
+    public boolean apply(@Nullable Bounded bounded) {
+        if (bounded == null) {
+            return false;
+        }
+        boolean keep = keep(bounded);
+        if (!keep) {
+            pruned = true;
+        }
+        return keep;
+    }
+
+    private boolean keep(Bounded bounded) {
+        if (bounded instanceof Node) {
+            Node node = (Node) bounded;
+            if (node.getType() == TYPE.TREE) {
+                return true;
+            }
+            return tracked.contains(node.getObjectId()) || node.intersects(filterBounds);
+        }
+        if (trackedWithoutBounds || bounded.intersects(filterBounds)) {
+            return true;
+        }
+        for (Envelope bounds : trackedBounds) {
+            if (bounded.intersects(bounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
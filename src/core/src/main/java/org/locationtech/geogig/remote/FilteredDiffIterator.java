@@ -11,6 +11,8 @@ package org.locationtech.geogig.remote;
 
 import java.util.Iterator;
 
+import javax.annotation.Nullable;
+
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RepositoryFilter;
@@ -21,7 +23,11 @@ import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.repository.Repository;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.AbstractIterator;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * An implementation of a {@link DiffEntry} iterator that filters entries based on a provided
@@ -29,6 +35,13 @@ import com.google.common.collect.AbstractIterator;
  */
 public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
 
+    /**
+     * Outcome of evaluating filters on features, keyed by the hash of the filter, feature type and
+     * feature ids, which identify the outcome regardless of the repository
+     */
+    private static final Cache<ObjectId, Boolean> EVALUATIONS = CacheBuilder.newBuilder()
+            .maximumSize(500_000).build();
+
     protected boolean filtered = false;
 
     private Iterator<DiffEntry> source;
@@ -37,8 +50,24 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
 
     private RepositoryFilter repoFilter;
 
+    @Nullable
+    private FilterBoundsPredicate boundsFilter;
+
+    /**
+     * @return {@code true} if any change was left out, either by this iterator or by the
+     *         {@link #setBoundsFilter bounds filter} the source changes were computed with
+     */
     public final boolean wasFiltered() {
-        return filtered;
+        return filtered || (boundsFilter != null && boundsFilter.prunedAny());
+    }
+
+    /**
+     * Sets the bounds filter the source changes were computed with, for the changes it pruned to
+     * count as filtered
+     */
+    public FilteredDiffIterator setBoundsFilter(@Nullable FilterBoundsPredicate boundsFilter) {
+        this.boundsFilter = boundsFilter;
+        return this;
     }
 
     /**
@@ -113,30 +142,51 @@ public abstract class FilteredDiffIterator extends AbstractIterator<DiffEntry> {
             return null;
         }
 
-        RevObject object = sourceRepo.objectDatabase().get(node.objectId());
-
-        RevObject metadata = null;
-        if (!node.getMetadataId().isNull()) {
-            metadata = sourceRepo.objectDatabase().get(node.getMetadataId());
-        }
         if (node.getType() == TYPE.FEATURE) {
-            if (trackingObject(object.getId())) {
+            if (trackingObject(node.objectId())) {
                 // We are already tracking this object, continue to do so
                 return node;
             }
-
-            RevFeatureType revFeatureType = (RevFeatureType) metadata;
-
-            if (!repoFilter.filterObject(revFeatureType, node.getParentPath(), object)) {
+            if (!matches(node)) {
                 return null;
             }
+        }
 
+        RevObject object = sourceRepo.objectDatabase().get(node.objectId());
+
+        RevObject metadata = null;
+        if (!node.getMetadataId().isNull()) {
+            metadata = sourceRepo.objectDatabase().get(node.getMetadataId());
         }
         processObject(object);
         processObject(metadata);
         return node;
     }
 
+    /**
+     * Evaluates the filter on a feature. Features outside the filter extent are discarded by their
+     * node bounds, and the outcome is cached by filter and feature contents, so unchanged features
+     * are decoded and evaluated only once across clones using the same filter.
+     */
+    private boolean matches(NodeRef node) {
+        final String parentPath = node.getParentPath();
+        Optional<Envelope> bounds = repoFilter.getBounds(parentPath);
+        if (bounds.isPresent() && !node.getNode().intersects(bounds.get())) {
+            return false;
+        }
+        final ObjectId key = ObjectId.forString(repoFilter.getFilterKey(parentPath) + ':'
+                + node.getMetadataId() + ':' + node.objectId());
+        Boolean matches = EVALUATIONS.getIfPresent(key);
+        if (matches == null) {
+            RevObject object = sourceRepo.objectDatabase().get(node.objectId());
+            RevFeatureType revFeatureType = sourceRepo.objectDatabase().getFeatureType(
+                    node.getMetadataId());
+            matches = Boolean.valueOf(repoFilter.filterObject(revFeatureType, parentPath, object));
+            EVALUATIONS.put(key, matches);
+        }
+        return matches.booleanValue();
+    }
+
     /**
      * An overridable method for hinting that the given object should be tracked, regardless of
      * whether or not it matches the filter.
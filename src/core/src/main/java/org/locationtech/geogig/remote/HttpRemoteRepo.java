@@ -207,9 +207,11 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
             Collections.reverse(want);
             Set<ObjectId> have = new HashSet<ObjectId>();
             have.addAll(traverser.have);
+            // nothing in common with the remote, e.g. an initial clone
+            final boolean deferDurability = have.isEmpty();
             while (!want.isEmpty()) {
                 progress.setProgress(0);
-                fetchMoreData(want, have, progress);
+                fetchMoreData(want, have, deferDurability, progress);
             }
         } catch (Exception e) {
             Throwables.propagate(e);
@@ -404,10 +406,12 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
      * 
      * @param want a list of ObjectIds that need to be fetched
      * @param have a list of ObjectIds that are in common with the remote repository
+     * @param deferDurability whether the local object database may defer durability while
+     *        inserting the retrieved objects
      * @param progress
      */
     private void fetchMoreData(final List<ObjectId> want, final Set<ObjectId> have,
-            final ProgressListener progress) {
+            final boolean deferDurability, final ProgressListener progress) {
         final JsonObject message = createFetchMessage(want, have);
         final URL resourceURL;
         try {
@@ -457,7 +461,7 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         };
 
         Stopwatch sw = Stopwatch.createStarted();
-        IngestResults ingestResults = unpacker.ingest(in, callback);
+        IngestResults ingestResults = unpacker.ingest(in, callback, deferDurability);
         sw.stop();
 
         String msg = String
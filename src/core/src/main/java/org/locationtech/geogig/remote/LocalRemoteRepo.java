@@ -47,6 +47,7 @@ import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -67,6 +68,12 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
 
     private File workingDirectory;
 
+    /**
+     * Whether the objects being fetched are going into a repository that shares no history with
+     * the remote, as on an initial clone
+     */
+    private boolean deferDurability;
+
     /**
      * Constructs a new {@code LocalRemoteRepo} with the given parameters.
      * 
@@ -176,12 +183,15 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
             traverser.traverse(ref.getObjectId());
             List<ObjectId> toSend = new LinkedList<ObjectId>(traverser.commits);
             Collections.reverse(toSend);// send oldest commits first
+            deferDurability = traverser.have.isEmpty();
             for (ObjectId newHeadId : toSend) {
                 walkHead(newHeadId, true, progress);
             }
 
         } catch (Exception e) {
             Throwables.propagate(e);
+        } finally {
+            deferDurability = false;
         }
     }
 
@@ -396,7 +406,11 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
             return;
         }
         CountingListener countingListener = BulkOpListener.newCountingListener();
-        to.putAll(from.getAll(ids), countingListener);
+        BulkOpListener listener = countingListener;
+        if (deferDurability) {
+            listener = BulkOpListener.deferDurability(listener);
+        }
+        RawObject.transfer(from, to, ids, listener);
         int inserted = countingListener.inserted();
         progress.setProgress(progress.getProgress() + inserted);
     }
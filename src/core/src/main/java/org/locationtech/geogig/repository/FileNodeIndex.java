@@ -13,10 +13,8 @@ import static com.google.common.base.Preconditions.checkState;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
-import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
@@ -24,85 +22,152 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Random;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.storage.NodePathStorageOrder;
-import org.locationtech.geogig.storage.NodeStorageOrder;
 import org.locationtech.geogig.storage.datastream.FormatCommonV2;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.io.Closeables;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
 
+/**
+ * A {@link NodeIndex} that keeps the added nodes in memory partitions and spills them to sorted
+ * temporary files as the partitions fill up.
+ * <p>
+ * Each thread adding nodes gets a partition of its own, so adding nodes from several threads
+ * doesn't need any locking. Nodes are appended to the partitions unsorted along with their
+ * {@link NodePathStorageOrder#hashCodeBits(String) storage order hash}, and each partition is
+ * sorted in bulk by comparing the precomputed hashes when it's spilled or traversed. The spill
+ * files store the hash along with each node, so the sorted partitions are merged comparing
+ * primitive hashes too.
+ * <p>
+ * All the partitions share the same memory budget. Once it's used up, the thread adding a node
+ * spills its own partition unless it's still too small to be worth a file of its own.
+ * <p>
+ * If a node with the same name is added more than once, only the last one added is returned by
+ * {@link #nodes()}, whatever the threads that added them.
+ */
 class FileNodeIndex implements Closeable, NodeIndex {
 
-    private static final int PARTITION_SIZE = 1000 * 1000;
+    /**
+     * Approximate number of nodes held in memory by all the partitions together
+     */
+    private static final int MAX_IN_MEMORY = 1000 * 1000;
+
+    /**
+     * Minimum number of nodes of a partition for it to be spilled when the memory budget is used
+     * up
+     */
+    private static final int MIN_PARTITION_SIZE = 64 * 1024;
+
+    /**
+     * A node, its storage order hash and the order in which it was added to the index
+     */
+    private static final class IndexEntry {
+
+        final long hash;
+
+        final long sequence;
+
+        final Node node;
+
+        IndexEntry(long hash, long sequence, Node node) {
+            this.hash = hash;
+            this.sequence = sequence;
+            this.node = node;
+        }
+    }
+
+    /**
+     * Storage order, by hash and then name to account for the rare case of a hash collision
+     */
+    private static final Comparator<IndexEntry> ENTRY_ORDER = new Comparator<IndexEntry>() {
+        @Override
+        public int compare(IndexEntry e1, IndexEntry e2) {
+            int c = NodePathStorageOrder.compareHashCodes(e1.hash, e2.hash);
+            if (c == 0) {
+                c = e1.node.getName().compareTo(e2.node.getName());
+            }
+            return c;
+        }
+    };
 
     private static final class IndexPartition {
 
-        // use a TreeMap instead of a TreeSet to account for the rare case of a hash collision
-        private SortedMap<String, Node> cache = new TreeMap<>(new NodePathStorageOrder());
+        private List<IndexEntry> entries = new ArrayList<>(1024);
 
-        private File tmpFolder;
+        private boolean sorted;
 
-        public IndexPartition(final File tmpFolder) {
-            this.tmpFolder = tmpFolder;
+        void add(Node node, long sequence) {
+            entries.add(new IndexEntry(NodePathStorageOrder.hashCodeBits(node.getName()),
+                    sequence, node));
         }
 
-        public void add(Node node) {
-            cache.put(node.getName(), node);
+        int size() {
+            return entries.size();
         }
 
-        public Iterable<Node> getSortedNodes() {
-            return cache.values();
+        /**
+         * Sorts the entries in storage order and removes all but the last added of the ones with
+         * the same name
+         */
+        List<IndexEntry> getSortedEntries() {
+            if (!sorted) {
+                // stable sort, so the last one added comes last among the equal ones, a
+                // partition is only added to by one thread so its sequence numbers are ascending
+                Collections.sort(entries, ENTRY_ORDER);
+                List<IndexEntry> unique = new ArrayList<>(entries.size());
+                IndexEntry last = null;
+                for (IndexEntry e : entries) {
+                    if (last != null && ENTRY_ORDER.compare(last, e) == 0) {
+                        unique.set(unique.size() - 1, e);
+                    } else {
+                        unique.add(e);
+                    }
+                    last = e;
+                }
+                entries = unique;
+                sorted = true;
+            }
+            return entries;
         }
 
-        public File flush() {
-            Iterable<Node> cache = getSortedNodes();
+        File flush(File tmpFolder) {
             final File file;
             try {
                 file = File.createTempFile("geogigNodes", ".idx", tmpFolder);
                 file.deleteOnExit();
-                // System.err.println("Created index file " + file.getAbsolutePath());
-                FastByteArrayOutputStream buf = new FastByteArrayOutputStream();
-
-                OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(file),
-                        1024 * 1024);
-                fileOut = new LZFOutputStream(fileOut);
+                DataOutputStream out = new DataOutputStream(new LZFOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024)));
                 try {
-                    for (Node node : cache) {
-                        buf.reset();
-                        DataOutput out = new DataOutputStream(buf);
-                        try {
-                            FormatCommonV2.writeNode(node, out);
-                        } catch (IOException e) {
-                            throw Throwables.propagate(e);
-                        }
-                        int size = buf.size();
-                        fileOut.write(buf.bytes(), 0, size);
+                    for (IndexEntry e : getSortedEntries()) {
+                        out.writeLong(e.hash);
+                        out.writeLong(e.sequence);
+                        FormatCommonV2.writeNode(e.node, out);
                     }
                 } finally {
-                    this.cache.clear();
-                    this.cache = null;
-                    fileOut.close();
+                    entries = null;
+                    out.close();
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -114,11 +179,28 @@ class FileNodeIndex implements Closeable, NodeIndex {
 
     private static final Random random = new Random();
 
-    private IndexPartition currPartition;
+    /**
+     * Number of nodes held by the partitions that haven't been spilled
+     */
+    private final AtomicInteger inMemory = new AtomicInteger();
+
+    /**
+     * Global insertion order, for the last added of the nodes with the same name to win
+     */
+    private final AtomicLong insertionOrder = new AtomicLong();
 
-    private List<Future<File>> indexFiles = new LinkedList<Future<File>>();
+    private final ThreadLocal<IndexPartition> threadPartition = new ThreadLocal<>();
 
-    private List<CompositeNodeIterator> openIterators = new LinkedList<CompositeNodeIterator>();
+    /**
+     * The partitions held in memory by all the threads
+     */
+    private final Queue<IndexPartition> partitions = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Future<File>> spilledPartitions = new ConcurrentLinkedQueue<>();
+
+    private final List<IndexPartition> traversedPartitions = Lists.newArrayList();
+
+    private final List<CompositeNodeIterator> openIterators = Lists.newArrayList();
 
     private ExecutorService executorService;
 
@@ -129,134 +211,208 @@ class FileNodeIndex implements Closeable, NodeIndex {
         checkState(tmpFolder.mkdirs());
         this.tmpFolder = tmpFolder;
         this.executorService = executorService;
-        this.currPartition = new IndexPartition(this.tmpFolder);
     }
 
     @Override
     public void close() {
+        threadPartition.remove();
         try {
             for (CompositeNodeIterator it : openIterators) {
                 it.close();
             }
-            for (Future<File> ff : indexFiles) {
+            for (Future<File> sp : spilledPartitions) {
                 try {
-                    File file = ff.get();
+                    File file = sp.get();
                     file.delete();
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
             }
+            for (IndexPartition p : traversedPartitions) {
+                p.entries = null;
+            }
         } finally {
             tmpFolder.delete();
             openIterators.clear();
-            indexFiles.clear();
+            spilledPartitions.clear();
+            traversedPartitions.clear();
+            partitions.clear();
         }
     }
 
     @Override
-    public synchronized void add(Node node) {
-        currPartition.add(node);
-        if (currPartition.cache.size() == PARTITION_SIZE) {
-            flush(currPartition);
-            currPartition = new IndexPartition(this.tmpFolder);
+    public void add(Node node) {
+        IndexPartition partition = threadPartition.get();
+        if (partition == null) {
+            partition = new IndexPartition();
+            threadPartition.set(partition);
+            partitions.add(partition);
+        }
+        partition.add(node, insertionOrder.getAndIncrement());
+        if (inMemory.incrementAndGet() >= MAX_IN_MEMORY
+                && partition.size() >= MIN_PARTITION_SIZE) {
+            threadPartition.remove();
+            partitions.remove(partition);
+            inMemory.addAndGet(-partition.size());
+            flush(partition);
         }
     }
 
     private void flush(final IndexPartition ip) {
-        indexFiles.add(executorService.submit(new Callable<File>() {
+        Future<File> file = executorService.submit(new Callable<File>() {
 
             @Override
             public File call() throws Exception {
-                return ip.flush();
+                return ip.flush(tmpFolder);
             }
-        }));
-
+        });
+        spilledPartitions.add(file);
     }
 
+    /**
+     * The partitions of all the threads are traversed, but only the calling thread's reference to
+     * its own partition can be released here; the ones still referenced by other threads are
+     * emptied by {@link #close()}.
+     * 
+     * @return the added nodes in storage order. Nodes shall not be added while or after calling
+     *         this method.
+     */
     @Override
     public Iterator<Node> nodes() {
-        List<File> files = new ArrayList<File>(indexFiles.size());
+        threadPartition.remove();
+        List<PartitionCursor> cursors = new ArrayList<>();
         try {
-            for (Future<File> ff : indexFiles) {
-                files.add(ff.get());
+            for (Future<File> sp : spilledPartitions) {
+                cursors.add(new PartitionCursor(new IndexIterator(sp.get())));
             }
         } catch (Exception e) {
             e.printStackTrace();
             throw Throwables.propagate(Throwables.getRootCause(e));
         }
-
-        List<Node> unflushed = Lists.newArrayList(currPartition.getSortedNodes());
-        currPartition.cache.clear();
-        return new CompositeNodeIterator(files, unflushed);
+        IndexPartition partition;
+        while ((partition = partitions.poll()) != null) {
+            traversedPartitions.add(partition);
+            cursors.add(new PartitionCursor(partition.getSortedEntries().iterator()));
+        }
+        CompositeNodeIterator iterator = new CompositeNodeIterator(cursors);
+        openIterators.add(iterator);
+        return iterator;
     }
 
-    private static class CompositeNodeIterator extends AbstractIterator<Node> {
+    /**
+     * The next entry of a sorted partition
+     */
+    private static class PartitionCursor {
 
-        private NodeStorageOrder order = new NodeStorageOrder();
+        private static final Comparator<PartitionCursor> ORDER = new Comparator<PartitionCursor>() {
+            @Override
+            public int compare(PartitionCursor c1, PartitionCursor c2) {
+                int c = ENTRY_ORDER.compare(c1.current, c2.current);
+                if (c == 0) {
+                    c = Long.compare(c1.current.sequence, c2.current.sequence);
+                }
+                return c;
+            }
+        };
+
+        private final Iterator<IndexEntry> entries;
 
-        private List<IndexIterator> openIterators;
+        IndexEntry current;
 
-        private UnmodifiableIterator<Node> delegate;
+        PartitionCursor(Iterator<IndexEntry> entries) {
+            this.entries = entries;
+        }
 
-        public CompositeNodeIterator(List<File> files, List<Node> unflushedAndSorted) {
+        boolean advance() {
+            current = entries.hasNext() ? entries.next() : null;
+            return current != null;
+        }
 
-            openIterators = new ArrayList<IndexIterator>();
-            LinkedList<Iterator<Node>> iterators = new LinkedList<Iterator<Node>>();
-            for (File f : files) {
-                IndexIterator iterator = new IndexIterator(f);
-                openIterators.add(iterator);
-                iterators.add(iterator);
+        void close() {
+            if (entries instanceof IndexIterator) {
+                ((IndexIterator) entries).close();
             }
-            if (!unflushedAndSorted.isEmpty()) {
-                iterators.add(unflushedAndSorted.iterator());
+        }
+    }
+
+    /**
+     * K-way merge of the sorted partitions, returning only the last added node among the ones with
+     * the same name
+     */
+    private static class CompositeNodeIterator extends AbstractIterator<Node> {
+
+        private final List<PartitionCursor> cursors;
+
+        private final PriorityQueue<PartitionCursor> queue;
+
+        public CompositeNodeIterator(List<PartitionCursor> cursors) {
+            this.cursors = cursors;
+            this.queue = new PriorityQueue<>(Math.max(1, cursors.size()), PartitionCursor.ORDER);
+            for (PartitionCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
             }
-            delegate = Iterators.mergeSorted(iterators, order);
         }
 
         public void close() {
-            for (IndexIterator it : openIterators) {
-                it.close();
+            for (PartitionCursor cursor : cursors) {
+                cursor.close();
             }
-            openIterators.clear();
+            queue.clear();
         }
 
         @Override
         protected Node computeNext() {
-            if (delegate.hasNext()) {
-                return delegate.next();
+            IndexEntry next = poll();
+            if (next == null) {
+                return endOfData();
             }
-            return endOfData();
+            PartitionCursor head;
+            while ((head = queue.peek()) != null && ENTRY_ORDER.compare(next, head.current) == 0) {
+                next = poll();
+            }
+            return next.node;
         }
 
+        private IndexEntry poll() {
+            PartitionCursor cursor = queue.poll();
+            if (cursor == null) {
+                return null;
+            }
+            IndexEntry entry = cursor.current;
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+            return entry;
+        }
     }
 
-    private static class IndexIterator extends AbstractIterator<Node> {
+    private static class IndexIterator extends AbstractIterator<IndexEntry> implements Closeable {
 
         private DataInputStream in;
 
         public IndexIterator(File file) {
             Preconditions.checkArgument(file.exists(), "file %s does not exist", file);
             try {
-                if (this.in == null) {
-                    InputStream fin = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
-                    fin = new LZFInputStream(fin);
-                    this.in = new DataInputStream(fin);
-                }
-
+                InputStream fin = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+                fin = new LZFInputStream(fin);
+                this.in = new DataInputStream(fin);
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
         }
 
+        @Override
         public void close() {
             Closeables.closeQuietly(in);
         }
 
         @Override
-        protected Node computeNext() {
+        protected IndexEntry computeNext() {
+            final long hash;
             try {
-                Node node = FormatCommonV2.readNode(in);
-                return node;
+                hash = in.readLong();
             } catch (EOFException eof) {
                 Closeables.closeQuietly(in);
                 return endOfData();
@@ -264,23 +420,14 @@ class FileNodeIndex implements Closeable, NodeIndex {
                 Closeables.closeQuietly(in);
                 throw Throwables.propagate(e);
             }
-        }
-
-    }
-
-    private static class FastByteArrayOutputStream extends ByteArrayOutputStream {
-
-        public FastByteArrayOutputStream() {
-            super(16 * 1024);
-        }
-
-        public int size() {
-            return super.count;
-        }
-
-        public byte[] bytes() {
-            return super.buf;
+            try {
+                long sequence = in.readLong();
+                Node node = FormatCommonV2.readNode(in);
+                return new IndexEntry(hash, sequence, node);
+            } catch (Exception e) {
+                Closeables.closeQuietly(in);
+                throw Throwables.propagate(e);
+            }
         }
     }
-
 }
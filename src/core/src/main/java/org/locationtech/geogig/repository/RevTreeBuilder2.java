@@ -81,7 +81,7 @@ class RevTreeBuilder2 {
      * @param key non null
      * @param value non null
      */
-    public synchronized RevTreeBuilder2 put(final Node node) {
+    public RevTreeBuilder2 put(final Node node) {
         Preconditions.checkNotNull(node, "node can't be null");
         nodeIndex.add(node);
         return this;
@@ -103,15 +103,9 @@ class RevTreeBuilder2 {
         RevTreeBuilder builder;
         try {
             builder = new RevTreeBuilder(db, original);
+            // the index returns the nodes in storage order, so buckets can be built as they come
             Iterator<Node> nodes = nodeIndex.nodes();
-            while (nodes.hasNext()) {
-                Node node = nodes.next();
-                if (node.getObjectId().isNull()) {
-                    builder.remove(node.getName());
-                } else {
-                    builder.put(node);
-                }
-            }
+            builder.putAllSorted(nodes);
         } catch (RuntimeException e) {
             e.printStackTrace();
             throw e;
@@ -78,6 +78,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -323,47 +324,35 @@ public class WorkingTree {
     }
 
     /**
+     * Deletes the features at the given paths from the working tree and updates the WORK_HEAD ref
+     * once per affected tree.
      * 
-     * @param features the features to delete
+     * @param features the paths of the features to delete
      */
     public void delete(Iterator<String> features) {
-        Map<String, RevTreeBuilder> parents = Maps.newHashMap();
-
-        final RevTree currentWorkHead = getTree();
+        WorkingTreeBuffer buffer = buffer();
         while (features.hasNext()) {
             String featurePath = features.next();
-            // System.err.println("removing " + feature);
-            String parentPath = NodeRef.parentPath(featurePath);
-            RevTreeBuilder parentTree;
-            if (parents.containsKey(parentPath)) {
-                parentTree = parents.get(parentPath);
-            } else {
-                parentTree = context.command(FindOrCreateSubtree.class).setIndex(true)
-                        .setParent(Suppliers.ofInstance(Optional.of(currentWorkHead)))
-                        .setChildPath(parentPath).call().builder(indexDatabase);
-                parents.put(parentPath, parentTree);
-            }
-            String featureName = NodeRef.nodeFromPath(featurePath);
-            parentTree.remove(featureName);
+            buffer.delete(NodeRef.parentPath(featurePath), NodeRef.nodeFromPath(featurePath));
         }
-        ObjectId newTree = null;
-        for (Map.Entry<String, RevTreeBuilder> entry : parents.entrySet()) {
-            String path = entry.getKey();
+        buffer.flush();
+    }
 
-            RevTreeBuilder parentTree = entry.getValue();
-            RevTree newTypeTree = parentTree.build();
+    /**
+     * @return a new buffer to batch single feature inserts and deletes on this working tree,
+     *         flushing them every {@link WorkingTreeBuffer#DEFAULT_FLUSH_THRESHOLD} changes
+     * @see #buffer(int)
+     */
+    public WorkingTreeBuffer buffer() {
+        return buffer(WorkingTreeBuffer.DEFAULT_FLUSH_THRESHOLD);
+    }
 
-            ObjectId metadataId = null;
-            Optional<NodeRef> currentTreeRef = context.command(FindTreeChild.class).setIndex(true)
-                    .setParent(currentWorkHead).setChildPath(path).call();
-            if (currentTreeRef.isPresent()) {
-                metadataId = currentTreeRef.get().getMetadataId();
-            }
-            newTree = context.command(WriteBack.class).setAncestor(getTreeSupplier())
-                    .setChildPath(path).setToIndex(true).setTree(newTypeTree)
-                    .setMetadataId(metadataId).call();
-            updateWorkHead(newTree);
-        }
+    /**
+     * @param flushThreshold the number of buffered changes after which they're flushed
+     * @return a new buffer to batch single feature inserts and deletes on this working tree
+     */
+    public WorkingTreeBuffer buffer(int flushThreshold) {
+        return new WorkingTreeBuffer(this, context, flushThreshold);
     }
 
     public synchronized NodeRef createTypeTree(final String treePath, final FeatureType featureType) {
@@ -444,6 +433,52 @@ public class WorkingTree {
             @SuppressWarnings("rawtypes") final FeatureSource source, final Query query,
             ProgressListener listener) {
 
+        RevTree newFeatureTree = buildTree(treePath, source, query, listener);
+        writeBack(ImmutableMap.of(treePath, newFeatureTree));
+    }
+
+    /**
+     * Builds a new version of the feature tree at {@code treePath} with the features of
+     * {@code source} added to it, but doesn't write it back to the working tree. The feature tree
+     * is created first if it doesn't exist.
+     * <p>
+     * This method can be called concurrently for different tree paths, and the resulting trees
+     * written back all at once with {@link #writeBack(Map)}.
+     * 
+     * @param treePath the path of the feature tree to insert the features into
+     * @param source the features to insert
+     * @param query currently unused
+     * @param listener a {@link ProgressListener} for the current process
+     * @return the new feature tree
+     */
+    public RevTree buildTree(final String treePath,
+            @SuppressWarnings("rawtypes") final FeatureSource source, final Query query,
+            ProgressListener listener) {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(
+                2 + fetchThreads(source),
+                new ThreadFactoryBuilder().setNameFormat("WorkingTree-tree-builder-%d").build());
+        try {
+            return buildTree(treePath, source, query, listener, executorService);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Builds a new version of the feature tree at {@code treePath} like
+     * {@link #buildTree(String, FeatureSource, Query, ProgressListener)} does, fetching the
+     * features and building the tree on the given executor service instead of a new one, so that
+     * trees built concurrently can share a single thread pool. The executor service is not shut
+     * down.
+     * <p>
+     * The calling thread waits for the tasks submitted to the executor service, so it shall not be
+     * one of its threads.
+     */
+    public RevTree buildTree(final String treePath,
+            @SuppressWarnings("rawtypes") final FeatureSource source, final Query query,
+            ProgressListener listener, final ExecutorService executorService) {
+
         final NodeRef treeRef = findOrCreateTypeTree(treePath, source);
 
         Long collectionSize = null;
@@ -457,22 +492,7 @@ public class WorkingTree {
             throw Throwables.propagate(e);
         }
 
-        final int nFetchThreads;
-        {
-            // maxFeatures is assumed to be supported by all data sources, so supportsPaging depends
-            // only on offset being supported
-            boolean supportsPaging = source.getQueryCapabilities().isOffsetSupported();
-            if (supportsPaging) {
-                Platform platform = context.platform();
-                int availableProcessors = platform.availableProcessors();
-                nFetchThreads = Math.max(2, availableProcessors / 2);
-            } else {
-                nFetchThreads = 1;
-            }
-        }
-
-        final ExecutorService executorService = Executors.newFixedThreadPool(2 + nFetchThreads,
-                new ThreadFactoryBuilder().setNameFormat("WorkingTree-tree-builder-%d").build());
+        final int nFetchThreads = fetchThreads(source);
 
         listener.started();
 
@@ -506,15 +526,54 @@ public class WorkingTree {
 
         } catch (Exception e) {
             throw Throwables.propagate(Throwables.getRootCause(e));
-        } finally {
-            executorService.shutdown();
         }
-        ObjectId newTree = context.command(WriteBack.class).setAncestor(getTreeSupplier())
-                .setChildPath(treePath).setMetadataId(treeRef.getMetadataId()).setToIndex(true)
-                .setTree(newFeatureTree).call();
+        return newFeatureTree;
+    }
 
-        updateWorkHead(newTree);
+    /**
+     * @return the number of concurrent tasks to fetch the features of {@code source} with
+     */
+    private int fetchThreads(@SuppressWarnings("rawtypes") final FeatureSource source) {
+        // maxFeatures is assumed to be supported by all data sources, so supportsPaging depends
+        // only on offset being supported
+        boolean supportsPaging = source.getQueryCapabilities().isOffsetSupported();
+        if (supportsPaging) {
+            Platform platform = context.platform();
+            int availableProcessors = platform.availableProcessors();
+            return Math.max(2, availableProcessors / 2);
+        }
+        return 1;
+    }
+
+    /**
+     * Replaces the feature trees at the given paths by the given trees, keeping their default
+     * feature type, and updates the WORK_HEAD ref once for all of them.
+     * 
+     * @param featureTrees the new feature trees, keyed by tree path
+     * @see #buildTree(String, FeatureSource, Query, ProgressListener)
+     */
+    public synchronized void writeBack(final Map<String, RevTree> featureTrees) {
+        if (featureTrees.isEmpty()) {
+            return;
+        }
+        final RevTree workHead = getTree();
+        final RevTreeBuilder root = workHead.builder(indexDatabase);
 
+        ObjectId newWorkHead = workHead.getId();
+        for (Map.Entry<String, RevTree> entry : featureTrees.entrySet()) {
+            final String treePath = entry.getKey();
+            ObjectId metadataId = null;
+            Optional<NodeRef> treeRef = context.command(FindTreeChild.class).setIndex(true)
+                    .setParent(workHead).setChildPath(treePath).call();
+            if (treeRef.isPresent()) {
+                metadataId = treeRef.get().getMetadataId();
+            }
+            // the same root builder accumulates all the trees
+            newWorkHead = context.command(WriteBack.class).setAncestor(root)
+                    .setChildPath(treePath).setMetadataId(metadataId).setToIndex(true)
+                    .setTree(entry.getValue()).call();
+        }
+        updateWorkHead(newWorkHead);
     }
 
     private NodeRef findOrCreateTypeTree(final String treePath,
@@ -0,0 +1,241 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.repository;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureBuilder;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.FindOrCreateSubtree;
+import org.locationtech.geogig.api.plumbing.FindTreeChild;
+import org.locationtech.geogig.api.plumbing.WriteBack;
+import org.locationtech.geogig.storage.StagingDatabase;
+import org.opengis.feature.Feature;
+import org.opengis.feature.type.FeatureType;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Buffers single feature inserts and deletes on the {@link WorkingTree}, and applies them on
+ * {@link #flush()} with a single {@link RevTreeBuilder} pass per feature tree and a single
+ * {@code WORK_HEAD} update per tree, instead of rebuilding the feature tree and writing back the
+ * root tree on each change as {@link WorkingTree#insert(String, Feature)} and
+ * {@link WorkingTree#delete(String, String)} do.
+ * <p>
+ * The buffered changes are not visible in the working tree until flushed, which happens
+ * automatically every {@link #getFlushThreshold() flushThreshold} changes. A buffer is meant to
+ * be used by a single thread for a single batch of edits, like a feature writer, and
+ * {@link #flush() flushed} when done.
+ *
+ * @see WorkingTree#buffer()
+ */
+public class WorkingTreeBuffer {
+
+    /**
+     * Default number of buffered changes after which they're flushed to the working tree
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 10_000;
+
+    private final WorkingTree workingTree;
+
+    private final Context context;
+
+    private final StagingDatabase indexDatabase;
+
+    private final int flushThreshold;
+
+    /**
+     * The buffered changes, keyed by tree path and then by feature name, the node to put or
+     * {@link Optional#absent() absent} for a feature to remove
+     */
+    private final Map<String, Map<String, Optional<Node>>> changes = Maps.newLinkedHashMap();
+
+    private final List<RevFeature> features = Lists.newArrayList();
+
+    /**
+     * The default metadata id of the feature trees written to so far
+     */
+    private final Map<String, ObjectId> treeMetadataIds = Maps.newHashMap();
+
+    private final Map<FeatureType, ObjectId> featureTypeIds = Maps.newHashMap();
+
+    private int size;
+
+    WorkingTreeBuffer(WorkingTree workingTree, Context context, int flushThreshold) {
+        checkArgument(flushThreshold > 0, "flushThreshold shall be > 0");
+        this.workingTree = workingTree;
+        this.context = context;
+        this.indexDatabase = context.stagingDatabase();
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * @return the number of buffered changes after which they're flushed to the working tree
+     */
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * @return the number of changes buffered and not flushed yet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Buffers the insert or update of a single feature. The feature tree is created right away if
+     * it doesn't exist.
+     *
+     * @param parentTreePath path of the parent tree to insert the feature into
+     * @param feature the feature to insert
+     * @return the node for the feature, as it will be in the working tree once flushed
+     */
+    public Node insert(final String parentTreePath, final Feature feature) {
+        checkNotNull(parentTreePath);
+        checkNotNull(feature);
+
+        final ObjectId treeMetadataId = treeMetadataId(parentTreePath, feature.getType());
+        final ObjectId featureTypeId = featureTypeId(feature.getType());
+        final ObjectId metadataId = featureTypeId.equals(treeMetadataId) ? ObjectId.NULL
+                : featureTypeId;
+
+        final RevFeature revFeature = RevFeatureBuilder.build(feature);
+        final Envelope bounds = (ReferencedEnvelope) feature.getBounds();
+        final String nodeName = feature.getIdentifier().getID();
+        final Node node = Node.create(nodeName, revFeature.getId(), metadataId, TYPE.FEATURE,
+                bounds);
+
+        features.add(revFeature);
+        add(parentTreePath, nodeName, Optional.of(node));
+        return node;
+    }
+
+    /**
+     * Buffers the removal of a single feature, if it exists by the time the buffer is flushed.
+     *
+     * @param parentTreePath the path of the tree containing the feature
+     * @param featureId the id of the feature
+     */
+    public void delete(final String parentTreePath, final String featureId) {
+        checkNotNull(parentTreePath);
+        checkNotNull(featureId);
+        add(parentTreePath, featureId, Optional.<Node> absent());
+    }
+
+    private void add(String treePath, String featureName, Optional<Node> change) {
+        Map<String, Optional<Node>> treeChanges = changes.get(treePath);
+        if (treeChanges == null) {
+            treeChanges = Maps.newHashMap();
+            changes.put(treePath, treeChanges);
+        }
+        if (treeChanges.put(featureName, change) == null) {
+            size++;
+        }
+        if (size >= flushThreshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies the buffered changes to the working tree and updates the {@code WORK_HEAD} ref.
+     */
+    public void flush() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        indexDatabase.putAll(features.iterator());
+        synchronized (workingTree) {
+            for (Map.Entry<String, Map<String, Optional<Node>>> entry : changes.entrySet()) {
+                flush(entry.getKey(), entry.getValue());
+            }
+        }
+        features.clear();
+        changes.clear();
+        size = 0;
+    }
+
+    private void flush(final String treePath, final Map<String, Optional<Node>> treeChanges) {
+        final RevTree workHead = workingTree.getTree();
+
+        ObjectId metadataId = null;
+        Optional<NodeRef> treeRef = context.command(FindTreeChild.class).setIndex(true)
+                .setParent(workHead).setChildPath(treePath).call();
+        if (treeRef.isPresent()) {
+            metadataId = treeRef.get().getMetadataId();
+        }
+
+        RevTreeBuilder treeBuilder = context.command(FindOrCreateSubtree.class).setIndex(true)
+                .setParent(Suppliers.ofInstance(Optional.of(workHead))).setChildPath(treePath)
+                .call().builder(indexDatabase);
+
+        for (Map.Entry<String, Optional<Node>> change : treeChanges.entrySet()) {
+            Optional<Node> node = change.getValue();
+            if (node.isPresent()) {
+                treeBuilder.put(node.get());
+            } else {
+                treeBuilder.remove(change.getKey());
+            }
+        }
+
+        ObjectId newWorkHead = context.command(WriteBack.class)
+                .setAncestor(workHead.builder(indexDatabase)).setChildPath(treePath)
+                .setToIndex(true).setMetadataId(metadataId).setTree(treeBuilder.build()).call();
+        workingTree.updateWorkHead(newWorkHead);
+    }
+
+    private ObjectId treeMetadataId(String treePath, FeatureType featureType) {
+        ObjectId metadataId = treeMetadataIds.get(treePath);
+        if (metadataId == null) {
+            Optional<NodeRef> treeRef = context.command(FindTreeChild.class).setIndex(true)
+                    .setParent(workingTree.getTree()).setChildPath(treePath).call();
+            NodeRef typeTreeRef;
+            if (treeRef.isPresent()) {
+                typeTreeRef = treeRef.get();
+            } else {
+                typeTreeRef = workingTree.createTypeTree(treePath, featureType);
+            }
+            metadataId = typeTreeRef.getMetadataId();
+            treeMetadataIds.put(treePath, metadataId);
+        }
+        return metadataId;
+    }
+
+    private ObjectId featureTypeId(FeatureType featureType) {
+        ObjectId featureTypeId = featureTypeIds.get(featureType);
+        if (featureTypeId == null) {
+            RevFeatureType revType = RevFeatureTypeImpl.build(featureType);
+            featureTypeId = revType.getId();
+            if (!indexDatabase.exists(featureTypeId)) {
+                indexDatabase.put(revType);
+            }
+            featureTypeIds.put(featureType, featureTypeId);
+        }
+        return featureTypeId;
+    }
+}
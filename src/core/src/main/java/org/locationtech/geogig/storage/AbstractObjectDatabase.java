@@ -27,8 +27,13 @@ import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
@@ -233,6 +238,63 @@ public abstract class AbstractObjectDatabase implements ObjectDatabase {
         }
     }
 
+    /**
+     * @return the format of the objects as stored through {@link #putInternal(ObjectId, byte[])},
+     *         that is, serialized by the {@link #serializationFactory} and LZF compressed
+     */
+    @Override
+    public Optional<String> getRawFormat() {
+        return Optional.of(RawObject.format(serializationFactory, true));
+    }
+
+    /**
+     * This default implementation calls {@link #getRawInternal(ObjectId, boolean)} for each id;
+     * subclasses may override if appropriate.
+     */
+    @Override
+    public Iterator<RawObject> getAllRaw(final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        Iterator<RawObject> objects = Iterators.transform(ids.iterator(),
+                new Function<ObjectId, RawObject>() {
+                    @Override
+                    public RawObject apply(ObjectId id) {
+                        InputStream in = getRawInternal(id, false);
+                        if (in == null) {
+                            listener.notFound(id);
+                            return null;
+                        }
+                        byte[] data;
+                        try {
+                            data = ByteStreams.toByteArray(in);
+                        } catch (IOException e) {
+                            throw Throwables.propagate(e);
+                        } finally {
+                            Closeables.closeQuietly(in);
+                        }
+                        listener.found(id, data.length);
+                        return new RawObject(id, data);
+                    }
+                });
+        return Iterators.filter(objects, Predicates.notNull());
+    }
+
+    /**
+     * This default implementation calls {@link #putInternal(ObjectId, byte[])} for each object;
+     * subclasses may override if appropriate.
+     */
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RawObject object = objects.next();
+            final boolean added = putInternal(object.getId(), object.getData());
+            if (added) {
+                listener.inserted(object.getId(), object.getData().length);
+            } else {
+                listener.found(object.getId(), null);
+            }
+        }
+    }
+
     protected void writeObject(RevObject object, OutputStream target) {
 
         ObjectWriter<RevObject> writer = serializationFactory.createObjectWriter(object.getType());
@@ -9,12 +9,21 @@
  */
 package org.locationtech.geogig.storage;
 
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Striped;
 
 /**
  * Provides a base implementation for different representations of the {@link RefDatabase}.
@@ -23,7 +32,16 @@ import com.google.common.base.Throwables;
  */
 public abstract class AbstractRefDatabase implements RefDatabase {
 
-    Lock lock = new ReentrantLock();
+    /**
+     * The write lock is the repository wide lock, the read lock is held by the
+     * {@link #compareAndSet} calls so that they run concurrently unless the refs are locked
+     */
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Per ref locks for {@link #compareAndSet}
+     */
+    private final Striped<Lock> refLocks = Striped.lock(64);
 
     /**
      * Locks access to the main repository refs.
@@ -32,21 +50,101 @@ public abstract class AbstractRefDatabase implements RefDatabase {
      */
     @Override
     public final void lock() throws TimeoutException {
+        tryLock(lock.writeLock());
+    }
+
+    /**
+     * Unlocks access to the main repository refs.
+     */
+    @Override
+    public final void unlock() {
+        lock.writeLock().unlock();
+    }
+
+    private static void tryLock(Lock lock) throws TimeoutException {
         try {
             if (!lock.tryLock(30, TimeUnit.SECONDS)) {
                 throw new TimeoutException("The attempt to lock the database timed out.");
             }
         } catch (InterruptedException e) {
-            Throwables.propagate(e);
+            throw Throwables.propagate(e);
         }
     }
 
     /**
-     * Unlocks access to the main repository refs.
+     * Checks and updates the ref through {@link #getRef} and {@link #putRef} holding a lock for
+     * that ref only, subclasses may override if they can do it atomically by other means.
      */
     @Override
-    public final void unlock() {
-        lock.unlock();
+    public boolean compareAndSet(final String refName, @Nullable final String expectedValue,
+            final String newValue) {
+        try {
+            tryLock(lock.readLock());
+        } catch (TimeoutException e) {
+            throw Throwables.propagate(e);
+        }
+        try {
+            // per ref critical sections are short, no need for a timeout
+            final Lock refLock = refLocks.get(refName);
+            refLock.lock();
+            try {
+                String currentValue = getRef(refName);
+                if (!Objects.equal(expectedValue, currentValue)) {
+                    return false;
+                }
+                putRef(refName, newValue);
+                return true;
+            } finally {
+                refLock.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the refs one by one through {@link #putRef} and {@link #putSymRef}, subclasses are
+     * encouraged to override if they can store them all at once.
+     */
+    @Override
+    public void putAll(Map<String, String> refs) {
+        for (Entry<String, String> entry : refs.entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+            if (isSymRefValue(value)) {
+                putSymRef(name, symRefTarget(value));
+            } else {
+                putRef(name, value);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code refValue} is the value of a symbolic ref as returned by
+     *         {@link #getAll()}, that is, the name of its target ref instead of an object id
+     */
+    protected static boolean isSymRefValue(String refValue) {
+        if (refValue.startsWith("ref: ")) {
+            return true;
+        }
+        if (refValue.length() != 2 * ObjectId.NUM_BYTES) {
+            return true;
+        }
+        for (int i = 0; i < refValue.length(); i++) {
+            if (Character.digit(refValue.charAt(i), 16) == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name of the target ref of a symbolic ref value, stripping out the
+     *         {@code "ref: "} prefix if present
+     */
+    protected static String symRefTarget(String symRefValue) {
+        return symRefValue.startsWith("ref: ") ? symRefValue.substring("ref: ".length())
+                : symRefValue;
     }
 
 }
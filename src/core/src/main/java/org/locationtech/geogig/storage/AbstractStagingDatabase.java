@@ -25,6 +25,7 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.inject.Inject;
 
@@ -133,6 +134,25 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
         stagingDb.putAll(objects, listener);
     }
 
+    @Override
+    public Optional<String> getRawFormat() {
+        return StagingDbCompositionHelper.getRawFormat(repositoryDb, stagingDb);
+    }
+
+    @Override
+    public Iterator<RawObject> getAllRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        if (!getRawFormat().isPresent()) {
+            throw new UnsupportedOperationException(
+                    "Staging and repository databases have different raw formats");
+        }
+        return StagingDbCompositionHelper.getAllRaw(repositoryDb, stagingDb, ids, listener);
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        stagingDb.putAllRaw(objects, listener);
+    }
+
     @Override
     public long deleteAll(Iterator<ObjectId> ids) {
         return deleteAll(ids, BulkOpListener.NOOP_LISTENER);
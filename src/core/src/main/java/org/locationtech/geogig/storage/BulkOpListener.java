@@ -65,6 +65,33 @@ public abstract class BulkOpListener {
         // no-op
     }
 
+    /**
+     * Hint for {@link ObjectDatabase#putAll(java.util.Iterator, BulkOpListener)} and
+     * {@link ObjectDatabase#putAllRaw(java.util.Iterator, BulkOpListener)} telling whether the
+     * inserted objects only need to be durable once the whole operation finished, as when cloning
+     * into an empty repository, where a failure halfway is dealt with by starting over. Object
+     * databases that can't make use of it ignore it.
+     * 
+     * @return {@code false} by default
+     * @see #deferDurability(BulkOpListener)
+     */
+    public boolean isDurabilityDeferred() {
+        return false;
+    }
+
+    /**
+     * @return a listener that forwards to {@code listener} and tells the object database that the
+     *         durability of the inserted objects can be {@link #isDurabilityDeferred() deferred}
+     */
+    public static BulkOpListener deferDurability(final BulkOpListener listener) {
+        return new ForwardingListener(listener) {
+            @Override
+            public boolean isDurabilityDeferred() {
+                return true;
+            }
+        };
+    }
+
     public static CountingListener newCountingListener() {
         return new CountingListener();
     }
@@ -103,6 +130,11 @@ public abstract class BulkOpListener {
                 b1.notFound(id);
                 b2.notFound(id);
             }
+
+            @Override
+            public boolean isDurabilityDeferred() {
+                return b1.isDurabilityDeferred() || b2.isDurabilityDeferred();
+            }
         };
     }
 
@@ -132,6 +164,11 @@ public abstract class BulkOpListener {
         public void notFound(ObjectId id) {
             target.notFound(id);
         }
+
+        @Override
+        public boolean isDurabilityDeferred() {
+            return target.isDurabilityDeferred();
+        }
     }
 
     public static class CountingListener extends BulkOpListener {
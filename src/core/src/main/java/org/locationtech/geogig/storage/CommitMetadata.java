@@ -0,0 +1,195 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * The subset of a {@link RevCommit}'s information needed to walk and filter the history, namely
+ * its parents, committer timestamp, and author and committer names.
+ * <p>
+ * The metadata of every commit added to the object database is stored as a property of the
+ * commit node in the {@link GraphDatabase}, so that history traversals can order and filter
+ * commits with a single graph lookup each, and only fetch and decode the full commits they
+ * return.
+ */
+public final class CommitMetadata {
+
+    /**
+     * Orders commits by committer timestamp, most recent first, and then by id
+     */
+    public static final Comparator<CommitMetadata> MOST_RECENT_FIRST = new Comparator<CommitMetadata>() {
+        @Override
+        public int compare(CommitMetadata c1, CommitMetadata c2) {
+            if (c1.committerTimestamp != c2.committerTimestamp) {
+                return c1.committerTimestamp > c2.committerTimestamp ? -1 : 1;
+            }
+            return c1.id.compareTo(c2.id);
+        }
+    };
+
+    /**
+     * Name of the commit graph node property holding the metadata
+     */
+    private static final String GRAPH_PROPERTY = "commitMetadata";
+
+    /**
+     * Version of the encoded metadata, metadata with a different version is ignored
+     */
+    private static final String VERSION = "1";
+
+    private final ObjectId id;
+
+    private final ImmutableList<ObjectId> parentIds;
+
+    private final long committerTimestamp;
+
+    private final Optional<String> authorName;
+
+    private final Optional<String> committerName;
+
+    private CommitMetadata(ObjectId id, ImmutableList<ObjectId> parentIds,
+            long committerTimestamp, Optional<String> authorName, Optional<String> committerName) {
+        this.id = id;
+        this.parentIds = parentIds;
+        this.committerTimestamp = committerTimestamp;
+        this.authorName = authorName;
+        this.committerName = committerName;
+    }
+
+    /**
+     * @return the metadata of the given commit
+     */
+    public static CommitMetadata of(RevCommit commit) {
+        return new CommitMetadata(commit.getId(), commit.getParentIds(), commit.getCommitter()
+                .getTimestamp(), commit.getAuthor().getName(), commit.getCommitter().getName());
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public ImmutableList<ObjectId> getParentIds() {
+        return parentIds;
+    }
+
+    public long getCommitterTimestamp() {
+        return committerTimestamp;
+    }
+
+    public Optional<String> getAuthorName() {
+        return authorName;
+    }
+
+    public Optional<String> getCommitterName() {
+        return committerName;
+    }
+
+    /**
+     * @return the stored metadata of the given commit, or {@link Optional#absent() absent} if it
+     *         hasn't been stored
+     */
+    public static Optional<CommitMetadata> read(GraphDatabase graphDb, ObjectId commitId) {
+        Optional<String> encoded = graphDb.getProperty(commitId, GRAPH_PROPERTY);
+        if (!encoded.isPresent()) {
+            return Optional.absent();
+        }
+        return decode(commitId, encoded.get());
+    }
+
+    /**
+     * Stores this metadata as a property of the commit node, which must already be in the graph
+     */
+    public void write(GraphDatabase graphDb) {
+        graphDb.setProperty(id, GRAPH_PROPERTY, encode());
+    }
+
+    String encode() {
+        return Joiner.on(';').join(VERSION, Long.toString(committerTimestamp),
+                Joiner.on(',').join(parentIds), encodeName(authorName),
+                encodeName(committerName));
+    }
+
+    static Optional<CommitMetadata> decode(ObjectId commitId, String encoded) {
+        checkNotNull(commitId);
+        // keep trailing empty strings for absent names
+        String[] parts = encoded.split(";", -1);
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            return Optional.absent();
+        }
+        try {
+            long timestamp = Long.parseLong(parts[1]);
+            ImmutableList.Builder<ObjectId> parents = ImmutableList.builder();
+            if (!parts[2].isEmpty()) {
+                for (String parent : parts[2].split(",")) {
+                    parents.add(ObjectId.valueOf(parent));
+                }
+            }
+            return Optional.of(new CommitMetadata(commitId, parents.build(), timestamp,
+                    decodeName(parts[3]), decodeName(parts[4])));
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Names are base64 encoded to allow any character in them, and prefixed with {@code =} to
+     * tell an empty name from an absent one
+     */
+    private static String encodeName(Optional<String> name) {
+        if (!name.isPresent()) {
+            return "";
+        }
+        return "=" + BaseEncoding.base64().encode(name.get().getBytes(Charsets.UTF_8));
+    }
+
+    private static Optional<String> decodeName(String encoded) {
+        if (encoded.isEmpty()) {
+            return Optional.absent();
+        }
+        checkArgument(encoded.charAt(0) == '=', "Invalid encoded name: %s", encoded);
+        byte[] bytes = BaseEncoding.base64().decode(encoded.substring(1));
+        return Optional.of(new String(bytes, Charsets.UTF_8));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CommitMetadata)) {
+            return false;
+        }
+        CommitMetadata m = (CommitMetadata) o;
+        return id.equals(m.id) && parentIds.equals(m.parentIds)
+                && committerTimestamp == m.committerTimestamp && authorName.equals(m.authorName)
+                && committerName.equals(m.committerName);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CommitMetadata[" + id + ", parents: " + parentIds + ", timestamp: "
+                + committerTimestamp + "]";
+    }
+}
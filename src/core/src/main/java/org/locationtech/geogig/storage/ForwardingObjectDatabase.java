@@ -21,6 +21,7 @@ import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
+import com.google.common.base.Optional;
 import com.google.inject.Provider;
 
 public class ForwardingObjectDatabase implements ObjectDatabase {
@@ -148,6 +149,21 @@ public class ForwardingObjectDatabase implements ObjectDatabase {
         subject.get().putAll(objects, listener);
     }
 
+    @Override
+    public Optional<String> getRawFormat() {
+        return subject.get().getRawFormat();
+    }
+
+    @Override
+    public Iterator<RawObject> getAllRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return subject.get().getAllRaw(ids, listener);
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        subject.get().putAllRaw(objects, listener);
+    }
+
     @Override
     public long deleteAll(Iterator<ObjectId> ids) {
         return deleteAll(ids);
@@ -17,6 +17,7 @@ import org.locationtech.geogig.di.Singleton;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 @Beta
@@ -178,6 +179,16 @@ public interface GraphDatabase extends Closeable {
      */
     public void setProperty(ObjectId commitId, String propertyName, String propertyValue);
 
+    /**
+     * Gets a property of the provided commit node.
+     * 
+     * @param commitId the id of the commit
+     * @param propertyName the name of the property
+     * @return the value of the property, or {@link Optional#absent() absent} if the property is
+     *         not set or the commit is not in the graph
+     */
+    public Optional<String> getProperty(ObjectId commitId, String propertyName);
+
     public GraphNode getNode(ObjectId id);
 
     public void truncate();
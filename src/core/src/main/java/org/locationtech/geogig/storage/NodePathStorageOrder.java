@@ -18,6 +18,7 @@ import org.locationtech.geogig.api.RevTree;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.UnsignedLong;
+import com.google.common.primitives.UnsignedLongs;
 
 /**
  * Implements storage order of {@link Node} based on the non cryptographic 64-bit <a
@@ -88,10 +89,27 @@ public final class NodePathStorageOrder extends Ordering<String> implements Seri
     }
 
     public UnsignedLong hashCodeLong(String name) {
-        UnsignedLong fnv = FNV1a64bitHash.fnv(name);
+        UnsignedLong fnv = UnsignedLong.fromLongBits(FNV1a64bitHash.fnv(name));
         return fnv;
     }
 
+    /**
+     * Computes the same hash code than {@link #hashCodeLong(String)} as a primitive long, so that
+     * callers that compare lots of node names can compute each hash once and then compare them
+     * with {@link #compareHashCodes(long, long)} without further allocations.
+     */
+    public static long hashCodeBits(String name) {
+        return FNV1a64bitHash.fnv(name);
+    }
+
+    /**
+     * Compares two hash codes computed by {@link #hashCodeBits(String)} as unsigned values, which
+     * is the storage order of the nodes they were computed for unless they're equal
+     */
+    public static int compareHashCodes(long hashCode1, long hashCode2) {
+        return UnsignedLongs.compare(hashCode1, hashCode2);
+    }
+
     /**
      * The FNV-1a hash function used as {@link Node} storage order.
      */
@@ -99,21 +117,18 @@ public final class NodePathStorageOrder extends Ordering<String> implements Seri
 
         private static final long serialVersionUID = -1931193743208260766L;
 
-        private static final UnsignedLong FNV64_OFFSET_BASIS = UnsignedLong
-                .valueOf("14695981039346656037");
+        private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
 
-        private static final UnsignedLong FNV64_PRIME = UnsignedLong.valueOf("1099511628211");
+        private static final long FNV64_PRIME = 0x100000001b3L;
 
         public int compare(final String p1, final String p2) {
-            UnsignedLong hash1 = fnv(p1);
-            UnsignedLong hash2 = fnv(p2);
-            return hash1.compareTo(hash2);
+            return UnsignedLongs.compare(fnv(p1), fnv(p2));
         }
 
-        private static UnsignedLong fnv(CharSequence chars) {
+        private static long fnv(CharSequence chars) {
             final int length = chars.length();
 
-            UnsignedLong hash = FNV64_OFFSET_BASIS;
+            long hash = FNV64_OFFSET_BASIS;
 
             for (int i = 0; i < length; i++) {
                 char c = chars.charAt(i);
@@ -125,21 +140,10 @@ public final class NodePathStorageOrder extends Ordering<String> implements Seri
             return hash;
         }
 
-        private static UnsignedLong update(UnsignedLong hash, final byte octet) {
-            // it's ok to use the signed long value here, its a bitwise operation anyways, and its
-            // on the lower byte of the long value
-            final long longValue = hash.longValue();
-            final long bits = longValue ^ octet;
-
-            // System.err.println("hash : " + Long.toBinaryString(longValue));
-            // System.err.println("xor  : " + Long.toBinaryString(bits));
-            // System.err.println("octet: " + Integer.toBinaryString(octet));
-
-            // convert back to unsigned long
-            hash = UnsignedLong.fromLongBits(bits);
-            // multiply by prime
-            hash = hash.times(FNV64_PRIME);
-            return hash;
+        private static long update(final long hash, final byte octet) {
+            // the octet is sign extended as in the original implementation, and the
+            // multiplication overflow is the same for signed and unsigned 64-bit values
+            return (hash ^ octet) * FNV64_PRIME;
         }
 
         /**
@@ -149,7 +153,7 @@ public final class NodePathStorageOrder extends Ordering<String> implements Seri
         public int byteN(final String nodeName, final int depth) {
             Preconditions.checkArgument(depth < 8, "depth too deep: %s", Integer.valueOf(depth));
 
-            final long longBits = fnv(nodeName).longValue();
+            final long longBits = fnv(nodeName);
 
             final int displaceBits = 8 * (7 - depth);// how many bits to right shift longBits to get
                                                      // the byte N
@@ -25,12 +25,22 @@ import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.di.Singleton;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
+import com.google.common.base.Optional;
+
 /**
  * Provides an interface for implementations of GeoGig object databases.
  */
 @Singleton
 public interface ObjectDatabase extends Closeable {
 
+    /**
+     * Repository config key set by the object databases where each read is a blocking disk or
+     * network access, for the commands that traverse whole trees to prefetch them
+     *
+     * @see org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator#setPrefetch(boolean)
+     */
+    public static final String PREFETCH_CONFIG_KEY = "storage.prefetch";
+
     /**
      * Opens the database. It's safe to call this method multiple times, and only the first call
      * shall take effect.
@@ -200,6 +210,48 @@ public interface ObjectDatabase extends Closeable {
      */
     public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener);
 
+    /**
+     * Identifies the format of the {@link RawObject raw objects} returned by
+     * {@link #getAllRaw(Iterable, BulkOpListener)} and accepted by
+     * {@link #putAllRaw(Iterator, BulkOpListener)}, namely the serialization format and
+     * compression of the objects as stored by this database. Objects can only be transferred in
+     * raw form between databases with the same raw format.
+     * 
+     * @return the raw format identifier, or {@link Optional#absent() absent} if this database
+     *         doesn't support raw access to its objects
+     */
+    public Optional<String> getRawFormat();
+
+    /**
+     * Query method to retrieve a collection of objects from the database in
+     * {@link #getRawFormat() raw format}, without decoding them.
+     * <p>
+     * The listener is notified the same way as for {@link #getAll(Iterable, BulkOpListener)}.
+     * 
+     * @param ids the ids of the objects to retrieve
+     * @param listener a listener that gets notified of {@link BulkOpListener#found found} and
+     *        {@link BulkOpListener#notFound(ObjectId) not found} items
+     * @return an iterator with the objects <b>found</b> on the database, in no particular order
+     * @throws UnsupportedOperationException if this database doesn't support raw access
+     */
+    public Iterator<RawObject> getAllRaw(Iterable<ObjectId> ids, BulkOpListener listener);
+
+    /**
+     * Requests to insert all the objects, given in {@link #getRawFormat() raw format}, into the
+     * object database without decoding them. The objects must have been obtained from a database
+     * with the same raw format.
+     * <p>
+     * Objects already present shall not be inserted, and the listener is notified the same way as
+     * for {@link #putAll(Iterator, BulkOpListener)}. Since the objects are not decoded, this
+     * method shall not be used for commits or tags, whose insertion may need to update other
+     * databases (e.g. the {@link GraphDatabase}).
+     * 
+     * @param objects the raw objects to request for insertion into the object database
+     * @param listener a listener to get notifications of actually inserted objects
+     * @throws UnsupportedOperationException if this database doesn't support raw access
+     */
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener);
+
     /**
      * Shorthand for {@link #deleteAll(Iterator, BulkOpListener)} with
      * {@link BulkOpListener#NOOP_LISTENER} as second argument
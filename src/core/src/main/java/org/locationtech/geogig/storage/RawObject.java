@@ -0,0 +1,82 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Optional;
+
+/**
+ * An object as stored in an {@link ObjectDatabase}, that is, its id and its serialized and
+ * possibly compressed contents, in the database's {@link ObjectDatabase#getRawFormat() raw format}.
+ * <p>
+ * Raw objects allow to move objects between databases that share the same raw format without
+ * decoding and re-encoding them.
+ */
+public final class RawObject {
+
+    private final ObjectId id;
+
+    private final byte[] data;
+
+    public RawObject(ObjectId id, byte[] data) {
+        this.id = checkNotNull(id);
+        this.data = checkNotNull(data);
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * @return the object's contents in the raw format of the database it was obtained from. The
+     *         array is not copied and must not be modified.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the {@link ObjectDatabase#getRawFormat() raw format} identifier of databases storing
+     *         objects serialized by {@code serializer}, and compressed with LZF if
+     *         {@code lzfCompressed}
+     */
+    public static String format(ObjectSerializingFactory serializer, boolean lzfCompressed) {
+        String format = serializer.getClass().getName();
+        return lzfCompressed ? format + "+lzf" : format;
+    }
+
+    /**
+     * @return whether objects can be copied in raw form from {@code from} to {@code to}
+     */
+    public static boolean canTransfer(ObjectDatabase from, ObjectDatabase to) {
+        Optional<String> fromFormat = from.getRawFormat();
+        return fromFormat.isPresent() && fromFormat.equals(to.getRawFormat());
+    }
+
+    /**
+     * Copies the objects with the given ids from one database to the other, in raw form if both
+     * databases share the same raw format, or decoding and encoding them otherwise.
+     * <p>
+     * The listener gets notified of the objects {@link BulkOpListener#inserted inserted} into and
+     * {@link BulkOpListener#found already found} in the target database. Like
+     * {@link ObjectDatabase#putAllRaw}, this method shall not be used for commits or tags.
+     */
+    public static void transfer(ObjectDatabase from, ObjectDatabase to, Iterable<ObjectId> ids,
+            BulkOpListener listener) {
+        if (canTransfer(from, to)) {
+            to.putAllRaw(from.getAllRaw(ids, BulkOpListener.NOOP_LISTENER), listener);
+        } else {
+            to.putAll(from.getAll(ids), listener);
+        }
+    }
+}
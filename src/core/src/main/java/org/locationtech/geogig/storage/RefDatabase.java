@@ -13,6 +13,8 @@ import java.io.Closeable;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.di.Singleton;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
@@ -80,6 +82,33 @@ public interface RefDatabase extends Closeable {
      */
     public abstract void putSymRef(String name, String val);
 
+    /**
+     * Atomically sets the value of a ref only if its current value is the expected one.
+     * <p>
+     * Updates to different refs do not block each other, and none of them can happen while the
+     * repository refs are {@link #lock() locked}. Only calls to this method are atomic with regard
+     * to each other, refs updated through {@link #putRef} are not checked.
+     * 
+     * @param refName the name of the ref, which shall not be a symbolic ref
+     * @param expectedValue the value the ref is expected to have, or {@code null} if it's expected
+     *        not to exist
+     * @param newValue the new value of the ref
+     * @return {@code true} if the ref was updated, {@code false} if its current value didn't match
+     *         {@code expectedValue}
+     */
+    public abstract boolean compareAndSet(String refName, @Nullable String expectedValue,
+            String newValue);
+
+    /**
+     * Stores all the given references as a single batch operation, which implementations may
+     * perform more efficiently than storing them one by one.
+     * 
+     * @param refs the references to store, key'ed by ref name, with values as returned by
+     *        {@link #getAll()}: symbolic refs are the ones whose value is not an object id, and
+     *        their value is the name of the target ref, optionally prefixed by {@code "ref: "}
+     */
+    public abstract void putAll(Map<String, String> refs);
+
     /**
      * @param refName the name of the ref to remove (e.g. {@code "HEAD"},
      *        {@code "refs/remotes/origin"}, etc).
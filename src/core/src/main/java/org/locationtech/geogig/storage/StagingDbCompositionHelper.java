@@ -16,15 +16,65 @@ import java.util.List;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevObject;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 public class StagingDbCompositionHelper {
 
+    /**
+     * Strategy to fetch either decoded or raw objects from a database
+     */
+    private static interface Fetcher<T> {
+        public Iterator<T> getAll(ObjectDatabase db, Iterable<ObjectId> ids,
+                BulkOpListener listener);
+    }
+
+    private static final Fetcher<RevObject> OBJECTS = new Fetcher<RevObject>() {
+        @Override
+        public Iterator<RevObject> getAll(ObjectDatabase db, Iterable<ObjectId> ids,
+                BulkOpListener listener) {
+            return db.getAll(ids, listener);
+        }
+    };
+
+    private static final Fetcher<RawObject> RAW_OBJECTS = new Fetcher<RawObject>() {
+        @Override
+        public Iterator<RawObject> getAll(ObjectDatabase db, Iterable<ObjectId> ids,
+                BulkOpListener listener) {
+            return db.getAllRaw(ids, listener);
+        }
+    };
+
     public static Iterator<RevObject> getAll(final ObjectDatabase objectDb,
             final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
             final BulkOpListener listener) {
+        return getAll(objectDb, stagingDb, ids, listener, OBJECTS);
+    }
+
+    public static Iterator<RawObject> getAllRaw(final ObjectDatabase objectDb,
+            final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        return getAll(objectDb, stagingDb, ids, listener, RAW_OBJECTS);
+    }
+
+    /**
+     * @return the raw format of a staging database composed of the two given ones, absent unless
+     *         both share the same raw format
+     */
+    public static Optional<String> getRawFormat(final ObjectDatabase objectDb,
+            final ObjectDatabase stagingDb) {
+        Optional<String> format = stagingDb.getRawFormat();
+        if (format.isPresent() && format.equals(objectDb.getRawFormat())) {
+            return format;
+        }
+        return Optional.absent();
+    }
+
+    private static <T> Iterator<T> getAll(final ObjectDatabase objectDb,
+            final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
+            final BulkOpListener listener, final Fetcher<T> fetcher) {
 
         final List<ObjectId> missingInStaging = Lists.newLinkedList();
 
@@ -37,14 +87,14 @@ public class StagingDbCompositionHelper {
             }
         };
 
-        final Iterator<RevObject> foundInStaging = stagingDb.getAll(ids, stagingListener);
+        final Iterator<T> foundInStaging = fetcher.getAll(stagingDb, ids, stagingListener);
 
-        Iterator<RevObject> compositeIterator = new AbstractIterator<RevObject>() {
+        Iterator<T> compositeIterator = new AbstractIterator<T>() {
 
-            Iterator<RevObject> forwardedToObjectDb = Iterators.emptyIterator();
+            Iterator<T> forwardedToObjectDb = Iterators.emptyIterator();
 
             @Override
-            protected RevObject computeNext() {
+            protected T computeNext() {
                 if (forwardedToObjectDb.hasNext()) {
                     return forwardedToObjectDb.next();
                 }
@@ -52,7 +102,7 @@ public class StagingDbCompositionHelper {
                     List<ObjectId> missing = new ArrayList<ObjectId>(missingInStaging);
                     missingInStaging.clear();
 
-                    forwardedToObjectDb = objectDb.getAll(missing, listener);
+                    forwardedToObjectDb = fetcher.getAll(objectDb, missing, listener);
                     return computeNext();
                 }
                 if (foundInStaging.hasNext()) {
@@ -62,7 +112,7 @@ public class StagingDbCompositionHelper {
                 } else if (!missingInStaging.isEmpty()) {
                     List<ObjectId> missing = new ArrayList<ObjectId>(missingInStaging);
                     missingInStaging.clear();
-                    forwardedToObjectDb = objectDb.getAll(missing, listener);
+                    forwardedToObjectDb = fetcher.getAll(objectDb, missing, listener);
                     return computeNext();
                 }
                 return endOfData();
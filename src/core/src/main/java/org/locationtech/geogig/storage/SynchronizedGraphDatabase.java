@@ -12,6 +12,7 @@ package org.locationtech.geogig.storage;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 public class SynchronizedGraphDatabase implements GraphDatabase {
@@ -99,6 +100,12 @@ public class SynchronizedGraphDatabase implements GraphDatabase {
         }
     }
 
+    public Optional<String> getProperty(ObjectId commitId, String propertyName) {
+        synchronized (delegate) {
+            return delegate.getProperty(commitId, propertyName);
+        }
+    }
+
     public void truncate() {
         synchronized (delegate) {
             delegate.truncate();
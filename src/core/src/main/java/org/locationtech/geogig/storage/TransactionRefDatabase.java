@@ -16,9 +16,12 @@ import static org.locationtech.geogig.api.Ref.append;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.GeogigTransaction;
 import org.locationtech.geogig.api.Ref;
@@ -29,11 +32,13 @@ import org.locationtech.geogig.repository.WorkingTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.MapDifference.ValueDifference;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * A {@link RefDatabase} decorator for a specific {@link GeogigTransaction transaction}.
@@ -47,10 +52,17 @@ import com.google.common.collect.Maps;
  * given this instance of {@code RefDatabase} and can do its work without ever noticing its
  * "running inside a transaction". For the command nothing changes.
  * <p>
+ * The transaction refs are an overlay on the repository refs: refs changed inside the transaction
+ * are stored under {@code transactions/<transaction id>/changed}, and any other ref is read from
+ * the repository. The first time the transaction changes a ref, its repository value is copied
+ * under {@code transactions/<transaction id>/orig}, so that {@link TransactionEnd} can tell whether
+ * it was changed in the repository meanwhile. This way starting and ending a transaction only
+ * writes the refs it changes, instead of copying all the branches, but changes made to a ref in the
+ * repository before the transaction changes it are seen by the transaction too.
+ * <p>
  * {@link TransactionRefDatabase#create() create()} shall be called before this decorator gets used
- * in order for the transaction refs namespace to be created and all original references copied in
- * there, and {@link TransactionRefDatabase#close() close()} for the transaction refs namespace to
- * be deleted.
+ * in order for the transaction refs namespace to be created, and
+ * {@link TransactionRefDatabase#close() close()} for the transaction refs namespace to be deleted.
  * 
  * @see GeogigTransaction
  * @see TransactionBegin
@@ -68,6 +80,11 @@ public class TransactionRefDatabase implements RefDatabase {
 
     private final String txOrigNamespace;
 
+    /**
+     * Names of the refs whose original value is known to be recorded already, if they had one
+     */
+    private final Set<String> recorded = Sets.newHashSet();
+
     public TransactionRefDatabase(final RefDatabase refDb, final UUID transactionId) {
         this.refDb = refDb;
         this.txRootNamespace = append(TRANSACTIONS_PREFIX, transactionId.toString());
@@ -85,28 +102,40 @@ public class TransactionRefDatabase implements RefDatabase {
         refDb.unlock();
     }
 
+    /**
+     * Creates the underlying ref database. No refs are copied, they're read from the repository
+     * until the transaction changes them.
+     */
     @Override
     public void create() {
         refDb.create();
-
-        // copy HEADS
-        copyIfPresent(Ref.HEAD, Ref.WORK_HEAD, Ref.STAGE_HEAD, Ref.CHERRY_PICK_HEAD,
-                Ref.MERGE_HEAD, Ref.ORIG_HEAD);
-
-        copyAll(refDb.getAll(Ref.HEADS_PREFIX));
-        copyAll(refDb.getAll(Ref.REMOTES_PREFIX));
-        copyAll(refDb.getAll(Ref.TAGS_PREFIX));
     }
 
-    private void copyIfPresent(String... refNames) {
-        for (String refName : refNames) {
-            String origValue = readRef(refName);
-            if (origValue != null) {
-                String origInternal = toOrigInternal(refName);
-                LOGGER.debug("copy {} as {}", refName, origInternal);
-                insertRef(origInternal, origValue);
+    /**
+     * Copies the repository value of the ref under the transaction's original values namespace,
+     * unless the transaction already changed it or the ref doesn't exist in the repository. Shall
+     * be called before every change to a ref.
+     */
+    private synchronized void recordOriginal(final String name) {
+        if (recorded.contains(name)) {
+            return;
+        }
+        final String origName = toOrigInternal(name);
+        if (readRef(toInternal(name)) == null && readRef(origName) == null) {
+            try {
+                String value = refDb.getRef(name);
+                if (value != null) {
+                    refDb.putRef(origName, value);
+                }
+            } catch (IllegalArgumentException e) {
+                String value = refDb.getSymRef(name);
+                if (value != null) {
+                    refDb.putSymRef(origName, value);
+                }
             }
+            LOGGER.debug("copy {} as {}", name, origName);
         }
+        recorded.add(name);
     }
 
     private String readRef(String name) {
@@ -119,22 +148,6 @@ public class TransactionRefDatabase implements RefDatabase {
         return value;
     }
 
-    private void copyAll(Map<String, String> origRefs) {
-        Map<String, String> thisTxRefs = toOrigInternal(origRefs);
-
-        for (Entry<String, String> entry : thisTxRefs.entrySet()) {
-            insertRef(entry.getKey(), entry.getValue());
-        }
-    }
-
-    private void insertRef(String name, String value) {
-        if (value.contains("/")) {
-            refDb.putSymRef(name, value);
-        } else {
-            refDb.putRef(name, value);
-        }
-    }
-
     /**
      * Releases all the references for this transaction, but does not close the original
      * {@link RefDatabase}
@@ -158,8 +171,7 @@ public class TransactionRefDatabase implements RefDatabase {
             internalName = toInternal(name);
             value = refDb.getRef(internalName);
             if (value == null) {
-                internalName = toOrigInternal(name);
-                value = refDb.getRef(internalName);
+                value = refDb.getRef(name);
             }
         }
         return value;
@@ -176,8 +188,7 @@ public class TransactionRefDatabase implements RefDatabase {
             internalName = toInternal(name);
             value = refDb.getSymRef(internalName);
             if (value == null) {
-                internalName = toOrigInternal(name);
-                value = refDb.getSymRef(internalName);
+                value = refDb.getSymRef(name);
             }
         }
         return value;
@@ -187,6 +198,7 @@ public class TransactionRefDatabase implements RefDatabase {
     public void putRef(final String refName, final String refValue) {
         String internalName = toInternal(refName);
         LOGGER.debug("update {} as {}", refName, internalName);
+        recordOriginal(refName);
         refDb.putRef(internalName, refValue);
     }
 
@@ -196,9 +208,34 @@ public class TransactionRefDatabase implements RefDatabase {
                 "Wrong value, should not contain 'ref: ': %s -> '%s'", name, val);
         String internalName = toInternal(name);
         LOGGER.debug("update {} as {}", name, internalName);
+        recordOriginal(name);
         refDb.putSymRef(internalName, val);
     }
 
+    /**
+     * Compares and sets the ref in the transaction namespace. Transaction refs are only updated by
+     * the transaction's own commands, so this method just serializes calls on this instance.
+     */
+    @Override
+    public synchronized boolean compareAndSet(final String refName,
+            @Nullable final String expectedValue, final String newValue) {
+        if (!Objects.equal(expectedValue, getRef(refName))) {
+            return false;
+        }
+        putRef(refName, newValue);
+        return true;
+    }
+
+    @Override
+    public void putAll(final Map<String, String> refs) {
+        Map<String, String> internal = Maps.newHashMap();
+        for (Entry<String, String> entry : refs.entrySet()) {
+            recordOriginal(entry.getKey());
+            internal.put(toInternal(entry.getKey()), entry.getValue());
+        }
+        refDb.putAll(internal);
+    }
+
     @Override
     public String remove(final String refName) {
         return refDb.remove(toInternal(refName));
@@ -211,17 +248,17 @@ public class TransactionRefDatabase implements RefDatabase {
 
     @Override
     public Map<String, String> getAll(final String prefix) {
-        Map<String, String> originals = refDb.getAll(append(this.txOrigNamespace, prefix));
+        Map<String, String> composite = Maps.newHashMap();
+        for (Entry<String, String> entry : refDb.getAll(prefix).entrySet()) {
+            // leave out the refs of all the transactions, this one's included
+            if (!entry.getKey().startsWith(TRANSACTIONS_PREFIX)) {
+                composite.put(entry.getKey(), entry.getValue());
+            }
+        }
         Map<String, String> changed = refDb.getAll(append(this.txNamespace, prefix));
-
-        Map<String, String> externalOriginals = toExternal(originals);
-        Map<String, String> externalChanged = toExternal(changed);
-
-        Map<String, String> composite = Maps.newHashMap(externalOriginals);
-        // Overwrite originals
-        composite.putAll(externalChanged);
+        // Overwrite the repository values
+        composite.putAll(toExternal(changed));
         return composite;
-
     }
 
     /**
@@ -297,22 +334,6 @@ public class TransactionRefDatabase implements RefDatabase {
         return origName;
     }
 
-    private Map<String, String> toOrigInternal(final Map<String, String> orig) {
-
-        Map<String, String> transformed = Maps.newHashMap();
-        for (Entry<String, String> entry : orig.entrySet()) {
-
-            String origName = entry.getKey();
-            String origValue = entry.getValue();
-
-            String transformedName = toOrigInternal(origName);
-            String transformedValue = origValue;
-            LOGGER.debug("copy {} as {}", origName, transformedName);
-            transformed.put(transformedName, transformedValue);
-        }
-        return ImmutableMap.copyOf(transformed);
-    }
-
     private String toExternalValue(String origValue) {
         String txValue = origValue;
         boolean isSymRef = origValue.startsWith("ref: ");
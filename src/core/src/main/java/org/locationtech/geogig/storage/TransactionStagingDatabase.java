@@ -212,6 +212,30 @@ public class TransactionStagingDatabase implements StagingDatabase {
         return database.getAll(ids, listener);
     }
 
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public Optional<String> getRawFormat() {
+        return database.getRawFormat();
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public Iterator<RawObject> getAllRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return database.getAllRaw(ids, listener);
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        database.putAllRaw(objects, listener);
+    }
+
     /**
      * Pass through to {@link StagingDatabase}, replacing the namespace with the transaction
      * namespace.
@@ -14,14 +14,23 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.locationtech.geogig.api.Ref.append;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
 
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
@@ -43,15 +52,35 @@ import com.google.inject.Inject;
 /**
  * Provides an implementation of a GeoGig ref database that utilizes the file system for the storage
  * of refs.
+ * <p>
+ * Refs are stored either as "loose" refs, one file per ref named after the ref path, or as "packed"
+ * refs in a single {@value #PACKED_REFS} file holding one {@code <name>\t<value>} line per ref,
+ * sorted by name. A loose ref takes precedence over a packed ref of the same name. Single ref
+ * updates through {@link #putRef} and {@link #putSymRef} are stored as loose refs, while
+ * {@link #putAll batch updates} are stored in the packed refs file with a single atomic replace of
+ * it. The packed refs are kept in memory as sorted arrays and looked up by binary search, and only
+ * re-read when the file changes.
  */
 public class FileRefDatabase extends AbstractRefDatabase {
 
     private static final Charset CHARSET = Charset.forName("UTF-8");
 
+    /**
+     * Name of the packed refs file, directly under the geogig directory
+     */
+    static final String PACKED_REFS = "packed-refs";
+
+    private static final String PACKED_REFS_HEADER = "# geogig packed-refs";
+
     private final Platform platform;
 
     private final ConfigDatabase configDB;
 
+    /**
+     * The last read contents of the packed refs file
+     */
+    private volatile PackedRefs packedRefs = PackedRefs.EMPTY;
+
     /**
      * Constructs a new {@code FileRefDatabase} with the given platform.
      * 
@@ -138,10 +167,13 @@ public class FileRefDatabase extends AbstractRefDatabase {
 
     private String getInternal(String name) {
         File refFile = toFile(name);
-        if (!refFile.exists() || refFile.isDirectory()) {
-            return null;
+        String value = null;
+        if (refFile.isFile()) {
+            value = readRef(refFile);
+        }
+        if (value == null) {
+            value = packedRefs().get(name);
         }
-        String value = readRef(refFile);
         return value;
     }
 
@@ -187,17 +219,16 @@ public class FileRefDatabase extends AbstractRefDatabase {
     public String remove(String refName) {
         checkNotNull(refName);
         File refFile = toFile(refName);
-        String oldRef;
+        String oldRef = null;
         if (refFile.exists()) {
             oldRef = readRef(refFile);
             if (!refFile.delete()) {
                 throw new RuntimeException("Unable to delete ref file '"
                         + refFile.getAbsolutePath() + "'");
             }
-        } else {
-            oldRef = null;
         }
-        return oldRef;
+        String oldPacked = removePacked(refName, false);
+        return oldRef == null ? oldPacked : oldRef;
     }
 
     /**
@@ -205,27 +236,39 @@ public class FileRefDatabase extends AbstractRefDatabase {
      * @return
      */
     private File toFile(String refPath) {
-        Optional<URL> envHome = new ResolveGeogigDir(platform).call();
+        return toFile(geogigDir(), refPath);
+    }
 
+    private File toFile(File geogigDir, String refPath) {
         String[] path = refPath.split("/");
+        File file = geogigDir;
+        for (String subpath : path) {
+            file = new File(file, subpath);
+        }
+        return file;
+    }
 
+    private File geogigDir() {
+        Optional<URL> envHome = new ResolveGeogigDir(platform).call();
         try {
-            File file = new File(envHome.get().toURI());
-            for (String subpath : path) {
-                file = new File(file, subpath);
-            }
-            return file;
+            return new File(envHome.get().toURI());
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
     }
 
+    /**
+     * @return the contents of the ref file, or {@code null} if it was removed before it could be
+     *         read
+     */
     private String readRef(final File refFile) {
         try {
             // make sure no other thread changes the ref as we read it
             synchronized (refFile.getCanonicalPath().intern()) {
                 return Files.readFirstLine(refFile, CHARSET);
             }
+        } catch (FileNotFoundException e) {
+            return null;
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
@@ -296,17 +339,13 @@ public class FileRefDatabase extends AbstractRefDatabase {
     @Override
     public Map<String, String> getAll(String namespace) {
         Preconditions.checkNotNull(namespace);
-        File refsRoot;
-        try {
-            Optional<URL> envHome = new ResolveGeogigDir(platform).call();
-            refsRoot = new File(envHome.get().toURI());
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
-        }
+        File refsRoot = geogigDir();
         if (namespace.endsWith("/")) {
             namespace = namespace.substring(0, namespace.length() - 1);
         }
         Map<String, String> refs = Maps.newTreeMap();
+        packedRefs().addAll(namespace, refs);
+        // loose refs override packed ones
         findRefs(refsRoot, namespace, refs);
         return ImmutableMap.copyOf(refs);
     }
@@ -331,9 +370,14 @@ public class FileRefDatabase extends AbstractRefDatabase {
             if (f.isDirectory()) {
                 String namespace = append(prefix, fileName);
                 addAll(f, namespace, target);
+            } else if (prefix.isEmpty() && fileName.startsWith(PACKED_REFS)) {
+                continue;
             } else if (fileName.length() == 0 || fileName.charAt(0) != '.') {
                 String refName = append(prefix, fileName);
                 String refValue = readRef(f);
+                if (refValue == null) {
+                    continue;
+                }
                 if (refValue.startsWith("ref: ")) {
                     refValue = refValue.substring("ref: ".length());
                 }
@@ -349,9 +393,208 @@ public class FileRefDatabase extends AbstractRefDatabase {
         if (file.exists() && file.isDirectory()) {
             deleteDir(file);
         }
+        removePacked(namespace, true);
         return null;
     }
 
+    /**
+     * Stores all the given refs in the packed refs file at once, removing any loose ref with the
+     * same name.
+     */
+    @Override
+    public void putAll(Map<String, String> refs) {
+        checkNotNull(refs);
+        if (refs.isEmpty()) {
+            return;
+        }
+        Map<String, String> values = Maps.newHashMap();
+        for (Entry<String, String> entry : refs.entrySet()) {
+            final String name = checkNotNull(entry.getKey());
+            String value = checkNotNull(entry.getValue(), "null value for ref %s", name);
+            if (isSymRefValue(value)) {
+                value = symRefTarget(value);
+                checkArgument(!name.equals(value), "Trying to store cyclic symbolic ref: %s", name);
+                value = "ref: " + value;
+            }
+            checkArgument(name.indexOf('\t') == -1 && name.indexOf('\n') == -1,
+                    "Invalid ref name: '%s'", name);
+            values.put(name, value);
+        }
+
+        final File geogigDir = geogigDir();
+        final File packedRefsFile = new File(geogigDir, PACKED_REFS);
+        try {
+            synchronized (packedRefsFile.getCanonicalPath().intern()) {
+                SortedMap<String, String> packed = packedRefs().toMap();
+                packed.putAll(values);
+                writePackedRefs(packedRefsFile, packed);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+
+        // loose refs take precedence over packed ones, remove the stale ones
+        for (String name : values.keySet()) {
+            File refFile = toFile(geogigDir, name);
+            if (refFile.isFile() && !refFile.delete() && refFile.exists()) {
+                throw new RuntimeException("Unable to delete ref file '"
+                        + refFile.getAbsolutePath() + "'");
+            }
+        }
+    }
+
+    /**
+     * Removes the packed ref named {@code name} or, if {@code namespace} is {@code true}, all the
+     * packed refs under the {@code name} namespace.
+     * 
+     * @return the raw value of the removed ref if {@code namespace == false}
+     */
+    private String removePacked(final String name, final boolean namespace) {
+        // avoid locking and rewriting the packed refs if there's nothing to remove
+        if (namespace ? !packedRefs().hasAny(name) : packedRefs().get(name) == null) {
+            return null;
+        }
+        final File packedRefsFile = new File(geogigDir(), PACKED_REFS);
+        try {
+            synchronized (packedRefsFile.getCanonicalPath().intern()) {
+                SortedMap<String, String> packed = packedRefs().toMap();
+                String removed = null;
+                if (namespace) {
+                    String prefix = name + "/";
+                    packed.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+                } else {
+                    removed = packed.remove(name);
+                }
+                writePackedRefs(packedRefsFile, packed);
+                return removed;
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return the current contents of the packed refs file, re-reading it only if it changed since
+     *         the last time it was read
+     */
+    private PackedRefs packedRefs() {
+        final File file = new File(geogigDir(), PACKED_REFS);
+        PackedRefs current = this.packedRefs;
+        if (current.isUpToDate(file)) {
+            return current;
+        }
+        try {
+            synchronized (file.getCanonicalPath().intern()) {
+                current = this.packedRefs;
+                if (!current.isUpToDate(file)) {
+                    current = readPackedRefs(file);
+                    this.packedRefs = current;
+                }
+                return current;
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private PackedRefs readPackedRefs(final File file) throws IOException {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        long generation = 0L;
+        SortedMap<String, String> refs = Maps.newTreeMap();
+        try {
+            BufferedReader reader = Files.newReader(file, CHARSET);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(PACKED_REFS_HEADER)) {
+                        generation = parseGeneration(line);
+                        continue;
+                    }
+                    if (line.isEmpty() || line.charAt(0) == '#') {
+                        continue;
+                    }
+                    int tab = line.indexOf('\t');
+                    checkState(tab > 0, "Corrupt packed refs file %s: '%s'", file, line);
+                    refs.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException e) {
+            return PackedRefs.EMPTY;
+        }
+        return new PackedRefs(lastModified, length, generation, refs);
+    }
+
+    /**
+     * @return the generation number of the packed refs file, as recorded in its header line, or
+     *         zero if the file doesn't exist or has no generation number
+     */
+    private static long readGeneration(final File file) {
+        try {
+            BufferedReader reader = Files.newReader(file, CHARSET);
+            try {
+                String header = reader.readLine();
+                if (header == null || !header.startsWith(PACKED_REFS_HEADER)) {
+                    return 0L;
+                }
+                return parseGeneration(header);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long parseGeneration(final String header) {
+        String generation = header.substring(PACKED_REFS_HEADER.length()).trim();
+        try {
+            return generation.isEmpty() ? 0L : Long.parseLong(generation);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Atomically replaces the packed refs file by one with the given refs. Shall be called while
+     * holding the lock on the packed refs file.
+     */
+    private void writePackedRefs(final File file, final SortedMap<String, String> refs)
+            throws IOException {
+        // a unique name, so that a leftover of a failed write doesn't get in the way
+        final File tmp = File.createTempFile(PACKED_REFS, ".tmp", file.getParentFile());
+        final long generation = packedRefs().generation + 1;
+        FileOutputStream fout = new FileOutputStream(tmp);
+        boolean written = false;
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(fout, CHARSET));
+            writer.write(PACKED_REFS_HEADER);
+            writer.write(' ');
+            writer.write(String.valueOf(generation));
+            writer.write('\n');
+            for (Entry<String, String> ref : refs.entrySet()) {
+                writer.write(ref.getKey());
+                writer.write('\t');
+                writer.write(ref.getValue());
+                writer.write('\n');
+            }
+            writer.flush();
+            // force change to be persisted to disk before replacing the packed refs
+            fout.getFD().sync();
+            written = true;
+        } finally {
+            fout.close();
+            if (!written) {
+                tmp.delete();
+            }
+        }
+        java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        this.packedRefs = new PackedRefs(file.lastModified(), file.length(), generation, refs);
+    }
+
     /**
      * @param directory
      */
@@ -385,6 +628,123 @@ public class FileRefDatabase extends AbstractRefDatabase {
         RepositoryConnectionException.StorageType.REF.verify(configDB, "file", "1.0");
     }
 
+    /**
+     * An immutable snapshot of the packed refs file, with the ref names sorted so that they can be
+     * looked up through binary search.
+     */
+    private static final class PackedRefs {
+
+        /**
+         * The snapshot of a missing file, whose last modified timestamp and length are zero, so
+         * that its absence is told without trying to read it
+         */
+        static final PackedRefs EMPTY = new PackedRefs(0L, 0L, 0L,
+                Maps.<String, String> newTreeMap());
+
+        /**
+         * Coarsest timestamp resolution of the supported file systems (e.g. FAT), a file rewritten
+         * within this time from its last modification may keep the same timestamp
+         */
+        private static final long TIMESTAMP_RESOLUTION = 2000L;
+
+        private final long lastModified;
+
+        private final long length;
+
+        /**
+         * Incremented on each write of the packed refs file, so that changes that keep the same
+         * length within the timestamp resolution of the file system are noticed too
+         */
+        final long generation;
+
+        private final String[] names;
+
+        private final String[] values;
+
+        /**
+         * Whether the file may be rewritten with the same timestamp and length, and so its
+         * generation needs to be read to tell whether it changed
+         */
+        private volatile boolean racy;
+
+        PackedRefs(long lastModified, long length, long generation,
+                SortedMap<String, String> refs) {
+            this.racy = lastModified != 0L;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.generation = generation;
+            this.names = refs.keySet().toArray(new String[refs.size()]);
+            this.values = refs.values().toArray(new String[refs.size()]);
+        }
+
+        /**
+         * @return whether this snapshot reflects the current contents of {@code file}; a missing
+         *         file has a last modified timestamp and length of zero, same as {@link #EMPTY}.
+         *         The generation in the file header is only read if the timestamp and length
+         *         didn't change and the file was last modified too recently for a rewrite to be
+         *         told by its timestamp, which is no longer the case once a check made
+         *         {@link #TIMESTAMP_RESOLUTION} after that succeeds.
+         */
+        boolean isUpToDate(File file) {
+            if (lastModified != file.lastModified() || length != file.length()) {
+                return false;
+            }
+            if (!racy) {
+                return true;
+            }
+            final long now = System.currentTimeMillis();
+            if (generation != readGeneration(file)) {
+                return false;
+            }
+            if (now - lastModified > TIMESTAMP_RESOLUTION) {
+                // any later rewrite gets a newer timestamp
+                racy = false;
+            }
+            return true;
+        }
+
+        /**
+         * @return the raw value of the ref, or {@code null} if not packed
+         */
+        String get(String name) {
+            int index = Arrays.binarySearch(names, name);
+            return index < 0 ? null : values[index];
+        }
+
+        boolean hasAny(String namespace) {
+            int index = firstIndex(namespace + "/");
+            return index < names.length && names[index].startsWith(namespace + "/");
+        }
+
+        /**
+         * Adds all the refs under {@code namespace} to {@code target}, with the value of symbolic
+         * refs being the name of the target ref
+         */
+        void addAll(String namespace, Map<String, String> target) {
+            final String prefix = namespace.isEmpty() ? "" : namespace + "/";
+            for (int i = firstIndex(prefix); i < names.length && names[i].startsWith(prefix); i++) {
+                String value = values[i];
+                if (value.startsWith("ref: ")) {
+                    value = value.substring("ref: ".length());
+                }
+                target.put(names[i], value);
+            }
+        }
+
+        private int firstIndex(String prefix) {
+            int index = Arrays.binarySearch(names, prefix);
+            return index < 0 ? -(index + 1) : index;
+        }
+
+        SortedMap<String, String> toMap() {
+            SortedMap<String, String> map = Maps.newTreeMap();
+            for (int i = 0; i < names.length; i++) {
+                map.put(names[i], values[i]);
+            }
+            return map;
+        }
+    }
+
     @Override
     public String toString() {
         Optional<URL> envHome = new ResolveGeogigDir(platform).call();
@@ -0,0 +1,827 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.fs;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.plumbing.BuildMappedObjectDatabase;
+import org.locationtech.geogig.api.plumbing.ResolveGeogigDir;
+import org.locationtech.geogig.repository.Hints;
+import org.locationtech.geogig.repository.PostOrderIterator;
+import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.AbstractObjectDatabase;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.CommitMetadata;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2;
+import org.locationtech.geogig.storage.memory.HeapDeduplicator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.inject.Inject;
+
+/**
+ * A read optimized {@link ObjectDatabase} that keeps the objects in immutable, memory mapped
+ * files sorted by object id, so that reading an object is a binary search over a memory mapped
+ * index instead of a trip through a transactional key/value store.
+ * <p>
+ * Objects are not written to segments one by one. They're buffered in memory and written as a new
+ * sorted <em>segment</em> file at the end of each {@link #putAll(Iterator, BulkOpListener) bulk
+ * insert} (like the objects brought in by a fetch), whenever the buffer exceeds
+ * {@code mapped.bufferSize} bytes, or when the database is closed. Objects added one at a time
+ * through {@link #put(RevObject)} are also appended to a journal file as they're added, so they
+ * survive the process ending without the database being closed; the journal is read back into
+ * the buffer when the database is opened, and is discarded once its objects are in a segment.
+ * Segment files are synced to disk before they're made visible. Once there are more than
+ * {@code mapped.maxSegments} segments, the smallest ones are merged a few at a time, so that
+ * segments grow in tiers and the large ones are not rewritten over and over by each fetch; they can
+ * be {@link #compact() compacted} into as few as possible on demand. Readers are not blocked by
+ * writers nor by compaction.
+ * <p>
+ * The store is meant for read mostly repositories, like the ones serving a read only replica, and
+ * can be built from an existing repository's object database through
+ * {@link #importFrom(ObjectDatabase, Iterable, GraphDatabase)}, as the
+ * {@link BuildMappedObjectDatabase} command does. Objects can't be deleted from it.
+ * <p>
+ * Objects are stored in the same raw format as the {@code bdbje 0.2} object database, so raw
+ * objects can be copied between both.
+ */
+public class MappedObjectDatabase extends AbstractObjectDatabase implements ObjectDatabase {
+
+    public static final String FORMAT_NAME = "mapped";
+
+    public static final String VERSION = "0.1";
+
+    /**
+     * Config key for the maximum number of bytes of objects to buffer before writing a segment
+     */
+    public static final String BUFFER_SIZE_CONFIG_KEY = "mapped.bufferSize";
+
+    /**
+     * Config key for the number of segments above which they're compacted
+     */
+    public static final String MAX_SEGMENTS_CONFIG_KEY = "mapped.maxSegments";
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024 * 1024;
+
+    private static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    /**
+     * Maximum number of segments merged together when there are too many of them
+     */
+    private static final int MERGE_FACTOR = 4;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Objects added one by one since the last segment was written
+     */
+    private static final String JOURNAL_FILE = "journal";
+
+    /**
+     * Names of the segments replaced by a compaction but not deleted yet
+     */
+    private static final String OBSOLETE_FILE = "obsolete";
+
+    private final Platform platform;
+
+    private final ConfigDatabase configDB;
+
+    private final String databaseName;
+
+    private final boolean readOnly;
+
+    private File dataRoot;
+
+    /**
+     * The open segments, replaced as a whole when segments are added or compacted so that readers
+     * don't need to lock
+     */
+    private volatile ImmutableList<MappedSegment> segments = ImmutableList.of();
+
+    /**
+     * Objects added but not yet written to a segment, sorted as they'll be written
+     */
+    private final ConcurrentSkipListMap<ObjectId, byte[]> buffer = new ConcurrentSkipListMap<>();
+
+    private long bufferedBytes;
+
+    private long nextSegment;
+
+    private DataOutputStream journal;
+
+    /**
+     * Compacted segments to be deleted once they're no longer mapped
+     */
+    private final List<ObsoleteSegment> obsolete = Lists.newArrayList();
+
+    @Inject
+    public MappedObjectDatabase(final Platform platform, final ConfigDatabase configDB,
+            final Hints hints) {
+        this(platform, "objects.mapped", configDB, hints.getBoolean(Hints.OBJECTS_READ_ONLY));
+    }
+
+    public MappedObjectDatabase(final Platform platform, final String databaseName,
+            final ConfigDatabase configDB, final boolean readOnly) {
+        super(DataStreamSerializationFactoryV2.INSTANCE);
+        checkNotNull(platform);
+        checkNotNull(databaseName);
+        this.platform = platform;
+        this.databaseName = databaseName;
+        this.configDB = configDB;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return dataRoot != null;
+    }
+
+    @Override
+    public synchronized void open() {
+        if (isOpen()) {
+            return;
+        }
+        final Optional<URL> repoUrl = new ResolveGeogigDir(platform).call();
+        checkState(repoUrl.isPresent(), "Can't find geogig repository home");
+
+        File dataRoot;
+        try {
+            dataRoot = new File(new File(repoUrl.get().toURI()), databaseName);
+        } catch (URISyntaxException e) {
+            throw Throwables.propagate(e);
+        }
+        if (!dataRoot.exists() && !dataRoot.mkdirs()) {
+            throw new IllegalStateException("Can't create environment: "
+                    + dataRoot.getAbsolutePath());
+        }
+        if (!dataRoot.isDirectory()) {
+            throw new IllegalStateException("Environment but is not a directory: "
+                    + dataRoot.getAbsolutePath());
+        }
+
+        File[] tmpFiles = listFiles(dataRoot, TMP_SUFFIX);
+        if (!readOnly) {
+            // leftovers of an interrupted write
+            for (File f : tmpFiles) {
+                f.delete();
+            }
+        }
+        ImmutableList.Builder<MappedSegment> segments = ImmutableList.builder();
+        nextSegment = 0;
+        try {
+            // nothing is mapped yet by this instance, the compacted segments can be deleted
+            final Set<String> obsoleteNames = readObsolete(dataRoot);
+            for (File f : listFiles(dataRoot, SEGMENT_SUFFIX)) {
+                nextSegment = Math.max(nextSegment, sequence(f) + 1);
+                if (obsoleteNames.contains(f.getName())) {
+                    if (!readOnly) {
+                        f.delete();
+                    }
+                } else {
+                    segments.add(MappedSegment.open(f));
+                }
+            }
+            if (!readOnly) {
+                new File(dataRoot, OBSOLETE_FILE).delete();
+            }
+            replayJournal(new File(dataRoot, JOURNAL_FILE));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        this.segments = segments.build();
+        this.dataRoot = dataRoot;
+    }
+
+    /**
+     * Reads the objects added one by one by a previous instance back into the buffer, and cuts off
+     * a record that was being written when it ended
+     */
+    private void replayJournal(File journalFile) throws IOException {
+        if (!journalFile.exists()) {
+            return;
+        }
+        long valid = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                journalFile), 64 * 1024));
+        try {
+            byte[] rawId = new byte[ObjectId.NUM_BYTES];
+            while (true) {
+                in.readFully(rawId);
+                byte[] rawData = new byte[in.readInt()];
+                in.readFully(rawData);
+                buffer.put(ObjectId.createNoClone(rawId.clone()), rawData);
+                bufferedBytes += rawData.length;
+                valid += rawId.length + 4 + rawData.length;
+            }
+        } catch (EOFException truncated) {
+            // end of the journal
+        } finally {
+            in.close();
+        }
+        if (!readOnly && valid < journalFile.length()) {
+            RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * Writes any buffered objects and closes the database
+     */
+    @Override
+    public synchronized void close() {
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            if (!readOnly) {
+                flush();
+            }
+        } finally {
+            closeJournal();
+            // the buffers are unmapped once garbage collected, the obsolete segments that are
+            // still mapped are deleted by the next instance
+            segments = ImmutableList.of();
+            obsolete.clear();
+            buffer.clear();
+            bufferedBytes = 0;
+            dataRoot = null;
+        }
+    }
+
+    @Override
+    public boolean exists(final ObjectId id) {
+        checkNotNull(id, "id");
+        if (buffer.containsKey(id)) {
+            return true;
+        }
+        for (MappedSegment segment : segments) {
+            if (segment.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected InputStream getRawInternal(final ObjectId id, final boolean failIfNotFound) {
+        checkNotNull(id, "id");
+        // check the buffer first, a segment is published before its objects leave the buffer
+        byte[] buffered = buffer.get(id);
+        if (buffered != null) {
+            return new ByteArrayInputStream(buffered);
+        }
+        for (MappedSegment segment : segments) {
+            InputStream in = segment.open(id);
+            if (in != null) {
+                return in;
+            }
+        }
+        if (failIfNotFound) {
+            throw new IllegalArgumentException("Object does not exist: " + id + " at "
+                    + dataRoot);
+        }
+        return null;
+    }
+
+    @Override
+    protected List<ObjectId> lookUpInternal(final byte[] raw) {
+        List<ObjectId> matches = Lists.newArrayList();
+        for (ObjectId id : buffer.keySet()) {
+            if (startsWith(id, raw)) {
+                matches.add(id);
+            }
+        }
+        for (MappedSegment segment : segments) {
+            segment.lookUp(raw, matches);
+        }
+        return matches;
+    }
+
+    private static boolean startsWith(ObjectId id, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (id.byteN(i) != (prefix[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        final Iterator<ObjectId> idsIterator = ids.iterator();
+        return new AbstractIterator<RevObject>() {
+            @Override
+            protected RevObject computeNext() {
+                while (idsIterator.hasNext()) {
+                    ObjectId id = idsIterator.next();
+                    RevObject object = getIfPresent(id);
+                    if (object == null) {
+                        listener.notFound(id);
+                    } else {
+                        listener.found(id, null);
+                        return object;
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * Appends a single object to the journal and buffers it to be written with the next segment,
+     * if it doesn't exist already
+     */
+    @Override
+    protected synchronized boolean putInternal(final ObjectId id, final byte[] rawData) {
+        checkWritable();
+        if (exists(id)) {
+            return false;
+        }
+        try {
+            if (journal == null) {
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        new File(dataRoot, JOURNAL_FILE), true)));
+            }
+            journal.write(id.getRawValue());
+            journal.writeInt(rawData.length);
+            journal.write(rawData);
+            journal.flush();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return buffer(id, rawData);
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                Closeables.close(journal, true);
+            } catch (IOException cantHappen) {
+                // swallowed
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Buffers the object to be written with the next segment, if it doesn't exist already
+     */
+    private synchronized boolean buffer(final ObjectId id, final byte[] rawData) {
+        if (exists(id)) {
+            return false;
+        }
+        buffer.put(id, rawData);
+        bufferedBytes += rawData.length;
+        if (bufferedBytes >= getBufferSize()) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the objects and writes them to a new segment right away, without going through the
+     * journal
+     */
+    @Override
+    public void putAll(final Iterator<? extends RevObject> objects, final BulkOpListener listener) {
+        checkWritable();
+        ByteArrayOutputStream rawOut = new ByteArrayOutputStream();
+        while (objects.hasNext()) {
+            RevObject object = objects.next();
+            rawOut.reset();
+            writeObject(object, rawOut);
+            final byte[] rawData = rawOut.toByteArray();
+            if (buffer(object.getId(), rawData)) {
+                listener.inserted(object.getId(), rawData.length);
+            } else {
+                listener.found(object.getId(), null);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Adds the objects and writes them to a new segment right away, without going through the
+     * journal
+     */
+    @Override
+    public void putAllRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkWritable();
+        while (objects.hasNext()) {
+            RawObject object = objects.next();
+            if (buffer(object.getId(), object.getData())) {
+                listener.inserted(object.getId(), object.getData().length);
+            } else {
+                listener.found(object.getId(), null);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes the buffered objects to a new segment, discards the journal, and compacts the
+     * segments if there are too many of them.
+     */
+    public synchronized void flush() {
+        deleteObsolete();
+        if (buffer.isEmpty()) {
+            return;
+        }
+        checkWritable();
+        Iterator<RawObject> buffered = Iterators.transform(buffer.entrySet().iterator(),
+                new Function<Map.Entry<ObjectId, byte[]>, RawObject>() {
+                    @Override
+                    public RawObject apply(Map.Entry<ObjectId, byte[]> e) {
+                        return new RawObject(e.getKey(), e.getValue());
+                    }
+                });
+        List<MappedSegment> written = writeSegments(buffered);
+        segments = ImmutableList.<MappedSegment> builder().addAll(written).addAll(segments)
+                .build();
+        buffer.clear();
+        bufferedBytes = 0;
+        closeJournal();
+        new File(dataRoot, JOURNAL_FILE).delete();
+
+        mergeSmallest();
+    }
+
+    /**
+     * Merges the smallest segments, up to {@link #MERGE_FACTOR} of them at a time and as long as
+     * they fit in a single segment, until there are no more than {@code mapped.maxSegments}
+     * segments or no two segments can be merged.
+     */
+    private void mergeSmallest() {
+        final int maxSegments = getMaxSegments();
+        while (segments.size() > maxSegments) {
+            List<MappedSegment> bySize = BY_FILE_SIZE.sortedCopy(segments);
+            List<MappedSegment> toMerge = Lists.newArrayListWithCapacity(MERGE_FACTOR);
+            long size = 0;
+            for (MappedSegment segment : bySize) {
+                final long length = segment.getFile().length();
+                if (toMerge.size() == MERGE_FACTOR || size + length > MappedSegment.MAX_SIZE) {
+                    break;
+                }
+                toMerge.add(segment);
+                size += length;
+            }
+            if (toMerge.size() < 2) {
+                return;
+            }
+            merge(toMerge);
+        }
+    }
+
+    /**
+     * Merges all the segments into as few segments as possible, which are the ones of at most
+     * {@link MappedSegment#MAX_SIZE} bytes. Readers keep using the old segments until the new ones
+     * are in place, and the old segment files are deleted once they're no longer mapped.
+     */
+    public synchronized void compact() {
+        checkWritable();
+        final List<MappedSegment> current = segments;
+        if (current.size() < 2) {
+            return;
+        }
+        merge(current);
+    }
+
+    /**
+     * Replaces the given segments by the ones their objects are merged into, placed first as the
+     * newest ones
+     */
+    private void merge(final List<MappedSegment> toMerge) {
+        List<MappedSegment> merged = writeSegments(new MergingIterator(toMerge));
+        ImmutableList.Builder<MappedSegment> remaining = ImmutableList.builder();
+        remaining.addAll(merged);
+        for (MappedSegment segment : segments) {
+            if (!toMerge.contains(segment)) {
+                remaining.add(segment);
+            }
+        }
+        segments = remaining.build();
+        for (MappedSegment old : toMerge) {
+            obsolete.add(new ObsoleteSegment(old.getFile(), old.mapping()));
+        }
+        writeObsolete();
+        deleteObsolete();
+    }
+
+    /**
+     * Deletes the obsolete segment files that are no longer mapped. Deleting a mapped file fails
+     * on some platforms, and on others it keeps taking disk space until it's unmapped anyway.
+     */
+    private synchronized void deleteObsolete() {
+        if (obsolete.isEmpty()) {
+            return;
+        }
+        for (Iterator<ObsoleteSegment> it = obsolete.iterator(); it.hasNext();) {
+            ObsoleteSegment segment = it.next();
+            if (segment.mapping.get() == null
+                    && (segment.file.delete() || !segment.file.exists())) {
+                it.remove();
+            }
+        }
+        writeObsolete();
+    }
+
+    /**
+     * Records the names of the obsolete segments, for them not to be opened again if this instance
+     * ends before deleting them
+     */
+    private void writeObsolete() {
+        File obsoleteFile = new File(dataRoot, OBSOLETE_FILE);
+        if (obsolete.isEmpty()) {
+            obsoleteFile.delete();
+            return;
+        }
+        List<String> names = Lists.newArrayListWithCapacity(obsolete.size());
+        for (ObsoleteSegment segment : obsolete) {
+            names.add(segment.file.getName());
+        }
+        try {
+            Files.asCharSink(obsoleteFile, Charsets.UTF_8).writeLines(names);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static Set<String> readObsolete(File dataRoot) throws IOException {
+        File obsoleteFile = new File(dataRoot, OBSOLETE_FILE);
+        if (!obsoleteFile.exists()) {
+            return ImmutableSet.of();
+        }
+        return ImmutableSet.copyOf(Files.readLines(obsoleteFile, Charsets.UTF_8));
+    }
+
+    /**
+     * Builds this database out of all the objects reachable from the given commits, or any other
+     * objects refs point to, in another object database, and compacts it afterwards.
+     * <p>
+     * The objects are added straight to this instance, so the repository's decorated object
+     * database that adds the commits it stores to the graph database is bypassed. Instead, the
+     * imported commits are added to {@code graphDb} here.
+     *
+     * @param source the object database to import objects from
+     * @param commits the commits whose history and contents to import, usually the tips of all
+     *        the branches and tags of the source repository. Tags and trees are imported along
+     *        with the objects they point to.
+     * @param graphDb the graph database of the repository this object database belongs to
+     */
+    public void importFrom(final ObjectDatabase source, final Iterable<ObjectId> commits,
+            final GraphDatabase graphDb) {
+        checkWritable();
+        checkNotNull(graphDb);
+        Function<RevObject, RevObject> addToGraph = new Function<RevObject, RevObject>() {
+            @Override
+            public RevObject apply(RevObject object) {
+                if (object instanceof RevCommit) {
+                    RevCommit commit = (RevCommit) object;
+                    graphDb.put(commit.getId(), commit.getParentIds());
+                    CommitMetadata.of(commit).write(graphDb);
+                }
+                return object;
+            }
+        };
+        Deduplicator deduplicator = new HeapDeduplicator();
+        try {
+            for (ObjectId commitId : commits) {
+                if (!exists(commitId)) {
+                    putAll(Iterators.transform(
+                            PostOrderIterator.all(commitId, source, deduplicator), addToGraph));
+                }
+            }
+        } finally {
+            deduplicator.release();
+        }
+        compact();
+    }
+
+    private List<MappedSegment> writeSegments(Iterator<RawObject> sortedObjects) {
+        PeekingIterator<RawObject> objects = Iterators.peekingIterator(sortedObjects);
+        List<MappedSegment> written = Lists.newArrayList();
+        try {
+            while (objects.hasNext()) {
+                final long sequence = nextSegment++;
+                File tmp = new File(dataRoot, String.format("%016x%s%s", sequence,
+                        SEGMENT_SUFFIX, TMP_SUFFIX));
+                // synced to disk before it's renamed
+                MappedSegment.write(tmp, objects, MappedSegment.MAX_SIZE);
+                File segmentFile = new File(dataRoot, String.format("%016x%s", sequence,
+                        SEGMENT_SUFFIX));
+                checkState(tmp.renameTo(segmentFile), "Unable to rename %s to %s", tmp,
+                        segmentFile);
+                written.add(MappedSegment.open(segmentFile));
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return written;
+    }
+
+    /**
+     * Deleting objects is not supported by this read optimized store
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public boolean delete(ObjectId objectId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " does not support deleting objects");
+    }
+
+    /**
+     * Deleting objects is not supported by this read optimized store
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public long deleteAll(Iterator<ObjectId> ids, BulkOpListener listener) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " does not support deleting objects");
+    }
+
+    @Override
+    public void configure() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.OBJECT.configure(configDB, FORMAT_NAME, VERSION);
+    }
+
+    @Override
+    public void checkConfig() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.OBJECT.verify(configDB, FORMAT_NAME, VERSION);
+    }
+
+    private void checkWritable() {
+        checkState(isOpen(), "Database is closed");
+        if (readOnly) {
+            throw new UnsupportedOperationException(databaseName + " is read only.");
+        }
+    }
+
+    private int getBufferSize() {
+        return configDB.get(BUFFER_SIZE_CONFIG_KEY, Integer.class).or(DEFAULT_BUFFER_SIZE)
+                .intValue();
+    }
+
+    private int getMaxSegments() {
+        return configDB.get(MAX_SEGMENTS_CONFIG_KEY, Integer.class).or(DEFAULT_MAX_SEGMENTS)
+                .intValue();
+    }
+
+    /**
+     * @return the files with the given suffix, newest first
+     */
+    private static File[] listFiles(File dir, final String suffix) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(suffix);
+            }
+        });
+        // names are fixed length hex sequence numbers
+        Arrays.sort(files, Collections.reverseOrder());
+        return files;
+    }
+
+    private static long sequence(File segmentFile) {
+        String name = segmentFile.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[dir: %s, segments: %s]", getClass().getSimpleName(),
+                dataRoot == null ? "<unset>" : dataRoot.getAbsolutePath(), segments.size());
+    }
+
+    private static final Ordering<MappedSegment> BY_FILE_SIZE = Ordering.natural().onResultOf(
+            new Function<MappedSegment, Long>() {
+                @Override
+                public Long apply(MappedSegment segment) {
+                    return Long.valueOf(segment.getFile().length());
+                }
+            });
+
+    private static class ObsoleteSegment {
+
+        final File file;
+
+        final Reference<?> mapping;
+
+        ObsoleteSegment(File file, Reference<?> mapping) {
+            this.file = file;
+            this.mapping = mapping;
+        }
+    }
+
+    /**
+     * Merges the objects of several sorted segments in id order, skipping duplicates
+     */
+    private static class MergingIterator extends AbstractIterator<RawObject> {
+
+        private final PriorityQueue<PeekingIterator<RawObject>> queue;
+
+        MergingIterator(List<MappedSegment> segments) {
+            queue = new PriorityQueue<>(segments.size(),
+                    new Comparator<PeekingIterator<RawObject>>() {
+                        @Override
+                        public int compare(PeekingIterator<RawObject> o1,
+                                PeekingIterator<RawObject> o2) {
+                            return o1.peek().getId().compareTo(o2.peek().getId());
+                        }
+                    });
+            for (MappedSegment segment : segments) {
+                PeekingIterator<RawObject> it = Iterators.peekingIterator(segment.iterator());
+                if (it.hasNext()) {
+                    queue.add(it);
+                }
+            }
+        }
+
+        @Override
+        protected RawObject computeNext() {
+            RawObject next = poll();
+            if (next == null) {
+                return endOfData();
+            }
+            PeekingIterator<RawObject> head;
+            while ((head = queue.peek()) != null && head.peek().getId().equals(next.getId())) {
+                poll();
+            }
+            return next;
+        }
+
+        private RawObject poll() {
+            PeekingIterator<RawObject> it = queue.poll();
+            if (it == null) {
+                return null;
+            }
+            RawObject object = it.next();
+            if (it.hasNext()) {
+                queue.add(it);
+            }
+            return object;
+        }
+    }
+}
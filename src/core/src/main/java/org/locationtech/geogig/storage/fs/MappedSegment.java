@@ -0,0 +1,329 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.fs;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.storage.RawObject;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+/**
+ * An immutable file of objects sorted by id, read through a memory mapped buffer.
+ * <p>
+ * The file holds the raw objects one after the other, followed by the index of fixed size entries
+ * of object id, offset and length in {@link ObjectId#compareTo(ObjectId) id order}, and a footer
+ * with the index offset, the number of objects, the format version and a magic number. Objects
+ * are looked up with a binary search over the mapped index, so reading an object is just a matter
+ * of a few page cache hits.
+ *
+ * @see MappedObjectDatabase
+ */
+final class MappedSegment {
+
+    private static final int MAGIC = 0x47474D53;
+
+    private static final int VERSION = 1;
+
+    private static final int ENTRY_SIZE = ObjectId.NUM_BYTES + 4 + 4;
+
+    private static final int FOOTER_SIZE = 4 * 4;
+
+    /**
+     * Maximum size of a segment file, so that it can be mapped as a single buffer
+     */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final int indexOffset;
+
+    private final int count;
+
+    private MappedSegment(File file, MappedByteBuffer buffer, int indexOffset, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.indexOffset = indexOffset;
+        this.count = count;
+    }
+
+    /**
+     * Maps the given segment file in memory.
+     */
+    public static MappedSegment open(File file) throws IOException {
+        final MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            checkState(size >= FOOTER_SIZE && size <= MAX_SIZE, "Invalid segment file size: %s",
+                    file);
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+        final int footer = buffer.capacity() - FOOTER_SIZE;
+        checkState(buffer.getInt(footer + 12) == MAGIC, "Not a segment file: %s", file);
+        checkState(buffer.getInt(footer + 8) == VERSION, "Unsupported segment version %s: %s",
+                buffer.getInt(footer + 8), file);
+        final int indexOffset = buffer.getInt(footer);
+        final int count = buffer.getInt(footer + 4);
+        checkState(indexOffset + (long) count * ENTRY_SIZE == footer, "Corrupt segment file: %s",
+                file);
+        return new MappedSegment(file, buffer, indexOffset, count);
+    }
+
+    /**
+     * Writes the objects returned by the iterator to a new segment file, until the file would
+     * exceed {@code maxSize} bytes. At least one object is written if the iterator has any. The
+     * file is synced to disk before returning.
+     *
+     * @param target the file to create
+     * @param objects the objects to write, sorted by id and with no duplicates
+     * @param maxSize the maximum size of the segment file
+     * @return the number of objects written
+     */
+    public static int write(File target, PeekingIterator<RawObject> objects, long maxSize)
+            throws IOException {
+        final File indexFile = new File(target.getParentFile(), target.getName() + ".idx.tmp");
+        final FileOutputStream out = new FileOutputStream(target);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        DataOutputStream index = null;
+        try {
+            index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    indexFile), 64 * 1024));
+            long offset = 0;
+            int count = 0;
+            while (objects.hasNext()) {
+                final int length = objects.peek().getData().length;
+                long size = offset + length + (count + 1L) * ENTRY_SIZE + FOOTER_SIZE;
+                if (count > 0 && size > maxSize) {
+                    break;
+                }
+                checkState(size <= MAX_SIZE, "Object too large: %s", objects.peek().getId());
+                RawObject object = objects.next();
+                index.write(object.getId().getRawValue());
+                index.writeInt((int) offset);
+                index.writeInt(length);
+                data.write(object.getData());
+                offset += length;
+                count++;
+            }
+            index.close();
+            Files.copy(indexFile, data);
+            data.writeInt((int) offset);
+            data.writeInt(count);
+            data.writeInt(VERSION);
+            data.writeInt(MAGIC);
+            data.flush();
+            out.getChannel().force(true);
+            data.close();
+            return count;
+        } catch (IOException | RuntimeException e) {
+            Closeables.close(data, true);
+            target.delete();
+            throw e;
+        } finally {
+            Closeables.close(index, true);
+            indexFile.delete();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a reference to the mapped buffer, cleared once neither this segment nor any stream
+     *         or buffer handed out by it are in use, so that the file can be unmapped
+     */
+    public Reference<MappedByteBuffer> mapping() {
+        return new WeakReference<MappedByteBuffer>(buffer);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean contains(ObjectId id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * @return a stream over the raw contents of the object, or {@code null} if it's not in this
+     *         segment
+     */
+    @Nullable
+    public InputStream open(ObjectId id) {
+        final int entry = indexOf(id);
+        if (entry < 0) {
+            return null;
+        }
+        return new BufferInputStream(data(entry));
+    }
+
+    /**
+     * Adds the ids of the objects in this segment that start with the given raw prefix to
+     * {@code target}
+     */
+    public void lookUp(byte[] prefix, List<ObjectId> target) {
+        for (int entry = lowerBound(prefix); entry < count
+                && compare(entry, prefix) == 0; entry++) {
+            target.add(id(entry));
+        }
+    }
+
+    /**
+     * @return all the objects in this segment, in id order
+     */
+    public Iterator<RawObject> iterator() {
+        return new AbstractIterator<RawObject>() {
+
+            private int entry;
+
+            @Override
+            protected RawObject computeNext() {
+                if (entry == count) {
+                    return endOfData();
+                }
+                ByteBuffer data = data(entry);
+                byte[] raw = new byte[data.remaining()];
+                data.get(raw);
+                return new RawObject(id(entry++), raw);
+            }
+        };
+    }
+
+    private int indexOf(ObjectId id) {
+        byte[] key = id.getRawValue();
+        int entry = lowerBound(key);
+        if (entry < count && compare(entry, key) == 0) {
+            return entry;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first index entry not lower than the given key, or {@link #count} if all of them
+     *         are lower
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the id of the index entry to the key, as unsigned bytes and up to the length of the
+     * key, so that it can be a prefix
+     */
+    private int compare(int entry, byte[] key) {
+        final int pos = indexOffset + entry * ENTRY_SIZE;
+        for (int i = 0; i < key.length; i++) {
+            int c = (buffer.get(pos + i) & 0xFF) - (key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private ObjectId id(int entry) {
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        ByteBuffer index = buffer.duplicate();
+        index.position(indexOffset + entry * ENTRY_SIZE);
+        index.get(raw);
+        return ObjectId.createNoClone(raw);
+    }
+
+    /**
+     * @return a buffer over the object's data, independent of the shared segment buffer
+     */
+    private ByteBuffer data(int entry) {
+        final int pos = indexOffset + entry * ENTRY_SIZE + ObjectId.NUM_BYTES;
+        final int offset = buffer.getInt(pos);
+        final int length = buffer.getInt(pos + 4);
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + length);
+        data.position(offset);
+        return data.slice();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, objects: %,d]", getClass().getSimpleName(), file.getName(),
+                count);
+    }
+
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
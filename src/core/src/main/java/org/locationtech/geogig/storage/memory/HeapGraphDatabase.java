@@ -203,6 +203,15 @@ public class HeapGraphDatabase implements GraphDatabase {
         ;
     }
 
+    @Override
+    public Optional<String> getProperty(ObjectId commitId, String propertyName) {
+        Optional<Node> node = graph.get(commitId);
+        if (node.isPresent()) {
+            return node.get().get(propertyName);
+        }
+        return Optional.absent();
+    }
+
     @Override
     public void truncate() {
         graph.clear();
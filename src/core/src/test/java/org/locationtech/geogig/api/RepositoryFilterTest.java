@@ -0,0 +1,97 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.vividsolutions.jts.geom.Envelope;
+
+public class RepositoryFilterTest extends Assert {
+
+    private static RepositoryFilter filter(String featurePath, String cql) {
+        RepositoryFilter filter = new RepositoryFilter();
+        filter.addFilter(featurePath, "CQL", cql);
+        return filter;
+    }
+
+    @Test
+    public void testNoFilters() {
+        RepositoryFilter filter = new RepositoryFilter();
+        assertFalse(filter.getBounds().isPresent());
+        assertFalse(filter.getBounds("points").isPresent());
+    }
+
+    @Test
+    public void testBBox() {
+        RepositoryFilter filter = filter("points", "BBOX(pp, 0, 0, 10, 20)");
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 20)), filter.getBounds("points"));
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 20)), filter.getBounds());
+        // no filter applies to other paths
+        assertFalse(filter.getBounds("lines").isPresent());
+    }
+
+    @Test
+    public void testDefaultFilter() {
+        RepositoryFilter filter = filter("default", "BBOX(pp, 0, 0, 10, 20)");
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 20)), filter.getBounds("points"));
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 20)), filter.getBounds("lines"));
+    }
+
+    @Test
+    public void testCombinedFilters() {
+        RepositoryFilter filter = filter("points", "BBOX(pp, 0, 0, 10, 10) AND ip = 1");
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 10)), filter.getBounds("points"));
+
+        filter = filter("points", "BBOX(pp, 0, 0, 10, 10) OR BBOX(pp, 20, 20, 30, 30)");
+        assertEquals(Optional.of(new Envelope(0, 30, 0, 30)), filter.getBounds("points"));
+    }
+
+    @Test
+    public void testUnboundedFilters() {
+        assertFalse(filter("points", "ip = 1").getBounds("points").isPresent());
+        assertFalse(filter("points", "INCLUDE").getBounds("points").isPresent());
+        assertFalse(filter("points", "BBOX(pp, 0, 0, 10, 10) OR ip = 1").getBounds("points")
+                .isPresent());
+        // the features may be reprojected before being evaluated
+        assertFalse(filter("points", "BBOX(pp, 0, 0, 10, 10, 'EPSG:4326')").getBounds("points")
+                .isPresent());
+    }
+
+    @Test
+    public void testUnionOfAllFilters() {
+        RepositoryFilter filter = filter("points", "BBOX(pp, 0, 0, 10, 10)");
+        filter.addFilter("lines", "CQL", "BBOX(lp, 20, 20, 30, 30)");
+        assertEquals(Optional.of(new Envelope(0, 30, 0, 30)), filter.getBounds());
+
+        filter.addFilter("polygons", "CQL", "ip = 1");
+        assertFalse(filter.getBounds().isPresent());
+    }
+
+    @Test
+    public void testBoundsUpdatedWhenFiltersAdded() {
+        RepositoryFilter filter = filter("default", "BBOX(pp, 0, 0, 10, 10)");
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 10)), filter.getBounds("points"));
+
+        filter.addFilter("points", "CQL", "BBOX(pp, 20, 20, 30, 30)");
+        assertEquals(Optional.of(new Envelope(20, 30, 20, 30)), filter.getBounds("points"));
+        assertEquals(Optional.of(new Envelope(0, 10, 0, 10)), filter.getBounds("lines"));
+    }
+
+    @Test
+    public void testFilterKey() {
+        RepositoryFilter filter = filter("default", "BBOX(pp, 0, 0, 10, 10)");
+        filter.addFilter("points", "CQL", "ip = 1");
+        assertEquals("CQL:ip = 1", filter.getFilterKey("points"));
+        assertEquals("CQL:BBOX(pp, 0, 0, 10, 10)", filter.getFilterKey("lines"));
+        assertEquals("", new RepositoryFilter().getFilterKey("points"));
+    }
+}
@@ -46,6 +46,46 @@ public class UpdateRefTest extends RepositoryTestCase {
         assertFalse(newBranch.get().getObjectId().equals(commit1.getId()));
     }
 
+    @Test
+    public void testExpectedValue() throws Exception {
+        insertAndAdd(points1);
+        RevCommit commit1 = geogig.command(CommitOp.class).call();
+        insertAndAdd(points2);
+        RevCommit commit2 = geogig.command(CommitOp.class).call();
+
+        Optional<Ref> updated = geogig.command(UpdateRef.class).setName("refs/heads/branch1")
+                .setNewValue(commit1.getId()).setExpectedValue(null).call();
+        assertEquals(commit1.getId(), updated.get().getObjectId());
+
+        // doesn't match, left untouched
+        updated = geogig.command(UpdateRef.class).setName("refs/heads/branch1")
+                .setNewValue(commit2.getId()).setExpectedValue(commit2.getId()).call();
+        assertFalse(updated.isPresent());
+        updated = geogig.command(UpdateRef.class).setName("refs/heads/branch1")
+                .setNewValue(commit2.getId()).setExpectedValue(null).call();
+        assertFalse(updated.isPresent());
+        assertEquals(commit1.getId(),
+                geogig.command(RefParse.class).setName("refs/heads/branch1").call().get()
+                        .getObjectId());
+
+        updated = geogig.command(UpdateRef.class).setName("refs/heads/branch1")
+                .setNewValue(commit2.getId()).setExpectedValue(commit1.getId()).call();
+        assertEquals(commit2.getId(), updated.get().getObjectId());
+    }
+
+    @Test
+    public void testOldValueMismatch() throws Exception {
+        insertAndAdd(points1);
+        RevCommit commit1 = geogig.command(CommitOp.class).call();
+        geogig.command(BranchCreateOp.class).setName("branch1").call();
+        insertAndAdd(points2);
+        RevCommit commit2 = geogig.command(CommitOp.class).call();
+
+        exception.expect(IllegalStateException.class);
+        geogig.command(UpdateRef.class).setName("refs/heads/branch1").setNewValue(commit1.getId())
+                .setOldValue(commit2.getId()).call();
+    }
+
     @Test
     public void testNoName() {
         exception.expect(IllegalStateException.class);
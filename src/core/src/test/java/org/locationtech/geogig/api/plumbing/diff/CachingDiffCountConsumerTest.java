@@ -0,0 +1,138 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static org.locationtech.geogig.api.plumbing.diff.TreeTestSupport.createFeaturesTree;
+import static org.locationtech.geogig.api.plumbing.diff.TreeTestSupport.featureNode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+public class CachingDiffCountConsumerTest extends Assert {
+
+    private CountingObjectDatabase odb;
+
+    private RevTree root;
+
+    @Before
+    public void setUp() {
+        TreeDiffCountCache.clear();
+        odb = new CountingObjectDatabase();
+        odb.open();
+
+        RevTreeBuilder rootBuilder = new RevTreeBuilder(odb);
+        putChildTree(rootBuilder, "tree1", createFeaturesTree(odb, "tree1", 10).build());
+        putChildTree(rootBuilder, "tree2", createFeaturesTree(odb, "tree2",
+                4 * RevTree.NORMALIZED_SIZE_LIMIT).build());
+        root = rootBuilder.build();
+        odb.put(root);
+    }
+
+    private void putChildTree(RevTreeBuilder rootBuilder, String path, RevTree childTree) {
+        odb.put(childTree);
+        rootBuilder.put(Node.create(path, childTree.getId(), ObjectId.NULL, TYPE.TREE, null));
+    }
+
+    private RevTree childTree(RevTree root, String name) {
+        for (Node node : root.trees().get()) {
+            if (node.getName().equals(name)) {
+                return odb.getTree(node.getObjectId());
+            }
+        }
+        throw new IllegalArgumentException(name + " not found");
+    }
+
+    private DiffObjectCount count(RevTree left, RevTree right, boolean cached) {
+        PreOrderDiffWalk visitor = new PreOrderDiffWalk(left, right, odb, odb);
+        DiffCountConsumer counter = new DiffCountConsumer(odb);
+        visitor.walk(cached ? new CachingDiffCountConsumer(counter) : counter);
+        return counter.get();
+    }
+
+    private void assertCount(DiffObjectCount expected, DiffObjectCount actual) {
+        assertEquals(expected.getFeaturesAdded(), actual.getFeaturesAdded());
+        assertEquals(expected.getFeaturesRemoved(), actual.getFeaturesRemoved());
+        assertEquals(expected.getFeaturesChanged(), actual.getFeaturesChanged());
+        assertEquals(expected.getTreesAdded(), actual.getTreesAdded());
+        assertEquals(expected.getTreesRemoved(), actual.getTreesRemoved());
+        assertEquals(expected.getTreesChanged(), actual.getTreesChanged());
+    }
+
+    @Test
+    public void testIncrementalChanges() {
+        // change a lot of features on tree2
+        RevTreeBuilder tree2 = new RevTreeBuilder(odb, childTree(root, "tree2"));
+        final int numChanges = 4 * RevTree.NORMALIZED_SIZE_LIMIT;
+        for (int i = 0; i < numChanges; i++) {
+            tree2.put(featureNode("tree2", 4 * RevTree.NORMALIZED_SIZE_LIMIT + i));
+        }
+        RevTreeBuilder rootBuilder = new RevTreeBuilder(odb, root);
+        putChildTree(rootBuilder, "tree2", tree2.build());
+        final RevTree changed1 = rootBuilder.build();
+        odb.put(changed1);
+
+        DiffObjectCount expected = count(root, changed1, false);
+        assertEquals(numChanges, expected.featureCount());
+        assertCount(expected, count(root, changed1, true));
+
+        // then a single one
+        tree2.put(featureNode("tree2", 10 * RevTree.NORMALIZED_SIZE_LIMIT));
+        putChildTree(rootBuilder, "tree2", tree2.build());
+        final RevTree changed2 = rootBuilder.build();
+        odb.put(changed2);
+
+        odb.treeReads.set(0);
+        expected = count(root, changed2, false);
+        final int uncachedReads = odb.treeReads.get();
+
+        odb.treeReads.set(0);
+        DiffObjectCount actual = count(root, changed2, true);
+        final int cachedReads = odb.treeReads.get();
+
+        assertCount(expected, actual);
+        assertEquals(numChanges + 1, actual.featureCount());
+        assertTrue(String.format("expected less than %d tree reads, got %d", uncachedReads,
+                cachedReads), cachedReads < uncachedReads);
+    }
+
+    @Test
+    public void testSubtreeCountsCachedOnlyAboveThreshold() {
+        RevTreeBuilder tree1 = new RevTreeBuilder(odb, childTree(root, "tree1"));
+        tree1.remove("tree11");
+        RevTreeBuilder rootBuilder = new RevTreeBuilder(odb, root);
+        RevTree newTree1 = tree1.build();
+        putChildTree(rootBuilder, "tree1", newTree1);
+        RevTree changed = rootBuilder.build();
+
+        assertEquals(1, count(root, changed, true).featureCount());
+        ObjectId oldTree1 = childTree(root, "tree1").getId();
+        assertFalse(TreeDiffCountCache.get(oldTree1, newTree1.getId(), null).isPresent());
+    }
+
+    private static class CountingObjectDatabase extends HeapObjectDatabse {
+
+        final AtomicInteger treeReads = new AtomicInteger();
+
+        @Override
+        public RevTree getTree(ObjectId id) {
+            treeReads.incrementAndGet();
+            return super.getTree(id);
+        }
+    }
+}
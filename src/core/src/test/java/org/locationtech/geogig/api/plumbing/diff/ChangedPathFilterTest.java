@@ -0,0 +1,67 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class ChangedPathFilterTest extends Assert {
+
+    @Test
+    public void testFeaturePaths() {
+        ChangedPathFilter filter = ChangedPathFilter.create(ImmutableList.of("roads"),
+                ImmutableList.of("roads/1", "roads/2"), true);
+        assertTrue(filter.mightHaveChanged(""));
+        assertTrue(filter.mightHaveChanged("roads"));
+        assertTrue(filter.mightHaveChanged("roads/1"));
+        assertTrue(filter.mightHaveChanged("roads/2"));
+        assertFalse(filter.mightHaveChanged("buildings"));
+        assertFalse(filter.mightHaveChanged("buildings/1"));
+        assertTrue(filter.mightHaveChangedAny(ImmutableList.of("buildings", "roads/1")));
+        assertFalse(filter.mightHaveChangedAny(ImmutableList.of("buildings", "rivers")));
+    }
+
+    @Test
+    public void testTreePathsOnly() {
+        ChangedPathFilter filter = ChangedPathFilter.create(ImmutableList.of("roads"),
+                Collections.<String> emptyList(), false);
+        assertTrue(filter.mightHaveChanged("roads"));
+        assertTrue(filter.mightHaveChanged("roads/1"));
+        assertFalse(filter.mightHaveChanged("buildings/1"));
+        // top level features may be anywhere in the root tree
+        assertTrue(filter.mightHaveChanged("1"));
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        ChangedPathFilter filter = ChangedPathFilter.create(ImmutableList.of("roads"),
+                ImmutableList.of("roads/1"), true);
+        Optional<ChangedPathFilter> decoded = ChangedPathFilter.decode(filter.encode());
+        assertTrue(decoded.isPresent());
+        assertTrue(decoded.get().mightHaveChanged("roads/1"));
+        assertFalse(decoded.get().mightHaveChanged("roads/2"));
+        assertFalse(decoded.get().mightHaveChanged("buildings"));
+    }
+
+    @Test
+    public void testDecodeUnknownFormat() {
+        ChangedPathFilter filter = ChangedPathFilter.create(ImmutableList.of("roads"),
+                Collections.<String> emptyList(), false);
+        String encoded = filter.encode();
+        assertFalse(ChangedPathFilter.decode("2" + encoded.substring(1)).isPresent());
+        assertFalse(ChangedPathFilter.decode("1;t;not base64!").isPresent());
+        assertFalse(ChangedPathFilter.decode("garbage").isPresent());
+    }
+}
@@ -0,0 +1,120 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+public class CommitChangeCountsTest extends Assert {
+
+    private CommitChangeCounts sample() {
+        CommitChangeCounts.Builder builder = CommitChangeCounts.builder();
+        builder.added("roads");
+        builder.added("roads");
+        builder.modified("roads");
+        builder.removed("roads/highways");
+        builder.added("roadside");
+        builder.modified("");
+        return builder.build();
+    }
+
+    @Test
+    public void testCounts() {
+        CommitChangeCounts counts = sample();
+        assertEquals(3, counts.getAdded(null));
+        assertEquals(2, counts.getModified(null));
+        assertEquals(1, counts.getRemoved(null));
+
+        assertEquals(2, counts.getAdded("roads"));
+        assertEquals(1, counts.getModified("roads"));
+        assertEquals(1, counts.getRemoved("roads"));
+
+        assertEquals(0, counts.getAdded("roads/highways"));
+        assertEquals(1, counts.getRemoved("roads/highways"));
+        assertEquals(1, counts.getAdded("roadside"));
+    }
+
+    @Test
+    public void testBulkCounts() {
+        CommitChangeCounts.Builder builder = CommitChangeCounts.builder();
+        builder.added("roads", 1000);
+        builder.added("roads");
+        builder.removed("buildings", 500);
+        builder.removed("buildings");
+        CommitChangeCounts counts = builder.build();
+        assertEquals(1001, counts.getAdded("roads"));
+        assertEquals(501, counts.getRemoved("buildings"));
+        assertEquals(1001, counts.getAdded(null));
+        assertEquals(501, counts.getRemoved(null));
+        assertEquals(0, counts.getModified(null));
+    }
+
+    @Test
+    public void testTreeChanges() {
+        CommitChangeCounts.Builder builder = CommitChangeCounts.builder();
+        builder.treeAdded("rivers");
+        builder.removed("buildings", 5);
+        builder.treeRemoved("buildings");
+        builder.added("roads");
+        CommitChangeCounts counts = builder.build();
+        assertTrue(counts.isTreeAdded("rivers"));
+        assertFalse(counts.isTreeRemoved("rivers"));
+        assertTrue(counts.isTreeRemoved("buildings"));
+        assertFalse(counts.isTreeAdded("roads"));
+        assertFalse(counts.isTreeRemoved("roads"));
+        assertFalse(counts.isTreeAdded("lakes"));
+        assertTrue(counts.covers("rivers"));
+        assertEquals(0, counts.getAdded("rivers"));
+
+        Optional<CommitChangeCounts> decoded = CommitChangeCounts.decode(counts.encode());
+        assertTrue(decoded.isPresent());
+        assertTrue(decoded.get().isTreeAdded("rivers"));
+        assertTrue(decoded.get().isTreeRemoved("buildings"));
+        assertEquals(5, decoded.get().getRemoved("buildings"));
+    }
+
+    @Test
+    public void testCovers() {
+        CommitChangeCounts counts = sample();
+        assertTrue(counts.covers(null));
+        assertTrue(counts.covers(""));
+        assertTrue(counts.covers("roads"));
+        assertTrue(counts.covers("roads/highways"));
+        assertFalse(counts.covers("road"));
+        assertFalse(counts.covers("roads/1"));
+        assertFalse(counts.covers("buildings"));
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        CommitChangeCounts counts = sample();
+        Optional<CommitChangeCounts> decoded = CommitChangeCounts.decode(counts.encode());
+        assertTrue(decoded.isPresent());
+        assertEquals(counts.encode(), decoded.get().encode());
+        assertEquals(2, decoded.get().getAdded("roads"));
+        assertEquals(2, decoded.get().getModified(""));
+
+        decoded = CommitChangeCounts.decode(CommitChangeCounts.builder().build().encode());
+        assertTrue(decoded.isPresent());
+        assertEquals(0, decoded.get().getAdded(null));
+    }
+
+    @Test
+    public void testDecodeUnknownFormat() {
+        String encoded = sample().encode();
+        assertFalse(CommitChangeCounts.decode("1" + encoded.substring(1)).isPresent());
+        assertFalse(CommitChangeCounts.decode("2;cm9hZHM=").isPresent());
+        assertFalse(CommitChangeCounts.decode("2;cm9hZHM==1,2,3").isPresent());
+        assertFalse(CommitChangeCounts.decode("2;cm9hZHM==1,a,2,0").isPresent());
+        assertFalse(CommitChangeCounts.decode("garbage").isPresent());
+    }
+}
@@ -0,0 +1,201 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevCommitImpl;
+import org.locationtech.geogig.api.RevPerson;
+import org.locationtech.geogig.api.RevPersonImpl;
+import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.memory.HeapGraphDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class CommitHistorySummaryTest extends Assert {
+
+    private static RevCommit commit(String id, String authorName, String authorEmail) {
+        return commit(id, null, authorName, authorEmail);
+    }
+
+    private static RevCommit commit(String id, String parentId, String authorName,
+            String authorEmail) {
+        RevPerson author = new RevPersonImpl(authorName, authorEmail, 0L, 0);
+        RevPerson committer = new RevPersonImpl("committer", null, 0L, 0);
+        ImmutableList<ObjectId> parents = parentId == null ? ImmutableList.<ObjectId> of()
+                : ImmutableList.of(ObjectId.forString(parentId));
+        return new RevCommitImpl(ObjectId.forString(id), ObjectId.forString("tree " + id),
+                parents, author, committer, "message " + id);
+    }
+
+    private CommitHistorySummary sample() {
+        Map<String, Long> sizes = ImmutableMap.of("roads", 10L, "roads/highways", 4L,
+                "buildings", 5L);
+        CommitHistorySummary summary = CommitHistorySummary.root(commit("1", "a", "a@x"), sizes);
+
+        CommitChangeCounts.Builder counts = CommitChangeCounts.builder();
+        counts.added("roads/highways", 3);
+        counts.removed("roads");
+        counts.modified("buildings");
+        counts.added("rivers", 2);
+        summary = summary.child(commit("2", "b", null), counts.build());
+
+        counts = CommitChangeCounts.builder();
+        counts.removed("buildings", 5);
+        return summary.child(commit("3", "a", "a@x"), counts.build());
+    }
+
+    @Test
+    public void testCommits() {
+        CommitHistorySummary summary = sample();
+        assertEquals(3, summary.getNumCommits());
+        assertEquals(ObjectId.forString("1"), summary.getRootCommitId());
+    }
+
+    @Test
+    public void testAuthors() {
+        List<RevPerson> authors = sample().getAuthors();
+        assertEquals(2, authors.size());
+        assertEquals(Optional.of("a"), authors.get(0).getName());
+        assertEquals(Optional.of("a@x"), authors.get(0).getEmail());
+        assertEquals(Optional.of("b"), authors.get(1).getName());
+        assertEquals(Optional.absent(), authors.get(1).getEmail());
+    }
+
+    @Test
+    public void testAuthorFallsBackToCommitter() {
+        CommitHistorySummary summary = CommitHistorySummary.root(commit("1", null, null),
+                ImmutableMap.<String, Long> of());
+        List<RevPerson> authors = summary.getAuthors();
+        assertEquals(1, authors.size());
+        assertEquals(Optional.of("committer"), authors.get(0).getName());
+    }
+
+    @Test
+    public void testTreeSizes() {
+        CommitHistorySummary summary = sample();
+        assertEquals(ImmutableMap.of("buildings", 0L, "rivers", 2L, "roads", 12L),
+                summary.getTreeSizes(null));
+        assertEquals(ImmutableMap.of("roads/highways", 7L), summary.getTreeSizes("roads"));
+        assertEquals(ImmutableMap.of(), summary.getTreeSizes("rivers"));
+    }
+
+    @Test
+    public void testEmptyTrees() {
+        Map<String, Long> sizes = ImmutableMap.of("roads", 10L, "lakes", 0L);
+        CommitHistorySummary summary = CommitHistorySummary.root(commit("1", "a", "a@x"), sizes);
+        assertEquals(ImmutableMap.of("lakes", 0L, "roads", 10L), summary.getTreeSizes(null));
+
+        CommitChangeCounts.Builder counts = CommitChangeCounts.builder();
+        counts.treeAdded("rivers");
+        counts.treeAdded("rivers/empty");
+        counts.removed("roads", 10);
+        counts.treeRemoved("roads");
+        summary = summary.child(commit("2", "1", "a", "a@x"), counts.build());
+        assertEquals(ImmutableMap.of("lakes", 0L, "rivers", 0L), summary.getTreeSizes(null));
+        assertEquals(ImmutableMap.of("rivers/empty", 0L), summary.getTreeSizes("rivers"));
+    }
+
+    @Test
+    public void testStoredAsChanges() {
+        GraphDatabase graphDb = new HeapGraphDatabase(mock(Platform.class));
+        graphDb.open();
+        final int numCommits = CommitHistorySummary.SNAPSHOT_INTERVAL + 10;
+        ObjectId parentId = null;
+        CommitHistorySummary summary = null;
+        for (int i = 1; i <= numCommits; i++) {
+            RevCommit commit = commit(String.valueOf(i), i == 1 ? null : String.valueOf(i - 1),
+                    "author" + (i % 3), null);
+            graphDb.put(commit.getId(), commit.getParentIds());
+            if (summary == null) {
+                summary = CommitHistorySummary.root(commit, ImmutableMap.of("roads", 0L));
+            } else {
+                CommitChangeCounts.Builder counts = CommitChangeCounts.builder();
+                counts.added("roads");
+                if (i == 5) {
+                    counts.treeAdded("rivers");
+                } else if (i == 7) {
+                    counts.treeRemoved("rivers");
+                }
+                summary = summary.child(commit, counts.build());
+            }
+            summary.write(graphDb, commit.getId());
+            if (i > 1 && i % CommitHistorySummary.SNAPSHOT_INTERVAL != 0) {
+                // only the changes are stored
+                String stored = graphDb.getProperty(commit.getId(), "historySummary").get();
+                assertEquals(summary.encodeDelta(), stored);
+                assertFalse(stored.contains(";f"));
+            }
+            parentId = commit.getId();
+        }
+
+        Optional<CommitHistorySummary> read = CommitHistorySummary.read(graphDb, parentId);
+        assertTrue(read.isPresent());
+        assertEquals(summary.encode(), read.get().encode());
+        assertEquals(numCommits, read.get().getNumCommits());
+        assertEquals(ObjectId.forString("1"), read.get().getRootCommitId());
+        assertEquals(ImmutableMap.of("roads", numCommits - 1L), read.get().getTreeSizes(null));
+        assertEquals(3, read.get().getAuthors().size());
+
+        read = CommitHistorySummary.read(graphDb, ObjectId.forString("6"));
+        assertTrue(read.isPresent());
+        assertEquals(ImmutableMap.of("rivers", 0L, "roads", 5L), read.get().getTreeSizes(null));
+    }
+
+    @Test
+    public void testMissingParentSummary() {
+        GraphDatabase graphDb = new HeapGraphDatabase(mock(Platform.class));
+        graphDb.open();
+        RevCommit first = commit("1", "a", "a@x");
+        RevCommit second = commit("2", "1", "a", "a@x");
+        graphDb.put(first.getId(), first.getParentIds());
+        graphDb.put(second.getId(), second.getParentIds());
+        CommitHistorySummary summary = CommitHistorySummary.root(first,
+                ImmutableMap.of("roads", 1L));
+        summary.child(second, CommitChangeCounts.builder().build()).write(graphDb,
+                second.getId());
+        assertFalse(CommitHistorySummary.read(graphDb, second.getId()).isPresent());
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        CommitHistorySummary summary = sample();
+        Optional<CommitHistorySummary> decoded = CommitHistorySummary.decode(summary.encode());
+        assertTrue(decoded.isPresent());
+        assertEquals(summary.encode(), decoded.get().encode());
+        assertEquals(3, decoded.get().getNumCommits());
+        assertEquals(summary.getRootCommitId(), decoded.get().getRootCommitId());
+        assertEquals(summary.getTreeSizes("roads"), decoded.get().getTreeSizes("roads"));
+        assertEquals(2, decoded.get().getAuthors().size());
+        assertEquals(Optional.absent(), decoded.get().getAuthors().get(1).getEmail());
+    }
+
+    @Test
+    public void testDecodeUnknownFormat() {
+        String encoded = sample().encode();
+        assertFalse(CommitHistorySummary.decode("1" + encoded.substring(1)).isPresent());
+        assertFalse(CommitHistorySummary.decode("2;3").isPresent());
+        assertFalse(CommitHistorySummary.decode(encoded.replace(";f", ";d" + ObjectId.NULL))
+                .isPresent());
+        assertFalse(CommitHistorySummary.decode(encoded + ";x").isPresent());
+        assertFalse(CommitHistorySummary.decode(encoded + ";a-,-").isPresent());
+        assertFalse(CommitHistorySummary.decode("garbage").isPresent());
+    }
+}
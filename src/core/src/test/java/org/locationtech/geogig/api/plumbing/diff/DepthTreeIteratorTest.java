@@ -179,6 +179,27 @@ public class DepthTreeIteratorTest extends Assert {
         System.err.println(sw);
     }
 
+    @Test
+    public void testPrefetchKeepsIterationOrder() {
+        int numSubTrees = RevTree.NORMALIZED_SIZE_LIMIT + 1;
+        int featuresPerTree = RevTree.NORMALIZED_SIZE_LIMIT + 1;
+        RevTreeBuilder builder = createTreesTree(source, numSubTrees, featuresPerTree, metadataId);
+        for (int i = 0; i < 25000; i++) {
+            builder.put(featureNode("f", i));
+        }
+        RevTree mixedBucketsTree = builder.build();
+
+        for (Strategy strategy : Strategy.values()) {
+            for (RevTree tree : new RevTree[] { mixedLeafTree, featuresBucketsTree,
+                    mixedBucketsTree }) {
+                List<NodeRef> expected = list(tree, strategy);
+                DepthTreeIterator prefetching = iterator(tree, strategy);
+                prefetching.setPrefetch(true);
+                assertEquals(strategy.toString(), expected, Lists.newArrayList(prefetching));
+            }
+        }
+    }
+
     private List<NodeRef> list(RevTree tree, Strategy strategy) {
         List<NodeRef> refs = Lists.newArrayList(iterator(tree, strategy));
         return refs;
@@ -0,0 +1,158 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.Bounded;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RepositoryFilter;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class FilterBoundsPredicateTest extends Assert {
+
+    private ObjectDatabase db;
+
+    private RepositoryFilter filter;
+
+    @Before
+    public void setUp() {
+        db = new HeapObjectDatabse();
+        db.open();
+        filter = new RepositoryFilter();
+        filter.addFilter("points", "CQL", "BBOX(pp, 0, 0, 10, 10)");
+    }
+
+    private RevFeature feature(String name, double x, double y) {
+        RevFeature feature = RevFeatureImpl.build(ImmutableList.<Optional<Object>> of(
+                Optional.<Object> of(name), Optional.<Object> of(Integer.valueOf(1)),
+                Optional.<Object> of(new GeometryFactory().createPoint(new Coordinate(x, y)))));
+        db.put(feature);
+        return feature;
+    }
+
+    private static Node node(String name, ObjectId id, TYPE type, Envelope bounds) {
+        return Node.create(name, id, ObjectId.NULL, type, bounds);
+    }
+
+    private Predicate<Bounded> predicate(Set<ObjectId> tracked) {
+        Optional<FilterBoundsPredicate> predicate = FilterBoundsPredicate.create(filter, tracked,
+                db);
+        assertTrue(predicate.isPresent());
+        return predicate.get();
+    }
+
+    @Test
+    public void testUnboundedFilter() {
+        RepositoryFilter filter = new RepositoryFilter();
+        filter.addFilter("points", "CQL", "ip = 1");
+        assertFalse(FilterBoundsPredicate.create(filter, ImmutableSet.<ObjectId> of(), db)
+                .isPresent());
+    }
+
+    @Test
+    public void testFeatureNodes() {
+        Predicate<Bounded> predicate = predicate(ImmutableSet.<ObjectId> of());
+        ObjectId id = ObjectId.forString("feature");
+        assertTrue(predicate.apply(node("inside", id, TYPE.FEATURE, new Envelope(5, 5, 5, 5))));
+        assertFalse(predicate.apply(node("outside", id, TYPE.FEATURE, new Envelope(20, 20, 20,
+                20))));
+        assertTrue(predicate.apply(node("crossing", id, TYPE.FEATURE, new Envelope(5, 15, 5, 15))));
+        assertFalse(predicate.apply(node("nogeom", id, TYPE.FEATURE, null)));
+        assertFalse(predicate.apply(null));
+    }
+
+    @Test
+    public void testPrunedAny() {
+        FilterBoundsPredicate predicate = FilterBoundsPredicate.create(filter,
+                ImmutableSet.<ObjectId> of(), db).get();
+        ObjectId id = ObjectId.forString("feature");
+        assertTrue(predicate.apply(node("inside", id, TYPE.FEATURE, new Envelope(5, 5, 5, 5))));
+        // the missing side of an added or removed node doesn't count
+        assertFalse(predicate.apply(null));
+        assertFalse(predicate.prunedAny());
+
+        assertFalse(predicate.apply(Bucket.create(id, new Envelope(20, 30, 20, 30))));
+        assertTrue(predicate.prunedAny());
+    }
+
+    @Test
+    public void testTreeNodesAreNotPruned() {
+        Predicate<Bounded> predicate = predicate(ImmutableSet.<ObjectId> of());
+        assertTrue(predicate.apply(node("tree", ObjectId.forString("tree"), TYPE.TREE,
+                new Envelope(20, 30, 20, 30))));
+        assertTrue(predicate.apply(node("empty", ObjectId.forString("empty"), TYPE.TREE, null)));
+    }
+
+    @Test
+    public void testBuckets() {
+        Predicate<Bounded> predicate = predicate(ImmutableSet.<ObjectId> of());
+        ObjectId id = ObjectId.forString("bucket");
+        assertTrue(predicate.apply(Bucket.create(id, new Envelope(1, 2, 1, 2))));
+        assertFalse(predicate.apply(Bucket.create(id, new Envelope(20, 30, 20, 30))));
+        assertTrue(predicate.apply(Bucket.create(id, new Envelope(-5, 5, -5, 5))));
+        assertTrue(predicate.apply(Bucket.create(id, new Envelope(-50, 50, -50, 50))));
+        assertFalse(predicate.apply(Bucket.create(id, null)));
+    }
+
+    @Test
+    public void testTrackedFeatures() {
+        RevFeature tracked = feature("tracked", 50, 50);
+        Predicate<Bounded> predicate = predicate(ImmutableSet.of(tracked.getId()));
+
+        // tracked features are kept wherever they are
+        assertTrue(predicate.apply(node("tracked", tracked.getId(), TYPE.FEATURE, new Envelope(
+                50, 50, 50, 50))));
+        assertTrue(predicate.apply(node("moved", tracked.getId(), TYPE.FEATURE, new Envelope(
+                80, 80, 80, 80))));
+        assertFalse(predicate.apply(node("other", ObjectId.forString("other"), TYPE.FEATURE,
+                new Envelope(50, 50, 50, 50))));
+
+        // and so are the buckets that may contain them
+        ObjectId bucketId = ObjectId.forString("bucket");
+        assertTrue(predicate.apply(Bucket.create(bucketId, new Envelope(45, 55, 45, 55))));
+        assertTrue(predicate.apply(Bucket.create(bucketId, new Envelope(50, 50, 50, 50))));
+        assertFalse(predicate.apply(Bucket.create(bucketId, new Envelope(60, 70, 60, 70))));
+    }
+
+    @Test
+    public void testTrackedFeaturesWithoutBounds() {
+        RevFeature nogeom = RevFeatureImpl.build(ImmutableList.<Optional<Object>> of(
+                Optional.<Object> of("nogeom"), Optional.<Object> of(Integer.valueOf(1)),
+                Optional.absent()));
+        db.put(nogeom);
+        Predicate<Bounded> predicate = predicate(ImmutableSet.of(nogeom.getId()));
+
+        // there's no telling which bucket the tracked feature is in
+        ObjectId bucketId = ObjectId.forString("bucket");
+        assertTrue(predicate.apply(Bucket.create(bucketId, new Envelope(60, 70, 60, 70))));
+        assertTrue(predicate.apply(Bucket.create(bucketId, null)));
+        assertTrue(predicate.apply(node("nogeom", nogeom.getId(), TYPE.FEATURE, null)));
+        assertFalse(predicate.apply(node("other", ObjectId.forString("other"), TYPE.FEATURE,
+                new Envelope(60, 60, 60, 60))));
+    }
+}
@@ -0,0 +1,252 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.geotools.data.DataUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RepositoryFilter;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.FilteringConsumer;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+public class FilteredDiffIteratorTest extends Assert {
+
+    private ObjectDatabase db;
+
+    private Repository repository;
+
+    private RevFeatureType featureType;
+
+    /**
+     * Evaluation results are cached for all the iterators, so each test uses features of its own
+     */
+    private String testId;
+
+    /**
+     * A repository filter that counts how many features it evaluates
+     */
+    private static class CountingFilter extends RepositoryFilter {
+
+        int evaluations;
+
+        CountingFilter(String cql) {
+            addFilter("points", "CQL", cql);
+        }
+
+        @Override
+        public boolean filterObject(RevFeatureType type, String featurePath, RevObject object) {
+            evaluations++;
+            return super.filterObject(type, featurePath, object);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        db = new HeapObjectDatabse();
+        db.open();
+        repository = mock(Repository.class);
+        when(repository.objectDatabase()).thenReturn(db);
+        featureType = RevFeatureTypeImpl.build(DataUtilities.createType("points",
+                "sp:String,ip:Integer,pp:Point"));
+        db.put(featureType);
+        testId = UUID.randomUUID().toString();
+    }
+
+    private DiffEntry added(String name, int ip, double x, double y) {
+        return new DiffEntry(null, new NodeRef(node(name, ip, x, y), "points",
+                featureType.getId()));
+    }
+
+    private Node node(String name, int ip, double x, double y) {
+        Point point = new GeometryFactory().createPoint(new Coordinate(x, y));
+        RevFeature feature = RevFeatureImpl.build(ImmutableList.<Optional<Object>> of(
+                Optional.<Object> of(testId + name), Optional.<Object> of(Integer.valueOf(ip)),
+                Optional.<Object> of(point)));
+        db.put(feature);
+        return Node.create(name, feature.getId(), featureType.getId(), TYPE.FEATURE,
+                point.getEnvelopeInternal());
+    }
+
+    /**
+     * Collects the feature changes reported by a diff walk as additions to the points tree
+     */
+    private class AddedFeatures implements PreOrderDiffWalk.Consumer {
+
+        final List<DiffEntry> entries = Lists.newArrayList();
+
+        @Override
+        public void feature(Node left, Node right) {
+            entries.add(new DiffEntry(null, new NodeRef(right, "points", featureType.getId())));
+        }
+
+        @Override
+        public boolean tree(Node left, Node right) {
+            return true;
+        }
+
+        @Override
+        public void endTree(Node left, Node right) {
+        }
+
+        @Override
+        public boolean bucket(int bucketIndex, int bucketDepth, Bucket left, Bucket right) {
+            return true;
+        }
+
+        @Override
+        public void endBucket(int bucketIndex, int bucketDepth, Bucket left, Bucket right) {
+        }
+    }
+
+    private List<String> filter(List<DiffEntry> entries, RepositoryFilter filter) {
+        FilteredDiffIterator iterator = new FilteredDiffIterator(entries.iterator(), repository,
+                filter) {
+            @Override
+            public boolean isAutoIngesting() {
+                return false;
+            }
+
+            @Override
+            protected boolean trackingObject(ObjectId objectId) {
+                return false;
+            }
+        };
+        List<String> names = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            names.add(iterator.next().getNewObject().name());
+        }
+        assertEquals(names.size() < entries.size(), iterator.wasFiltered());
+        return names;
+    }
+
+    @Test
+    public void testBoundsPruning() {
+        List<DiffEntry> entries = ImmutableList.of(added("inside", 1, 5, 5),
+                added("outside", 1, 20, 20), added("border", 1, 10, 10));
+        CountingFilter filter = new CountingFilter("BBOX(pp, 0, 0, 10, 10)");
+        assertEquals(ImmutableList.of("inside", "border"), filter(entries, filter));
+        // the feature outside the filter extent was discarded by its bounds
+        assertEquals(2, filter.evaluations);
+    }
+
+    @Test
+    public void testBoundsPruningAndAttributeFilter() {
+        List<DiffEntry> entries = ImmutableList.of(added("inside", 1, 5, 5),
+                added("outside", 1, 20, 20), added("otherValue", 2, 5, 5));
+        CountingFilter filter = new CountingFilter("BBOX(pp, 0, 0, 10, 10) AND ip = 1");
+        assertEquals(ImmutableList.of("inside"), filter(entries, filter));
+        assertEquals(2, filter.evaluations);
+    }
+
+    @Test
+    public void testPrunedChangesMarkCommitSparse() {
+        // enough features to get buckets, all but one of them out of the filter extent
+        RevTreeBuilder builder = new RevTreeBuilder(db);
+        builder.put(node("inside", 1, 5, 5));
+        for (int i = 0; i < 1000; i++) {
+            builder.put(node("outside" + i, 1, 100 + i, 100 + i));
+        }
+        RevTree tree = builder.build();
+        assertTrue(tree.buckets().isPresent());
+
+        RepositoryFilter filter = new RepositoryFilter();
+        filter.addFilter("points", "CQL", "BBOX(pp, 0, 0, 10, 10)");
+        FilterBoundsPredicate boundsFilter = FilterBoundsPredicate.create(filter,
+                ImmutableSet.<ObjectId> of(), db).get();
+        AddedFeatures changes = new AddedFeatures();
+        new PreOrderDiffWalk(RevTree.EMPTY, tree, db, db).walk(new FilteringConsumer(changes,
+                boundsFilter));
+        assertTrue(changes.entries.size() < 1001);
+
+        FilteredDiffIterator iterator = new FilteredDiffIterator(changes.entries.iterator(),
+                repository, filter) {
+            @Override
+            public boolean isAutoIngesting() {
+                return false;
+            }
+
+            @Override
+            protected boolean trackingObject(ObjectId objectId) {
+                return false;
+            }
+        };
+        List<String> names = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            names.add(iterator.next().getNewObject().name());
+        }
+        assertTrue(names.contains("inside"));
+        // the iterator may have filtered nothing itself, the commit is sparse anyway
+        assertFalse(iterator.wasFiltered());
+        iterator.setBoundsFilter(boundsFilter);
+        assertTrue(iterator.wasFiltered());
+    }
+
+    @Test
+    public void testCachedEvaluations() {
+        List<DiffEntry> entries = ImmutableList.of(added("a", 1, 5, 5), added("b", 2, 5, 5),
+                added("c", 1, 5, 5));
+        CountingFilter filter = new CountingFilter("ip = 1");
+        assertEquals(ImmutableList.of("a", "c"), filter(entries, filter));
+        assertEquals(3, filter.evaluations);
+
+        // the same filter, e.g. for another clone, reuses the outcomes
+        CountingFilter sameFilter = new CountingFilter("ip = 1");
+        assertEquals(ImmutableList.of("a", "c"), filter(entries, sameFilter));
+        assertEquals(0, sameFilter.evaluations);
+    }
+
+    @Test
+    public void testCacheInvalidation() {
+        List<DiffEntry> entries = ImmutableList.of(added("a", 1, 5, 5), added("b", 2, 5, 5));
+        assertEquals(ImmutableList.of("a"), filter(entries, new CountingFilter("ip = 1")));
+
+        // a different filter gets evaluated again
+        CountingFilter otherFilter = new CountingFilter("ip = 2");
+        assertEquals(ImmutableList.of("b"), filter(entries, otherFilter));
+        assertEquals(2, otherFilter.evaluations);
+
+        // and so does a new version of a feature
+        entries = ImmutableList.of(added("a", 2, 5, 5), entries.get(1));
+        CountingFilter sameFilter = new CountingFilter("ip = 1");
+        assertEquals(ImmutableList.<String> of(), filter(entries, sameFilter));
+        assertEquals(1, sameFilter.evaluations);
+    }
+}
@@ -17,8 +17,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -141,6 +143,85 @@ public abstract class AbstractNodeIndexTest extends Assert {
         testNodes(1000 * 1000 * 50);
     }
 
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final int threads = 4;
+        final int countPerThread = 100 * 1000;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * countPerThread;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < countPerThread; i++) {
+                        index.add(node(offset + i));
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService addingService = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> f : addingService.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            addingService.shutdownNow();
+        }
+
+        List<Node> expected = new ArrayList<Node>(threads * countPerThread);
+        for (int i = 0; i < threads * countPerThread; i++) {
+            expected.add(node(i));
+        }
+        Collections.sort(expected, new NodeStorageOrder());
+        List<Node> actual = Lists.newArrayList(index.nodes());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testLastAddedWins() throws Exception {
+        index.add(node(1));
+        index.add(node(2));
+        Node replaced = Node.create("1", ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null);
+        index.add(replaced);
+
+        List<Node> actual = Lists.newArrayList(index.nodes());
+        assertEquals(2, actual.size());
+        assertTrue(actual.contains(node(2)));
+        assertTrue(actual.contains(replaced));
+    }
+
+    @Test
+    public void testLastAddedWinsAcrossThreads() throws Exception {
+        ExecutorService thread1 = Executors.newSingleThreadExecutor();
+        ExecutorService thread2 = Executors.newSingleThreadExecutor();
+        final Node replaced = Node.create("1", ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null);
+        try {
+            // the second thread starts adding first, but replaces the node added by the first one
+            add(thread2, node(2));
+            add(thread1, node(1));
+            add(thread2, replaced);
+        } finally {
+            thread1.shutdownNow();
+            thread2.shutdownNow();
+        }
+
+        List<Node> actual = Lists.newArrayList(index.nodes());
+        assertEquals(2, actual.size());
+        assertTrue(actual.contains(node(2)));
+        assertTrue(actual.contains(replaced));
+    }
+
+    private void add(ExecutorService thread, final Node node) throws Exception {
+        thread.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                index.add(node);
+                return null;
+            }
+        }).get();
+    }
+
     private void testNodes(final int count) throws Exception {
         MemoryUsage initialMem = MEMORY_MX_BEAN.getHeapMemoryUsage();
 
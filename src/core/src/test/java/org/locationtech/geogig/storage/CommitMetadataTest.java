@@ -0,0 +1,106 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.storage.memory.HeapGraphDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class CommitMetadataTest extends Assert {
+
+    private GraphDatabase graphDb;
+
+    @Before
+    public void setUp() {
+        graphDb = new HeapGraphDatabase(mock(Platform.class));
+        graphDb.open();
+    }
+
+    private RevCommit commit(long timestamp, String author, String committer,
+            ObjectId... parents) {
+        CommitBuilder builder = new CommitBuilder();
+        builder.setTreeId(ObjectId.forString("tree"));
+        builder.setParentIds(ImmutableList.copyOf(parents));
+        builder.setAuthor(author);
+        builder.setCommitter(committer);
+        builder.setCommitterTimestamp(timestamp);
+        builder.setAuthorTimestamp(timestamp);
+        builder.setMessage("message");
+        return builder.build();
+    }
+
+    @Test
+    public void testWriteRead() {
+        RevCommit root = commit(1000, "groldan", "groldan");
+        RevCommit child = commit(2000, "Gabriel; Roldan", null, root.getId(),
+                ObjectId.forString("other parent"));
+        graphDb.put(root.getId(), root.getParentIds());
+        graphDb.put(child.getId(), child.getParentIds());
+
+        assertFalse(CommitMetadata.read(graphDb, root.getId()).isPresent());
+        CommitMetadata.of(root).write(graphDb);
+        CommitMetadata.of(child).write(graphDb);
+
+        Optional<CommitMetadata> metadata = CommitMetadata.read(graphDb, root.getId());
+        assertTrue(metadata.isPresent());
+        assertEquals(CommitMetadata.of(root), metadata.get());
+        assertTrue(metadata.get().getParentIds().isEmpty());
+
+        metadata = CommitMetadata.read(graphDb, child.getId());
+        assertTrue(metadata.isPresent());
+        assertEquals(CommitMetadata.of(child), metadata.get());
+        assertEquals(child.getParentIds(), metadata.get().getParentIds());
+        assertEquals(2000L, metadata.get().getCommitterTimestamp());
+        assertEquals(Optional.of("Gabriel; Roldan"), metadata.get().getAuthorName());
+        assertFalse(metadata.get().getCommitterName().isPresent());
+    }
+
+    @Test
+    public void testDecodeUnknownFormat() {
+        ObjectId id = ObjectId.forString("commit");
+        assertFalse(CommitMetadata.decode(id, "2;1000;;;").isPresent());
+        assertFalse(CommitMetadata.decode(id, "1;notanumber;;;").isPresent());
+        assertFalse(CommitMetadata.decode(id, "1;1000;notanid;;").isPresent());
+        assertFalse(CommitMetadata.decode(id, "garbage").isPresent());
+        assertTrue(CommitMetadata.decode(id, "1;1000;;;").isPresent());
+    }
+
+    @Test
+    public void testMostRecentFirst() {
+        RevCommit c1 = commit(1000, "a", "a");
+        RevCommit c2 = commit(3000, "b", "b");
+        RevCommit c3 = commit(2000, "c", "c");
+        PriorityQueue<CommitMetadata> queue = new PriorityQueue<CommitMetadata>(3,
+                CommitMetadata.MOST_RECENT_FIRST);
+        queue.add(CommitMetadata.of(c1));
+        queue.add(CommitMetadata.of(c2));
+        queue.add(CommitMetadata.of(c3));
+
+        List<ObjectId> ids = Lists.newArrayList();
+        while (!queue.isEmpty()) {
+            ids.add(queue.poll().getId());
+        }
+        assertEquals(ImmutableList.of(c2.getId(), c3.getId(), c1.getId()), ids);
+    }
+}
@@ -10,6 +10,7 @@
 package org.locationtech.geogig.storage;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -93,6 +94,19 @@ public abstract class GraphDatabaseTest {
         assertEquals(0, parents.size());
     }
 
+    @Test
+    public void testProperties() throws IOException {
+        ObjectId commitId = ObjectId.forString("commitId");
+        database.put(commitId, new ImmutableList.Builder<ObjectId>().build());
+        assertFalse(database.getProperty(commitId, "prop").isPresent());
+        assertFalse(database.getProperty(ObjectId.forString("unknown"), "prop").isPresent());
+
+        database.setProperty(commitId, "prop", "value");
+        assertEquals("value", database.getProperty(commitId, "prop").get());
+        database.setProperty(commitId, "prop", "value2");
+        assertEquals("value2", database.getProperty(commitId, "prop").get());
+    }
+
     @Test
     public void testMapNode() throws IOException {
         ObjectId commitId = ObjectId.forString("commitId");
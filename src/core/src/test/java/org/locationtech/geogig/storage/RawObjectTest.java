@@ -0,0 +1,95 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class RawObjectTest extends Assert {
+
+    private HeapObjectDatabse from;
+
+    private HeapObjectDatabse to;
+
+    @Before
+    public void setUp() {
+        from = new HeapObjectDatabse();
+        from.open();
+        to = new HeapObjectDatabse();
+        to.open();
+    }
+
+    @After
+    public void tearDown() {
+        from.close();
+        to.close();
+    }
+
+    private List<ObjectId> addTrees(ObjectDatabase db, int count) {
+        List<ObjectId> ids = Lists.newArrayList();
+        RevTree tree = RevTree.EMPTY;
+        for (int i = 0; i < count; i++) {
+            Node node = Node.create("feature" + i, ObjectId.forString("f" + i), ObjectId.NULL,
+                    TYPE.FEATURE, null);
+            tree = new RevTreeBuilder(db, tree).put(node).build();
+            db.put(tree);
+            ids.add(tree.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testCanTransfer() {
+        assertTrue(RawObject.canTransfer(from, to));
+    }
+
+    @Test
+    public void testTransfer() {
+        List<ObjectId> ids = addTrees(from, 5);
+        CountingListener listener = BulkOpListener.newCountingListener();
+        RawObject.transfer(from, to, ids, listener);
+        assertEquals(5, listener.inserted());
+        for (ObjectId id : ids) {
+            assertEquals(from.getTree(id), to.getTree(id));
+        }
+
+        listener = BulkOpListener.newCountingListener();
+        RawObject.transfer(from, to, ids, listener);
+        assertEquals(0, listener.inserted());
+        assertEquals(5, listener.found());
+    }
+
+    @Test
+    public void testGetAllRawMissing() {
+        List<ObjectId> ids = addTrees(from, 2);
+        CountingListener listener = BulkOpListener.newCountingListener();
+        List<RawObject> raw = ImmutableList.copyOf(from.getAllRaw(
+                ImmutableList.of(ids.get(0), ObjectId.forString("missing"), ids.get(1)), listener));
+        assertEquals(2, raw.size());
+        assertEquals(ids.get(0), raw.get(0).getId());
+        assertEquals(ids.get(1), raw.get(1).getId());
+        assertEquals(2, listener.found());
+        assertEquals(1, listener.notFound());
+    }
+}
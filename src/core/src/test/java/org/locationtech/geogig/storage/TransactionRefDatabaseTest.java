@@ -0,0 +1,140 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.storage.memory.HeapRefDatabase;
+
+import com.google.common.collect.ImmutableSet;
+
+public class TransactionRefDatabaseTest {
+
+    private HeapRefDatabase refDb;
+
+    private TransactionRefDatabase txRefDb;
+
+    private final String master = Ref.HEADS_PREFIX + "master";
+
+    private final String branch = Ref.HEADS_PREFIX + "branch";
+
+    private final String id1 = ObjectId.forString("1").toString();
+
+    private final String id2 = ObjectId.forString("2").toString();
+
+    private final String id3 = ObjectId.forString("3").toString();
+
+    @Before
+    public void setUp() {
+        refDb = new HeapRefDatabase();
+        refDb.create();
+        refDb.putRef(master, id1);
+        refDb.putRef(branch, id1);
+        refDb.putSymRef(Ref.HEAD, master);
+
+        txRefDb = new TransactionRefDatabase(refDb, UUID.randomUUID());
+        txRefDb.create();
+    }
+
+    @Test
+    public void testCreateCopiesNothing() {
+        assertTrue(refDb.getAll(Ref.TRANSACTIONS_PREFIX).isEmpty());
+        assertNull(txRefDb.getRef("orig/" + master));
+        assertEquals(id1, txRefDb.getRef(master));
+        assertEquals(master, txRefDb.getSymRef(Ref.HEAD));
+    }
+
+    @Test
+    public void testOriginalValueRecordedOnFirstChange() {
+        // changed in the repository before the transaction changes it
+        refDb.putRef(master, id2);
+        assertEquals(id2, txRefDb.getRef(master));
+
+        txRefDb.putRef(master, id3);
+        txRefDb.putSymRef(Ref.HEAD, branch);
+        assertEquals(id2, txRefDb.getRef("orig/" + master));
+        assertEquals(master, txRefDb.getSymRef("orig/" + Ref.HEAD));
+        assertEquals(4, refDb.getAll(Ref.TRANSACTIONS_PREFIX).size());
+
+        // changed in the repository again, the transaction keeps its own value
+        refDb.putRef(master, id1);
+        txRefDb.putRef(master, id2);
+        assertEquals(id2, txRefDb.getRef(master));
+        assertEquals(id2, txRefDb.getRef("orig/" + master));
+        assertEquals(ImmutableSet.of(Ref.HEAD), txRefDb.getChangedRefs());
+    }
+
+    @Test
+    public void testReadsHaveNoSideEffects() {
+        refDb.putRef(Ref.HEADS_PREFIX + "new", id2);
+        Map<String, String> before = refDb.getAll(Ref.TRANSACTIONS_PREFIX);
+
+        assertEquals(id2, txRefDb.getRef(Ref.HEADS_PREFIX + "new"));
+        txRefDb.getRef(master);
+        txRefDb.getSymRef(Ref.HEAD);
+        txRefDb.getAll();
+        txRefDb.getAll(Ref.HEADS_PREFIX);
+        assertEquals(before, refDb.getAll(Ref.TRANSACTIONS_PREFIX));
+    }
+
+    @Test
+    public void testGetAll() {
+        Map<String, String> all = txRefDb.getAll(Ref.HEADS_PREFIX);
+        assertEquals(2, all.size());
+        assertEquals(id1, all.get(branch));
+
+        // unchanged refs are read from the repository, changed ones from the transaction
+        refDb.putRef(branch, id2);
+        txRefDb.putRef(master, id3);
+        all = txRefDb.getAll(Ref.HEADS_PREFIX);
+        assertEquals(id2, all.get(branch));
+        assertEquals(id3, all.get(master));
+        assertEquals(id1, refDb.getRef(master));
+
+        all = txRefDb.getAll();
+        assertEquals(id3, all.get(master));
+        assertTrue(all.containsKey(Ref.HEAD));
+        for (String name : all.keySet()) {
+            assertFalse(name, name.startsWith(Ref.TRANSACTIONS_PREFIX));
+        }
+        assertEquals(master, txRefDb.getSymRef(Ref.HEAD));
+    }
+
+    @Test
+    public void testChangedRefs() {
+        txRefDb.putRef(master, id2);
+        txRefDb.putRef(branch, id1);
+        txRefDb.putRef(Ref.HEADS_PREFIX + "new", id3);
+
+        assertEquals(ImmutableSet.of(master, Ref.HEADS_PREFIX + "new"), txRefDb.getChangedRefs());
+        assertEquals(id1, txRefDb.getRef("orig/" + master));
+        assertNull(txRefDb.getRef("orig/" + Ref.HEADS_PREFIX + "new"));
+        assertEquals(id1, refDb.getRef(master));
+    }
+
+    @Test
+    public void testClose() {
+        txRefDb.putRef(master, id2);
+        txRefDb.getAll();
+        txRefDb.close();
+        assertTrue(refDb.getAll(Ref.TRANSACTIONS_PREFIX).isEmpty());
+        assertEquals(id1, refDb.getRef(master));
+    }
+}
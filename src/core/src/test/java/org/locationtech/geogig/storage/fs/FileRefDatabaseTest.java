@@ -0,0 +1,242 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.storage.ConfigDatabase;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class FileRefDatabaseTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Platform platform;
+
+    private File geogigDir;
+
+    private FileRefDatabase refDb;
+
+    private final String id1 = ObjectId.forString("1").toString();
+
+    private final String id2 = ObjectId.forString("2").toString();
+
+    @Before
+    public void setUp() throws IOException {
+        final File workingDir = tempFolder.newFolder("mockWorkingDir");
+        geogigDir = tempFolder.newFolder("mockWorkingDir", ".geogig");
+
+        platform = mock(Platform.class);
+        when(platform.pwd()).thenReturn(workingDir);
+
+        refDb = new FileRefDatabase(platform, mock(ConfigDatabase.class));
+        refDb.create();
+    }
+
+    @Test
+    public void testPutAll() {
+        Map<String, String> refs = Maps.newHashMap();
+        for (int i = 0; i < 100; i++) {
+            refs.put(Ref.HEADS_PREFIX + "branch" + i, id1);
+        }
+        refs.put(Ref.HEAD, Ref.HEADS_PREFIX + "branch1");
+        refDb.putAll(refs);
+
+        assertTrue(new File(geogigDir, FileRefDatabase.PACKED_REFS).exists());
+        assertEquals(0, new File(geogigDir, "refs").list().length);
+
+        assertEquals(id1, refDb.getRef(Ref.HEADS_PREFIX + "branch50"));
+        assertEquals(Ref.HEADS_PREFIX + "branch1", refDb.getSymRef(Ref.HEAD));
+        assertNull(refDb.getRef(Ref.HEADS_PREFIX + "branch100"));
+        assertEquals(100, refDb.getAll(Ref.HEADS_PREFIX).size());
+        assertEquals(101, refDb.getAll().size());
+    }
+
+    @Test
+    public void testLooseOverridesPacked() {
+        final String name = Ref.HEADS_PREFIX + "master";
+        refDb.putAll(ImmutableMap.of(name, id1));
+        refDb.putRef(name, id2);
+        assertEquals(id2, refDb.getRef(name));
+        assertEquals(ImmutableMap.of(name, id2), refDb.getAll(Ref.HEADS_PREFIX));
+
+        // and a batch update replaces the loose ref
+        refDb.putAll(ImmutableMap.of(name, id1));
+        assertFalse(new File(new File(new File(geogigDir, "refs"), "heads"), "master").exists());
+        assertEquals(id1, refDb.getRef(name));
+    }
+
+    @Test
+    public void testRemove() {
+        final String packed = Ref.HEADS_PREFIX + "packed";
+        final String loose = Ref.HEADS_PREFIX + "loose";
+        refDb.putAll(ImmutableMap.of(packed, id1));
+        refDb.putRef(loose, id2);
+
+        assertEquals(id1, refDb.remove(packed));
+        assertNull(refDb.getRef(packed));
+        assertEquals(id2, refDb.remove(loose));
+        assertNull(refDb.getRef(loose));
+        assertTrue(refDb.getAll(Ref.HEADS_PREFIX).isEmpty());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        final String txNamespace = Ref.append(Ref.TRANSACTIONS_PREFIX, "tx1");
+        refDb.putAll(ImmutableMap.of(Ref.append(txNamespace, "orig/refs/heads/master"), id1,
+                Ref.HEADS_PREFIX + "master", id1));
+        refDb.putRef(Ref.append(txNamespace, "changed/refs/heads/master"), id2);
+        assertEquals(2, refDb.getAll(txNamespace).size());
+
+        refDb.removeAll(txNamespace);
+        assertTrue(refDb.getAll(txNamespace).isEmpty());
+        assertEquals(id1, refDb.getRef(Ref.HEADS_PREFIX + "master"));
+    }
+
+    @Test
+    public void testPackedRefsChangedByAnotherInstance() {
+        final String name = Ref.TAGS_PREFIX + "v1";
+        refDb.putAll(ImmutableMap.of(name, id1));
+        assertEquals(id1, refDb.getRef(name));
+
+        FileRefDatabase other = new FileRefDatabase(platform, mock(ConfigDatabase.class));
+        assertEquals(id1, other.getRef(name));
+        other.putAll(ImmutableMap.of(name, id2, Ref.TAGS_PREFIX + "v2", id2));
+
+        assertEquals(id2, refDb.getRef(name));
+        assertEquals(2, refDb.getAll(Ref.TAGS_PREFIX).size());
+    }
+
+    @Test
+    public void testNoTemporaryFilesLeft() {
+        refDb.putAll(ImmutableMap.of(Ref.TAGS_PREFIX + "v1", id1));
+        refDb.putAll(ImmutableMap.of(Ref.TAGS_PREFIX + "v2", id2));
+        refDb.remove(Ref.TAGS_PREFIX + "v1");
+        for (String fileName : geogigDir.list()) {
+            assertFalse(fileName, fileName.endsWith(".tmp"));
+        }
+        assertEquals(ImmutableMap.of(Ref.TAGS_PREFIX + "v2", id2),
+                refDb.getAll(Ref.TAGS_PREFIX));
+    }
+
+    @Test
+    public void testPackedRefsChangedWithinTimestampResolution() {
+        final String name = Ref.TAGS_PREFIX + "v1";
+        refDb.putAll(ImmutableMap.of(name, id1));
+        assertEquals(id1, refDb.getRef(name));
+
+        final File packedRefs = new File(geogigDir, FileRefDatabase.PACKED_REFS);
+        final long lastModified = packedRefs.lastModified();
+        final long length = packedRefs.length();
+        FileRefDatabase other = new FileRefDatabase(platform, mock(ConfigDatabase.class));
+        other.putAll(ImmutableMap.of(name, id2));
+        // same length and timestamp, as on a file system with coarse timestamps
+        assertTrue(packedRefs.setLastModified(lastModified));
+        assertEquals(length, packedRefs.length());
+
+        assertEquals(id2, refDb.getRef(name));
+    }
+
+    @Test
+    public void testCompareAndSet() {
+        final String name = Ref.HEADS_PREFIX + "master";
+        assertFalse(refDb.compareAndSet(name, id1, id2));
+        assertNull(refDb.getRef(name));
+
+        assertTrue(refDb.compareAndSet(name, null, id1));
+        assertEquals(id1, refDb.getRef(name));
+
+        assertFalse(refDb.compareAndSet(name, null, id2));
+        assertFalse(refDb.compareAndSet(name, id2, id2));
+        assertEquals(id1, refDb.getRef(name));
+
+        assertTrue(refDb.compareAndSet(name, id1, id2));
+        assertEquals(id2, refDb.getRef(name));
+    }
+
+    @Test
+    public void testCompareAndSetConcurrently() throws Exception {
+        final String name = Ref.HEADS_PREFIX + "master";
+        refDb.putRef(name, id1);
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                final String newValue = ObjectId.forString("thread " + i).toString();
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return refDb.compareAndSet(name, id1, newValue);
+                    }
+                }));
+            }
+            int updated = 0;
+            for (Future<Boolean> result : results) {
+                updated += result.get() ? 1 : 0;
+            }
+            assertEquals(1, updated);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompareAndSetWaitsForLock() throws Exception {
+        final String name = Ref.HEADS_PREFIX + "master";
+        refDb.lock();
+        Future<Boolean> result;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            result = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return refDb.compareAndSet(name, null, id1);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(result.isDone());
+            assertNull(refDb.getRef(name));
+        } finally {
+            refDb.unlock();
+        }
+        try {
+            assertTrue(result.get());
+            assertEquals(id1, refDb.getRef(name));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
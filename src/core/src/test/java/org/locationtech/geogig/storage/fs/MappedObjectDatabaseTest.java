@@ -0,0 +1,273 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.fs;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapGraphDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class MappedObjectDatabaseTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestPlatform platform;
+
+    private ConfigDatabase configDB;
+
+    private MappedObjectDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.getRoot();
+        folder.newFolder(".geogig");
+        File home = folder.newFolder("home");
+        platform = new TestPlatform(root);
+        platform.setUserHome(home);
+        configDB = new IniFileConfigDatabase(platform);
+        db = createDb(false);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    private MappedObjectDatabase createDb(boolean readOnly) {
+        MappedObjectDatabase db = new MappedObjectDatabase(platform, "objects.mapped", configDB,
+                readOnly);
+        db.open();
+        return db;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        RevTree tree = tree(10);
+        assertTrue(db.put(tree));
+        assertFalse(db.put(tree));
+        assertTrue(db.exists(tree.getId()));
+        assertEquals(tree, db.getTree(tree.getId()));
+
+        // written to a segment on close
+        db.close();
+        db = createDb(true);
+        assertEquals(tree, db.getTree(tree.getId()));
+        assertNull(db.getIfPresent(ObjectId.forString("not there")));
+    }
+
+    @Test
+    public void testPutIsJournaled() {
+        RevTree tree = tree(10);
+        assertTrue(db.put(tree));
+
+        // readable by another instance without flushing nor closing this one
+        MappedObjectDatabase reader = createDb(true);
+        try {
+            assertEquals(tree, reader.getTree(tree.getId()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testPutAllWritesSegment() {
+        List<RevTree> trees = trees(100);
+        db.putAll(trees.iterator());
+
+        // readable by another instance without closing this one
+        MappedObjectDatabase reader = createDb(true);
+        try {
+            for (RevTree tree : trees) {
+                assertEquals(tree, reader.getTree(tree.getId()));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testGetAll() {
+        List<RevTree> trees = trees(50);
+        db.putAll(trees.subList(0, 25).iterator());
+        db.putAll(trees.subList(25, 50).iterator());
+
+        List<ObjectId> ids = Lists.newArrayList();
+        for (RevTree tree : trees) {
+            ids.add(tree.getId());
+        }
+        ids.add(ObjectId.forString("not there"));
+        List<RevObject> found = ImmutableList.copyOf(db.getAll(ids));
+        assertEquals(trees, found);
+    }
+
+    @Test
+    public void testLookUp() {
+        List<RevTree> trees = trees(100);
+        db.putAll(trees.subList(0, 50).iterator());
+        for (RevTree tree : trees.subList(50, 100)) {
+            db.put(tree);
+        }
+        for (RevTree tree : trees) {
+            String partialId = tree.getId().toString().substring(0, 9);
+            assertEquals(ImmutableList.of(tree.getId()), db.lookUp(partialId));
+        }
+    }
+
+    @Test
+    public void testCompaction() {
+        configDB.put(MappedObjectDatabase.MAX_SEGMENTS_CONFIG_KEY, 4);
+        List<RevTree> trees = trees(100);
+        for (int i = 0; i < 100; i += 10) {
+            db.putAll(trees.subList(i, i + 10).iterator());
+        }
+        db.compact();
+        for (RevTree tree : trees) {
+            assertEquals(tree, db.getTree(tree.getId()));
+        }
+
+        // the compacted segments still mapped by the closed instance are deleted on open
+        db.close();
+        db = createDb(false);
+        assertEquals(1, segmentFiles().length);
+        for (RevTree tree : trees) {
+            assertEquals(tree, db.getTree(tree.getId()));
+        }
+    }
+
+    @Test
+    public void testFlushMergesSmallestSegments() {
+        configDB.put(MappedObjectDatabase.MAX_SEGMENTS_CONFIG_KEY, 4);
+        List<RevTree> trees = trees(54);
+        db.putAll(trees.subList(0, 50).iterator());
+        final String large = segmentFiles()[0];
+        for (RevTree tree : trees.subList(50, 54)) {
+            db.putAll(ImmutableList.of(tree).iterator());
+        }
+        for (RevTree tree : trees) {
+            assertEquals(tree, db.getTree(tree.getId()));
+        }
+
+        // the four small segments were merged, the large one was left alone
+        db.close();
+        db = createDb(false);
+        List<String> segments = ImmutableList.copyOf(segmentFiles());
+        assertEquals(2, segments.size());
+        assertTrue(segments.contains(large));
+        for (RevTree tree : trees) {
+            assertEquals(tree, db.getTree(tree.getId()));
+        }
+    }
+
+    @Test
+    public void testReadOnly() {
+        db.close();
+        db = createDb(true);
+        try {
+            db.put(RevTree.EMPTY);
+            fail("Expected UOE on read only database");
+        } catch (UnsupportedOperationException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testImportFrom() {
+        ObjectDatabase source = new HeapObjectDatabse();
+        source.open();
+        RevTreeBuilder builder = new RevTreeBuilder(source);
+        List<RevFeature> features = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            RevFeature feature = RevFeatureImpl.build(ImmutableList.of(Optional
+                    .<Object> of("value" + i)));
+            features.add(feature);
+            builder.put(Node.create("f" + i, feature.getId(), ObjectId.NULL, TYPE.FEATURE, null));
+        }
+        source.putAll(features.iterator());
+        RevTree tree = builder.build();
+        source.put(tree);
+
+        CommitBuilder commitBuilder = new CommitBuilder();
+        commitBuilder.setTreeId(tree.getId());
+        commitBuilder.setAuthor("groldan");
+        commitBuilder.setCommitter("groldan");
+        commitBuilder.setMessage("import test");
+        RevCommit commit = commitBuilder.build();
+        source.put(commit);
+
+        GraphDatabase graphDb = new HeapGraphDatabase(platform);
+        graphDb.open();
+        db.importFrom(source, ImmutableList.of(commit.getId()), graphDb);
+
+        assertTrue(graphDb.exists(commit.getId()));
+        assertEquals(commit, db.getCommit(commit.getId()));
+        assertEquals(tree, db.getTree(tree.getId()));
+        for (RevFeature feature : features) {
+            assertEquals(feature, db.getFeature(feature.getId()));
+        }
+    }
+
+    private String[] segmentFiles() {
+        File dataRoot = new File(new File(folder.getRoot(), ".geogig"), "objects.mapped");
+        return dataRoot.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".seg");
+            }
+        });
+    }
+
+    private List<RevTree> trees(int count) {
+        List<RevTree> trees = Lists.newArrayList();
+        for (int i = 1; i <= count; i++) {
+            trees.add(tree(i));
+        }
+        return trees;
+    }
+
+    private RevTree tree(int size) {
+        ObjectDatabase db = new HeapObjectDatabse();
+        db.open();
+        RevTreeBuilder builder = new RevTreeBuilder(db);
+        for (int i = 0; i < size; i++) {
+            builder.put(Node.create("f" + i, ObjectId.forString("f" + i), ObjectId.NULL,
+                    TYPE.FEATURE, null));
+        }
+        return builder.build();
+    }
+}
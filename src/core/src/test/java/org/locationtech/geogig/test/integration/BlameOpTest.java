@@ -21,6 +21,7 @@ import org.locationtech.geogig.api.porcelain.BlameException;
 import org.locationtech.geogig.api.porcelain.BlameException.StatusCode;
 import org.locationtech.geogig.api.porcelain.BlameOp;
 import org.locationtech.geogig.api.porcelain.BlameReport;
+import org.locationtech.geogig.api.porcelain.BlameTreeOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.api.porcelain.ValueAndCommit;
 import org.opengis.feature.Feature;
@@ -153,4 +154,62 @@ public class BlameOpTest extends RepositoryTestCase {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBlameTree() throws Exception {
+        insertAndAdd(points1, points2);
+        RevCommit firstCommit = geogig.command(CommitOp.class).call();
+        insertAndAdd(lines1);
+        geogig.command(CommitOp.class).call();
+        Feature pointsModified = feature(pointsType, idP1, "StringProp1_3", new Integer(1000),
+                "POINT(1 1)");
+        insertAndAdd(pointsModified, points3);
+        RevCommit thirdCommit = geogig.command(CommitOp.class).call();
+
+        Map<String, BlameReport> reports = geogig.command(BlameTreeOp.class).setPath(pointsName)
+                .call();
+        assertEquals(3, reports.size());
+
+        Map<String, ValueAndCommit> changes = reports.get(NodeRef.appendChild(pointsName, idP1))
+                .getChanges();
+        assertEquals(3, changes.size());
+        assertEquals(thirdCommit, changes.get("sp").commit);
+        assertEquals(firstCommit, changes.get("ip").commit);
+        assertEquals(firstCommit, changes.get("pp").commit);
+        assertEquals(pointsModified.getProperty("sp").getValue(), changes.get("sp").value.get());
+
+        changes = reports.get(NodeRef.appendChild(pointsName, idP2)).getChanges();
+        assertEquals(3, changes.size());
+        for (ValueAndCommit valueAndCommit : changes.values()) {
+            assertEquals(firstCommit, valueAndCommit.commit);
+        }
+
+        changes = reports.get(NodeRef.appendChild(pointsName, idP3)).getChanges();
+        assertEquals(3, changes.size());
+        for (ValueAndCommit valueAndCommit : changes.values()) {
+            assertEquals(thirdCommit, valueAndCommit.commit);
+        }
+
+        for (Map.Entry<String, BlameReport> entry : reports.entrySet()) {
+            BlameReport single = geogig.command(BlameOp.class).setPath(entry.getKey()).call();
+            for (Map.Entry<String, ValueAndCommit> change : single.getChanges().entrySet()) {
+                ValueAndCommit treeChange = entry.getValue().getChanges().get(change.getKey());
+                assertEquals(change.getValue().commit, treeChange.commit);
+                assertEquals(change.getValue().value, treeChange.value);
+            }
+        }
+    }
+
+    @Test
+    public void testBlameTreeWithFeaturePath() throws Exception {
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).call();
+        try {
+            geogig.command(BlameTreeOp.class).setPath(NodeRef.appendChild(pointsName, idP1))
+                    .call();
+            fail();
+        } catch (BlameException e) {
+            assertTrue(e.statusCode == StatusCode.PATH_NOT_TREE);
+        }
+    }
+
+}
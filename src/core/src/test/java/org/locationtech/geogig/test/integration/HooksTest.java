@@ -95,6 +95,39 @@ public class HooksTest extends RepositoryTestCase {
 
     }
 
+    @Test
+    public void testModifiedHookIsReloaded() throws Exception {
+        File hooksFolder = new File(geogig.getPlatform().pwd(), ".geogig/hooks");
+        File commitPreHookFile = new File(hooksFolder, "pre_commit.js");
+
+        Files.write("params.put(\"message\", \"first hook\");", commitPreHookFile,
+                Charsets.UTF_8);
+        insertAndAdd(points1);
+        RevCommit commit = geogig.command(CommitOp.class).setMessage("A message").call();
+        assertEquals("first hook", commit.getMessage());
+
+        Files.write("params.put(\"message\", \"second hook\");", commitPreHookFile,
+                Charsets.UTF_8);
+        commitPreHookFile.setLastModified(commitPreHookFile.lastModified() + 10000);
+        insertAndAdd(points2);
+        commit = geogig.command(CommitOp.class).setMessage("A message").call();
+        assertEquals("second hook", commit.getMessage());
+    }
+
+    @Test
+    public void testHookAddedAfterFirstRun() throws Exception {
+        File hooksFolder = new File(geogig.getPlatform().pwd(), ".geogig/hooks");
+        insertAndAdd(points1);
+        RevCommit commit = geogig.command(CommitOp.class).setMessage("A message").call();
+        assertEquals("A message", commit.getMessage());
+
+        File commitPreHookFile = new File(hooksFolder, "pre_commit.js");
+        Files.write("params.put(\"message\", \"hooked\");", commitPreHookFile, Charsets.UTF_8);
+        insertAndAdd(points2);
+        commit = geogig.command(CommitOp.class).setMessage("A message").call();
+        assertEquals("hooked", commit.getMessage());
+    }
+
     @Test
     public void testExecutableScriptFileHook() throws Exception {
         File hooksFolder = new File(geogig.getPlatform().pwd(), ".geogig/hooks");
@@ -372,6 +372,60 @@ public class RevTreeBuilderTest extends RepositoryTestCase {
         assertEquals(expectedOrder, splitNodes);
     }
 
+    @Test
+    public void testPutAllSorted() throws Exception {
+        testPutAllSorted(100);
+        testPutAllSorted(1 + RevTree.NORMALIZED_SIZE_LIMIT);
+        // enough changes for the bucket trees to be built in parallel by put()/build()
+        testPutAllSorted(20 * 1000);
+    }
+
+    private void testPutAllSorted(final int numEntries) throws Exception {
+        List<Node> nodes = nodes(numEntries);
+        RevTree expected = tree(numEntries).build();
+
+        Collections.sort(nodes, new NodeStorageOrder());
+        RevTree tree = new RevTreeBuilder(odb).putAllSorted(nodes.iterator()).build();
+        assertEquals(expected.getId(), tree.getId());
+        assertEquals(numEntries, tree.size());
+        odb.put(tree);
+
+        // remove every other node, and update the rest
+        List<Node> changes = Lists.newArrayListWithCapacity(numEntries);
+        RevTreeBuilder expectedBuilder = tree.builder(odb);
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (i % 2 == 0) {
+                changes.add(Node.create(node.getName(), ObjectId.NULL, ObjectId.NULL,
+                        TYPE.FEATURE, null));
+                expectedBuilder.remove(node.getName());
+            } else {
+                Envelope bounds = new Envelope();
+                node.expand(bounds);
+                Node changed = Node.create(node.getName(), FAKE_ID, ObjectId.NULL,
+                        TYPE.FEATURE, bounds);
+                changes.add(changed);
+                expectedBuilder.put(changed);
+            }
+        }
+        expected = expectedBuilder.build();
+        RevTree changed = tree.builder(odb).putAllSorted(changes.iterator()).build();
+        assertEquals(expected.getId(), changed.getId());
+        assertEquals(numEntries / 2, changed.size());
+    }
+
+    @Test
+    public void testPutAllSortedUnsorted() throws Exception {
+        List<Node> nodes = nodes(1000);
+        Collections.sort(nodes, new NodeStorageOrder().reverse());
+        try {
+            new RevTreeBuilder(odb).putAllSorted(nodes.iterator());
+            fail("Expected IAE");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("storage order"));
+        }
+    }
+
     @Test
     public void testResultingTreeBounds() throws Exception {
         checkTreeBounds(10);
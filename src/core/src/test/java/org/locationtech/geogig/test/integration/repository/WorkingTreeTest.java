@@ -42,6 +42,7 @@ import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.repository.FeatureToDelete;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.repository.WorkingTreeBuffer;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
@@ -481,6 +482,71 @@ public class WorkingTreeTest extends RepositoryTestCase {
         assertFalse(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
     }
 
+    @Test
+    public void testDeleteFeaturePaths() throws Exception {
+        insert(points1, points2, points3, lines1);
+
+        ObjectId oldTreeId = workTree.getTree().getId();
+
+        workTree.delete(ImmutableList.of(appendChild(pointsName, idP1),
+                appendChild(linesName, idL1), appendChild(pointsName, idP3)).iterator());
+
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP1)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP2)).isPresent());
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
+        assertFalse(workTree.findUnstaged(appendChild(linesName, idL1)).isPresent());
+        assertFalse(oldTreeId.equals(workTree.getTree().getId()));
+    }
+
+    @Test
+    public void testBufferedInsertAndDelete() throws Exception {
+        insert(points3);
+        WorkingTreeBuffer buffer = workTree.buffer();
+        Node node1 = buffer.insert(pointsName, points1);
+        buffer.insert(pointsName, points2);
+        buffer.delete(pointsName, idP3);
+        buffer.insert(linesName, lines1);
+        assertEquals(4, buffer.size());
+
+        // nothing is visible until flushed, but the new type tree
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP1)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
+        assertTrue(workTree.findUnstaged(linesName).isPresent());
+
+        buffer.flush();
+        assertEquals(0, buffer.size());
+
+        assertEquals(node1, workTree.findUnstaged(appendChild(pointsName, idP1)).get());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP2)).isPresent());
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(linesName, idL1)).isPresent());
+
+        buffer.delete(pointsName, idP2);
+        buffer.insert(pointsName, points1B);
+        buffer.flush();
+
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP2)).isPresent());
+        Node modified = workTree.findUnstaged(appendChild(pointsName, idP1)).get();
+        assertEquals(RevFeatureTypeImpl.build(modifiedPointsType).getId(), modified
+                .getMetadataId().orNull());
+    }
+
+    @Test
+    public void testBufferFlushThreshold() throws Exception {
+        WorkingTreeBuffer buffer = workTree.buffer(2);
+        buffer.insert(pointsName, points1);
+        assertEquals(1, buffer.size());
+        // replacing a buffered change doesn't count twice
+        buffer.insert(pointsName, points1);
+        assertEquals(1, buffer.size());
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP1)).isPresent());
+
+        buffer.insert(pointsName, points2);
+        assertEquals(0, buffer.size());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP1)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP2)).isPresent());
+    }
+
     @Test
     public void testDeleteFeatureType() throws Exception {
         List<Feature> featureList = new LinkedList<Feature>();
@@ -65,6 +65,12 @@ public class PGImport extends AbstractPGCommand implements CLICommand {
     @Parameter(names = { "--alter" }, description = "Set the path default feature type to the the feature type of imported features, and modify existing features to match it")
     boolean alter;
 
+    /**
+     * Number of tables to import concurrently when importing all tables
+     */
+    @Parameter(names = { "--threads" }, description = "Number of tables to import concurrently when using --all and no destination path")
+    int threads = 1;
+
     /**
      * Destination path to add features to. Only allowed when importing a single table
      */
@@ -91,7 +97,7 @@ public class PGImport extends AbstractPGCommand implements CLICommand {
             cli.getGeogig().command(ImportOp.class).setAll(all).setTable(table).setAlter(alter)
                     .setDestinationPath(destTable).setOverwrite(!add).setDataStore(dataStore)
                     .setAdaptToDefaultFeatureType(!forceFeatureType).setFidAttribute(fidAttribute)
-                    .setProgressListener(progressListener).call();
+                    .setConcurrency(threads).setProgressListener(progressListener).call();
 
             cli.getConsole().println("Import successful.");
 
@@ -58,6 +58,12 @@ public class SQLServerImport extends AbstractSQLServerCommand implements CLIComm
     @Parameter(names = { "--alter" }, description = "Set the path default feature type to the the feature type of imported features, and modify existing features to match it")
     boolean alter;
 
+    /**
+     * Number of tables to import concurrently when importing all tables
+     */
+    @Parameter(names = { "--threads" }, description = "Number of tables to import concurrently when using --all and no destination path")
+    int threads = 1;
+
     /**
      * Use origin feature type
      */
@@ -84,7 +90,7 @@ public class SQLServerImport extends AbstractSQLServerCommand implements CLIComm
             cli.getGeogig().command(ImportOp.class).setAll(all).setTable(table).setAlter(alter)
                     .setDestinationPath(destTable).setOverwrite(!add).setDataStore(dataStore)
                     .setAdaptToDefaultFeatureType(!forceFeatureType)
-                    .setProgressListener(progressListener).call();
+                    .setConcurrency(threads).setProgressListener(progressListener).call();
 
             cli.getConsole().println("Import successful.");
 
@@ -16,19 +16,22 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.repository.WorkingTreeBuffer;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import com.google.common.base.Preconditions;
 
 /**
- *
+ * A feature writer that buffers the written and removed features in a {@link WorkingTreeBuffer}, so
+ * that the working tree is updated in batches and once more when the writer is closed, instead of
+ * once per feature.
  */
 class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
 
     private FeatureReader<SimpleFeatureType, SimpleFeature> reader;
 
-    private WorkingTree workingTree;
+    private WorkingTreeBuffer buffer;
 
     private SimpleFeature last;
 
@@ -38,7 +41,7 @@ class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeat
             String typePath, WorkingTree workingTree) {
         this.reader = reader;
         this.typePath = typePath;
-        this.workingTree = workingTree;
+        this.buffer = workingTree.buffer();
     }
 
     public static GeoGigFeatureWriter create(
@@ -74,19 +77,23 @@ class GeoGigFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeat
         Preconditions.checkState(last != null, "next() hasn't been called");
         String path = typePath;
         String featureId = last.getID();
-        workingTree.delete(path, featureId);
+        buffer.delete(path, featureId);
     }
 
     @Override
     public void write() throws IOException {
         Preconditions.checkState(last != null, "next() hasn't been called");
         String parentTreePath = typePath;
-        workingTree.insert(parentTreePath, last);
+        buffer.insert(parentTreePath, last);
     }
 
     @Override
     public void close() throws IOException {
-        //
+        try {
+            buffer.flush();
+        } finally {
+            reader.close();
+        }
     }
 
     private static final class InfiniteFeatureReader implements
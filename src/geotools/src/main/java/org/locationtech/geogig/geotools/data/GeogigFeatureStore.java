@@ -38,6 +38,7 @@ import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.repository.WorkingTreeBuffer;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -344,10 +345,12 @@ class GeogigFeatureStore extends ContentFeatureStore {
         features = Iterators.transform(features, new SchemaInforcer(nativeSchema));
 
         try {
-            ProgressListener listener = new DefaultProgressListener();
-            Integer count = (Integer) null;
-            List<Node> target = (List<Node>) null;
-            workingTree.insert(path, features, listener, target, count);
+            // modifications are usually small, buffer them instead of setting up a bulk insert
+            WorkingTreeBuffer buffer = workingTree.buffer();
+            while (features.hasNext()) {
+                buffer.insert(path, features.next());
+            }
+            buffer.flush();
         } catch (Exception e) {
             throw new IOException(e);
         }
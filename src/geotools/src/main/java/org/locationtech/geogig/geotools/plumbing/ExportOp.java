@@ -10,12 +10,23 @@
 package org.locationtech.geogig.geotools.plumbing;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -54,15 +65,16 @@ import org.opengis.feature.type.PropertyDescriptor;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Internal operation for creating a FeatureCollection from a tree content.
@@ -81,6 +93,11 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
 
     };
 
+    /**
+     * Default number of features fetched and decoded at a time
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     private String path;
 
     private Supplier<SimpleFeatureStore> targetStoreProvider;
@@ -95,6 +112,14 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
 
     private boolean transactional;
 
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int threads;
+
+    private boolean preserveOrder;
+
+    private int transactionSize;
+
     /**
      * Constructs a new export operation.
      */
@@ -133,33 +158,12 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
         progressListener.setDescription("Exporting from " + path + " to "
                 + targetStore.getName().getLocalPart() + "... ");
 
-        FeatureCollection<SimpleFeatureType, SimpleFeature> asFeatureCollection = new BaseFeatureCollection<SimpleFeatureType, SimpleFeature>() {
-
-            @Override
-            public FeatureIterator<SimpleFeature> features() {
-
-                final Iterator<SimpleFeature> plainFeatures = getFeatures(typeTree, database,
-                        defaultMetadataId, progressListener);
-
-                Iterator<SimpleFeature> adaptedFeatures = adaptToArguments(plainFeatures,
-                        defaultMetadataId);
-
-                Iterator<Optional<Feature>> transformed = Iterators.transform(adaptedFeatures,
-                        ExportOp.this.function);
-
-                Iterator<SimpleFeature> filtered = Iterators.filter(Iterators.transform(
-                        transformed, new Function<Optional<Feature>, SimpleFeature>() {
-                            @Override
-                            public SimpleFeature apply(Optional<Feature> input) {
-                                return (SimpleFeature) (input.isPresent() ? input.get() : null);
-                            }
-                        }), Predicates.notNull());
-
-                return new DelegateFeatureIterator<SimpleFeature>(filtered);
-            }
-        };
+        final int nThreads = threads > 0 ? threads : Math.max(1, platform()
+                .availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setNameFormat("ExportOp-decoder-%d").build());
 
-        // add the feature collection to the feature store
+        // add the features to the feature store
         final Transaction transaction;
         if (transactional) {
             transaction = new DefaultTransaction("create");
@@ -169,19 +173,25 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
         try {
             targetStore.setTransaction(transaction);
             try {
-                targetStore.addFeatures(asFeatureCollection);
+                export(typeTree, database, defaultMetadataId, targetStore, transaction, executor,
+                        nThreads, progressListener);
                 transaction.commit();
             } catch (final Exception e) {
                 if (transactional) {
                     transaction.rollback();
                 }
-                Throwables.propagateIfInstanceOf(e, GeoToolsOpException.class);
+                // the target store may have wrapped an exception thrown while decoding
+                for (Throwable cause : Throwables.getCausalChain(e)) {
+                    Throwables.propagateIfInstanceOf(cause, GeoToolsOpException.class);
+                }
                 throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_ADD);
             } finally {
                 transaction.close();
             }
         } catch (IOException e) {
             throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_ADD);
+        } finally {
+            executor.shutdownNow();
         }
 
         progressListener.complete();
@@ -190,64 +200,275 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
 
     }
 
-    private static Iterator<SimpleFeature> getFeatures(final RevTree typeTree,
-            final ObjectDatabase database, final ObjectId defaultMetadataId,
-            final ProgressListener progressListener) {
+    /**
+     * Adds the features of {@code typeTree} to the target store with a single
+     * {@link SimpleFeatureStore#addFeatures addFeatures} call over a {@link DecodingIterator}, or
+     * one call per {@link #transactionSize} features if the transaction is to be committed in
+     * chunks, as each call may cost time proportional to the size of the store (e.g. a shapefile
+     * is rewritten on every call when not using a transaction).
+     */
+    private void export(final RevTree typeTree, final ObjectDatabase database,
+            final ObjectId defaultMetadataId, final SimpleFeatureStore targetStore,
+            final Transaction transaction, final ExecutorService executor, final int nThreads,
+            final ProgressListener progressListener) throws IOException {
+
+        final DecodingIterator features = new DecodingIterator(typeTree, database,
+                defaultMetadataId, executor, nThreads, progressListener);
+        final int total = (int) Math.min(Integer.MAX_VALUE, typeTree.size());
+        try {
+            if (transactionSize > 0 && transaction != Transaction.AUTO_COMMIT) {
+                while (features.hasNext()) {
+                    Iterator<SimpleFeature> chunk = Iterators.limit(features, transactionSize);
+                    targetStore.addFeatures(asFeatureCollection(chunk,
+                            Math.min(total, transactionSize)));
+                    transaction.commit();
+                }
+            } else {
+                targetStore.addFeatures(asFeatureCollection(features, total));
+            }
+        } finally {
+            features.close();
+        }
+    }
 
-        Iterator<NodeRef> nodes = new DepthTreeIterator("", defaultMetadataId, typeTree, database,
-                Strategy.FEATURES_ONLY);
+    /**
+     * Adapts the {@code features} iterator to the feature collection argument of
+     * {@link SimpleFeatureStore#addFeatures}, that iterates over it once.
+     * 
+     * @param estimatedSize the upper bound on the number of features returned by {@code size()},
+     *        as counting them would consume the iterator
+     */
+    private static FeatureCollection<SimpleFeatureType, SimpleFeature> asFeatureCollection(
+            final Iterator<SimpleFeature> features, final int estimatedSize) {
 
-        // progress reporting
-        nodes = Iterators.transform(nodes, new Function<NodeRef, NodeRef>() {
+        return new BaseFeatureCollection<SimpleFeatureType, SimpleFeature>() {
 
-            private AtomicInteger count = new AtomicInteger();
+            private boolean iterated;
 
             @Override
-            public NodeRef apply(NodeRef input) {
-                progressListener.setProgress((count.incrementAndGet() * 100.f) / typeTree.size());
-                return input;
+            public FeatureIterator<SimpleFeature> features() {
+                checkState(!iterated, "The features can only be iterated once");
+                iterated = true;
+                return new DelegateFeatureIterator<SimpleFeature>(features);
             }
-        });
-
-        Function<NodeRef, SimpleFeature> asFeature = new Function<NodeRef, SimpleFeature>() {
 
-            private Map<ObjectId, FeatureBuilder> ftCache = Maps.newHashMap();
+            @Override
+            public boolean isEmpty() {
+                return !features.hasNext();
+            }
 
             @Override
-            @Nullable
-            public SimpleFeature apply(final NodeRef input) {
-                final ObjectId metadataId = input.getMetadataId();
-                final RevFeature revFeature = database.getFeature(input.objectId());
+            public int size() {
+                return estimatedSize;
+            }
+        };
+    }
+
+    /**
+     * Traverses the feature nodes of {@code typeTree} in batches of {@link #batchSize}, that are
+     * fetched, decoded and adapted by the {@code executor} threads and returned by the consuming
+     * thread as they're ready, keeping at most two batches per thread in flight.
+     */
+    private class DecodingIterator extends AbstractIterator<SimpleFeature> {
+
+        private final Iterator<List<NodeRef>> batches;
+
+        private final ObjectDatabase database;
+
+        private final ObjectId defaultMetadataId;
+
+        private final ExecutorService executor;
+
+        private final ProgressListener progressListener;
+
+        private final ConcurrentMap<ObjectId, FeatureBuilder> builders = Maps.newConcurrentMap();
+
+        private final CompletionService<DecodedBatch> completionService;
+
+        private final Queue<Future<DecodedBatch>> inFlight = new ArrayDeque<Future<DecodedBatch>>();
+
+        private final int maxInFlight;
+
+        private final long total;
 
-                FeatureBuilder featureBuilder = getBuilderFor(metadataId);
-                Feature feature = featureBuilder.build(input.name(), revFeature);
+        private long traversed;
+
+        private Iterator<SimpleFeature> current = ImmutableList.<SimpleFeature> of().iterator();
+
+        DecodingIterator(RevTree typeTree, ObjectDatabase database, ObjectId defaultMetadataId,
+                ExecutorService executor, int nThreads, ProgressListener progressListener) {
+            DepthTreeIterator nodes = new DepthTreeIterator("", defaultMetadataId, typeTree,
+                    database, Strategy.FEATURES_ONLY);
+            nodes.setPrefetch(configDatabase().get(ObjectDatabase.PREFETCH_CONFIG_KEY,
+                    Boolean.class).or(Boolean.FALSE));
+            this.batches = Iterators.partition(nodes, batchSize);
+            this.database = database;
+            this.defaultMetadataId = defaultMetadataId;
+            this.executor = executor;
+            this.progressListener = progressListener;
+            this.completionService = new ExecutorCompletionService<DecodedBatch>(executor);
+            this.maxInFlight = 2 * nThreads;
+            this.total = typeTree.size();
+        }
+
+        @Override
+        protected SimpleFeature computeNext() {
+            while (!current.hasNext()) {
+                if (progressListener.isCanceled()) {
+                    return endOfData();
+                }
+                Optional<DecodedBatch> batch = nextBatch();
+                if (!batch.isPresent()) {
+                    return endOfData();
+                }
+                current = batch.get().features.iterator();
+                traversed += batch.get().size;
+                if (total > 0) {
+                    progressListener.setProgress((traversed * 100.f) / total);
+                }
+            }
+            return current.next();
+        }
+
+        private Optional<DecodedBatch> nextBatch() {
+            while (inFlight.size() < maxInFlight && batches.hasNext()) {
+                BatchDecoder decoder = new BatchDecoder(batches.next(), database,
+                        defaultMetadataId, builders);
+                if (preserveOrder) {
+                    inFlight.add(executor.submit(decoder));
+                } else {
+                    inFlight.add(completionService.submit(decoder));
+                }
+            }
+            if (inFlight.isEmpty()) {
+                return Optional.absent();
+            }
+            try {
+                Future<DecodedBatch> next;
+                if (preserveOrder) {
+                    next = inFlight.remove();
+                } else {
+                    next = completionService.take();
+                    inFlight.remove(next);
+                }
+                return Optional.of(next.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        /**
+         * Cancels the batches still in flight
+         */
+        void close() {
+            for (Future<DecodedBatch> f : inFlight) {
+                f.cancel(true);
+            }
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * The features of a batch of nodes, ready to be added to the target store
+     */
+    private static class DecodedBatch {
+
+        /**
+         * The number of nodes in the batch, regardless of how many of them are to be exported
+         */
+        final int size;
+
+        final List<SimpleFeature> features;
+
+        DecodedBatch(int size, List<SimpleFeature> features) {
+            this.size = size;
+            this.features = features;
+        }
+    }
+
+    /**
+     * Fetches the features of a batch of nodes with a single
+     * {@link ObjectDatabase#getAll(Iterable) getAll} call, and builds and adapts them as requested
+     * by the operation arguments, keeping the order of the nodes.
+     */
+    private class BatchDecoder implements Callable<DecodedBatch> {
+
+        private final List<NodeRef> nodes;
+
+        private final ObjectDatabase database;
+
+        private final ObjectId defaultMetadataId;
+
+        private final ConcurrentMap<ObjectId, FeatureBuilder> builders;
+
+        BatchDecoder(List<NodeRef> nodes, ObjectDatabase database, ObjectId defaultMetadataId,
+                ConcurrentMap<ObjectId, FeatureBuilder> builders) {
+            this.nodes = nodes;
+            this.database = database;
+            this.defaultMetadataId = defaultMetadataId;
+            this.builders = builders;
+        }
+
+        @Override
+        public DecodedBatch call() {
+            Set<ObjectId> ids = Sets.newHashSet();
+            for (NodeRef node : nodes) {
+                ids.add(node.objectId());
+            }
+            Map<ObjectId, RevFeature> revFeatures = Maps.newHashMap();
+            Iterator<RevObject> objects = database.getAll(ids);
+            while (objects.hasNext()) {
+                RevObject object = objects.next();
+                if (object instanceof RevFeature) {
+                    revFeatures.put(object.getId(), (RevFeature) object);
+                }
+            }
+
+            List<SimpleFeature> plainFeatures = Lists.newArrayListWithCapacity(nodes.size());
+            for (NodeRef node : nodes) {
+                RevFeature revFeature = revFeatures.get(node.objectId());
+                if (revFeature == null) {
+                    revFeature = database.getFeature(node.objectId());
+                }
+                FeatureBuilder featureBuilder = getBuilderFor(node.getMetadataId());
+                Feature feature = featureBuilder.build(node.name(), revFeature);
                 feature.getUserData().put(Hints.USE_PROVIDED_FID, true);
                 feature.getUserData().put(RevFeature.class, revFeature);
                 feature.getUserData().put(RevFeatureType.class, featureBuilder.getType());
 
                 if (feature instanceof SimpleFeature) {
-                    return (SimpleFeature) feature;
+                    plainFeatures.add((SimpleFeature) feature);
                 }
-                return null;
             }
 
-            private FeatureBuilder getBuilderFor(final ObjectId metadataId) {
-                FeatureBuilder featureBuilder = ftCache.get(metadataId);
-                if (featureBuilder == null) {
-                    RevFeatureType revFtype = database.getFeatureType(metadataId);
-                    featureBuilder = new FeatureBuilder(revFtype);
-                    ftCache.put(metadataId, featureBuilder);
+            Iterator<SimpleFeature> adaptedFeatures = adaptToArguments(plainFeatures.iterator(),
+                    defaultMetadataId);
+
+            List<SimpleFeature> features = Lists.newArrayListWithCapacity(nodes.size());
+            while (adaptedFeatures.hasNext()) {
+                Optional<Feature> converted = function.apply(adaptedFeatures.next());
+                if (converted != null && converted.isPresent()) {
+                    features.add((SimpleFeature) converted.get());
                 }
-                return featureBuilder;
             }
-        };
-
-        Iterator<SimpleFeature> asFeatures = Iterators.transform(nodes, asFeature);
-
-        UnmodifiableIterator<SimpleFeature> filterNulls = Iterators.filter(asFeatures,
-                Predicates.notNull());
+            return new DecodedBatch(nodes.size(), features);
+        }
 
-        return filterNulls;
+        private FeatureBuilder getBuilderFor(final ObjectId metadataId) {
+            FeatureBuilder featureBuilder = builders.get(metadataId);
+            if (featureBuilder == null) {
+                RevFeatureType revFtype = database.getFeatureType(metadataId);
+                featureBuilder = new FeatureBuilder(revFtype);
+                FeatureBuilder existing = builders.putIfAbsent(metadataId, featureBuilder);
+                if (existing != null) {
+                    featureBuilder = existing;
+                }
+            }
+            return featureBuilder;
+        }
     }
 
     private Iterator<SimpleFeature> adaptToArguments(final Iterator<SimpleFeature> plainFeatures,
@@ -489,6 +710,59 @@ public class ExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
         return this;
     }
 
+    /**
+     * @param batchSize the number of features fetched and decoded at a time, defaults to
+     *        {@link #DEFAULT_BATCH_SIZE}
+     * @return {@code this}
+     */
+    public ExportOp setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize shall be > 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to fetch, decode and adapt the features to export. Defaults
+     * to the number of available processors. Note the
+     * {@link #setFeatureTypeConversionFunction(Function) conversion function} is called
+     * concurrently when more than one thread is used.
+     * 
+     * @param threads the number of decoding threads, or zero for the default
+     * @return {@code this}
+     */
+    public ExportOp setThreads(int threads) {
+        checkArgument(threads >= 0, "threads shall be >= 0");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param preserveOrder whether the features shall be added to the target store in the tree
+     *        storage order, defaults to {@code false}, meaning they're added in the order they're
+     *        decoded
+     * @return {@code this}
+     */
+    public ExportOp setPreserveOrder(boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+        return this;
+    }
+
+    /**
+     * Sets the number of features after which the transaction is committed, when the operation is
+     * {@link #setTransactional(boolean) transactional}. Defaults to zero, meaning all features are
+     * committed at once at the end of the export. Note that if the export fails, only the features
+     * added since the last commit are rolled back.
+     * 
+     * @param transactionSize the number of features to commit at a time, or zero to commit them
+     *        all at once
+     * @return {@code this}
+     */
+    public ExportOp setTransactionSize(int transactionSize) {
+        checkArgument(transactionSize >= 0, "transactionSize shall be >= 0");
+        this.transactionSize = transactionSize;
+        return this;
+    }
+
     /**
      * @param transactional whether to use a geotools transaction for the operation, defaults to
      *        {@code true}
@@ -15,6 +15,12 @@ import java.net.URLDecoder;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -31,6 +37,7 @@ import org.geotools.feature.type.AttributeDescriptorImpl;
 import org.geotools.filter.identity.FeatureIdImpl;
 import org.geotools.jdbc.JDBCFeatureSource;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ProgressListener;
@@ -62,9 +69,12 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
@@ -118,6 +128,11 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
 
     private boolean usePaging = true;
 
+    /**
+     * Maximum number of feature types imported concurrently
+     */
+    private int concurrency = 1;
+
     /**
      * Executes the import operation using the parameters that have been specified. Features will be
      * added to the working tree, and a new working tree will be constructed. Either {@code all} or
@@ -169,6 +184,13 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
             }
         }
 
+        if (concurrency > 1 && typeNames.length > 1 && !destPathProvided && !alter) {
+            importConcurrently(workTree, typeNames, overwrite, progressListener);
+            progressListener.setProgress(100.f);
+            progressListener.complete();
+            return workTree.getTree();
+        }
+
         int tableCount = 0;
 
         for (String typeName : typeNames) {
@@ -182,42 +204,13 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
                         + typeNames.length + ")... ");
             }
 
-            FeatureSource featureSource = getFeatureSource(typeName);
-            SimpleFeatureType featureType = (SimpleFeatureType) featureSource.getSchema();
-
-            final String fidPrefix = featureType.getTypeName() + ".";
-
-            String path;
-            if (destPath == null) {
-                path = featureType.getTypeName();
-            } else {
-                NodeRef.checkValidPath(destPath);
-                path = destPath;
-                featureType = forceFeatureTypeName(featureType, path);
-            }
-
-            featureType = overrideGeometryName(featureType);
-
-            featureSource = new ForceTypeAndFidFeatureSource<FeatureType, Feature>(featureSource,
-                    featureType, fidPrefix);
-            boolean hasPrimaryKey = hasPrimaryKey(typeName);
-            boolean forbidSorting = !usePaging || !hasPrimaryKey;
-            ((ForceTypeAndFidFeatureSource) featureSource).setForbidSorting(forbidSorting);
-
-            if (destPathFeatureType != null && adaptToDefaultFeatureType && !alter) {
-                featureSource = new FeatureTypeAdapterFeatureSource<FeatureType, Feature>(
-                        featureSource, destPathFeatureType.type());
-            }
+            final TypeImport typeImport = prepareTypeImport(workTree, typeName,
+                    destPathFeatureType, overwrite);
+            final String path = typeImport.path;
+            final SimpleFeatureType featureType = typeImport.featureType;
+            final FeatureSource featureSource = typeImport.source;
 
             ProgressListener taskProgress = subProgress(100.f / typeNames.length);
-            if (overwrite) {
-                try {
-                    workTree.delete(path);
-                    workTree.createTypeTree(path, featureType);
-                } catch (Exception e) {
-                    throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
-                }
-            }
 
             if (alter) {
                 // first we modify the feature type and the existing features, if needed
@@ -245,6 +238,228 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
         return workTree.getTree();
     }
 
+    /**
+     * Imports each feature type into its own tree using a bounded pool of {@link #concurrency}
+     * threads. The feature trees are built independently and written back to the working tree all
+     * at once when all of them are done, so WORK_HEAD is updated a single time, from the calling
+     * thread.
+     * <p>
+     * The features of all the types are fetched and their trees built on a single shared thread
+     * pool, rather than on a pool per feature type.
+     */
+    private void importConcurrently(final WorkingTree workTree, final String[] typeNames,
+            final boolean overwrite, final ProgressListener progressListener) {
+
+        final List<LayerProgressListener> layerListeners = Lists.newArrayList();
+        final List<TypeImport> typeImports = Lists.newArrayList();
+
+        // prepare the feature trees serially, changes to WORK_HEAD are not done concurrently
+        for (String typeName : typeNames) {
+            typeImports.add(prepareTypeImport(workTree, typeName, null, overwrite));
+            layerListeners.add(new LayerProgressListener(progressListener, typeName,
+                    layerListeners));
+        }
+
+        final int nThreads = Math.min(concurrency, typeImports.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setNameFormat("ImportOp-layer-%d").build());
+        // the layer threads only wait for the tree builders, one fetch per layer can be in flight
+        // besides the ones keeping the processors busy
+        final int nBuilderThreads = nThreads + Math.max(2, platform().availableProcessors());
+        final ExecutorService treeBuilders = Executors.newFixedThreadPool(nBuilderThreads,
+                new ThreadFactoryBuilder().setNameFormat("ImportOp-tree-builder-%d").build());
+
+        final List<Callable<RevTree>> tasks = Lists.newArrayList();
+        for (int i = 0; i < typeImports.size(); i++) {
+            final TypeImport typeImport = typeImports.get(i);
+            final LayerProgressListener layerListener = layerListeners.get(i);
+            tasks.add(new Callable<RevTree>() {
+                @Override
+                public RevTree call() {
+                    return workTree.buildTree(typeImport.path, typeImport.source, newQuery(),
+                            layerListener, treeBuilders);
+                }
+            });
+        }
+
+        final Map<String, RevTree> featureTrees = Maps.newLinkedHashMap();
+        try {
+            List<Future<RevTree>> results = Lists.newArrayList();
+            for (Callable<RevTree> task : tasks) {
+                results.add(executor.submit(task));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                featureTrees.put(typeImports.get(i).path, results.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GeoToolsOpException) {
+                throw (GeoToolsOpException) cause;
+            }
+            Throwables.propagateIfInstanceOf(cause, Error.class);
+            throw new GeoToolsOpException((Exception) cause, StatusCode.UNABLE_TO_INSERT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
+        } finally {
+            executor.shutdownNow();
+            treeBuilders.shutdownNow();
+        }
+
+        if (progressListener.isCanceled()) {
+            return;
+        }
+        progressListener.setDescription("Updating working tree with " + featureTrees.size()
+                + " imported trees...");
+        try {
+            workTree.writeBack(featureTrees);
+        } catch (Exception e) {
+            throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
+        }
+    }
+
+    /**
+     * A feature type to import, and the feature tree it's imported into
+     */
+    private static class TypeImport {
+
+        final String path;
+
+        final SimpleFeatureType featureType;
+
+        @SuppressWarnings("rawtypes")
+        final FeatureSource source;
+
+        TypeImport(String path, SimpleFeatureType featureType,
+                @SuppressWarnings("rawtypes") FeatureSource source) {
+            this.path = path;
+            this.featureType = featureType;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Sets up the import of a feature type, whether it's imported on its own or concurrently with
+     * others: resolves the destination path and feature type, wraps the feature source to force
+     * them and the feature ids, and recreates the feature tree if {@code overwrite} is set.
+     * 
+     * @param destPathFeatureType the default feature type of the {@link #destPath destination
+     *        path} to adapt the features to, if any
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private TypeImport prepareTypeImport(final WorkingTree workTree, final String typeName,
+            @Nullable final RevFeatureType destPathFeatureType, final boolean overwrite) {
+
+        FeatureSource featureSource = getFeatureSource(typeName);
+        SimpleFeatureType featureType = (SimpleFeatureType) featureSource.getSchema();
+
+        final String fidPrefix = featureType.getTypeName() + ".";
+
+        String path;
+        if (destPath == null) {
+            path = featureType.getTypeName();
+        } else {
+            NodeRef.checkValidPath(destPath);
+            path = destPath;
+            featureType = forceFeatureTypeName(featureType, path);
+        }
+
+        featureType = overrideGeometryName(featureType);
+
+        featureSource = new ForceTypeAndFidFeatureSource<FeatureType, Feature>(featureSource,
+                featureType, fidPrefix);
+        boolean hasPrimaryKey = hasPrimaryKey(typeName);
+        boolean forbidSorting = !usePaging || !hasPrimaryKey;
+        ((ForceTypeAndFidFeatureSource) featureSource).setForbidSorting(forbidSorting);
+
+        if (destPathFeatureType != null && adaptToDefaultFeatureType && !alter) {
+            featureSource = new FeatureTypeAdapterFeatureSource<FeatureType, Feature>(
+                    featureSource, destPathFeatureType.type());
+        }
+
+        if (overwrite) {
+            try {
+                workTree.delete(path);
+                workTree.createTypeTree(path, featureType);
+            } catch (Exception e) {
+                throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
+            }
+        }
+        return new TypeImport(path, featureType, featureSource);
+    }
+
+    /**
+     * @return the query to fetch the features to import with, using packed coordinate sequences
+     */
+    private static Query newQuery() {
+        final Query query = new Query();
+        CoordinateSequenceFactory coordSeq = new PackedCoordinateSequenceFactory();
+        query.getHints().add(new Hints(Hints.JTS_COORDINATE_SEQUENCE_FACTORY, coordSeq));
+        return query;
+    }
+
+    /**
+     * Reports the progress of a single feature type imported concurrently with others, setting the
+     * progress of the parent listener to the average progress of all of them, and prefixing the
+     * descriptions with the name of the feature type.
+     */
+    private static class LayerProgressListener extends DefaultProgressListener {
+
+        private final ProgressListener parent;
+
+        private final String layerName;
+
+        private final List<LayerProgressListener> layers;
+
+        LayerProgressListener(ProgressListener parent, String layerName,
+                List<LayerProgressListener> layers) {
+            this.parent = parent;
+            this.layerName = layerName;
+            this.layers = layers;
+        }
+
+        @Override
+        public void started() {
+            setProgress(0f);
+        }
+
+        @Override
+        public void complete() {
+            super.complete();
+            setProgress(getMaxProgress());
+        }
+
+        @Override
+        public void setProgress(float progress) {
+            synchronized (parent) {
+                this.progress = progress;
+                float total = 0f;
+                for (LayerProgressListener layer : layers) {
+                    total += Math.min(1f, layer.progress / layer.getMaxProgress());
+                }
+                parent.setProgress(parent.getMaxProgress() * total / layers.size());
+            }
+        }
+
+        @Override
+        public void setDescription(String description) {
+            super.setDescription(description);
+            synchronized (parent) {
+                parent.setDescription(layerName + ": " + description);
+            }
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return parent.isCanceled();
+        }
+
+        @Override
+        public void cancel() {
+            parent.cancel();
+        }
+    }
+
     private boolean hasPrimaryKey(String typeName) {
         FeatureSource featureSource;
         try {
@@ -456,10 +671,7 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
             @SuppressWarnings("rawtypes") final FeatureSource featureSource,
             final ProgressListener taskProgress) {
 
-        final Query query = new Query();
-        CoordinateSequenceFactory coordSeq = new PackedCoordinateSequenceFactory();
-        query.getHints().add(new Hints(Hints.JTS_COORDINATE_SEQUENCE_FACTORY, coordSeq));
-        workTree.insert(path, featureSource, query, taskProgress);
+        workTree.insert(path, featureSource, newQuery(), taskProgress);
 
     }
 
@@ -626,6 +838,23 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
 
     }
 
+    /**
+     * Sets the maximum number of feature types to import concurrently, defaults to {@code 1}.
+     * <p>
+     * When greater than one and several tables are imported, each one into its own tree (i.e. no
+     * {@link #setDestinationPath(String) destination path} is set and not {@link #setAlter(boolean)
+     * altering}), the feature trees are built concurrently and the working tree is updated once
+     * all of them are done. Otherwise the tables are imported one after the other.
+     * 
+     * @param concurrency the maximum number of feature types to import at the same time
+     * @return {@code this}
+     */
+    public ImportOp setConcurrency(int concurrency) {
+        Preconditions.checkArgument(concurrency > 0, "concurrency shall be > 0");
+        this.concurrency = concurrency;
+        return this;
+    }
+
     public ImportOp setUsePaging(boolean usePaging) {
         this.usePaging = usePaging;
         return this;
@@ -0,0 +1,408 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.BaseFeatureCollection;
+import org.geotools.feature.collection.DelegateFeatureIterator;
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.plumbing.DiffTree;
+import org.locationtech.geogig.api.plumbing.RefParse;
+import org.locationtech.geogig.api.plumbing.RevParse;
+import org.locationtech.geogig.api.plumbing.UpdateRef;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.identity.FeatureId;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps a {@link SimpleFeatureStore} in sync with a feature tree, applying to it only the features
+ * inserted, updated and deleted since the last commit exported to it, instead of exporting the
+ * whole tree again.
+ * <p>
+ * The changes are computed with {@link DiffTree} between the last exported commit and the
+ * {@link #setNewRef(String) new one}, and applied in batches, matching the target features by
+ * feature id: all the features changed are removed from the target store by id, and inserted
+ * and updated features are then added with their geogig feature id, so the target store shall
+ * honor {@link Hints#USE_PROVIDED_FID provided feature ids}. Removing inserted features first
+ * makes applying the same changes again harmless, like after a non transactional export that was
+ * cancelled or failed half way.
+ * <p>
+ * The last exported commit is remembered per target under the {@link #EXPORTS_PREFIX} refs
+ * namespace, once the changes are committed to the target store. If the export is cancelled, the
+ * transaction is rolled back and the last exported commit is left as it was. If there's no
+ * previous export for the target all the features in the tree are added.
+ */
+public class IncrementalExportOp extends AbstractGeoGigOp<SimpleFeatureStore> {
+
+    /**
+     * Namespace of the refs that point to the last commit exported to each target
+     */
+    public static final String EXPORTS_PREFIX = Ref.REFS_PREFIX + "exports/";
+
+    /**
+     * Default number of changes applied to the target store at a time
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final FilterFactory2 FILTER_FACTORY = CommonFactoryFinder.getFilterFactory2();
+
+    private static final Function<Feature, Optional<Feature>> IDENTITY = new Function<Feature, Optional<Feature>>() {
+
+        @Override
+        @Nullable
+        public Optional<Feature> apply(@Nullable Feature feature) {
+            return Optional.fromNullable(feature);
+        }
+
+    };
+
+    private String path;
+
+    private Supplier<SimpleFeatureStore> targetStoreProvider;
+
+    private String targetName;
+
+    private String newRef = Ref.HEAD;
+
+    private String oldRef;
+
+    private Function<Feature, Optional<Feature>> function = IDENTITY;
+
+    private boolean transactional = true;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Executes the incremental export and updates the last exported commit ref for the target.
+     *
+     * @return the target feature store
+     */
+    @Override
+    protected SimpleFeatureStore _call() {
+        checkNotNull(path, "path not set");
+        checkNotNull(targetStoreProvider, "feature store not set");
+
+        final SimpleFeatureStore targetStore = getTargetStore();
+        final String exportRef = EXPORTS_PREFIX
+                + (targetName == null ? targetStore.getName().getLocalPart() : targetName);
+
+        final Optional<ObjectId> newCommit = command(RevParse.class).setRefSpec(newRef).call();
+        checkArgument(newCommit.isPresent(), "%s did not resolve to a commit", newRef);
+
+        final ObjectId oldCommit;
+        if (oldRef == null) {
+            Optional<Ref> lastExport = command(RefParse.class).setName(exportRef).call();
+            oldCommit = lastExport.isPresent() ? lastExport.get().getObjectId() : ObjectId.NULL;
+        } else {
+            Optional<ObjectId> oldId = command(RevParse.class).setRefSpec(oldRef).call();
+            checkArgument(oldId.isPresent(), "%s did not resolve to a commit", oldRef);
+            oldCommit = oldId.get();
+        }
+
+        final ProgressListener progressListener = getProgressListener();
+        progressListener.started();
+        progressListener.setDescription("Exporting changes to '" + path + "' from "
+                + (oldCommit.isNull() ? "the empty tree" : oldCommit.toString().substring(0, 8))
+                + " to " + newCommit.get().toString().substring(0, 8) + "... ");
+
+        if (!oldCommit.equals(newCommit.get())) {
+            Iterator<DiffEntry> changes = command(DiffTree.class).setPathFilter(path)
+                    .setOldVersion(oldCommit.toString())
+                    .setNewVersion(newCommit.get().toString()).call();
+
+            final Transaction transaction;
+            if (transactional) {
+                transaction = new DefaultTransaction("export-changes");
+            } else {
+                transaction = Transaction.AUTO_COMMIT;
+            }
+            try {
+                targetStore.setTransaction(transaction);
+                try {
+                    apply(changes, targetStore, progressListener);
+                    if (progressListener.isCanceled()) {
+                        // the export ref is not updated, don't leave part of the changes applied
+                        if (transactional) {
+                            transaction.rollback();
+                        }
+                    } else {
+                        transaction.commit();
+                    }
+                } catch (final Exception e) {
+                    if (transactional) {
+                        transaction.rollback();
+                    }
+                    Throwables.propagateIfInstanceOf(e, GeoToolsOpException.class);
+                    throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_ADD);
+                } finally {
+                    transaction.close();
+                }
+            } catch (IOException e) {
+                throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_ADD);
+            }
+        }
+
+        if (!progressListener.isCanceled()) {
+            command(UpdateRef.class).setName(exportRef).setNewValue(newCommit.get())
+                    .setReason("incremental export of " + path).call();
+        }
+        progressListener.complete();
+        return targetStore;
+    }
+
+    private void apply(final Iterator<DiffEntry> changes, final SimpleFeatureStore targetStore,
+            final ProgressListener progressListener) throws IOException {
+
+        final ObjectDatabase database = stagingDatabase();
+        final Map<ObjectId, FeatureBuilder> builders = Maps.newHashMap();
+
+        long removed = 0, added = 0;
+        Iterator<List<DiffEntry>> batches = Iterators.partition(changes, batchSize);
+        while (batches.hasNext() && !progressListener.isCanceled()) {
+            final List<DiffEntry> batch = batches.next();
+
+            // the inserted features are removed too in case they were already applied
+            Set<FeatureId> removedIds = Sets.newHashSet();
+            List<NodeRef> newNodes = Lists.newArrayListWithCapacity(batch.size());
+            for (DiffEntry change : batch) {
+                if (change.getOldObject() != null) {
+                    removedIds.add(FILTER_FACTORY.featureId(change.getOldObject().name()));
+                    removed++;
+                }
+                if (change.getNewObject() != null) {
+                    removedIds.add(FILTER_FACTORY.featureId(change.getNewObject().name()));
+                    newNodes.add(change.getNewObject());
+                }
+            }
+
+            if (!removedIds.isEmpty()) {
+                targetStore.removeFeatures(FILTER_FACTORY.id(removedIds));
+            }
+
+            List<SimpleFeature> newFeatures = getFeatures(newNodes, database, builders);
+            if (!newFeatures.isEmpty()) {
+                targetStore.addFeatures(asFeatureCollection(newFeatures));
+                added += newFeatures.size();
+            }
+            progressListener.setDescription(String.format(
+                    "%,d features removed and %,d added so far", removed, added));
+        }
+    }
+
+    /**
+     * Fetches the features of the given nodes with a single {@link ObjectDatabase#getAll(Iterable)
+     * getAll} call and converts them with the {@link #setFeatureTypeConversionFunction conversion
+     * function}
+     */
+    private List<SimpleFeature> getFeatures(final List<NodeRef> nodes,
+            final ObjectDatabase database, final Map<ObjectId, FeatureBuilder> builders) {
+
+        Set<ObjectId> ids = Sets.newHashSet();
+        for (NodeRef node : nodes) {
+            ids.add(node.objectId());
+        }
+        Map<ObjectId, RevFeature> revFeatures = Maps.newHashMap();
+        Iterator<RevObject> objects = database.getAll(ids);
+        while (objects.hasNext()) {
+            RevObject object = objects.next();
+            if (object instanceof RevFeature) {
+                revFeatures.put(object.getId(), (RevFeature) object);
+            }
+        }
+
+        List<SimpleFeature> features = Lists.newArrayListWithCapacity(nodes.size());
+        for (NodeRef node : nodes) {
+            RevFeature revFeature = revFeatures.get(node.objectId());
+            if (revFeature == null) {
+                revFeature = database.getFeature(node.objectId());
+            }
+            FeatureBuilder featureBuilder = builders.get(node.getMetadataId());
+            if (featureBuilder == null) {
+                RevFeatureType revFtype = database.getFeatureType(node.getMetadataId());
+                featureBuilder = new FeatureBuilder(revFtype);
+                builders.put(node.getMetadataId(), featureBuilder);
+            }
+            Feature feature = featureBuilder.build(node.name(), revFeature);
+            feature.getUserData().put(Hints.USE_PROVIDED_FID, true);
+
+            Optional<Feature> converted = function.apply(feature);
+            if (converted != null && converted.isPresent()) {
+                Feature result = converted.get();
+                result.getUserData().put(Hints.USE_PROVIDED_FID, true);
+                features.add((SimpleFeature) result);
+            }
+        }
+        return features;
+    }
+
+    private static FeatureCollection<SimpleFeatureType, SimpleFeature> asFeatureCollection(
+            final List<SimpleFeature> features) {
+
+        return new BaseFeatureCollection<SimpleFeatureType, SimpleFeature>() {
+
+            @Override
+            public FeatureIterator<SimpleFeature> features() {
+                return new DelegateFeatureIterator<SimpleFeature>(features.iterator());
+            }
+
+            @Override
+            public int size() {
+                return features.size();
+            }
+        };
+    }
+
+    private SimpleFeatureStore getTargetStore() {
+        SimpleFeatureStore targetStore;
+        try {
+            targetStore = targetStoreProvider.get();
+        } catch (Exception e) {
+            throw new GeoToolsOpException(StatusCode.CANNOT_CREATE_FEATURESTORE);
+        }
+        if (targetStore == null) {
+            throw new GeoToolsOpException(StatusCode.CANNOT_CREATE_FEATURESTORE);
+        }
+        return targetStore;
+    }
+
+    /**
+     * @param featureStore a supplier that resolves to the feature store to keep in sync
+     * @return {@code this}
+     */
+    public IncrementalExportOp setFeatureStore(Supplier<SimpleFeatureStore> featureStore) {
+        this.targetStoreProvider = featureStore;
+        return this;
+    }
+
+    /**
+     * @param featureStore the feature store to keep in sync
+     * @return {@code this}
+     */
+    public IncrementalExportOp setFeatureStore(SimpleFeatureStore featureStore) {
+        this.targetStoreProvider = Suppliers.ofInstance(featureStore);
+        return this;
+    }
+
+    /**
+     * @param path the path of the feature tree to export
+     * @return {@code this}
+     */
+    public IncrementalExportOp setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * @param targetName the name under which the last exported commit is remembered, defaults to
+     *        the type name of the target feature store. Shall be unique for each target store the
+     *        repository is exported to, for example by including the database name.
+     * @return {@code this}
+     */
+    public IncrementalExportOp setTargetName(@Nullable String targetName) {
+        this.targetName = targetName;
+        return this;
+    }
+
+    /**
+     * @param newRef the commit to export, defaults to {@code HEAD}
+     * @return {@code this}
+     */
+    public IncrementalExportOp setNewRef(String newRef) {
+        checkNotNull(newRef);
+        this.newRef = newRef;
+        return this;
+    }
+
+    /**
+     * @param oldRef the commit the target store is in sync with, overriding the last exported
+     *        commit remembered for the target
+     * @return {@code this}
+     */
+    public IncrementalExportOp setOldRef(@Nullable String oldRef) {
+        this.oldRef = oldRef;
+        return this;
+    }
+
+    /**
+     * Sets the function to use for creating a valid Feature that has the FeatureType of the output
+     * FeatureStore, based on the actual FeatureType of the Features to export. If the returned
+     * object is Optional.absent, no feature will be added. The feature id shall be preserved, as
+     * it's used to match the features on the target store.
+     *
+     * @param function
+     * @return {@code this}
+     */
+    public IncrementalExportOp setFeatureTypeConversionFunction(
+            Function<Feature, Optional<Feature>> function) {
+        this.function = function == null ? IDENTITY : function;
+        return this;
+    }
+
+    /**
+     * @param transactional whether to use a geotools transaction for the operation, defaults to
+     *        {@code true}
+     * @return {@code this}
+     */
+    public IncrementalExportOp setTransactional(boolean transactional) {
+        this.transactional = transactional;
+        return this;
+    }
+
+    /**
+     * @param batchSize the number of changes applied to the target store at a time, defaults to
+     *        {@link #DEFAULT_BATCH_SIZE}
+     * @return {@code this}
+     */
+    public IncrementalExportOp setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize shall be > 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+}
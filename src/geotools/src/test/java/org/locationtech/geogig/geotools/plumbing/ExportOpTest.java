@@ -9,7 +9,14 @@
  */
 package org.locationtech.geogig.geotools.plumbing;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -19,10 +26,14 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.junit.Test;
+import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevFeatureTypeImpl;
+import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
@@ -33,6 +44,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 public class ExportOpTest extends RepositoryTestCase {
 
@@ -187,6 +200,119 @@ public class ExportOpTest extends RepositoryTestCase {
         return true;
     }
 
+    @Test
+    public void testExportInBatches() throws Exception {
+        Set<String> expectedIds = Sets.newHashSet();
+        List<Feature> points = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            String id = "Points." + i;
+            points.add(feature(pointsType, id, "StringProp1_" + i, new Integer(i),
+                    "POINT(" + i + " " + i + ")"));
+            expectedIds.add(id);
+        }
+        insert(points.toArray(new Feature[points.size()]));
+
+        MemoryDataStore dataStore = new MemoryDataStore(pointsType);
+        final String typeName = dataStore.getTypeNames()[0];
+        SimpleFeatureStore featureStore = (SimpleFeatureStore) dataStore
+                .getFeatureSource(typeName);
+        geogig.command(ExportOp.class).setFeatureStore(featureStore).setPath(pointsName)
+                .setBatchSize(7).setThreads(3).setTransactionSize(20).call();
+
+        SimpleFeatureCollection featureCollection = dataStore.getFeatureSource(typeName)
+                .getFeatures();
+        assertEquals(points.size(), featureCollection.size());
+        Set<String> ids = Sets.newHashSet();
+        SimpleFeatureIterator features = featureCollection.features();
+        try {
+            while (features.hasNext()) {
+                ids.add(features.next().getID());
+            }
+        } finally {
+            features.close();
+        }
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    public void testNonTransactionalExportAddsAllFeaturesAtOnce() throws Exception {
+        List<Feature> points = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            points.add(feature(pointsType, "Points." + i, "StringProp1_" + i, new Integer(i),
+                    "POINT(" + i + " " + i + ")"));
+        }
+        insert(points.toArray(new Feature[points.size()]));
+
+        MemoryDataStore dataStore = new MemoryDataStore(pointsType);
+        final String typeName = dataStore.getTypeNames()[0];
+        SimpleFeatureStore featureStore = spy((SimpleFeatureStore) dataStore
+                .getFeatureSource(typeName));
+        geogig.command(ExportOp.class).setFeatureStore(featureStore).setPath(pointsName)
+                .setBatchSize(7).setThreads(3).setTransactional(false).call();
+
+        verify(featureStore, times(1)).addFeatures(any(FeatureCollection.class));
+        assertEquals(points.size(), dataStore.getFeatureSource(typeName).getFeatures().size());
+    }
+
+    @Test
+    public void testTransactionalExportAddsFeaturesPerCommit() throws Exception {
+        List<Feature> points = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            points.add(feature(pointsType, "Points." + i, "StringProp1_" + i, new Integer(i),
+                    "POINT(" + i + " " + i + ")"));
+        }
+        insert(points.toArray(new Feature[points.size()]));
+
+        MemoryDataStore dataStore = new MemoryDataStore(pointsType);
+        final String typeName = dataStore.getTypeNames()[0];
+        SimpleFeatureStore featureStore = spy((SimpleFeatureStore) dataStore
+                .getFeatureSource(typeName));
+        geogig.command(ExportOp.class).setFeatureStore(featureStore).setPath(pointsName)
+                .setBatchSize(7).setThreads(3).setTransactionSize(30).call();
+
+        // 30 + 30 + 30 + 10
+        verify(featureStore, times(4)).addFeatures(any(FeatureCollection.class));
+        assertEquals(points.size(), dataStore.getFeatureSource(typeName).getFeatures().size());
+    }
+
+    @Test
+    public void testExportPreservingOrder() throws Exception {
+        List<Feature> points = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            points.add(feature(pointsType, "Points." + i, "StringProp1_" + i, new Integer(i),
+                    "POINT(" + i + " " + i + ")"));
+        }
+        insert(points.toArray(new Feature[points.size()]));
+
+        MemoryDataStore dataStore = new MemoryDataStore(pointsType);
+        final String typeName = dataStore.getTypeNames()[0];
+        SimpleFeatureStore featureStore = (SimpleFeatureStore) dataStore
+                .getFeatureSource(typeName);
+        geogig.command(ExportOp.class).setFeatureStore(featureStore).setPath(pointsName)
+                .setBatchSize(3).setThreads(4).setPreserveOrder(true).call();
+
+        List<String> exportedIds = Lists.newArrayList();
+        SimpleFeatureIterator features = dataStore.getFeatureSource(typeName).getFeatures()
+                .features();
+        try {
+            while (features.hasNext()) {
+                exportedIds.add(features.next().getID());
+            }
+        } finally {
+            features.close();
+        }
+
+        List<String> expectedIds = Lists.newArrayList();
+        Iterator<NodeRef> nodes = geogig.command(LsTreeOp.class)
+                .setReference(Ref.WORK_HEAD + ":" + pointsName)
+                .setStrategy(LsTreeOp.Strategy.FEATURES_ONLY).call();
+        while (nodes.hasNext()) {
+            expectedIds.add(nodes.next().name());
+        }
+        assertEquals(50, expectedIds.size());
+        assertEquals(expectedIds, exportedIds);
+    }
+
     @Test
     public void testExportFromWrongFeatureType() throws Exception {
         MemoryDataStore dataStore = new MemoryDataStore(pointsType);
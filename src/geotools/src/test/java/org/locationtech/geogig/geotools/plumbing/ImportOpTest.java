@@ -25,6 +25,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevFeature;
@@ -194,6 +195,34 @@ public class ImportOpTest extends RepositoryTestCase {
         assertTrue(ref.isPresent());
     }
 
+    @Test
+    public void testImportAllConcurrently() throws Exception {
+        RevTree serialTree = geogig.command(ImportOp.class)
+                .setDataStore(TestHelper.createTestFactory().createDataStore(null)).setAll(true)
+                .call();
+
+        DefaultProgressListener listener = new DefaultProgressListener();
+        ImportOp importOp = geogig.command(ImportOp.class);
+        importOp.setDataStore(TestHelper.createTestFactory().createDataStore(null));
+        importOp.setAll(true);
+        importOp.setConcurrency(2);
+        importOp.setProgressListener(listener);
+
+        RevTree newWorkingTree = importOp.call();
+        assertEquals(serialTree, newWorkingTree);
+        assertEquals(newWorkingTree, geogig.getRepository().workingTree().getTree());
+        assertTrue(listener.isCompleted());
+        assertEquals(100f, listener.getProgress(), 0f);
+
+        Optional<NodeRef> ref = geogig.command(FindTreeChild.class).setParent(newWorkingTree)
+                .setChildPath("table1/feature1").setIndex(true).call();
+        assertTrue(ref.isPresent());
+
+        ref = geogig.command(FindTreeChild.class).setParent(newWorkingTree)
+                .setChildPath("table2/feature3").setIndex(true).call();
+        assertTrue(ref.isPresent());
+    }
+
     @Test
     public void testImportAllWithDifferentFeatureTypesAndDestPath() throws Exception {
         ImportOp importOp = geogig.command(ImportOp.class);
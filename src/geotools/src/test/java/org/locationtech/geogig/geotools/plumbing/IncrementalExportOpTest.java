@@ -0,0 +1,190 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.geotools.plumbing;
+
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.Hints;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.plumbing.RefParse;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+public class IncrementalExportOpTest extends RepositoryTestCase {
+
+    private MemoryDataStore dataStore;
+
+    private SimpleFeatureStore featureStore;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        dataStore = new MemoryDataStore(pointsType);
+        String typeName = dataStore.getTypeNames()[0];
+        featureStore = (SimpleFeatureStore) dataStore.getFeatureSource(typeName);
+    }
+
+    @Test
+    public void testFirstExportAddsAllFeatures() throws Exception {
+        insertAndAdd(points1, points2);
+        RevCommit commit = geogig.command(CommitOp.class).call();
+
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).call();
+
+        Map<String, SimpleFeature> exported = exported();
+        assertEquals(2, exported.size());
+        assertTrue(exported.containsKey(idP1));
+        assertTrue(exported.containsKey(idP2));
+        assertEquals(commit.getId(), lastExport(pointsName));
+    }
+
+    @Test
+    public void testExportChangesOnly() throws Exception {
+        insertAndAdd(points1, points2);
+        geogig.command(CommitOp.class).call();
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).setTargetName("memory/points").call();
+
+        insertAndAdd(points1_modified, points3);
+        deleteAndAdd(points2);
+        RevCommit commit = geogig.command(CommitOp.class).call();
+
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).setTargetName("memory/points").setBatchSize(1).call();
+
+        Map<String, SimpleFeature> exported = exported();
+        assertEquals(2, exported.size());
+        assertFalse(exported.containsKey(idP2));
+        assertTrue(exported.containsKey(idP3));
+        assertEquals(((SimpleFeature) points1_modified).getAttribute("sp"), exported.get(idP1)
+                .getAttribute("sp"));
+        assertEquals(commit.getId(), lastExport("memory/points"));
+    }
+
+    @Test
+    public void testExportFromExplicitCommit() throws Exception {
+        insertAndAdd(points1);
+        RevCommit first = geogig.command(CommitOp.class).call();
+        insertAndAdd(points2);
+        geogig.command(CommitOp.class).call();
+
+        // the target store already has points1, only points2 is to be exported
+        points1.getUserData().put(Hints.USE_PROVIDED_FID, Boolean.TRUE);
+        featureStore.addFeatures(DataUtilities.collection((SimpleFeature) points1));
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).setOldRef(first.getId().toString()).call();
+
+        Map<String, SimpleFeature> exported = exported();
+        assertEquals(2, exported.size());
+        assertTrue(exported.containsKey(idP1));
+        assertTrue(exported.containsKey(idP2));
+    }
+
+    @Test
+    public void testNothingToExport() throws Exception {
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).call();
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).call();
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).call();
+
+        assertEquals(1, exported().size());
+    }
+
+    @Test
+    public void testCancelledExportIsRolledBack() throws Exception {
+        insertAndAdd(points1, points2, points3);
+        geogig.command(CommitOp.class).call();
+
+        // cancelled once the first batch is applied
+        DefaultProgressListener listener = new DefaultProgressListener() {
+            @Override
+            public void setDescription(String description) {
+                super.setDescription(description);
+                if (description.endsWith("so far")) {
+                    cancel();
+                }
+            }
+        };
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).setBatchSize(1).setProgressListener(listener).call();
+
+        assertTrue(exported().isEmpty());
+        assertFalse(geogig.command(RefParse.class)
+                .setName(IncrementalExportOp.EXPORTS_PREFIX + pointsName).call().isPresent());
+
+        geogig.command(IncrementalExportOp.class).setFeatureStore(featureStore)
+                .setPath(pointsName).call();
+        assertEquals(3, exported().size());
+    }
+
+    @Test
+    public void testReapplyingChanges() throws Exception {
+        insertAndAdd(points1, points2);
+        RevCommit commit = geogig.command(CommitOp.class).call();
+
+        // a previous non transactional export added points1 but didn't get to record it
+        points1.getUserData().put(Hints.USE_PROVIDED_FID, Boolean.TRUE);
+        featureStore.addFeatures(DataUtilities.collection((SimpleFeature) points1));
+        SimpleFeatureStore spy = spy(featureStore);
+        geogig.command(IncrementalExportOp.class).setFeatureStore(spy).setPath(pointsName)
+                .setTransactional(false).call();
+
+        // the added features are removed first
+        ArgumentCaptor<Filter> removed = ArgumentCaptor.forClass(Filter.class);
+        verify(spy).removeFeatures(removed.capture());
+        assertEquals(ImmutableSet.of(idP1, idP2), ((Id) removed.getValue()).getIDs());
+        Map<String, SimpleFeature> exported = exported();
+        assertEquals(2, exported.size());
+        assertEquals(commit.getId(), lastExport(pointsName));
+    }
+
+    private ObjectId lastExport(String targetName) {
+        Optional<Ref> ref = geogig.command(RefParse.class)
+                .setName(IncrementalExportOp.EXPORTS_PREFIX + targetName).call();
+        assertTrue(ref.isPresent());
+        return ref.get().getObjectId();
+    }
+
+    private Map<String, SimpleFeature> exported() throws Exception {
+        Map<String, SimpleFeature> features = Maps.newHashMap();
+        SimpleFeatureIterator it = dataStore.getFeatureSource(dataStore.getTypeNames()[0])
+                .getFeatures().features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature f = it.next();
+                features.put(f.getID(), f);
+            }
+        } finally {
+            it.close();
+        }
+        return features;
+    }
+}
@@ -40,9 +40,26 @@ public class MeteredCommandHook implements CommandHook {
     @Override
     public <C extends AbstractGeoGigOp<?>> C pre(C command)
             throws CannotRunGeogigOperationException {
+        if (!isEnabled(command)) {
+            return command;
+        }
+
+        final Platform platform = command.context().platform();
+        final long startTime = platform.currentTimeMillis();
+        final long nanoTime = platform.nanoTime();
+        final String name = command.getClass().getSimpleName();
+        CallStack stack = CallStack.push(name, startTime, nanoTime);
+        command.getClientData().put("metrics.callStack", stack);
+        return command;
+    }
+
+    /**
+     * @return whether metrics are enabled for the repository the command runs on
+     */
+    static boolean isEnabled(AbstractGeoGigOp<?> command) {
         Boolean enabled;
         if (command.context().repository() == null) {
-            return command;
+            return false;
         }
         ConfigDatabase configDb = command.context().configDatabase();
         try {
@@ -54,17 +71,7 @@ public class MeteredCommandHook implements CommandHook {
                 throw e;
             }
         }
-        if (!enabled.booleanValue()) {
-            return command;
-        }
-
-        final Platform platform = command.context().platform();
-        final long startTime = platform.currentTimeMillis();
-        final long nanoTime = platform.nanoTime();
-        final String name = command.getClass().getSimpleName();
-        CallStack stack = CallStack.push(name, startTime, nanoTime);
-        command.getClientData().put("metrics.callStack", stack);
-        return command;
+        return enabled.booleanValue();
     }
 
     @SuppressWarnings("unchecked")
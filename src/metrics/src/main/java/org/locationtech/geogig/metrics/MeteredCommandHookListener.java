@@ -0,0 +1,40 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static org.locationtech.geogig.metrics.MetricsModule.METRICS_LOGGER;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.hooks.CommandHook;
+import org.locationtech.geogig.api.hooks.CommandHookListener;
+
+/**
+ * Logs the time taken by each command hook, except for the {@link MeteredCommandHook} itself, to
+ * the {@link MetricsModule#METRICS_LOGGER metrics csv logger}, using
+ * {@code <op name>.<pre|post>.<hook>} as name, for example {@code CommitOp.pre.pre_commit.js}.
+ */
+public class MeteredCommandHookListener implements CommandHookListener {
+
+    private static final double toMillisFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Override
+    public void hookRan(AbstractGeoGigOp<?> command, CommandHook hook, boolean pre,
+            long startTimeMillis, long ellapsedNanos, boolean success) {
+
+        if (hook instanceof MeteredCommandHook || !MeteredCommandHook.isEnabled(command)) {
+            return;
+        }
+        String name = command.getClass().getSimpleName() + (pre ? ".pre." : ".post.") + hook;
+        double millis = ellapsedNanos * toMillisFactor;
+        METRICS_LOGGER.info("{}, {}, {}, {}", name, startTimeMillis, millis, success);
+    }
+}
@@ -30,6 +30,8 @@ import com.google.inject.AbstractModule;
  * <ul>
  * <li>{@code org.locationtech.geogig.metrics.csv}: used to log command times as they happen, with the format
  * {@code <op name:string>, <start time in millis:long>, <ellapsed time in millis:double>, <success:boolean>}
+ * . Command hook times are logged with the same format, with {@code <op name>.<pre|post>.<hook>} as
+ * name, by the {@link MeteredCommandHookListener}
  * <li>{@code org.locationtech.geogig.metrics.stack}: used to log the stack of command timings whenever a "root"
  * command (that is, one called by client code instead of from another command) finishes. Contains
  * an indented, multiline, stack of commands called with each timing and the relative percent of
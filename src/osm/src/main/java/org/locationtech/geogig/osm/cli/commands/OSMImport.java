@@ -48,6 +48,9 @@ public class OSMImport extends AbstractCommand implements CLICommand {
     @Parameter(names = "--message", description = "Message for the commit to create.")
     public String message;
 
+    @Parameter(names = { "--numthreads", "-t" }, description = "Number of threads to use to decode PBF files and convert entities. Defaults to the number of available processors")
+    public int numThreads = 0;
+
     @Override
     protected void runInternal(GeogigCLI cli) throws IOException {
         checkParameter(apiUrl != null && apiUrl.size() == 1, "One file must be specified");
@@ -66,7 +69,7 @@ public class OSMImport extends AbstractCommand implements CLICommand {
             message = message == null ? "Updated OSM data" : message;
             Optional<OSMReport> report = cli.getGeogig().command(OSMImportOp.class)
                     .setDataSource(importFile.getAbsolutePath()).setMapping(mapping)
-                    .setMessage(message).setNoRaw(noRaw).setAdd(add)
+                    .setMessage(message).setNoRaw(noRaw).setAdd(add).setNumThreads(numThreads)
                     .setProgressListener(cli.getProgressListener()).call();
             if (report.isPresent()) {
                 OSMReport rep = report.get();
@@ -11,6 +11,7 @@ package org.locationtech.geogig.osm.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -39,10 +40,25 @@ public class Mapping {
     @Expose
     private List<MappingRule> rules;
 
+    /**
+     * The rules' tag filters compiled into an index, lazily created as instances may be created
+     * by Gson
+     */
+    private volatile MappingRuleMatcher matcher;
+
     public Mapping(List<MappingRule> rules) {
         this.rules = rules;
     }
 
+    private MappingRuleMatcher getMatcher() {
+        MappingRuleMatcher matcher = this.matcher;
+        if (matcher == null) {
+            matcher = new MappingRuleMatcher(rules);
+            this.matcher = matcher;
+        }
+        return matcher;
+    }
+
     /**
      * Transforms the passed feature according to the mapping rules of this mapping. If several
      * rules can be applied, only the first one found is used.
@@ -58,9 +74,15 @@ public class Mapping {
         }
         String tagsString = (String) ((SimpleFeature) feature).getAttribute("tags");
         Collection<Tag> tags = OSMUtils.buildTagsCollectionFromString(tagsString);
+        final MappingRuleMatcher matcher = getMatcher();
+        BitSet candidates = matcher.match(tags);
+        if (candidates.isEmpty()) {
+            return ImmutableList.of();
+        }
         ImmutableList.Builder<MappedFeature> builder = ImmutableList.<MappedFeature> builder();
-        for (MappingRule rule : rules) {
-            Optional<Feature> newFeature = rule.apply(feature, tags);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            MappingRule rule = matcher.getRule(i);
+            Optional<Feature> newFeature = rule.applyMatched(feature, tags);
             if (newFeature.isPresent()) {
                 builder.add(new MappedFeature(rule.getName(), newFeature.get()));
             }
@@ -81,8 +103,10 @@ public class Mapping {
         if (tags.isEmpty()) {
             return false;
         }
-        for (MappingRule rule : rules) {
-            if (rule.canBeApplied(feature, tags)) {
+        final MappingRuleMatcher matcher = getMatcher();
+        BitSet candidates = matcher.match(tags);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (matcher.getRule(i).hasCompatibleGeometryType(feature)) {
                 return true;
             }
         }
@@ -27,7 +27,6 @@ import org.opengis.feature.Feature;
 import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.NoSuchAuthorityCodeException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -36,6 +35,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.gson.annotations.Expose;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
@@ -136,15 +136,23 @@ public class MappingRule {
     @Nullable
     private List<DefaultField> defaultFields;
 
-    private SimpleFeatureType featureType;
+    private volatile SimpleFeatureType featureType;
 
-    private SimpleFeatureBuilder featureBuilder;
+    /**
+     * One builder per thread, so that the rule can be applied concurrently by the import workers
+     */
+    private ThreadLocal<SimpleFeatureBuilder> featureBuilder;
+
+    /**
+     * The tag keys that map to non geometry attributes, and the type of the attribute values
+     */
+    private Map<String, FieldType> tagFieldTypes;
 
     private Class<?> geometryType;
 
     private GeomRestriction geomRestriction;
 
-    private ArrayList<String> _mandatoryTags = null;
+    private volatile ArrayList<String> _mandatoryTags = null;
 
     private static GeometryFactory gf = new GeometryFactory();
 
@@ -176,46 +184,64 @@ public class MappingRule {
      * @return
      */
     public SimpleFeatureType getFeatureType() {
-        if (featureType == null) {
-            SimpleFeatureTypeBuilder fb = new SimpleFeatureTypeBuilder();
-            fb.setName(name);
-            fb.add("id", Long.class);
-            if (defaultFields != null) {
-                for (DefaultField df : defaultFields) {
-                    fb.add(df.name().toLowerCase(), df.getFieldClass());
+        SimpleFeatureType type = featureType;
+        if (type == null) {
+            synchronized (this) {
+                type = featureType;
+                if (type == null) {
+                    type = buildFeatureType();
+                    featureType = type;
                 }
             }
-            Set<String> keys = this.fields.keySet();
-            for (String key : keys) {
-                AttributeDefinition field = fields.get(key);
-                Class<?> clazz = field.getType().getBinding();
-                if (Geometry.class.isAssignableFrom(clazz)) {
-                    Preconditions.checkArgument(geometryType == null,
-                            "The mapping has more than one geometry attribute");
-                    CoordinateReferenceSystem epsg4326;
-                    try {
-                        epsg4326 = CRS.decode("EPSG:4326", true);
-                        fb.add(field.getName(), clazz, epsg4326);
-                    } catch (NoSuchAuthorityCodeException e) {
-                    } catch (FactoryException e) {
-                    }
-                    geometryType = clazz;
-                } else {
-                    fb.add(field.getName(), clazz);
-                }
+        }
+        return type;
+    }
+
+    private SimpleFeatureType buildFeatureType() {
+        SimpleFeatureTypeBuilder fb = new SimpleFeatureTypeBuilder();
+        fb.setName(name);
+        fb.add("id", Long.class);
+        if (defaultFields != null) {
+            for (DefaultField df : defaultFields) {
+                fb.add(df.name().toLowerCase(), df.getFieldClass());
             }
-            Preconditions.checkNotNull(geometryType,
-                    "The mapping rule does not define a geometry field");
-            if (!geometryType.equals(Point.class)) {
-                fb.add("nodes", String.class);
+        }
+        Map<String, FieldType> tagFieldTypes = Maps.newHashMap();
+        Set<String> keys = this.fields.keySet();
+        for (String key : keys) {
+            AttributeDefinition field = fields.get(key);
+            Class<?> clazz = field.getType().getBinding();
+            if (Geometry.class.isAssignableFrom(clazz)) {
+                Preconditions.checkArgument(geometryType == null,
+                        "The mapping has more than one geometry attribute");
+                CoordinateReferenceSystem epsg4326;
+                try {
+                    epsg4326 = CRS.decode("EPSG:4326", true);
+                    fb.add(field.getName(), clazz, epsg4326);
+                } catch (NoSuchAuthorityCodeException e) {
+                } catch (FactoryException e) {
+                }
+                geometryType = clazz;
+            } else {
+                fb.add(field.getName(), clazz);
+                tagFieldTypes.put(key, FieldType.forBinding(clazz));
             }
-            featureType = fb.buildFeatureType();
-
-            featureBuilder = new SimpleFeatureBuilder(featureType);
-
         }
-        return featureType;
+        Preconditions.checkNotNull(geometryType,
+                "The mapping rule does not define a geometry field");
+        if (!geometryType.equals(Point.class)) {
+            fb.add("nodes", String.class);
+        }
+        final SimpleFeatureType type = fb.buildFeatureType();
 
+        this.tagFieldTypes = tagFieldTypes;
+        featureBuilder = new ThreadLocal<SimpleFeatureBuilder>() {
+            @Override
+            protected SimpleFeatureBuilder initialValue() {
+                return new SimpleFeatureBuilder(type);
+            }
+        };
+        return type;
     }
 
     private GeomRestriction getGeomRestriction() {
@@ -255,28 +281,38 @@ public class MappingRule {
         if (!canBeApplied(feature, tags)) {
             return Optional.absent();
         }
-        for (AttributeDescriptor attribute : getFeatureType().getAttributeDescriptors()) {
-            String attrName = attribute.getName().toString();
-            Class<?> clazz = attribute.getType().getBinding();
-            if (Geometry.class.isAssignableFrom(clazz)) {
-                Geometry geom = prepareGeometry((Geometry) feature.getDefaultGeometryProperty()
-                        .getValue());
-                if (geom == null) {
-                    return Optional.absent();
-                }
-                featureBuilder.set(attrName, geom);
-            } else {
-                Object value = null;
-                for (Tag tag : tags) {
-                    if (fields.containsKey(tag.getKey())) {
-                        if (fields.get(tag.getKey()).getName().equals(attrName)) {
-                            FieldType type = FieldType.forBinding(clazz);
-                            value = getAttributeValue(tag.getValue(), type);
-                            break;
-                        }
-                    }
-                }
-                featureBuilder.set(attribute.getName(), value);
+        return build(feature, tags);
+    }
+
+    /**
+     * Same as {@link #apply(Feature, Collection)}, but for a feature whose tags are already known
+     * to meet this rule's filter, as resolved by a {@link MappingRuleMatcher}.
+     */
+    Optional<Feature> applyMatched(Feature feature, Collection<Tag> tags) {
+        if (!hasCompatibleGeometryType(feature)) {
+            return Optional.absent();
+        }
+        return build(feature, tags);
+    }
+
+    private Optional<Feature> build(Feature feature, Collection<Tag> tags) {
+        final SimpleFeatureType featureType = getFeatureType();
+        final SimpleFeatureBuilder featureBuilder = this.featureBuilder.get();
+        featureBuilder.reset();
+
+        Geometry geom = prepareGeometry((Geometry) feature.getDefaultGeometryProperty().getValue());
+        if (geom == null) {
+            return Optional.absent();
+        }
+        featureBuilder.set(featureType.getGeometryDescriptor().getLocalName(), geom);
+
+        // tag keys are unique per OSM entity, and attributes not set here are left null
+        for (Tag tag : tags) {
+            final String key = tag.getKey();
+            FieldType type = tagFieldTypes.get(key);
+            if (type != null) {
+                Object value = getAttributeValue(tag.getValue(), type);
+                featureBuilder.set(fields.get(key).getName(), value);
             }
         }
 
@@ -320,7 +356,7 @@ public class MappingRule {
         return hasCorrectTags(feature, tags) && hasCompatibleGeometryType(feature);
     }
 
-    private boolean hasCompatibleGeometryType(Feature feature) {
+    boolean hasCompatibleGeometryType(Feature feature) {
         getFeatureType();
         GeomRestriction restriction = getGeomRestriction();
         GeometryAttribute property = feature.getDefaultGeometryProperty();
@@ -346,9 +382,8 @@ public class MappingRule {
         }
     }
 
-    private boolean hasCorrectTags(Feature feature, Collection<Tag> tags) {
-        if (filter.isEmpty() || (filter.size() == 1 && filter.containsKey("geom"))
-                && (exclude == null || exclude.isEmpty())) {
+    boolean hasCorrectTags(Feature feature, Collection<Tag> tags) {
+        if (isUnconditional()) {
             return true;
         }
         boolean ret = false;
@@ -381,6 +416,24 @@ public class MappingRule {
         return ret;
     }
 
+    /**
+     * @return {@code true} if this rule's tag conditions are met by any feature, regardless of its
+     *         tags
+     */
+    boolean isUnconditional() {
+        return filter.isEmpty() || (filter.size() == 1 && filter.containsKey("geom"))
+                && (exclude == null || exclude.isEmpty());
+    }
+
+    Map<String, List<String>> getFilter() {
+        return filter;
+    }
+
+    @Nullable
+    Map<String, List<String>> getExclude() {
+        return exclude;
+    }
+
     public String getName() {
         return name;
     }
@@ -436,18 +489,24 @@ public class MappingRule {
         }
     }
 
-    private ArrayList<String> getMandatoryTags() {
-        if (_mandatoryTags == null) {
-            _mandatoryTags = Lists.newArrayList();
+    /**
+     * @return the keys of the {@link #exclude} entries with no values, that is, tags that must be
+     *         present for this rule to be applied
+     */
+    List<String> getMandatoryTags() {
+        ArrayList<String> mandatoryTags = _mandatoryTags;
+        if (mandatoryTags == null) {
+            mandatoryTags = Lists.newArrayList();
             if (exclude != null) {
                 for (String key : this.exclude.keySet()) {
                     if (exclude.get(key) == null) {
-                        _mandatoryTags.add(key);
+                        mandatoryTags.add(key);
                     }
                 }
             }
+            _mandatoryTags = mandatoryTags;
         }
-        return _mandatoryTags;
+        return mandatoryTags;
 
     }
 }
@@ -0,0 +1,194 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The tag filters of a list of {@link MappingRule}s compiled into an index of tag key to tag value
+ * to candidate rules.
+ * <p>
+ * Rather than evaluating the filter and exclusion maps of every rule against the tags of every
+ * feature, {@link #match(Collection)} resolves the rules whose tag conditions are met with a
+ * couple of hash lookups per tag, regardless of the number of rules in the mapping. The result
+ * is the same as the tags part of {@link MappingRule#canBeApplied}; the geometry type checks are
+ * still up to each rule.
+ * <p>
+ * Instances are immutable and thus safe to use concurrently.
+ */
+final class MappingRuleMatcher {
+
+    private final MappingRule[] rules;
+
+    private final int numRules;
+
+    /**
+     * Rules whose tag conditions are met regardless of the feature's tags
+     */
+    private final BitSet unconditional;
+
+    private final Map<String, KeyIndex> filters;
+
+    private final Map<String, KeyIndex> exclusions;
+
+    /**
+     * The tags that must be present for a rule to match, indexed by rule, {@code null} for rules
+     * with no mandatory tags
+     */
+    private final String[][] mandatoryTags;
+
+    private final BitSet withMandatoryTags;
+
+    public MappingRuleMatcher(List<MappingRule> rules) {
+        this.rules = rules.toArray(new MappingRule[rules.size()]);
+        this.numRules = this.rules.length;
+        this.unconditional = new BitSet(numRules);
+        this.withMandatoryTags = new BitSet(numRules);
+        this.mandatoryTags = new String[numRules][];
+        this.filters = Maps.newHashMap();
+        this.exclusions = Maps.newHashMap();
+
+        for (int i = 0; i < numRules; i++) {
+            final MappingRule rule = this.rules[i];
+            if (rule.isUnconditional()) {
+                unconditional.set(i);
+                continue;
+            }
+            for (Map.Entry<String, List<String>> e : rule.getFilter().entrySet()) {
+                index(filters, e.getKey(), e.getValue(), i);
+            }
+            Map<String, List<String>> exclude = rule.getExclude();
+            if (exclude != null) {
+                for (Map.Entry<String, List<String>> e : exclude.entrySet()) {
+                    // a key with no values is a mandatory tag rather than an exclusion
+                    if (e.getValue() != null) {
+                        index(exclusions, e.getKey(), e.getValue(), i);
+                    }
+                }
+            }
+            List<String> mandatory = rule.getMandatoryTags();
+            if (!mandatory.isEmpty()) {
+                String[] keys = new String[mandatory.size()];
+                for (int k = 0; k < keys.length; k++) {
+                    keys[k] = mandatory.get(k).intern();
+                }
+                mandatoryTags[i] = keys;
+                withMandatoryTags.set(i);
+            }
+        }
+    }
+
+    private static void index(Map<String, KeyIndex> index, String key,
+            @Nullable List<String> values, int rule) {
+        key = key.intern();
+        KeyIndex keyIndex = index.get(key);
+        if (keyIndex == null) {
+            keyIndex = new KeyIndex();
+            index.put(key, keyIndex);
+        }
+        keyIndex.add(values, rule);
+    }
+
+    /**
+     * @return the rule at the given index, in the order of the list this matcher was created with
+     */
+    public MappingRule getRule(int index) {
+        return rules[index];
+    }
+
+    /**
+     * @return the indexes of the rules whose tag filters are met by the given tags
+     */
+    public BitSet match(Collection<Tag> tags) {
+        BitSet matches = new BitSet(numRules);
+        BitSet excluded = null;
+        for (Tag tag : tags) {
+            final String key = tag.getKey();
+            KeyIndex filter = filters.get(key);
+            if (filter != null) {
+                filter.collect(tag.getValue(), matches);
+            }
+            KeyIndex exclusion = exclusions.isEmpty() ? null : exclusions.get(key);
+            if (exclusion != null) {
+                if (excluded == null) {
+                    excluded = new BitSet(numRules);
+                }
+                exclusion.collect(tag.getValue(), excluded);
+            }
+        }
+        if (excluded != null) {
+            matches.andNot(excluded);
+        }
+        if (matches.intersects(withMandatoryTags)) {
+            Set<String> keys = Sets.newHashSet();
+            for (Tag tag : tags) {
+                keys.add(tag.getKey());
+            }
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                String[] mandatory = mandatoryTags[i];
+                if (mandatory != null) {
+                    for (String key : mandatory) {
+                        if (!keys.contains(key)) {
+                            matches.clear(i);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        matches.or(unconditional);
+        return matches;
+    }
+
+    /**
+     * The rules filtering on a given tag key, for any value and by value
+     */
+    private static class KeyIndex {
+
+        private final BitSet anyValue = new BitSet();
+
+        private final Map<String, BitSet> byValue = Maps.newHashMap();
+
+        void add(@Nullable List<String> values, int rule) {
+            if (values == null || values.isEmpty()) {
+                anyValue.set(rule);
+                return;
+            }
+            for (String value : values) {
+                value = value.intern();
+                BitSet rules = byValue.get(value);
+                if (rules == null) {
+                    rules = new BitSet();
+                    byValue.put(value, rules);
+                }
+                rules.set(rule);
+            }
+        }
+
+        void collect(String value, BitSet target) {
+            target.or(anyValue);
+            BitSet rules = byValue.get(value);
+            if (rules != null) {
+                target.or(rules);
+            }
+        }
+    }
+}
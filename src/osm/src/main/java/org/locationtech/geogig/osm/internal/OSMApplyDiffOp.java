@@ -22,12 +22,15 @@ import javax.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.NodeRef;
-import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.osm.internal.coordcache.BDBJEPointCache;
+import org.locationtech.geogig.osm.internal.coordcache.PersistentPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
+import org.locationtech.geogig.osm.internal.coordcache.ResolveOSMNodeCacheDir;
+import org.locationtech.geogig.osm.internal.coordcache.SyncOSMNodeCache;
 import org.locationtech.geogig.repository.FeatureToDelete;
 import org.locationtech.geogig.repository.WorkingTree;
 import org.opengis.feature.Feature;
@@ -116,8 +119,15 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         XmlChangeReader reader = new XmlChangeReader(file, true, resolveCompressionMethod(file));
 
         ProgressListener progressListener = getProgressListener();
-        ConvertAndImportSink sink = new ConvertAndImportSink(target, context, workingTree(),
-                platform(), new SubProgressListener(progressListener, 100));
+        final PointCache pointCache = openPointCache();
+        ConvertAndImportSink sink;
+        try {
+            sink = new ConvertAndImportSink(target, context, workingTree(), pointCache,
+                    new SubProgressListener(progressListener, 100));
+        } catch (RuntimeException e) {
+            pointCache.dispose();
+            throw e;
+        }
         reader.setChangeSink(sink);
 
         Thread readerThread = new Thread(reader, "osm-diff-reader-thread");
@@ -140,13 +150,46 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
-        workTree.insert(parentTreePathResolver, target, noProgressReportingListener, null, null);
+        try {
+            workTree.insert(parentTreePathResolver, target, noProgressReportingListener, null,
+                    null);
+        } finally {
+            pointCache.dispose();
+        }
 
         OSMReport report = new OSMReport(sink.getCount(), sink.getNodeCount(), sink.getWayCount(),
                 sink.getUnprocessedCount(), sink.getLatestChangeset(), sink.getLatestTimestamp());
         return report;
     }
 
+    /**
+     * Returns the point cache used to resolve the coordinates of the way nodes.
+     * <p>
+     * The repository's persistent node cache is used when available, brought up to date with the
+     * working tree's {@code node} tree, so that modified ways can be built out of nodes that are
+     * not part of the diff file. The nodes in the diff are added to it but not persisted, the
+     * next import or diff application brings the cache up to date with them.
+     */
+    private PointCache openPointCache() {
+        Optional<File> cacheDir = command(ResolveOSMNodeCacheDir.class).call();
+        if (!cacheDir.isPresent()) {
+            return new BDBJEPointCache(platform());
+        }
+        Optional<NodeRef> nodeTree = command(FindTreeChild.class).setIndex(true)
+                .setParent(workingTree().getTree()).setChildPath(OSMUtils.NODE_TYPE_NAME).call();
+        ObjectId nodeTreeId = nodeTree.isPresent() ? nodeTree.get().objectId() : ObjectId.NULL;
+
+        PersistentPointCache cache = new PersistentPointCache(cacheDir.get());
+        try {
+            getProgressListener().setDescription("Updating node coordinates cache...");
+            command(SyncOSMNodeCache.class).setCache(cache).setNodeTree(nodeTreeId).call();
+        } catch (RuntimeException e) {
+            cache.dispose();
+            throw e;
+        }
+        return cache;
+    }
+
     private CompressionMethod resolveCompressionMethod(File file) {
         String fileName = file.getName();
         if (fileName.endsWith(".gz")) {
@@ -195,14 +238,14 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         private Geometry bbox;
 
         public ConvertAndImportSink(QueueIterator<Feature> target, Context cmdLocator,
-                WorkingTree workTree, Platform platform, ProgressListener progressListener) {
+                WorkingTree workTree, PointCache pointCache, ProgressListener progressListener) {
             super();
             this.target = target;
             this.workTree = workTree;
             this.progressListener = progressListener;
             this.latestChangeset = 0;
             this.latestTimestamp = 0;
-            this.pointCache = new BDBJEPointCache(platform);
+            this.pointCache = pointCache;
             Optional<NodeRef> waysNodeRef = cmdLocator.command(FindTreeChild.class)
                     .setChildPath(OSMUtils.WAY_TYPE_NAME).setParent(workTree.getTree()).call();
             Optional<NodeRef> nodesNodeRef = cmdLocator.command(FindTreeChild.class)
@@ -241,17 +284,16 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 progressListener.setProgress(count);
                 progressListener.complete();
             } finally {
-                try {
-                    target.noMoreInput();
-                } finally {
-                    pointCache.dispose();
-                }
+                target.noMoreInput();
             }
         }
 
+        /**
+         * No-op, the point cache is owned by the calling operation that disposes it once the
+         * changes have been inserted.
+         */
         @Override
         public void release() {
-            pointCache.dispose();
         }
 
         @Override
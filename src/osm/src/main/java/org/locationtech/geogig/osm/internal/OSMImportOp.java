@@ -17,22 +17,33 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
-import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.ProgressListener;
 import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.hooks.Hookable;
+import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.osm.internal.coordcache.MappedPointCache;
+import org.locationtech.geogig.osm.internal.coordcache.PersistentPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
+import org.locationtech.geogig.osm.internal.coordcache.ResolveOSMNodeCacheDir;
+import org.locationtech.geogig.osm.internal.coordcache.SyncOSMNodeCache;
 import org.locationtech.geogig.osm.internal.log.AddOSMLogEntry;
 import org.locationtech.geogig.osm.internal.log.OSMLogEntry;
 import org.locationtech.geogig.osm.internal.log.OSMMappingLogEntry;
@@ -58,6 +69,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -105,6 +117,8 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
     private String message;
 
+    private int numThreads;
+
     /**
      * Sets the filter to use. It uses the overpass Query Language
      * 
@@ -155,6 +169,19 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to decode PBF files and to convert OSM entities to features.
+     * Defaults to the number of available processors.
+     * 
+     * @param numThreads the number of worker threads, a value lower than one means to use the
+     *        default
+     * @return {@code this}
+     */
+    public OSMImportOp setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+        return this;
+    }
+
     /**
      * Sets whether to keep the downloaded file or not
      * 
@@ -297,9 +324,31 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             compression = resolveCompressionMethod(file);
         }
 
+        final int nThreads = numThreads > 0 ? numThreads : platform().availableProcessors();
+        // shared by the PBF block decoding and the entity to feature conversion stages
+        final ExecutorService executor = nThreads > 1 ? Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("osm-import-worker-%d")
+                        .build()) : null;
+        try {
+            return parseDataFileAndInsert(dataIn, pbf, compression, converter, executor, nThreads);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private OSMReport parseDataFileAndInsert(final InputStream dataIn, final boolean pbf,
+            final CompressionMethod compression, final EntityConverter converter,
+            @Nullable final ExecutorService executor, final int nThreads) {
+
         RunnableSource reader;
         if (pbf) {
-            reader = new OsmosisReader(dataIn);
+            if (executor == null) {
+                reader = new OsmosisReader(dataIn);
+            } else {
+                reader = new ParallelPbfReader(dataIn, executor, nThreads);
+            }
         } else {
             reader = new org.locationtech.geogig.osm.internal.XmlReader(dataIn, true, compression);
         }
@@ -310,6 +359,13 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             workTree.delete(OSMUtils.WAY_TYPE_NAME);
         }
 
+        // when the raw nodes are imported, use the repository's persistent node cache so that it
+        // reflects the new node tree once the import is done and can be reused by later imports
+        // and diff applications. Otherwise fall back to a temporary cache.
+        final PersistentPointCache nodeCache = noRaw ? null : openNodeCache();
+        final PointCache pointCache = nodeCache == null ? new MappedPointCache(platform())
+                : nodeCache;
+
         final int queueCapacity = 100 * 1000;
         final int timeout = 1;
         final TimeUnit timeoutUnit = TimeUnit.SECONDS;
@@ -320,8 +376,9 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 timeoutUnit);
 
         ProgressListener progressListener = getProgressListener();
-        ConvertAndImportSink sink = new ConvertAndImportSink(converter, iterator, platform(),
-                mapping, noRaw, new SubProgressListener(progressListener, 100));
+        ConvertAndImportSink sink = new ConvertAndImportSink(converter, iterator, pointCache,
+                mapping, noRaw, new SubProgressListener(progressListener, 100), executor,
+                nThreads);
         reader.setSink(sink);
 
         Thread readerThread = new Thread(reader, "osm-import-reader-thread");
@@ -347,7 +404,15 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
-        workTree.insert(parentTreePathResolver, iterator, noPorgressReportingListener, null, null);
+        try {
+            workTree.insert(parentTreePathResolver, iterator, noPorgressReportingListener, null,
+                    null);
+            if (nodeCache != null && !progressListener.isCanceled() && sink.getCount() > 0) {
+                nodeCache.sync(workingTreeNodeTreeId());
+            }
+        } finally {
+            pointCache.dispose();
+        }
 
         if (sink.getCount() == 0) {
             throw new EmptyOSMDownloadException();
@@ -358,6 +423,36 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         return report;
     }
 
+    /**
+     * Opens the repository's persistent node cache and prepares it to receive the nodes being
+     * imported: if adding to the existing data it's brought up to date with the current
+     * {@code node} tree, otherwise it's emptied.
+     * 
+     * @return the node cache, or {@code null} if the repository can't hold one
+     */
+    @Nullable
+    private PersistentPointCache openNodeCache() {
+        Optional<File> cacheDir = command(ResolveOSMNodeCacheDir.class).call();
+        if (!cacheDir.isPresent()) {
+            return null;
+        }
+        PersistentPointCache nodeCache = new PersistentPointCache(cacheDir.get());
+        if (add) {
+            getProgressListener().setDescription("Updating node coordinates cache...");
+            command(SyncOSMNodeCache.class).setCache(nodeCache)
+                    .setNodeTree(workingTreeNodeTreeId()).call();
+        } else {
+            nodeCache.clear();
+        }
+        return nodeCache;
+    }
+
+    private ObjectId workingTreeNodeTreeId() {
+        Optional<NodeRef> nodeTree = command(FindTreeChild.class).setIndex(true)
+                .setParent(workingTree().getTree()).setChildPath(OSMUtils.NODE_TYPE_NAME).call();
+        return nodeTree.isPresent() ? nodeTree.get().objectId() : ObjectId.NULL;
+    }
+
     private CompressionMethod resolveCompressionMethod(File file) {
         String fileName = file.getName();
         if (fileName.endsWith(".gz")) {
@@ -371,10 +466,16 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
     /**
      * A sink that processes OSM entities by converting them to GeoGig features and inserting them
      * into the repository working tree
-     * 
+     * <p>
+     * Entities are processed in the order they're received so that way geometries can be built out
+     * of the already cached node coordinates, but if an executor service is provided, the
+     * conversion of the entities to (possibly mapped) features is performed in batches on the
+     * executor threads.
      */
     static class ConvertAndImportSink implements Sink {
 
+        private static final int CONVERSION_BATCH_SIZE = 1000;
+
         private static final Function<WayNode, Long> NODELIST_TO_ID_LIST = new Function<WayNode, Long>() {
             @Override
             public Long apply(WayNode input) {
@@ -408,19 +509,47 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private Stopwatch sw;
 
+        @Nullable
+        private ExecutorService executor;
+
+        private int maxPendingBatches;
+
+        private List<Entity> entityBatch;
+
+        private List<Geometry> geometryBatch;
+
+        private Deque<Future<?>> pendingBatches;
+
+        public ConvertAndImportSink(EntityConverter converter, QueueIterator<Feature> target,
+                PointCache pointCache, Mapping mapping, boolean noRaw,
+                ProgressListener progressListener) {
+            this(converter, target, pointCache, mapping, noRaw, progressListener, null, 1);
+        }
+
+        /**
+         * @param executor if not {@code null}, the executor service where to convert the entities
+         *        to features
+         * @param parallelism the number of threads of {@code executor}
+         */
         public ConvertAndImportSink(EntityConverter converter, QueueIterator<Feature> target,
-                Platform platform, Mapping mapping, boolean noRaw, ProgressListener progressListener) {
+                PointCache pointCache, Mapping mapping, boolean noRaw,
+                ProgressListener progressListener, @Nullable ExecutorService executor,
+                int parallelism) {
             super();
             this.converter = converter;
             this.target = target;
+            this.pointCache = pointCache;
             this.mapping = mapping;
             this.noRaw = noRaw;
             this.progressListener = progressListener;
             this.latestChangeset = 0;
             this.latestTimestamp = 0;
-            // this.pointCache = new BDBJEPointCache(platform);
-            this.pointCache = new MappedPointCache(platform);
             this.sw = Stopwatch.createStarted();
+            this.executor = executor;
+            this.maxPendingBatches = 2 * Math.max(1, parallelism);
+            this.entityBatch = new ArrayList<Entity>(CONVERSION_BATCH_SIZE);
+            this.geometryBatch = new ArrayList<Geometry>(CONVERSION_BATCH_SIZE);
+            this.pendingBatches = new ArrayDeque<Future<?>>();
         }
 
         public long getUnprocessedCount() {
@@ -442,29 +571,40 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         @Override
         public void complete() {
             try {
+                if (!entityBatch.isEmpty()) {
+                    submitBatch();
+                }
+                while (!pendingBatches.isEmpty()) {
+                    awaitOldestBatch();
+                }
                 progressListener.setProgress(count);
                 progressListener.complete();
                 sw.stop();
                 String msg = String.format("%,d entities processed in %s", count, sw);
                 progressListener.setDescription(msg);
             } finally {
-                try {
-                    target.noMoreInput();
-                } finally {
-                    pointCache.dispose();
-                }
+                target.noMoreInput();
             }
         }
 
+        /**
+         * Cancels any conversion batch still pending, which only happens if the reader failed
+         * before calling {@link #complete()}. The point cache is owned by the calling operation
+         * that disposes it once the imported features have been inserted.
+         */
         @Override
         public void release() {
-            pointCache.dispose();
+            for (Future<?> f : pendingBatches) {
+                f.cancel(true);
+            }
+            pendingBatches.clear();
         }
 
         @Override
         public void process(EntityContainer entityContainer) {
             if (progressListener.isCanceled()) {
                 target.cancel();
+                release();
                 throw new OsmosisRuntimeException("Cancelled by user");
             }
             Entity entity = entityContainer.getEntity();
@@ -487,23 +627,68 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 return;
             }
             if (geom != null) {
-
-                @Nullable
-                Feature feature = converter.toFeature(entity, geom);
-                if (mapping != null && feature != null) {
-                    List<MappedFeature> mapped = mapping.map(feature);
-                    if (!mapped.isEmpty()) {
-                        for (MappedFeature m : mapped) {
-                            target.put(m);
-                        }
+                if (executor == null) {
+                    convertAndPut(entity, geom);
+                } else {
+                    entityBatch.add(entity);
+                    geometryBatch.add(geom);
+                    if (entityBatch.size() == CONVERSION_BATCH_SIZE) {
+                        submitBatch();
                     }
                 }
-                if (feature == null || noRaw) {
-                    return;
+            }
+        }
+
+        /**
+         * Converts the entity to a feature and puts it and its mapped features, if any, on the
+         * target iterator. Called concurrently if an executor service was provided.
+         */
+        private void convertAndPut(Entity entity, Geometry geom) {
+            @Nullable
+            Feature feature = converter.toFeature(entity, geom);
+            if (mapping != null && feature != null) {
+                List<MappedFeature> mapped = mapping.map(feature);
+                if (!mapped.isEmpty()) {
+                    for (MappedFeature m : mapped) {
+                        target.put(m);
+                    }
                 }
+            }
+            if (feature == null || noRaw) {
+                return;
+            }
 
-                target.put(feature);
+            target.put(feature);
+        }
 
+        private void submitBatch() {
+            final List<Entity> entities = entityBatch;
+            final List<Geometry> geometries = geometryBatch;
+            entityBatch = new ArrayList<Entity>(CONVERSION_BATCH_SIZE);
+            geometryBatch = new ArrayList<Geometry>(CONVERSION_BATCH_SIZE);
+
+            pendingBatches.addLast(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < entities.size(); i++) {
+                        convertAndPut(entities.get(i), geometries.get(i));
+                    }
+                }
+            }));
+            // bound the amount of converted features waiting to be inserted
+            while (pendingBatches.size() > maxPendingBatches) {
+                awaitOldestBatch();
+            }
+        }
+
+        private void awaitOldestBatch() {
+            Future<?> oldest = pendingBatches.removeFirst();
+            try {
+                oldest.get();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
             }
         }
 
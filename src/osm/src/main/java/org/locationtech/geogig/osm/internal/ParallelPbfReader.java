@@ -0,0 +1,199 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.osmbinary.file.BlockInputStream;
+import org.openstreetmap.osmosis.osmbinary.file.BlockReaderAdapter;
+import org.openstreetmap.osmosis.osmbinary.file.FileBlock;
+import org.openstreetmap.osmosis.osmbinary.file.FileBlockPosition;
+
+import com.google.common.base.Throwables;
+
+import crosby.binary.osmosis.OsmosisBinaryParser;
+import crosby.binary.osmosis.OsmosisReader;
+
+/**
+ * A PBF {@link RunnableSource} that decodes the file blocks in parallel.
+ * <p>
+ * Each PBF blob is compressed independently, so this reader reads the raw blocks sequentially on
+ * the calling thread and hands them over to the provided executor service, where they're inflated
+ * and decoded into OSM entities by a per-block {@link OsmosisBinaryParser}. The decoded blocks are
+ * then sent to the {@link Sink} on the calling thread in the same order they appear in the file,
+ * hence preserving the nodes-before-ways ordering the sink may rely on, just like
+ * {@link OsmosisReader} does.
+ * <p>
+ * At most {@code 2 * parallelism} decoded blocks are held in memory at any time.
+ */
+class ParallelPbfReader implements RunnableSource {
+
+    private final InputStream input;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingBlocks;
+
+    private Sink sink;
+
+    /**
+     * @param input the PBF input stream
+     * @param executor the executor service where to decode blocks
+     * @param parallelism the number of threads of {@code executor}, used to limit the number of
+     *        blocks being decoded at any given time
+     */
+    public ParallelPbfReader(InputStream input, ExecutorService executor, int parallelism) {
+        checkNotNull(input);
+        checkNotNull(executor);
+        checkArgument(parallelism > 0, "parallelism must be > 0");
+        this.input = input;
+        this.executor = executor;
+        this.maxPendingBlocks = 2 * parallelism;
+    }
+
+    @Override
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void run() {
+        checkNotNull(sink, "sink not set");
+        OrderedBlockDispatcher dispatcher = new OrderedBlockDispatcher();
+        try {
+            new BlockInputStream(input, dispatcher).process();
+            dispatcher.drain();
+            sink.complete();
+        } catch (IOException e) {
+            throw new OsmosisRuntimeException("Unable to process PBF stream", e);
+        } finally {
+            dispatcher.cancel();
+            sink.release();
+        }
+    }
+
+    /**
+     * Submits each raw block for decoding and dispatches the decoded entities to the sink in block
+     * order.
+     */
+    private class OrderedBlockDispatcher implements BlockReaderAdapter {
+
+        private final Deque<Future<List<EntityContainer>>> pending = new ArrayDeque<Future<List<EntityContainer>>>();
+
+        @Override
+        public boolean skipBlock(FileBlockPosition block) {
+            return false;
+        }
+
+        @Override
+        public void handleBlock(final FileBlock block) {
+            pending.addLast(executor.submit(new DecodeTask(block)));
+            while (pending.size() > maxPendingBlocks) {
+                dispatchNext();
+            }
+        }
+
+        /**
+         * Called by {@link BlockInputStream} once all the blocks were read, no-op as decoded
+         * blocks are drained by {@link ParallelPbfReader#run()}
+         */
+        @Override
+        public void complete() {
+        }
+
+        void drain() {
+            while (!pending.isEmpty()) {
+                dispatchNext();
+            }
+        }
+
+        void cancel() {
+            for (Future<List<EntityContainer>> f : pending) {
+                f.cancel(true);
+            }
+            pending.clear();
+        }
+
+        private void dispatchNext() {
+            Future<List<EntityContainer>> next = pending.removeFirst();
+            List<EntityContainer> entities;
+            try {
+                entities = next.get();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+            for (EntityContainer entity : entities) {
+                sink.process(entity);
+            }
+        }
+    }
+
+    /**
+     * Inflates and decodes a single file block into the list of entities it contains
+     */
+    private static class DecodeTask implements Callable<List<EntityContainer>> {
+
+        private final FileBlock block;
+
+        DecodeTask(FileBlock block) {
+            this.block = block;
+        }
+
+        @Override
+        public List<EntityContainer> call() {
+            CollectingSink collector = new CollectingSink();
+            OsmosisBinaryParser parser = new OsmosisBinaryParser();
+            parser.setSink(collector);
+            parser.handleBlock(block);
+            return collector.entities;
+        }
+    }
+
+    private static class CollectingSink implements Sink {
+
+        final List<EntityContainer> entities = new ArrayList<EntityContainer>(8000);
+
+        @Override
+        public void initialize(Map<String, Object> metaData) {
+        }
+
+        @Override
+        public void process(EntityContainer entityContainer) {
+            entities.add(entityContainer);
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,740 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequenceFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MapMaker;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Longs;
+
+/**
+ * A {@link PointCache} that persists node coordinates inside the repository, so that they survive
+ * the operation that created them and can be reused by later imports and diff applications.
+ * <p>
+ * Coordinates are stored in fixed precision (as given by {@link OSMCoordinateSequence#ordinates()})
+ * in a single file of {@code (long nodeId, int x, int y)} records sorted by node id. The file is
+ * memory mapped in fixed size segments and looked up by binary search. Node ids added in ascending
+ * order past the largest stored id (the common case for OSM extracts, whose nodes come sorted) are
+ * appended to the sorted file directly. Any other addition, as well as removals, go to a sparse
+ * in-memory overlay that spills to sorted temporary runs when it grows too large, and is merged
+ * back into the main file on {@link #sync(ObjectId)}.
+ * <p>
+ * The file header records the id of the {@code node} tree the cache contents reflect. Changes made
+ * since the last call to {@link #sync(ObjectId)} are discarded by {@link #dispose()}, except for
+ * {@link #clear()}, which empties the cache right away.
+ * <p>
+ * Only one instance at a time can be open on a given directory: the constructor blocks until any
+ * other instance on the same directory, in this or another process, is {@link #dispose()
+ * disposed}. Instances can be shared by several threads, but not by concurrent writers.
+ */
+public class PersistentPointCache implements PointCache {
+
+    private static final OSMCoordinateSequenceFactory CSFAC = OSMCoordinateSequenceFactory
+            .instance();
+
+    static final String DATA_FILE = "nodes.idx";
+
+    static final String LOCK_FILE = "nodes.lock";
+
+    private static final int MAGIC = 0x4E4F4445;// "NODE"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+
+    static final int RECSIZE = 16;// sizeOf(long) + 2 * sizeOf(int)
+
+    private static final int RECORDS_PER_SEGMENT = 1024 * 1024;
+
+    private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * RECSIZE;
+
+    private static final int MAX_OVERLAY_SIZE = 250 * 1000;
+
+    /**
+     * Marker value for the coordinates of a removed node in the overlay and spilled runs
+     */
+    private static final int[] TOMBSTONE = { Integer.MIN_VALUE, Integer.MIN_VALUE };
+
+    /**
+     * Guards each cache directory against the instances of this process, since a {@link FileLock}
+     * is held on behalf of the whole JVM and can't be acquired twice by it
+     */
+    private static final ConcurrentMap<File, Semaphore> DIRECTORY_LOCKS = new MapMaker()
+            .makeMap();
+
+    private final File directory;
+
+    private final File dataFile;
+
+    private Semaphore directoryLock;
+
+    private RandomAccessFile lockFile;
+
+    private FileLock fileLock;
+
+    @Nullable
+    private File spillFile;
+
+    private RandomAccessFile randomAccessFile;
+
+    private FileChannel channel;
+
+    private List<MappedByteBuffer> segments;
+
+    /**
+     * Number of records in the sorted data file, including the ones appended and not yet synced
+     */
+    private long size;
+
+    private ObjectId treeId;
+
+    private TreeMap<Long, int[]> overlay;
+
+    private List<ByteBuffer> runs;
+
+    private RandomAccessFile spillRandomAccessFile;
+
+    private long spillPosition;
+
+    /**
+     * The largest node id in the overlay or spilled runs, appends to the data file are only
+     * allowed past this value so that they can't be shadowed by a stale pending entry
+     */
+    private long maxPendingId = Long.MIN_VALUE;
+
+    public PersistentPointCache(final File directory) {
+        checkNotNull(directory, "directory is null");
+        checkState(directory.exists() || directory.mkdirs(), "Unable to create directory %s",
+                directory);
+        this.directory = directory;
+        this.dataFile = new File(directory, DATA_FILE);
+        try {
+            lock();
+            open();
+        } catch (IOException | RuntimeException e) {
+            unlock();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Acquires exclusive access to the cache directory, first among the instances of this process
+     * and then among processes, waiting for the current holder to release it
+     */
+    private void lock() throws IOException {
+        final File key = directory.getCanonicalFile();
+        Semaphore semaphore = DIRECTORY_LOCKS.get(key);
+        if (semaphore == null) {
+            Semaphore newSemaphore = new Semaphore(1);
+            semaphore = DIRECTORY_LOCKS.putIfAbsent(key, newSemaphore);
+            if (semaphore == null) {
+                semaphore = newSemaphore;
+            }
+        }
+        semaphore.acquireUninterruptibly();
+        this.directoryLock = semaphore;
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        this.fileLock = lockFile.getChannel().lock();
+    }
+
+    private void unlock() {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+            Closeables.close(lockFile, true);
+        } catch (IOException e) {
+            //
+        } finally {
+            fileLock = null;
+            lockFile = null;
+            if (directoryLock != null) {
+                directoryLock.release();
+                directoryLock = null;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a persistent point cache exists at the given directory
+     */
+    public static boolean exists(File directory) {
+        return new File(directory, DATA_FILE).exists();
+    }
+
+    private void open() throws IOException {
+        final boolean create = !dataFile.exists() || dataFile.length() < HEADER_SIZE;
+        this.randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        this.channel = randomAccessFile.getChannel();
+        this.segments = new ArrayList<MappedByteBuffer>();
+        this.overlay = Maps.newTreeMap();
+        this.runs = new ArrayList<ByteBuffer>();
+        this.maxPendingId = Long.MIN_VALUE;
+        if (create) {
+            this.size = 0;
+            this.treeId = ObjectId.NULL;
+            writeHeader(channel, size, treeId);
+        } else {
+            readHeader();
+        }
+        final long segmentCount = (size + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT;
+        for (int i = 0; i < segmentCount; i++) {
+            mapSegment();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        final int magic = header.getInt();
+        final int version = header.getInt();
+        checkState(MAGIC == magic, "%s is not a point cache file", dataFile);
+        checkState(VERSION == version, "Unsupported point cache version: %s", version);
+        this.size = header.getLong();
+        byte[] rawId = new byte[ObjectId.NUM_BYTES];
+        header.get(rawId);
+        this.treeId = ObjectId.createNoClone(rawId);
+    }
+
+    private static void writeHeader(FileChannel channel, long count, ObjectId treeId)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(count);
+        header.put(treeId.getRawValue());
+        header.position(0);
+        channel.write(header, 0);
+    }
+
+    private MappedByteBuffer mapSegment() throws IOException {
+        final long position = HEADER_SIZE + SEGMENT_SIZE * segments.size();
+        MappedByteBuffer segment = channel.map(MapMode.READ_WRITE, position, SEGMENT_SIZE);
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * @return the id of the {@code node} tree this cache was last {@link #sync(ObjectId) synced}
+     *         to, or {@link ObjectId#NULL} if it was never synced
+     */
+    public synchronized ObjectId getTreeId() {
+        checkOpen();
+        return treeId;
+    }
+
+    @Override
+    public synchronized void put(Long nodeId, OSMCoordinateSequence coord) {
+        checkNotNull(nodeId, "id is null");
+        checkNotNull(coord, "coord is null");
+        checkArgument(1 == coord.size(), "coord list size is not 1");
+        checkOpen();
+        int[] ordinates = coord.ordinates();
+        put(nodeId.longValue(), ordinates[0], ordinates[1]);
+    }
+
+    private void put(final long nodeId, final int x, final int y) {
+        if (nodeId > maxPendingId && (size == 0 || nodeId > idAt(size - 1))) {
+            append(nodeId, x, y);
+        } else {
+            addPending(nodeId, new int[] { x, y });
+        }
+    }
+
+    /**
+     * Removes the coordinate for the given node from the cache, if present.
+     */
+    public synchronized void remove(long nodeId) {
+        checkOpen();
+        addPending(nodeId, TOMBSTONE);
+    }
+
+    /**
+     * Removes all the coordinates from the cache. The data file is marked empty and not matching
+     * any tree right away, since later additions overwrite its records in place, and is truncated
+     * at the next {@link #sync(ObjectId)}.
+     */
+    public synchronized void clear() {
+        checkOpen();
+        try {
+            writeHeader(channel, 0, ObjectId.NULL);
+            channel.force(true);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        this.treeId = ObjectId.NULL;
+        this.size = 0;
+        this.overlay.clear();
+        this.runs.clear();
+        this.spillPosition = 0;
+        this.maxPendingId = Long.MIN_VALUE;
+    }
+
+    private void append(final long nodeId, final int x, final int y) {
+        final int segmentIndex = (int) (size / RECORDS_PER_SEGMENT);
+        ByteBuffer segment;
+        try {
+            segment = segmentIndex < segments.size() ? segments.get(segmentIndex) : mapSegment();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        final int offset = (int) (size % RECORDS_PER_SEGMENT) * RECSIZE;
+        segment.putLong(offset, nodeId);
+        segment.putInt(offset + 8, x);
+        segment.putInt(offset + 12, y);
+        size++;
+    }
+
+    private void addPending(final long nodeId, final int[] coordinate) {
+        overlay.put(Long.valueOf(nodeId), coordinate);
+        maxPendingId = Math.max(maxPendingId, nodeId);
+        if (overlay.size() == MAX_OVERLAY_SIZE) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes the overlay contents to a sorted run in the spill file and clears the overlay
+     */
+    private void spill() {
+        try {
+            if (spillRandomAccessFile == null) {
+                spillFile = File.createTempFile(DATA_FILE, ".spill", directory);
+                spillFile.deleteOnExit();
+                spillRandomAccessFile = new RandomAccessFile(spillFile, "rw");
+            }
+            final long runSize = (long) overlay.size() * RECSIZE;
+            MappedByteBuffer run = spillRandomAccessFile.getChannel().map(MapMode.READ_WRITE,
+                    spillPosition, runSize);
+            for (Map.Entry<Long, int[]> e : overlay.entrySet()) {
+                run.putLong(e.getKey().longValue());
+                run.putInt(e.getValue()[0]);
+                run.putInt(e.getValue()[1]);
+            }
+            run.flip();
+            runs.add(run);
+            spillPosition += runSize;
+            overlay.clear();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public synchronized OSMCoordinateSequence get(List<Long> ids) {
+        checkNotNull(ids, "ids is null");
+        checkOpen();
+        OSMCoordinateSequence sequence = CSFAC.create(ids.size());
+        for (int index = 0; index < ids.size(); index++) {
+            Long nodeId = ids.get(index);
+            int[] coordinate = find(nodeId.longValue());
+            if (coordinate == null) {
+                throw new IllegalArgumentException("Node #" + nodeId + " not found");
+            }
+            sequence.setOrdinate(index, 0, coordinate[0]);
+            sequence.setOrdinate(index, 1, coordinate[1]);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the fixed precision coordinate of the given node, or {@code null} if not found
+     */
+    @Nullable
+    public synchronized int[] getCoordinate(long nodeId) {
+        checkOpen();
+        return find(nodeId);
+    }
+
+    @Nullable
+    private int[] find(final long nodeId) {
+        int[] coordinate = overlay.get(Long.valueOf(nodeId));
+        if (coordinate == null) {
+            // newer runs shadow older ones
+            for (int i = runs.size() - 1; i >= 0 && coordinate == null; i--) {
+                ByteBuffer run = runs.get(i);
+                int index = binarySearch(run, run.limit() / RECSIZE, nodeId);
+                if (index > -1) {
+                    int offset = index * RECSIZE;
+                    coordinate = new int[] { run.getInt(offset + 8), run.getInt(offset + 12) };
+                }
+            }
+        }
+        if (coordinate == null) {
+            long index = binarySearch(nodeId);
+            if (index > -1) {
+                ByteBuffer segment = segments.get((int) (index / RECORDS_PER_SEGMENT));
+                int offset = (int) (index % RECORDS_PER_SEGMENT) * RECSIZE;
+                coordinate = new int[] { segment.getInt(offset + 8), segment.getInt(offset + 12) };
+            }
+        }
+        if (coordinate != null && isTombstone(coordinate)) {
+            return null;
+        }
+        return coordinate;
+    }
+
+    private static boolean isTombstone(int[] coordinate) {
+        return coordinate[0] == TOMBSTONE[0] && coordinate[1] == TOMBSTONE[1];
+    }
+
+    private long idAt(long index) {
+        ByteBuffer segment = segments.get((int) (index / RECORDS_PER_SEGMENT));
+        return segment.getLong((int) (index % RECORDS_PER_SEGMENT) * RECSIZE);
+    }
+
+    private long binarySearch(final long nodeId) {
+        long low = 0;
+        long high = size - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long midId = idAt(mid);
+            if (midId < nodeId) {
+                low = mid + 1;
+            } else if (midId > nodeId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int binarySearch(final ByteBuffer run, final int runSize, final long nodeId) {
+        int low = 0;
+        int high = runSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = run.getLong(mid * RECSIZE);
+            if (midId < nodeId) {
+                low = mid + 1;
+            } else if (midId > nodeId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes all the changes since the last sync durable, recording the given tree id as the one
+     * the cache contents correspond to.
+     *
+     * @param nodeTreeId the id of the {@code node} tree the cache now reflects
+     */
+    public synchronized void sync(final ObjectId nodeTreeId) {
+        checkNotNull(nodeTreeId);
+        checkOpen();
+        try {
+            if (overlay.isEmpty() && runs.isEmpty()) {
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                this.treeId = nodeTreeId;
+                writeHeader(channel, size, treeId);
+                channel.force(true);
+            } else {
+                merge(nodeTreeId);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Merges the sorted data file, the spilled runs and the overlay into a new sorted data file
+     * that atomically replaces the current one.
+     */
+    private void merge(final ObjectId nodeTreeId) throws IOException {
+        // sources in increasing order of precedence
+        List<Iterator<long[]>> sources = new ArrayList<Iterator<long[]>>();
+        sources.add(new SegmentsIterator());
+        for (ByteBuffer run : runs) {
+            sources.add(new RunIterator(run));
+        }
+        sources.add(Iterators.transform(overlay.entrySet().iterator(),
+                new Function<Map.Entry<Long, int[]>, long[]>() {
+                    @Override
+                    public long[] apply(Map.Entry<Long, int[]> e) {
+                        return new long[] { e.getKey().longValue(), e.getValue()[0],
+                                e.getValue()[1] };
+                    }
+                }));
+
+        final File tmpFile = File.createTempFile(DATA_FILE, ".tmp", directory);
+        long count = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile), 1024 * 1024));
+        try {
+            out.write(new byte[HEADER_SIZE]);
+            MergeIterator merged = new MergeIterator(sources);
+            while (merged.hasNext()) {
+                long[] rec = merged.next();
+                if (rec[1] == TOMBSTONE[0] && rec[2] == TOMBSTONE[1]) {
+                    continue;
+                }
+                out.writeLong(rec[0]);
+                out.writeInt((int) rec[1]);
+                out.writeInt((int) rec[2]);
+                count++;
+            }
+            out.close();
+            RandomAccessFile tmp = new RandomAccessFile(tmpFile, "rw");
+            try {
+                writeHeader(tmp.getChannel(), count, nodeTreeId);
+                tmp.getChannel().force(true);
+            } finally {
+                tmp.close();
+            }
+            close();
+            try {
+                Files.move(tmpFile.toPath(), dataFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileSystemException e) {
+                // the data file can't be replaced while its buffers are still mapped on some
+                // platforms (e.g. Windows), so copy the merged records over it instead
+                copyOver(tmpFile, count, nodeTreeId);
+            }
+        } finally {
+            Closeables.close(out, true);
+            tmpFile.delete();
+        }
+        open();
+    }
+
+    /**
+     * Overwrites the data file with the contents of the given one. The data file is marked empty
+     * while the records are copied, so that if interrupted the next {@link SyncOSMNodeCache sync}
+     * rebuilds the cache instead of reading a mix of old and new records.
+     */
+    private void copyOver(final File source, final long count, final ObjectId nodeTreeId)
+            throws IOException {
+        RandomAccessFile target = new RandomAccessFile(dataFile, "rw");
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileChannel targetChannel = target.getChannel();
+            FileChannel sourceChannel = in.getChannel();
+            writeHeader(targetChannel, 0, ObjectId.NULL);
+            targetChannel.force(true);
+            final long length = count * RECSIZE;
+            long copied = 0;
+            while (copied < length) {
+                copied += targetChannel.transferFrom(sourceChannel.position(HEADER_SIZE + copied),
+                        HEADER_SIZE + copied, length - copied);
+            }
+            targetChannel.force(true);
+            writeHeader(targetChannel, count, nodeTreeId);
+            targetChannel.force(true);
+        } finally {
+            in.close();
+            target.close();
+        }
+    }
+
+    private void checkOpen() {
+        checkState(channel != null, "point cache is disposed");
+    }
+
+    /**
+     * Closes the cache, discarding any change made after the last {@link #sync(ObjectId)}, and
+     * releases the cache directory to other instances. This method is idempotent.
+     */
+    @Override
+    public synchronized void dispose() {
+        if (channel != null) {
+            close();
+        }
+        unlock();
+    }
+
+    private void close() {
+        try {
+            Closeables.close(channel, true);
+            Closeables.close(randomAccessFile, true);
+            Closeables.close(spillRandomAccessFile, true);
+        } catch (IOException e) {
+            //
+        }
+        channel = null;
+        randomAccessFile = null;
+        spillRandomAccessFile = null;
+        segments = null;
+        overlay = null;
+        runs = null;
+        spillPosition = 0;
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Iterates over the {@code [id, x, y]} records of the sorted data file
+     */
+    private class SegmentsIterator implements Iterator<long[]> {
+
+        private long index;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public long[] next() {
+            ByteBuffer segment = segments.get((int) (index / RECORDS_PER_SEGMENT));
+            int offset = (int) (index % RECORDS_PER_SEGMENT) * RECSIZE;
+            index++;
+            return new long[] { segment.getLong(offset), segment.getInt(offset + 8),
+                    segment.getInt(offset + 12) };
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Iterates over the {@code [id, x, y]} records of a spilled run
+     */
+    private static class RunIterator implements Iterator<long[]> {
+
+        private final ByteBuffer run;
+
+        private int offset;
+
+        RunIterator(ByteBuffer run) {
+            this.run = run;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return offset < run.limit();
+        }
+
+        @Override
+        public long[] next() {
+            long[] rec = { run.getLong(offset), run.getInt(offset + 8), run.getInt(offset + 12) };
+            offset += RECSIZE;
+            return rec;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * K-way merge of sorted record iterators where, for equal node ids, the record from the source
+     * with the highest index wins
+     */
+    private static class MergeIterator implements Iterator<long[]> {
+
+        private static class Head {
+            final long[] rec;
+
+            final int source;
+
+            Head(long[] rec, int source) {
+                this.rec = rec;
+                this.source = source;
+            }
+        }
+
+        private final List<Iterator<long[]>> sources;
+
+        private final PriorityQueue<Head> queue;
+
+        MergeIterator(List<Iterator<long[]>> sources) {
+            this.sources = sources;
+            this.queue = new PriorityQueue<Head>(Math.max(1, sources.size()),
+                    new Comparator<Head>() {
+                        @Override
+                        public int compare(Head o1, Head o2) {
+                            int c = Longs.compare(o1.rec[0], o2.rec[0]);
+                            return c == 0 ? o2.source - o1.source : c;
+                        }
+                    });
+            for (int i = 0; i < sources.size(); i++) {
+                advance(i);
+            }
+        }
+
+        private void advance(int source) {
+            Iterator<long[]> it = sources.get(source);
+            if (it.hasNext()) {
+                queue.add(new Head(it.next(), source));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public long[] next() {
+            Head winner = queue.poll();
+            advance(winner.source);
+            // discard older versions of the same node
+            while (!queue.isEmpty() && queue.peek().rec[0] == winner.rec[0]) {
+                advance(queue.poll().source);
+            }
+            return winner.rec;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.plumbing.ResolveGeogigDir;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+
+/**
+ * Resolves the location of the directory holding the repository's {@link PersistentPointCache
+ * persistent node coordinates cache}, that is, {@code .geogig/osm/nodecache}.
+ * <p>
+ * The directory is not created by this command.
+ * 
+ * @return the node cache directory, or {@link Optional#absent() absent} if not inside a geogig
+ *         repository or the repository is not in the file system
+ */
+public class ResolveOSMNodeCacheDir extends AbstractGeoGigOp<Optional<File>> {
+
+    @Override
+    protected Optional<File> _call() {
+        final Optional<URL> geogigDirUrl = command(ResolveGeogigDir.class).call();
+        if (!geogigDirUrl.isPresent() || !"file".equals(geogigDirUrl.get().getProtocol())) {
+            return Optional.absent();
+        }
+        File repoDir;
+        try {
+            repoDir = new File(geogigDirUrl.get().toURI());
+        } catch (URISyntaxException e) {
+            throw Throwables.propagate(e);
+        }
+        File nodeCacheDir = new File(new File(repoDir, "osm"), "nodecache");
+        return Optional.of(nodeCacheDir);
+    }
+}
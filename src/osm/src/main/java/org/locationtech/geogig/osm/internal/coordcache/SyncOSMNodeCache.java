@@ -0,0 +1,166 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.plumbing.DiffTree;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequenceFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Brings a {@link PersistentPointCache} up to date with the given {@code node} tree.
+ * <p>
+ * Only the differences between the tree the cache was last synced to and the new one are applied,
+ * so bringing the cache up to date costs as much as the number of nodes changed since the last
+ * import or diff application, the only operations that use and sync the cache. If the cache was never synced, or the tree it was synced to can no longer be found,
+ * it is rebuilt from scratch.
+ * 
+ * @return the number of node changes applied to the cache
+ */
+public class SyncOSMNodeCache extends AbstractGeoGigOp<Long> {
+
+    private static final OSMCoordinateSequenceFactory CSFAC = OSMCoordinateSequenceFactory
+            .instance();
+
+    private static final int BATCH_SIZE = 1000;
+
+    private PersistentPointCache cache;
+
+    private ObjectId nodeTreeId;
+
+    /**
+     * @param cache the cache to sync
+     * @return {@code this}
+     */
+    public SyncOSMNodeCache setCache(PersistentPointCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * @param nodeTreeId the id of the {@code node} tree to sync the cache to, or
+     *        {@link ObjectId#NULL} if there's no such tree
+     * @return {@code this}
+     */
+    public SyncOSMNodeCache setNodeTree(ObjectId nodeTreeId) {
+        this.nodeTreeId = nodeTreeId;
+        return this;
+    }
+
+    @Override
+    protected Long _call() {
+        checkNotNull(cache, "cache not provided");
+        checkNotNull(nodeTreeId, "node tree id not provided");
+
+        ObjectId currentTreeId = cache.getTreeId();
+        if (currentTreeId.equals(nodeTreeId)) {
+            return Long.valueOf(0L);
+        }
+        if (!currentTreeId.isNull() && !stagingDatabase().exists(currentTreeId)) {
+            cache.clear();
+            currentTreeId = ObjectId.NULL;
+        }
+
+        final ProgressListener listener = getProgressListener();
+        listener.started();
+
+        Iterator<DiffEntry> diffs = command(DiffTree.class).setOldTree(currentTreeId)
+                .setNewTree(nodeTreeId).call();
+
+        ListMultimap<ObjectId, Long> batch = ArrayListMultimap.create();
+        long changes = 0;
+        while (diffs.hasNext()) {
+            DiffEntry diff = diffs.next();
+            NodeRef ref = diff.isDelete() ? diff.getOldObject() : diff.getNewObject();
+            Long nodeId = parseNodeId(ref.name());
+            if (nodeId == null) {
+                continue;
+            }
+            if (diff.isDelete()) {
+                cache.remove(nodeId.longValue());
+            } else {
+                batch.put(diff.newObjectId(), nodeId);
+                if (batch.size() >= BATCH_SIZE) {
+                    putAll(batch);
+                    batch.clear();
+                }
+            }
+            if (++changes % 1000 == 0) {
+                listener.setProgress(changes);
+            }
+        }
+        putAll(batch);
+        cache.sync(nodeTreeId);
+        listener.complete();
+        return Long.valueOf(changes);
+    }
+
+    private void putAll(ListMultimap<ObjectId, Long> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Iterator<RevObject> features = stagingDatabase().getAll(batch.keySet());
+        while (features.hasNext()) {
+            RevObject object = features.next();
+            if (!(object instanceof RevFeature)) {
+                continue;
+            }
+            List<Long> nodeIds = batch.get(object.getId());
+            Point location = location((RevFeature) object);
+            for (Long nodeId : nodeIds) {
+                if (location == null) {
+                    cache.remove(nodeId.longValue());
+                } else {
+                    OSMCoordinateSequence coord = CSFAC.create(1, 2);
+                    coord.setOrdinate(0, 0, location.getX());
+                    coord.setOrdinate(0, 1, location.getY());
+                    cache.put(nodeId, coord);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static Point location(RevFeature feature) {
+        for (Optional<Object> value : feature.getValues()) {
+            if (value.isPresent() && value.get() instanceof Point) {
+                return (Point) value.get();
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Long parseNodeId(String featureId) {
+        try {
+            return Long.valueOf(featureId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
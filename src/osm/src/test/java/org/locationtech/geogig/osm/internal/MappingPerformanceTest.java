@@ -0,0 +1,195 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.text.NumberFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.locationtech.geogig.storage.FieldType;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Compares applying a large mapping rule by rule against {@link Mapping#map}, over ways with a
+ * synthetic tag distribution roughly resembling the planet's.
+ */
+public class MappingPerformanceTest {
+
+    /**
+     * Tag keys and values, most frequent first
+     */
+    private static final String[][] TAGS = {
+            { "building", "yes", "house", "residential", "garage", "apartments", "industrial" },
+            { "highway", "residential", "service", "track", "unclassified", "footway", "path",
+                    "tertiary", "secondary", "primary" },
+            { "source", "bing", "survey", "gps", "yahoo" },
+            { "name", "Main Street", "High Street", "Church Road" },
+            { "landuse", "residential", "farmland", "forest", "grass", "meadow" },
+            { "natural", "wood", "water", "scrub", "wetland" },
+            { "waterway", "stream", "river", "ditch", "drain" },
+            { "surface", "asphalt", "unpaved", "gravel", "paved" },
+            { "oneway", "yes", "no" },
+            { "amenity", "parking", "school", "place_of_worship", "restaurant" },
+            { "access", "private", "yes", "no" },
+            { "leisure", "pitch", "park", "garden", "playground" },
+            { "barrier", "fence", "wall", "hedge" },
+            { "railway", "rail", "abandoned", "platform" },
+            { "power", "line", "minor_line", "tower" },
+            { "addr:street", "Main Street", "Station Road" },
+            { "addr:housenumber", "1", "2", "3", "4", "5" },
+            { "lanes", "1", "2", "3", "4" },
+            { "maxspeed", "30", "50", "70", "90" },
+            { "boundary", "administrative" } };
+
+    private static final int NUM_WAYS = 200 * 1000;
+
+    private static final GeometryFactory GEOMF = new GeometryFactory();
+
+    @Ignore
+    @Test
+    public void testLargeMapping() {
+        Mapping mapping = createMapping();
+        List<Feature> features = createFeatures(NUM_WAYS);
+
+        System.err.println("############### Warming up....");
+        mapByRule(mapping, features);
+        mapIndexed(mapping, features);
+        System.err.println("############### Warm up done.");
+
+        NumberFormat numberFormat = NumberFormat.getInstance(Locale.ENGLISH);
+        System.err.println("***********\nMapping " + numberFormat.format(features.size())
+                + " ways with " + mapping.getRules().size() + " rules...");
+        for (int i = 0; i < 3; i++) {
+            Stopwatch sw = Stopwatch.createStarted();
+            long count = mapByRule(mapping, features);
+            sw.stop();
+            System.err.println("Rule by rule: " + numberFormat.format(count)
+                    + " mapped features in " + sw);
+
+            sw.reset().start();
+            count = mapIndexed(mapping, features);
+            sw.stop();
+            System.err.println("Mapping.map: " + numberFormat.format(count)
+                    + " mapped features in " + sw);
+        }
+    }
+
+    private long mapByRule(Mapping mapping, List<Feature> features) {
+        long count = 0;
+        for (Feature feature : features) {
+            String tagsString = (String) ((SimpleFeature) feature).getAttribute("tags");
+            Collection<Tag> tags = OSMUtils.buildTagsCollectionFromString(tagsString);
+            for (MappingRule rule : mapping.getRules()) {
+                Optional<Feature> mapped = rule.apply(feature, tags);
+                if (mapped.isPresent()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private long mapIndexed(Mapping mapping, List<Feature> features) {
+        long count = 0;
+        for (Feature feature : features) {
+            count += mapping.map(feature).size();
+        }
+        return count;
+    }
+
+    /**
+     * Creates a mapping with a few rules per tag key and value
+     */
+    private Mapping createMapping() {
+        List<MappingRule> rules = Lists.newArrayList();
+        for (String[] keyValues : TAGS) {
+            final String key = keyValues[0];
+            for (int i = 1; i < keyValues.length; i++) {
+                String value = keyValues[i];
+                for (FieldType geomType : ImmutableList.of(FieldType.LINESTRING,
+                        FieldType.POLYGON)) {
+                    Map<String, AttributeDefinition> fields = Maps.newHashMap();
+                    fields.put("geom", new AttributeDefinition("geom", geomType));
+                    fields.put("name", new AttributeDefinition("name", FieldType.STRING));
+                    fields.put(key, new AttributeDefinition(key.replace(':', '_'),
+                            FieldType.STRING));
+
+                    Map<String, List<String>> filter = Maps.newHashMap();
+                    filter.put(key, Lists.newArrayList(value));
+                    Map<String, List<String>> exclude = Maps.newHashMap();
+                    exclude.put("access", Lists.newArrayList("private"));
+
+                    String name = key.replace(':', '_') + "_" + value.replace(' ', '_') + "_"
+                            + geomType.name().toLowerCase();
+                    rules.add(new MappingRule(name, filter, exclude, fields, null));
+                }
+            }
+            // and a catch all rule per key
+            Map<String, AttributeDefinition> fields = Maps.newHashMap();
+            fields.put("geom", new AttributeDefinition("geom", FieldType.LINESTRING));
+            fields.put(key, new AttributeDefinition(key.replace(':', '_'), FieldType.STRING));
+            Map<String, List<String>> filter = Maps.newHashMap();
+            filter.put(key, Lists.<String> newArrayList());
+            rules.add(new MappingRule(key.replace(':', '_') + "_all", filter, null, fields, null));
+        }
+        return new Mapping(rules);
+    }
+
+    private List<Feature> createFeatures(int count) {
+        Random random = new Random(1);
+        EntityConverter converter = new EntityConverter();
+        OsmUser user = new OsmUser(1, "user");
+        Date timestamp = new Date();
+        List<Feature> features = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            List<Tag> tags = Lists.newArrayList();
+            for (int k = 0; k < TAGS.length; k++) {
+                // geometric decay of the key frequency
+                if (random.nextInt(k + 2) == 0) {
+                    String[] keyValues = TAGS[k];
+                    // and skew values towards the first ones
+                    int v = 1 + (int) Math.floor(Math.pow(random.nextDouble(), 2)
+                            * (keyValues.length - 1));
+                    tags.add(new Tag(keyValues[0], keyValues[v]));
+                }
+            }
+            boolean closed = random.nextBoolean();
+            List<WayNode> wayNodes = ImmutableList.of(new WayNode(1), new WayNode(2), new WayNode(
+                    3), new WayNode(closed ? 1 : 4));
+            Way way = new Way(new CommonEntityData(i, 1, timestamp, user, 1L, tags), wayNodes);
+            Coordinate[] coords = { new Coordinate(0, 0), new Coordinate(1, 0),
+                    new Coordinate(1, 1), closed ? new Coordinate(0, 0) : new Coordinate(0, 1) };
+            Geometry geom = GEOMF.createLineString(coords);
+            features.add(converter.toFeature(way, geom));
+        }
+        return features;
+    }
+}
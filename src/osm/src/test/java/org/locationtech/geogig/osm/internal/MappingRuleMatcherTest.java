@@ -0,0 +1,137 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.storage.FieldType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class MappingRuleMatcherTest {
+
+    private static final String[] KEYS = { "highway", "building", "amenity", "name", "oneway",
+            "landuse", "access", "geom" };
+
+    private static final String[] VALUES = { "yes", "no", "primary", "residential", "school",
+            "forest", "private", "closed" };
+
+    private List<MappingRule> rules;
+
+    private MappingRuleMatcher matcher;
+
+    @Before
+    public void setUp() {
+        rules = Lists.newArrayList();
+        // any highway
+        rules.add(rule("highways", filter("highway"), null));
+        // primary or residential highways, not oneway
+        rules.add(rule("roads", filter("highway", "primary", "residential"),
+                filter("oneway", "yes")));
+        // buildings, unless private
+        rules.add(rule("buildings", filter("building"), filter("access")));
+        // named amenities
+        Map<String, List<String>> mandatoryName = Maps.newHashMap();
+        mandatoryName.put("name", null);
+        rules.add(rule("amenities", filter("amenity", "school"), mandatoryName));
+        // geometry only filter
+        rules.add(rule("closed", filter("geom", "closed"), null));
+        // no filter at all but an exclusion
+        rules.add(rule("all", Maps.<String, List<String>> newHashMap(), filter("landuse")));
+        // geometry only filter with exclusion
+        rules.add(rule("closed_not_forest", filter("geom", "closed"),
+                filter("landuse", "forest")));
+
+        matcher = new MappingRuleMatcher(rules);
+    }
+
+    @Test
+    public void testMatches() {
+        assertMatches(ImmutableList.of(tag("highway", "primary")), "highways", "roads", "closed",
+                "all");
+        assertMatches(ImmutableList.of(tag("highway", "primary"), tag("oneway", "yes")),
+                "highways", "closed", "all");
+        assertMatches(ImmutableList.of(tag("building", "yes"), tag("access", "no")), "closed",
+                "all");
+        assertMatches(ImmutableList.of(tag("amenity", "school")), "closed", "all");
+        assertMatches(ImmutableList.of(tag("amenity", "school"), tag("name", "x")), "amenities",
+                "closed", "all");
+        assertMatches(ImmutableList.of(tag("landuse", "forest")), "closed", "all");
+    }
+
+    @Test
+    public void testSameResultAsRules() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            List<Tag> tags = Lists.newArrayList();
+            int numTags = random.nextInt(5);
+            for (int t = 0; t < numTags; t++) {
+                tags.add(tag(KEYS[random.nextInt(KEYS.length)],
+                        VALUES[random.nextInt(VALUES.length)]));
+            }
+            BitSet matches = matcher.match(tags);
+            for (int r = 0; r < rules.size(); r++) {
+                MappingRule rule = rules.get(r);
+                assertEquals(rule.getName() + ": " + tags, rule.hasCorrectTags(null, tags),
+                        matches.get(r));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyMapping() {
+        MappingRuleMatcher matcher = new MappingRuleMatcher(ImmutableList.<MappingRule> of());
+        assertTrue(matcher.match(ImmutableList.of(tag("highway", "primary"))).isEmpty());
+    }
+
+    private void assertMatches(Collection<Tag> tags, String... expected) {
+        BitSet matches = matcher.match(tags);
+        List<String> expectedNames = ImmutableList.copyOf(expected);
+        for (int r = 0; r < rules.size(); r++) {
+            String name = rules.get(r).getName();
+            if (expectedNames.contains(name)) {
+                assertTrue(name + " should match " + tags, matches.get(r));
+            } else {
+                assertFalse(name + " should not match " + tags, matches.get(r));
+            }
+        }
+    }
+
+    private static MappingRule rule(String name, Map<String, List<String>> filter,
+            Map<String, List<String>> exclude) {
+        Map<String, AttributeDefinition> fields = Maps.newHashMap();
+        fields.put("geom", new AttributeDefinition("geom", FieldType.LINESTRING));
+        fields.put("name", new AttributeDefinition("name", FieldType.STRING));
+        return new MappingRule(name, filter, exclude, fields, null);
+    }
+
+    private static Map<String, List<String>> filter(String key, String... values) {
+        Map<String, List<String>> filter = Maps.newHashMap();
+        filter.put(key, Lists.newArrayList(values));
+        return filter;
+    }
+
+    private static Tag tag(String key, String value) {
+        return new Tag(key, value);
+    }
+}
@@ -0,0 +1,177 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import crosby.binary.osmosis.OsmosisReader;
+import crosby.binary.osmosis.OsmosisSerializer;
+
+public class ParallelPbfReaderTest {
+
+    private static final int NUM_NODES = 20000;
+
+    private static final int NUM_WAYS = 2000;
+
+    private ExecutorService executor;
+
+    private byte[] pbf;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        pbf = createPbf();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameEntitiesAndOrderAsSequentialReader() {
+        CollectingSink expected = read(new OsmosisReader(new ByteArrayInputStream(pbf)));
+        CollectingSink actual = read(new ParallelPbfReader(new ByteArrayInputStream(pbf),
+                executor, 4));
+
+        assertEquals(NUM_NODES + NUM_WAYS, expected.entities.size());
+        assertEquals(expected.entities, actual.entities);
+        assertEquals(1, actual.completeCalls);
+        assertEquals(1, actual.releaseCalls);
+    }
+
+    @Test
+    public void testNodesBeforeWays() {
+        CollectingSink actual = read(new ParallelPbfReader(new ByteArrayInputStream(pbf),
+                executor, 2));
+        List<String> entities = actual.entities;
+        int firstWay = entities.indexOf("Way-0");
+        assertEquals(NUM_NODES, firstWay);
+        for (int i = 0; i < firstWay; i++) {
+            assertEquals("Node-" + i, entities.get(i));
+        }
+    }
+
+    @Test
+    public void testSinkExceptionPropagated() {
+        ParallelPbfReader reader = new ParallelPbfReader(new ByteArrayInputStream(pbf), executor,
+                4);
+        CollectingSink sink = new CollectingSink() {
+            @Override
+            public void process(EntityContainer entityContainer) {
+                if (entities.size() == 1000) {
+                    throw new IllegalStateException("expected");
+                }
+                super.process(entityContainer);
+            }
+        };
+        reader.setSink(sink);
+        try {
+            reader.run();
+            fail("Expected ISE");
+        } catch (IllegalStateException e) {
+            assertEquals("expected", e.getMessage());
+        }
+        assertEquals(1000, sink.entities.size());
+        assertEquals(0, sink.completeCalls);
+        assertEquals(1, sink.releaseCalls);
+    }
+
+    private CollectingSink read(RunnableSource reader) {
+        CollectingSink sink = new CollectingSink();
+        reader.setSink(sink);
+        reader.run();
+        assertTrue(sink.completeCalls > 0);
+        return sink;
+    }
+
+    /**
+     * Creates a PBF stream of several small blocks
+     */
+    private byte[] createPbf() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OsmosisSerializer serializer = new OsmosisSerializer(new BlockOutputStream(out));
+        serializer.configBatchLimit(1000);
+        final OsmUser user = new OsmUser(1, "user");
+        final Date timestamp = new Date(1400000000000L);
+        for (int i = 0; i < NUM_NODES; i++) {
+            CommonEntityData data = new CommonEntityData(i, 1, timestamp, user, 1L);
+            double lon = -180 + (360d * i) / NUM_NODES;
+            double lat = -90 + (180d * i) / NUM_NODES;
+            serializer.process(new NodeContainer(new Node(data, lat, lon)));
+        }
+        for (int i = 0; i < NUM_WAYS; i++) {
+            CommonEntityData data = new CommonEntityData(i, 1, timestamp, user, 2L);
+            List<WayNode> nodes = ImmutableList.of(new WayNode(2 * i), new WayNode(2 * i + 1));
+            serializer.process(new WayContainer(new Way(data, nodes)));
+        }
+        serializer.complete();
+        serializer.release();
+        return out.toByteArray();
+    }
+
+    private static class CollectingSink implements Sink {
+
+        final List<String> entities = Lists.newArrayList();
+
+        int completeCalls;
+
+        int releaseCalls;
+
+        @Override
+        public void initialize(Map<String, Object> metaData) {
+        }
+
+        @Override
+        public void process(EntityContainer entityContainer) {
+            Entity entity = entityContainer.getEntity();
+            entities.add(entity.getType() + "-" + entity.getId());
+        }
+
+        @Override
+        public void complete() {
+            completeCalls++;
+        }
+
+        @Override
+        public void release() {
+            releaseCalls++;
+        }
+    }
+}
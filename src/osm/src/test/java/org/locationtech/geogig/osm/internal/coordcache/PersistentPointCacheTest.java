@@ -0,0 +1,204 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+
+public class PersistentPointCacheTest extends PointCacheTest {
+
+    private static final ObjectId TREE1 = ObjectId.forString("tree1");
+
+    private static final ObjectId TREE2 = ObjectId.forString("tree2");
+
+    @Override
+    protected PersistentPointCache createCache(Platform platform) {
+        return new PersistentPointCache(cacheDir());
+    }
+
+    private File cacheDir() {
+        return new File(new File(tmpFolder.getRoot(), ".geogig"), "nodecache");
+    }
+
+    @Test
+    public void testSyncAndReopen() {
+        PersistentPointCache cache = new PersistentPointCache(new File(cacheDir(), "other"));
+        assertEquals(ObjectId.NULL, cache.getTreeId());
+        cache.put(1L, coord(1, 1));
+        cache.put(2L, coord(2, 2));
+        cache.put(3L, coord(3, 3));
+        cache.sync(TREE1);
+        cache.dispose();
+
+        cache = new PersistentPointCache(new File(cacheDir(), "other"));
+        try {
+            assertEquals(TREE1, cache.getTreeId());
+            CoordinateSequence sequence = cache.get(ImmutableList.of(3L, 1L, 2L));
+            assertEquals(new Coordinate(3, 3), sequence.getCoordinate(0));
+            assertEquals(new Coordinate(1, 1), sequence.getCoordinate(1));
+            assertEquals(new Coordinate(2, 2), sequence.getCoordinate(2));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testDisposeDiscardsUnsyncedChanges() {
+        final File dir = new File(cacheDir(), "other");
+        PersistentPointCache cache = new PersistentPointCache(dir);
+        cache.put(1L, coord(1, 1));
+        cache.sync(TREE1);
+        cache.put(2L, coord(2, 2));
+        cache.remove(1L);
+        assertNull(cache.getCoordinate(1L));
+        cache.dispose();
+
+        cache = new PersistentPointCache(dir);
+        try {
+            assertEquals(TREE1, cache.getTreeId());
+            assertNotNull(cache.getCoordinate(1L));
+            assertNull(cache.getCoordinate(2L));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testUpdatesAndRemovesMergedOnSync() {
+        final File dir = new File(cacheDir(), "other");
+        PersistentPointCache cache = new PersistentPointCache(dir);
+        for (long id = 0; id < 1000; id += 2) {
+            cache.put(id, coord(id / 10, id / 20));
+        }
+        cache.sync(TREE1);
+
+        // out of order additions, updates, and removals
+        cache.put(501L, coord(-1, -1));
+        cache.put(10L, coord(10, -10));
+        cache.remove(20L);
+        cache.put(2000L, coord(20, 20));
+        assertEquals(new Coordinate(10, -10), coordinate(cache, 10L));
+        assertNull(cache.getCoordinate(20L));
+        cache.sync(TREE2);
+        cache.dispose();
+
+        cache = new PersistentPointCache(dir);
+        try {
+            assertEquals(TREE2, cache.getTreeId());
+            assertEquals(new Coordinate(-1, -1), coordinate(cache, 501L));
+            assertEquals(new Coordinate(10, -10), coordinate(cache, 10L));
+            assertEquals(new Coordinate(20, 20), coordinate(cache, 2000L));
+            assertEquals(new Coordinate(99, 49), coordinate(cache, 998L));
+            assertNull(cache.getCoordinate(20L));
+            assertNull(cache.getCoordinate(21L));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testClear() {
+        final File dir = new File(cacheDir(), "other");
+        PersistentPointCache cache = new PersistentPointCache(dir);
+        cache.put(1L, coord(1, 1));
+        cache.sync(TREE1);
+        cache.clear();
+        cache.put(5L, coord(5, 5));
+        cache.sync(TREE2);
+        cache.dispose();
+
+        cache = new PersistentPointCache(dir);
+        try {
+            assertNull(cache.getCoordinate(1L));
+            assertEquals(new Coordinate(5, 5), coordinate(cache, 5L));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testClearWithoutSync() {
+        final File dir = new File(cacheDir(), "other");
+        PersistentPointCache cache = new PersistentPointCache(dir);
+        cache.put(1L, coord(1, 1));
+        cache.put(2L, coord(2, 2));
+        cache.sync(TREE1);
+        // overwrites the first record in place, as a failed or cancelled import would
+        cache.clear();
+        cache.put(7L, coord(7, 7));
+        cache.dispose();
+
+        cache = new PersistentPointCache(dir);
+        try {
+            assertEquals(ObjectId.NULL, cache.getTreeId());
+            assertNull(cache.getCoordinate(1L));
+            assertNull(cache.getCoordinate(2L));
+            assertNull(cache.getCoordinate(7L));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testSingleInstancePerDirectory() throws Exception {
+        final File dir = new File(cacheDir(), "other");
+        PersistentPointCache cache = new PersistentPointCache(dir);
+        cache.put(1L, coord(1, 1));
+        cache.put(0L, coord(0, 0));
+
+        final CountDownLatch opened = new CountDownLatch(1);
+        final AtomicReference<PersistentPointCache> second =
+                new AtomicReference<PersistentPointCache>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                second.set(new PersistentPointCache(dir));
+                opened.countDown();
+            }
+        };
+        thread.start();
+        assertFalse(opened.await(200, TimeUnit.MILLISECONDS));
+
+        cache.sync(TREE1);
+        cache.dispose();
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        try {
+            assertEquals(TREE1, second.get().getTreeId());
+            assertEquals(new Coordinate(0, 0), coordinate(second.get(), 0L));
+        } finally {
+            second.get().dispose();
+        }
+        // no temporary files left behind by the merge
+        assertEquals(ImmutableList.of(PersistentPointCache.DATA_FILE,
+                PersistentPointCache.LOCK_FILE), Ordering.natural().sortedCopy(
+                Arrays.asList(dir.list())));
+    }
+
+    private Coordinate coordinate(PersistentPointCache cache, long nodeId) {
+        return cache.get(ImmutableList.of(nodeId)).getCoordinate(0);
+    }
+
+    private static OSMCoordinateSequence coord(long x, long y) {
+        return new OSMCoordinateSequence(new Coordinate[] { new Coordinate(x, y) });
+    }
+}
@@ -443,6 +443,15 @@ abstract class JEGraphDatabase extends SynchronizedGraphDatabase {
             }
         }
 
+        @Override
+        public Optional<String> getProperty(ObjectId commitId, String propertyName) {
+            NodeData node = getNodeInternal(commitId, false);
+            if (node == null) {
+                return Optional.absent();
+            }
+            return Optional.fromNullable(node.properties.get(propertyName));
+        }
+
         private class JEGraphNode extends GraphNode {
             NodeData node;
 
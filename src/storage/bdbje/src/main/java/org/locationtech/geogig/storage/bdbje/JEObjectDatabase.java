@@ -17,13 +17,15 @@ import static com.sleepycat.je.OperationStatus.SUCCESS;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
@@ -44,18 +46,22 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectReader;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.UnsignedBytes;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.ning.compress.lzf.LZFInputStream;
 import com.sleepycat.je.CacheMode;
@@ -64,7 +70,6 @@ import com.sleepycat.je.CursorConfig;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
-import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentLockedException;
 import com.sleepycat.je.LockMode;
@@ -84,6 +89,17 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private static final int SYNC_BYTES_LIMIT = 512 * 1024 * 1024;
 
+    /**
+     * How many records an insert cursor steps over to reach the next key before searching for it
+     * from the btree root instead
+     */
+    private static final int MAX_CURSOR_STEPS = 8;
+
+    /**
+     * The default JE btree key order, same as {@link ObjectId#NATURAL_ORDER} for object ids
+     */
+    private static final Comparator<byte[]> KEY_ORDER = UnsignedBytes.lexicographicalComparator();
+
     @Nullable
     private ExecutorService dbSyncService;
 
@@ -102,6 +118,16 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private static final String OBJECT_DURABILITY_CONFIG_KEY = "bdbje.object_durability";
 
+    /**
+     * Config key for the number of threads bulk inserts are written with, each one writing a
+     * different key range of each buffer of serialized objects
+     */
+    private static final String WRITER_THREADS_CONFIG_KEY = "bdbje.writer_threads";
+
+    private static final int DEFAULT_WRITER_THREADS = 1;
+
+    private int nWriterThreads;
+
     private EnvironmentBuilder envProvider;
 
     /**
@@ -195,11 +221,12 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         }
         this.objectDb = createDatabase();
 
-        int nWriterThreads = 1;
+        nWriterThreads = Math.max(1, configDB.get(WRITER_THREADS_CONFIG_KEY, Integer.class)
+                .or(DEFAULT_WRITER_THREADS).intValue());
         writerService = Executors.newFixedThreadPool(nWriterThreads, new ThreadFactoryBuilder()
                 .setNameFormat("BDBJE-" + env.getHome().getName() + "-WRITE-THREAD-%d").build());
         if (!objectDb.getConfig().getTransactional()) {
-            dbSyncService = Executors.newFixedThreadPool(nWriterThreads, new ThreadFactoryBuilder()
+            dbSyncService = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder()
                     .setNameFormat("BDBJE-" + env.getHome().getName() + "-SYNC-THREAD-%d").build());
         }
 
@@ -355,10 +382,21 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         return new ByteArrayInputStream(cData);
     }
 
+    /**
+     * Inserts the objects with {@link ObjectDurability#DEFERRED deferred} durability if the
+     * listener {@link BulkOpListener#isDurabilityDeferred() says so}, as on an initial clone, and
+     * with the durability configured through {@code bdbje.object_durability} otherwise.
+     */
     @Override
     public void putAll(final Iterator<? extends RevObject> objects, final BulkOpListener listener) {
+        putAll(objects, listener, getDurability(listener));
+    }
+
+    private void putAll(final Iterator<? extends RevObject> objects,
+            final BulkOpListener listener, final ObjectDurability durability) {
         checkNotNull(objects);
         checkNotNull(listener);
+        checkNotNull(durability);
         checkWritable();
 
         if (!objects.hasNext()) {
@@ -366,7 +404,14 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         }
 
         final int buffSize = 256 * 1024;
-        BulkInsert task = new BulkInsert(objects, listener, buffSize);
+        BulkInsert<RevObject> task = new BulkInsert<RevObject>(objects, listener, buffSize,
+                durability) {
+            @Override
+            protected ObjectId write(RevObject object, OutputStream out) {
+                writeObject(object, out);
+                return object.getId();
+            }
+        };
 
         try {
             task.run();
@@ -375,19 +420,64 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         }
     }
 
-    private class BulkInsert {
+    /**
+     * Inserts the raw objects with the durability chosen as in
+     * {@link #putAll(Iterator, BulkOpListener)}
+     */
+    @Override
+    public void putAllRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        putAllRaw(objects, listener, getDurability(listener));
+    }
+
+    private void putAllRaw(final Iterator<RawObject> objects, final BulkOpListener listener,
+            final ObjectDurability durability) {
+        checkNotNull(objects);
+        checkNotNull(listener);
+        checkNotNull(durability);
+        checkWritable();
+
+        if (!objects.hasNext()) {
+            return;
+        }
+
+        final int buffSize = 256 * 1024;
+        BulkInsert<RawObject> task = new BulkInsert<RawObject>(objects, listener, buffSize,
+                durability) {
+            @Override
+            protected ObjectId write(RawObject object, OutputStream out) throws IOException {
+                out.write(object.getData());
+                return object.getId();
+            }
+        };
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Serializes the objects into buffers that are inserted in storage order by the writer
+     * service, splitting each buffer in as many key ranges as writer threads. The listener is
+     * called from the writer threads, one at a time even if there are several of them.
+     */
+    private abstract class BulkInsert<T> {
 
         private BulkOpListener listener;
 
         private int buffSize;
 
-        private Iterator<? extends RevObject> objects;
+        private Iterator<? extends T> objects;
+
+        private ObjectDurability durability;
 
-        public BulkInsert(final Iterator<? extends RevObject> objects,
-                final BulkOpListener listener, final int buffSize) {
+        public BulkInsert(final Iterator<? extends T> objects, final BulkOpListener listener,
+                final int buffSize, final ObjectDurability durability) {
             this.objects = objects;
-            this.listener = listener;
+            this.listener = nWriterThreads > 1 ? new SynchronizedListener(listener) : listener;
             this.buffSize = buffSize;
+            this.durability = durability;
         }
 
         public Integer run() throws Exception {
@@ -405,14 +495,13 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     count++;
                     objectsInBuffer++;
                     if (out.size() >= buffSize) {
-                        Future<Void> future = insertSortedObjects(offsets, out);
+                        insertSortedObjects(offsets, out, pendingWrites);
                         // future.get();
                         // out.reset();
                         // offsets.clear();
                         out = new InternalByteArrayOutputStream(this.buffSize);
                         offsets = Maps.newTreeMap(ObjectId.NATURAL_ORDER);
-                        pendingWrites.add(future);
-                        if (pendingWrites.size() == 10) {
+                        if (pendingWrites.size() >= 10 * nWriterThreads) {
                             waitForWrites(pendingWrites);
                         }
 
@@ -423,12 +512,12 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     }
                 }
                 if (!offsets.isEmpty()) {
-                    Future<Void> future = insertSortedObjects(offsets, out);
-                    pendingWrites.add(future);
+                    insertSortedObjects(offsets, out, pendingWrites);
                     LOGGER.debug("Inserted {} objects with a byte buffer of {} KB",
                             objectsInBuffer, (out.size() / 1024));
                 }
                 waitForWrites(pendingWrites);
+                syncIfNeeded(durability);
             } catch (Exception e) {
                 LOGGER.error("Error inserting objects: " + e.getMessage(), e);
                 throw e;
@@ -454,75 +543,173 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             pendingWrites.clear();
         }
 
-        private Future<Void> insertSortedObjects(TreeMap<ObjectId, int[]> offsets,
-                InternalByteArrayOutputStream buffer) throws Exception {
-
-            return writerService.submit(new InsertTask(offsets, buffer, listener));
+        /**
+         * Splits the sorted objects in contiguous key ranges, one per writer thread, so that each
+         * writer works on a different part of the btree
+         */
+        private void insertSortedObjects(TreeMap<ObjectId, int[]> offsets,
+                InternalByteArrayOutputStream buffer, List<Future<Void>> pendingWrites)
+                throws Exception {
+
+            final int rangeSize = (offsets.size() + nWriterThreads - 1) / nWriterThreads;
+            for (List<Entry<ObjectId, int[]>> range : Iterables.partition(offsets.entrySet(),
+                    rangeSize)) {
+                pendingWrites.add(writerService.submit(new InsertTask(range, buffer, listener,
+                        durability)));
+            }
         }
 
         private boolean serializeNextObject(TreeMap<ObjectId, int[]> offsets,
-                InternalByteArrayOutputStream out) {
+                InternalByteArrayOutputStream out) throws IOException {
             if (!objects.hasNext()) {
                 return false;
             }
-            RevObject o = objects.next();
+            T o = objects.next();
             int offset = out.size();
-            writeObject(o, out);
+            ObjectId id = write(o, out);
             int size = out.size() - offset;
-            offsets.put(o.getId(), new int[] { offset, size });
+            offsets.put(id, new int[] { offset, size });
 
             return true;
         }
 
+        /**
+         * Writes the object in its storage format to {@code out}
+         * 
+         * @return the object id
+         */
+        protected abstract ObjectId write(T object, OutputStream out) throws IOException;
+
     }
 
     private AtomicInteger bytesWritten = new AtomicInteger();
 
+    /**
+     * Serializes the calls to a listener shared by several writer threads, so listeners that are
+     * not thread safe don't need to be
+     */
+    private static class SynchronizedListener extends BulkOpListener.ForwardingListener {
+
+        SynchronizedListener(BulkOpListener target) {
+            super(target);
+        }
+
+        @Override
+        public synchronized void found(ObjectId object, @Nullable Integer storageSizeBytes) {
+            super.found(object, storageSizeBytes);
+        }
+
+        @Override
+        public synchronized void inserted(ObjectId object, @Nullable Integer storageSizeBytes) {
+            super.inserted(object, storageSizeBytes);
+        }
+
+        @Override
+        public synchronized void deleted(ObjectId id) {
+            super.deleted(id);
+        }
+
+        @Override
+        public synchronized void notFound(ObjectId id) {
+            super.notFound(id);
+        }
+    }
+
+    /**
+     * Inserts a sorted key range of a buffer of serialized objects, only writing the ones that
+     * don't exist. Since keys are sorted, whether each object exists is checked with a read
+     * uncommitted cursor that only moves forward: a few steps to the next record when the key is
+     * close to the cursor's, or a btree search for the first record not lower than the key
+     * otherwise. Once past the last record, no more searches are needed.
+     */
     private class InsertTask implements Callable<Void> {
 
-        private TreeMap<ObjectId, int[]> offsets;
+        private List<Entry<ObjectId, int[]>> offsets;
 
         private InternalByteArrayOutputStream buffer;
 
         private BulkOpListener listener;
 
-        public InsertTask(TreeMap<ObjectId, int[]> offsets, InternalByteArrayOutputStream buffer,
-                BulkOpListener listener) {
+        private ObjectDurability durability;
+
+        public InsertTask(List<Entry<ObjectId, int[]>> offsets,
+                InternalByteArrayOutputStream buffer, BulkOpListener listener,
+                ObjectDurability durability) {
             this.offsets = offsets;
             this.buffer = buffer;
             this.listener = listener;
+            this.durability = durability;
         }
 
         @Override
         public Void call() throws Exception {
 
-            Transaction transaction = newTransaction();
+            Transaction transaction = newTransaction(durability);
 
             final int numObjects = offsets.size();
+            Cursor cursor = null;
             try {
-                final int bufferBytes = buffer.size();
+                cursor = objectDb.openCursor(transaction, null);
+                int rangeBytes = 0;
                 DatabaseEntry key = new DatabaseEntry(new byte[ObjectId.NUM_BYTES]);
+                // the key of the record the cursor is at, if positioned
+                DatabaseEntry current = new DatabaseEntry();
+                DatabaseEntry existing = new DatabaseEntry();
+                existing.setPartial(0, 0, true);// do not retrieve data
+                boolean positioned = false;
+                boolean pastLast = false;
                 final byte[] rawData = buffer.bytes();
 
-                for (Iterator<Map.Entry<ObjectId, int[]>> it = offsets.entrySet().iterator(); it
-                        .hasNext();) {
-                    Entry<ObjectId, int[]> e = it.next();
-                    it.remove();
+                for (Entry<ObjectId, int[]> e : offsets) {
                     final ObjectId objectId = e.getKey();
                     int offset = e.getValue()[0];
                     int size = e.getValue()[1];
+                    rangeBytes += size;
 
                     objectId.getRawValue(key.getData());
+                    int cmp = -1;
+                    if (positioned && !pastLast) {
+                        cmp = KEY_ORDER.compare(current.getData(), key.getData());
+                        for (int step = 0; cmp < 0 && step < MAX_CURSOR_STEPS; step++) {
+                            if (SUCCESS.equals(cursor.getNext(current, existing,
+                                    LockMode.READ_UNCOMMITTED))) {
+                                cmp = KEY_ORDER.compare(current.getData(), key.getData());
+                            } else {
+                                pastLast = true;
+                                break;
+                            }
+                        }
+                    }
+                    if (cmp < 0 && !pastLast) {
+                        current.setData(key.getData().clone());
+                        if (SUCCESS.equals(cursor.getSearchKeyRange(current, existing,
+                                LockMode.READ_UNCOMMITTED))) {
+                            positioned = true;
+                            cmp = KEY_ORDER.compare(current.getData(), key.getData());
+                        } else {
+                            pastLast = true;
+                        }
+                    }
+                    if (cmp == 0) {
+                        listener.found(objectId, null);
+                        continue;
+                    }
                     DatabaseEntry data = new DatabaseEntry(rawData, offset, size);
-
-                    OperationStatus status = objectDb.putNoOverwrite(transaction, key, data);
+                    OperationStatus status = cursor.putNoOverwrite(key, data);
                     if (OperationStatus.SUCCESS.equals(status)) {
                         listener.inserted(objectId, size);
+                        // the cursor is now at the inserted record
+                        current.setData(key.getData().clone());
+                        positioned = true;
                     } else if (OperationStatus.KEYEXIST.equals(status)) {
                         listener.found(objectId, null);
+                        positioned = false;
                     }
 
                 }
+                cursor.close();
+                cursor = null;
+                final int bufferBytes = rangeBytes;
                 final boolean transactional = objectDb.getConfig().getTransactional();
                 if (transactional) {
                     commit(transaction);
@@ -538,6 +725,9 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     }
                 }
             } catch (Exception e) {
+                if (cursor != null) {
+                    cursor.close();
+                }
                 abort(transaction);
                 throw e;
             } finally {
@@ -722,12 +912,36 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         Preconditions.checkNotNull(ids, "ids");
         checkOpen();
 
-        return new CursorRevObjectIterator(ids.iterator(), listener);
+        final ObjectReader<RevObject> reader = serializationFactory.createObjectReader();
+        return Iterators.transform(new CursorRawObjectIterator(ids.iterator(), listener),
+                new Function<RawObject, RevObject>() {
+                    @Override
+                    public RevObject apply(RawObject raw) {
+                        InputStream rawData;
+                        try {
+                            rawData = new LZFInputStream(new ByteArrayInputStream(raw.getData()));
+                        } catch (IOException e) {
+                            throw Throwables.propagate(e);
+                        }
+                        return reader.read(raw.getId(), rawData);
+                    }
+                });
     }
 
-    private class CursorRevObjectIterator extends AbstractIterator<RevObject> implements Closeable {
+    @Override
+    public Iterator<RawObject> getAllRaw(final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        Preconditions.checkNotNull(ids, "ids");
+        checkOpen();
 
-        private final ObjectReader<RevObject> reader = serializationFactory.createObjectReader();
+        return new CursorRawObjectIterator(ids.iterator(), listener);
+    }
+
+    /**
+     * Iterator over the objects stored for a list of ids, that sorts them in batches to look them
+     * up in storage order
+     */
+    private class CursorRawObjectIterator extends AbstractIterator<RawObject> implements Closeable {
 
         @Nullable
         private Transaction transaction;
@@ -744,7 +958,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
          * Uses a transaction to open a read only cursor for it to work when called from a different
          * threads than the one it was created at. The transaction is aborted at {@link #close()}
          */
-        public CursorRevObjectIterator(final Iterator<ObjectId> objectIds,
+        public CursorRawObjectIterator(final Iterator<ObjectId> objectIds,
                 final BulkOpListener listener) {
 
             this.unsortedIds = Iterators.partition(objectIds, getBulkPartitionSize());
@@ -769,7 +983,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         }
 
         @Override
-        protected RevObject computeNext() {
+        protected RawObject computeNext() {
             if (!sortedIds.hasNext()) {
                 if (unsortedIds.hasNext()) {
                     List<ObjectId> unsorted = unsortedIds.next();
@@ -785,7 +999,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                 byte[] keyBuff = new byte[ObjectId.NUM_BYTES];
                 DatabaseEntry key = new DatabaseEntry(keyBuff);
 
-                RevObject found = null;
+                RawObject found = null;
                 while (sortedIds.hasNext() && found == null) {
                     ObjectId id = sortedIds.next();
                     id.getRawValue(keyBuff);
@@ -796,10 +1010,8 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     OperationStatus status;
                     status = cursor.getSearchKey(key, data, LockMode.READ_UNCOMMITTED);
                     if (SUCCESS.equals(status)) {
-                        InputStream rawData;
-                        rawData = new LZFInputStream(new ByteArrayInputStream(data.getData()));
-                        found = reader.read(id, rawData);
-                        listener.found(found.getId(), data.getSize());
+                        found = new RawObject(id, data.getData());
+                        listener.found(id, data.getSize());
                     } else {
                         listener.notFound(id);
                     }
@@ -840,25 +1052,51 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     @Nullable
     private Transaction newTransaction() {
+        return newTransaction(getDefaultDurability());
+    }
+
+    @Nullable
+    private Transaction newTransaction(ObjectDurability durability) {
         final boolean transactional = objectDb.getConfig().getTransactional();
         if (transactional) {
             TransactionConfig txConfig = new TransactionConfig();
             txConfig.setReadUncommitted(true);
-            Optional<String> durability = configDB.get(OBJECT_DURABILITY_CONFIG_KEY);
-            if (!durability.isPresent()) {
-                durability = configDB.getGlobal(OBJECT_DURABILITY_CONFIG_KEY);
-            }
-            if ("safe".equals(durability.orNull())) {
-                txConfig.setDurability(Durability.COMMIT_SYNC);
-            } else {
-                txConfig.setDurability(Durability.COMMIT_WRITE_NO_SYNC);
-            }
+            txConfig.setDurability(durability.getDurability());
             Transaction transaction = env.beginTransaction(null, txConfig);
             return transaction;
         }
         return null;
     }
 
+    private ObjectDurability getDurability(BulkOpListener listener) {
+        return listener.isDurabilityDeferred() ? ObjectDurability.DEFERRED
+                : getDefaultDurability();
+    }
+
+    private ObjectDurability getDefaultDurability() {
+        Optional<String> durability = configDB.get(OBJECT_DURABILITY_CONFIG_KEY);
+        if (!durability.isPresent()) {
+            durability = configDB.getGlobal(OBJECT_DURABILITY_CONFIG_KEY);
+        }
+        return ObjectDurability.fromConfig(durability);
+    }
+
+    /**
+     * Makes the writes of a bulk operation durable at once if the durability requested so, that is,
+     * if they were not synced as they were committed
+     */
+    private void syncIfNeeded(ObjectDurability durability) {
+        final boolean transactional = objectDb.getConfig().getTransactional();
+        if (transactional) {
+            if (ObjectDurability.DEFERRED.equals(durability)) {
+                env.flushLog(true);
+            }
+        } else if (!ObjectDurability.FAST.equals(durability)) {
+            // deferred write database, nothing is on disk until synced
+            objectDb.sync();
+        }
+    }
+
     @Override
     protected void finalize() {
         if (isOpen()) {
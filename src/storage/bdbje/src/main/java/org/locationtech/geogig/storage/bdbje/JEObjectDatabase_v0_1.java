@@ -12,6 +12,7 @@ package org.locationtech.geogig.storage.bdbje;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
 import com.google.inject.Inject;
@@ -32,6 +33,10 @@ public final class JEObjectDatabase_v0_1 extends JEObjectDatabase {
     @Override
     public void configure() throws RepositoryConnectionException {
         RepositoryConnectionException.StorageType.OBJECT.configure(configDB, "bdbje", "0.1");
+        if (!configDB.get(ObjectDatabase.PREFETCH_CONFIG_KEY).isPresent()) {
+            // reads are blocking disk accesses, prefetching trees pays off
+            configDB.put(ObjectDatabase.PREFETCH_CONFIG_KEY, true);
+        }
     }
 
     @Override
@@ -0,0 +1,69 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.bdbje;
+
+import org.locationtech.geogig.storage.BulkOpListener;
+
+import com.google.common.base.Optional;
+import com.sleepycat.je.Durability;
+
+/**
+ * How safe to be when persisting objects in the BDB JE object database, either by default through
+ * the {@code bdbje.object_durability} config option, or {@link #DEFERRED} for the bulk inserts
+ * whose listener {@link BulkOpListener#isDurabilityDeferred() allows it}.
+ */
+public enum ObjectDurability {
+
+    /**
+     * Each write is synced to disk as it's committed
+     */
+    SAFE(Durability.COMMIT_SYNC),
+
+    /**
+     * Each write is written to the log as it's committed, but not synced to disk. This is the
+     * default.
+     */
+    FAST(Durability.COMMIT_WRITE_NO_SYNC),
+
+    /**
+     * Writes are neither written to the log nor synced as they're committed, the log is synced
+     * once at the end of the bulk operation instead. Meant for initial clones and imports, where a
+     * failure halfway can be dealt with by starting over.
+     * <p>
+     * Note the object database stays transactional: this is JE's {@code COMMIT_NO_SYNC} commit
+     * durability followed by a log flush, not a switch to a non-transactional (deferred write)
+     * database, which can't be done for a single operation on an open environment. If the object
+     * database is configured as non-transactional, it's synced at the end of the bulk operation.
+     */
+    DEFERRED(Durability.COMMIT_NO_SYNC);
+
+    private final Durability durability;
+
+    private ObjectDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @param configValue the value of the {@code bdbje.object_durability} config option
+     * @return the durability for the config value, {@link #FAST} if unset or unknown
+     */
+    static ObjectDurability fromConfig(Optional<String> configValue) {
+        for (ObjectDurability d : values()) {
+            if (d.name().equalsIgnoreCase(configValue.or(""))) {
+                return d;
+            }
+        }
+        return FAST;
+    }
+}
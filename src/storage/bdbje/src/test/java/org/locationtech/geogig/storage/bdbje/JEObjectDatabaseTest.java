@@ -10,6 +10,8 @@
 package org.locationtech.geogig.storage.bdbje;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -17,14 +19,22 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureImpl;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.TestPlatform;
 import org.locationtech.geogig.repository.Hints;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 public class JEObjectDatabaseTest extends Assert {
 
     @Rule
@@ -52,13 +62,61 @@ public class JEObjectDatabaseTest extends Assert {
 
     }
 
-    private ObjectDatabase createDb() {
+    private JEObjectDatabase createDb() {
         ConfigDatabase configDB = new IniFileConfigDatabase(platform);
         JEObjectDatabase db = new JEObjectDatabase_v0_1(configDB, envProvider, hints);
         db.open();
         return db;
     }
 
+    private static List<RevFeature> features(int count) {
+        List<RevFeature> features = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            features.add(RevFeatureImpl.build(ImmutableList.of(Optional.<Object> of("value" + i))));
+        }
+        return features;
+    }
+
+    /**
+     * Counts the objects found and inserted, and records whether it was ever called from two
+     * threads at the same time
+     */
+    private static class ExclusiveCountingListener extends BulkOpListener {
+
+        private final AtomicBoolean inCall = new AtomicBoolean();
+
+        private volatile boolean concurrentCalls;
+
+        int found;
+
+        int inserted;
+
+        @Override
+        public void found(ObjectId object, Integer storageSizeBytes) {
+            enter();
+            found++;
+            exit();
+        }
+
+        @Override
+        public void inserted(ObjectId object, Integer storageSizeBytes) {
+            enter();
+            inserted++;
+            exit();
+        }
+
+        private void enter() {
+            if (!inCall.compareAndSet(false, true)) {
+                concurrentCalls = true;
+            }
+            Thread.yield();
+        }
+
+        private void exit() {
+            inCall.set(false);
+        }
+    }
+
     @After
     public void tearDown() {
         if (db != null) {
@@ -140,6 +198,55 @@ public class JEObjectDatabaseTest extends Assert {
         db2.close();
     }
 
+    @Test
+    public void testSeveralWriterThreads() {
+        new IniFileConfigDatabase(platform).put("bdbje.writer_threads", 4);
+        db = createDb();
+        // several buffers worth of objects
+        List<RevFeature> features = features(20000);
+
+        ExclusiveCountingListener listener = new ExclusiveCountingListener();
+        db.putAll(features.subList(0, 10000).iterator(), listener);
+        assertEquals(10000, listener.inserted);
+        assertEquals(0, listener.found);
+
+        // every other key exists already
+        listener = new ExclusiveCountingListener();
+        List<RevFeature> mixed = Lists.newArrayList();
+        for (int i = 0; i < 10000; i++) {
+            mixed.add(features.get(i));
+            mixed.add(features.get(10000 + i));
+        }
+        db.putAll(mixed.iterator(), listener);
+        assertEquals(10000, listener.inserted);
+        assertEquals(10000, listener.found);
+        assertFalse("listener called concurrently", listener.concurrentCalls);
+
+        for (RevFeature feature : features) {
+            assertEquals(feature, db.get(feature.getId()));
+        }
+    }
+
+    @Test
+    public void testDeferredDurability() {
+        JEObjectDatabase db = createDb();
+        this.db = db;
+        List<RevFeature> features = features(1000);
+        BulkOpListener.CountingListener listener = BulkOpListener.newCountingListener();
+        assertFalse(listener.isDurabilityDeferred());
+        BulkOpListener deferred = BulkOpListener.deferDurability(listener);
+        assertTrue(deferred.isDurabilityDeferred());
+        db.putAll(features.iterator(), deferred);
+        assertEquals(1000, listener.inserted());
+
+        // synced at the end of the bulk insert
+        db.close();
+        this.db = createDb();
+        for (RevFeature feature : features) {
+            assertEquals(feature, this.db.get(feature.getId()));
+        }
+    }
+
     public void testMultipleInstances() {
         ObjectDatabase db1 = createDb();
         ObjectDatabase db2 = createDb();
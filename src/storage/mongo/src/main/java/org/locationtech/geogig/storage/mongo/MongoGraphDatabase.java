@@ -20,6 +20,7 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -290,6 +291,16 @@ public class MongoGraphDatabase implements GraphDatabase {
         collection.save(record);
     }
 
+    @Override
+    public Optional<String> getProperty(ObjectId id, String name) {
+        DBObject record = collection.findOne(idQuery(id));
+        if (record == null) {
+            return Optional.absent();
+        }
+        DBObject properties = (DBObject) record.get("_properties");
+        return Optional.fromNullable((String) properties.get(name));
+    }
+
     @Override
     public void truncate() {
         // NO-OP
@@ -12,10 +12,18 @@ package org.locationtech.geogig.storage.mongo;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -34,36 +42,87 @@ import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
 import org.locationtech.geogig.storage.ObjectWriter;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
+import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
 import com.mongodb.BulkWriteOperation;
-import com.mongodb.BulkWriteResult;
-import com.mongodb.BulkWriteUpsert;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
 import com.mongodb.MongoClient;
 import com.mongodb.WriteConcern;
-import com.mongodb.WriteResult;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
 
 /**
  * An Object database that uses a MongoDB server for persistence.
+ * <p>
+ * Objects are stored as documents whose {@code _id} is the raw object id, so that they're looked
+ * up through the collection's primary index, in batches of {@code $in} queries that are run ahead
+ * of time on the executor service while the results of the previous ones are consumed, and
+ * partial ids are resolved as a range query over the raw ids. Collections created before objects
+ * were stored this way keep the hex {@code oid} field of their existing objects, which is still
+ * queried for the ids not found by {@code _id}.
+ * <p>
+ * Bulk inserts are unordered and use the write concern given by the {@code mongodb.write_concern}
+ * config option (one of the {@link WriteConcern#valueOf(String) WriteConcern constants},
+ * {@code ACKNOWLEDGED} by default) unless {@link #putAll(Iterator, BulkOpListener, WriteConcern)
+ * given} for the operation. Objects inserted with an unacknowledged write concern are reported as
+ * inserted to the {@link BulkOpListener} whether they existed or not.
  * 
  * @see http://mongodb.com/
  */
 public class MongoObjectDatabase implements ObjectDatabase {
+
+    private static final String WRITE_CONCERN_CONFIG_KEY = "mongodb.write_concern";
+
+    private static final String ID = "_id";
+
+    private static final String LEGACY_ID = "oid";
+
+    private static final String SERIALIZED_OBJECT = "serialized_object";
+
+    private static final int ID_CHARS = 2 * ObjectId.NUM_BYTES;
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    /**
+     * Maximum number of ids per {@code $in} query, further limited by the maximum BSON document
+     * size the server accepts
+     */
+    private static final int MAX_QUERY_BATCH_SIZE = 1000;
+
+    /**
+     * Approximate size of each raw id in the BSON array of an {@code $in} query
+     */
+    private static final int QUERY_BYTES_PER_ID = 32;
+
+    /**
+     * Number of {@code $in} queries run ahead of the one being consumed
+     */
+    private static final int MAX_PENDING_QUERIES = 4;
+
+    private static final DBObject ID_ONLY = new BasicDBObject(ID, 1);
+
     private final MongoConnectionManager manager;
 
     protected final ConfigDatabase config;
@@ -80,6 +139,14 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     private ExecutorService executor;
 
+    private int queryBatchSize;
+
+    /**
+     * Whether the collection was created when objects were identified by their hex {@code oid}
+     * field, so there may be objects that can only be found by it
+     */
+    private boolean legacyIds;
+
     @Inject
     public MongoObjectDatabase(ConfigDatabase config, MongoConnectionManager manager,
             ExecutorService executor) {
@@ -136,7 +203,14 @@ public class MongoObjectDatabase implements ObjectDatabase {
         client = manager.acquire(new MongoAddress(uri));
         db = client.getDB(database);
         collection = db.getCollection(getCollectionName());
-        collection.ensureIndex("oid");
+        legacyIds = false;
+        for (DBObject index : collection.getIndexInfo()) {
+            if ((LEGACY_ID + "_1").equals(index.get("name"))) {
+                legacyIds = true;
+            }
+        }
+        queryBatchSize = Math.max(1, Math.min(MAX_QUERY_BATCH_SIZE,
+                client.getMaxBsonObjectSize() / QUERY_BYTES_PER_ID));
     }
 
     @Override
@@ -153,6 +227,10 @@ public class MongoObjectDatabase implements ObjectDatabase {
                 .or("geogig");
         config.put("mongodb.uri", uri);
         config.put("mongodb.database", database);
+        if (!config.get(ObjectDatabase.PREFETCH_CONFIG_KEY).isPresent()) {
+            // reads are blocking disk or network accesses, prefetching trees pays off
+            config.put(ObjectDatabase.PREFETCH_CONFIG_KEY, true);
+        }
     }
 
     @Override
@@ -172,30 +250,56 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public boolean exists(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        return collection.find(query).hasNext();
+        if (collection.findOne(new BasicDBObject(ID, id.getRawValue()), ID_ONLY) != null) {
+            return true;
+        }
+        return legacyIds
+                && collection.findOne(new BasicDBObject(LEGACY_ID, id.toString()), ID_ONLY) != null;
     }
 
+    /**
+     * Looks up the objects whose id starts with the given prefix as a range query over the raw
+     * ids, served by the collection's primary index
+     */
     @Override
     public List<ObjectId> lookUp(final String partialId) {
-        if (partialId.matches("[a-fA-F0-9]+")) {
-            DBObject regex = new BasicDBObject();
-            regex.put("$regex", "^" + partialId);
-            DBObject query = new BasicDBObject();
-            query.put("oid", regex);
-            DBCursor cursor = collection.find(query);
-            List<ObjectId> ids = new ArrayList<ObjectId>();
-            while (cursor.hasNext()) {
-                DBObject elem = cursor.next();
-                String oid = (String) elem.get("oid");
-                ids.add(ObjectId.valueOf(oid));
-            }
-            return ids;
-        } else {
+        if (!partialId.matches("[a-fA-F0-9]+")) {
             throw new IllegalArgumentException(
                     "Prefix query must be done with hexadecimal values only");
         }
+        Preconditions.checkArgument(partialId.length() <= ID_CHARS,
+                "Prefix longer than an object id: %s", partialId);
+        final String prefix = partialId.toLowerCase();
+        byte[] lower = ObjectId.valueOf(Strings.padEnd(prefix, ID_CHARS, '0'))
+                .getRawValue();
+        byte[] upper = ObjectId.valueOf(Strings.padEnd(prefix, ID_CHARS, 'f'))
+                .getRawValue();
+        DBObject query = BasicDBObjectBuilder.start().push(ID).add("$gte", lower)
+                .add("$lte", upper).pop().get();
+
+        Set<ObjectId> ids = new LinkedHashSet<ObjectId>();
+        DBCursor cursor = collection.find(query, ID_ONLY);
+        try {
+            while (cursor.hasNext()) {
+                ids.add(new ObjectId((byte[]) cursor.next().get(ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (legacyIds) {
+            // anchored, so it's resolved as a range over the oid index
+            DBObject legacyQuery = new BasicDBObject(LEGACY_ID, new BasicDBObject("$regex", "^"
+                    + prefix));
+            cursor = collection.find(legacyQuery, new BasicDBObject(LEGACY_ID, 1));
+            try {
+                while (cursor.hasNext()) {
+                    ids.add(ObjectId.valueOf((String) cursor.next().get(LEGACY_ID)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return new ArrayList<ObjectId>(ids);
     }
 
     @Override
@@ -215,15 +319,16 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public RevObject getIfPresent(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        DBCursor results = collection.find(query);
-        if (results.hasNext()) {
-            DBObject result = results.next();
-            return fromBytes(id, (byte[]) result.get("serialized_object"));
-        } else {
-            return null;
+        byte[] serialized = getRawIfPresent(id);
+        return serialized == null ? null : fromBytes(id, serialized);
+    }
+
+    private byte[] getRawIfPresent(ObjectId id) {
+        DBObject result = collection.findOne(new BasicDBObject(ID, id.getRawValue()));
+        if (result == null && legacyIds) {
+            result = collection.findOne(new BasicDBObject(LEGACY_ID, id.toString()));
         }
+        return result == null ? null : (byte[]) result.get(SERIALIZED_OBJECT);
     }
 
     @Override
@@ -257,17 +362,25 @@ public class MongoObjectDatabase implements ObjectDatabase {
     }
 
     private long deleteChunk(List<ObjectId> ids) {
-        List<String> idStrings = Lists.transform(ids, Functions.toStringFunction());
-        DBObject query = BasicDBObjectBuilder.start().push("oid").add("$in", idStrings).pop().get();
-        WriteResult result = collection.remove(query);
-        return result.getN();
+        DBObject query = new BasicDBObject(ID, new BasicDBObject("$in", Lists.transform(ids,
+                RAW_ID)));
+        long count = collection.remove(query).getN();
+        if (legacyIds) {
+            List<String> idStrings = Lists.transform(ids, Functions.toStringFunction());
+            DBObject legacyQuery = BasicDBObjectBuilder.start().push(LEGACY_ID)
+                    .add("$in", idStrings).pop().get();
+            count += collection.remove(legacyQuery).getN();
+        }
+        return count;
     }
 
     @Override
     public boolean delete(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        return collection.remove(query).getLastError().ok();
+        boolean deleted = collection.remove(new BasicDBObject(ID, id.getRawValue())).getN() > 0;
+        if (legacyIds) {
+            deleted |= collection.remove(new BasicDBObject(LEGACY_ID, id.toString())).getN() > 0;
+        }
+        return deleted;
     }
 
     @Override
@@ -287,19 +400,40 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public boolean put(final RevObject object) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", object.getId().toString());
-        DBObject record = toDocument(object);
-        return collection.update(query, record, true, false).getLastError().ok();
+        if (legacyIds
+                && collection.findOne(new BasicDBObject(LEGACY_ID, object.getId().toString()),
+                        ID_ONLY) != null) {
+            return false;
+        }
+        try {
+            collection.insert(toDocument(object), getDefaultWriteConcern());
+            return true;
+        } catch (DuplicateKeyException alreadyExists) {
+            return false;
+        }
     }
 
     private DBObject toDocument(final RevObject object) {
+        return toDocument(object.getId(), toBytes(object));
+    }
+
+    private DBObject toDocument(final ObjectId id, final byte[] serialized) {
         DBObject record = new BasicDBObject();
-        record.put("oid", object.getId().toString());
-        record.put("serialized_object", toBytes(object));
+        record.put(ID, id.getRawValue());
+        record.put(SERIALIZED_OBJECT, serialized);
         return record;
     }
 
+    private WriteConcern getDefaultWriteConcern() {
+        Optional<String> name = config.get(WRITE_CONCERN_CONFIG_KEY).or(
+                config.getGlobal(WRITE_CONCERN_CONFIG_KEY));
+        WriteConcern writeConcern = null;
+        if (name.isPresent()) {
+            writeConcern = WriteConcern.valueOf(name.get().toUpperCase());
+        }
+        return writeConcern == null ? WriteConcern.ACKNOWLEDGED : writeConcern;
+    }
+
     @Override
     public void putAll(final Iterator<? extends RevObject> objects) {
         putAll(objects, BulkOpListener.NOOP_LISTENER);
@@ -307,7 +441,40 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+        putAll(objects, listener, getDefaultWriteConcern());
+    }
+
+    /**
+     * Inserts the objects with the given write concern instead of the configured one
+     */
+    public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener,
+            WriteConcern writeConcern) {
+        Iterator<RawObject> raw = Iterators.transform(objects, new Function<RevObject, RawObject>() {
+            @Override
+            public RawObject apply(RevObject object) {
+                return new RawObject(object.getId(), toBytes(object));
+            }
+        });
+        putAllRaw(raw, listener, writeConcern);
+    }
+
+    @Override
+    public Optional<String> getRawFormat() {
+        return Optional.of(RawObject.format(serializers, true));
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        putAllRaw(objects, listener, getDefaultWriteConcern());
+    }
+
+    /**
+     * Inserts the raw objects with the given write concern instead of the configured one
+     */
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener,
+            WriteConcern writeConcern) {
         Preconditions.checkNotNull(executor, "executor service not set");
+        Preconditions.checkNotNull(writeConcern, "writeConcern");
         if (!objects.hasNext()) {
             return;
         }
@@ -317,25 +484,30 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
         final AtomicBoolean cancelCondition = new AtomicBoolean();
 
-        List<ObjectId> ids = Lists.newArrayListWithCapacity(bulkSize);
+        List<RawObject> batch = Lists.newArrayListWithCapacity(bulkSize);
         List<Future<?>> runningTasks = new ArrayList<Future<?>>(maxRunningTasks);
 
-        BulkWriteOperation bulkOperation = collection.initializeOrderedBulkOperation();
         try {
             while (objects.hasNext()) {
-                RevObject object = objects.next();
-                bulkOperation.insert(toDocument(object));
+                batch.add(objects.next());
 
-                ids.add(object.getId());
-
-                if (ids.size() == bulkSize || !objects.hasNext()) {
-                    InsertTask task = new InsertTask(bulkOperation, listener, ids, cancelCondition);
-                    runningTasks.add(executor.submit(task));
-
-                    if (objects.hasNext()) {
-                        bulkOperation = collection.initializeOrderedBulkOperation();
-                        ids = Lists.newArrayListWithCapacity(bulkSize);
+                if (batch.size() == bulkSize || !objects.hasNext()) {
+                    if (legacyIds) {
+                        batch = withoutLegacy(batch, listener);
+                    }
+                    if (!batch.isEmpty()) {
+                        BulkWriteOperation bulkOperation = collection
+                                .initializeUnorderedBulkOperation();
+                        List<ObjectId> ids = Lists.newArrayListWithCapacity(batch.size());
+                        for (RawObject object : batch) {
+                            bulkOperation.insert(toDocument(object.getId(), object.getData()));
+                            ids.add(object.getId());
+                        }
+                        InsertTask task = new InsertTask(bulkOperation, writeConcern, listener,
+                                ids, cancelCondition);
+                        runningTasks.add(executor.submit(task));
                     }
+                    batch = Lists.newArrayListWithCapacity(bulkSize);
                 }
                 if (runningTasks.size() == maxRunningTasks) {
                     waitForTasks(runningTasks);
@@ -348,6 +520,40 @@ public class MongoObjectDatabase implements ObjectDatabase {
         }
     }
 
+    /**
+     * Reports the objects of the batch that are already stored under their legacy string id as
+     * found, with a single {@code $in} query, and returns the ones left to insert. Otherwise they
+     * wouldn't collide with the primary index and would be stored twice.
+     */
+    private List<RawObject> withoutLegacy(List<RawObject> batch, BulkOpListener listener) {
+        List<String> idStrings = Lists.newArrayListWithCapacity(batch.size());
+        for (RawObject object : batch) {
+            idStrings.add(object.getId().toString());
+        }
+        Set<String> existing = Sets.newHashSet();
+        DBObject legacyQuery = new BasicDBObject(LEGACY_ID, new BasicDBObject("$in", idStrings));
+        DBCursor cursor = collection.find(legacyQuery, new BasicDBObject(LEGACY_ID, 1));
+        try {
+            while (cursor.hasNext()) {
+                existing.add((String) cursor.next().get(LEGACY_ID));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (existing.isEmpty()) {
+            return batch;
+        }
+        List<RawObject> missing = Lists.newArrayListWithCapacity(batch.size() - existing.size());
+        for (RawObject object : batch) {
+            if (existing.contains(object.getId().toString())) {
+                listener.found(object.getId(), null);
+            } else {
+                missing.add(object);
+            }
+        }
+        return missing;
+    }
+
     private void waitForTasks(List<Future<?>> runningTasks) {
         // wait...
         for (Future<?> f : runningTasks) {
@@ -360,19 +566,26 @@ public class MongoObjectDatabase implements ObjectDatabase {
         runningTasks.clear();
     }
 
+    /**
+     * Executes an unordered bulk insert, reporting the objects rejected as duplicate keys as
+     * found
+     */
     private static class InsertTask implements Runnable {
 
         private BulkWriteOperation bulkOperation;
 
+        private WriteConcern writeConcern;
+
         private BulkOpListener listener;
 
         private List<ObjectId> ids;
 
         private AtomicBoolean cancelCondition;
 
-        public InsertTask(BulkWriteOperation bulkOperation, BulkOpListener listener,
-                List<ObjectId> ids, AtomicBoolean cancelCondition) {
+        public InsertTask(BulkWriteOperation bulkOperation, WriteConcern writeConcern,
+                BulkOpListener listener, List<ObjectId> ids, AtomicBoolean cancelCondition) {
             this.bulkOperation = bulkOperation;
+            this.writeConcern = writeConcern;
             this.listener = listener;
             this.ids = ids;
             this.cancelCondition = cancelCondition;
@@ -383,16 +596,24 @@ public class MongoObjectDatabase implements ObjectDatabase {
             if (cancelCondition.get()) {
                 return;
             }
-            BulkWriteResult bulkResult = bulkOperation.execute(WriteConcern.ACKNOWLEDGED);
-            List<BulkWriteUpsert> upserts = bulkResult.getUpserts();
-
-            for (BulkWriteUpsert upsert : upserts) {
-                if (cancelCondition.get()) {
-                    return;
+            try {
+                bulkOperation.execute(writeConcern);
+            } catch (BulkWriteException e) {
+                if (e.getWriteConcernError() != null) {
+                    throw e;
+                }
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                        throw e;
+                    }
+                }
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (cancelCondition.get()) {
+                        return;
+                    }
+                    ObjectId existing = ids.set(error.getIndex(), null);
+                    listener.found(existing, null);
                 }
-                int index = upsert.getIndex();
-                ObjectId existing = ids.set(index, null);
-                listener.found(existing, null);
             }
             for (ObjectId inserted : ids) {
                 if (cancelCondition.get()) {
@@ -420,30 +641,127 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public Iterator<RevObject> getAll(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return Iterators.transform(getAllRaw(ids, listener), new Function<RawObject, RevObject>() {
+            @Override
+            public RevObject apply(RawObject raw) {
+                return fromBytes(raw.getId(), raw.getData());
+            }
+        });
+    }
 
-        return new AbstractIterator<RevObject>() {
-            final Iterator<ObjectId> queryIds = ids.iterator();
+    /**
+     * Fetches the objects in batches of {@code $in} queries, running the next few queries on the
+     * executor service while the results of the current one are consumed. Objects are returned in
+     * the order they're requested.
+     */
+    @Override
+    public Iterator<RawObject> getAllRaw(final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        return new BatchIterator(Iterators.partition(ids.iterator(), queryBatchSize), listener);
+    }
 
-            @Override
-            protected RevObject computeNext() {
-                RevObject obj = null;
-                while (obj == null) {
-                    if (!queryIds.hasNext()) {
-                        return endOfData();
-                    }
-                    ObjectId id = queryIds.next();
-                    obj = getIfPresent(id);
-                    if (obj == null) {
+    private class BatchIterator extends AbstractIterator<RawObject> {
+
+        private final Iterator<List<ObjectId>> batches;
+
+        private final BulkOpListener listener;
+
+        private final Queue<Entry<List<ObjectId>, Future<Map<ObjectId, byte[]>>>> pending = new ArrayDeque<Entry<List<ObjectId>, Future<Map<ObjectId, byte[]>>>>();
+
+        private Iterator<ObjectId> current = Iterators.emptyIterator();
+
+        private Map<ObjectId, byte[]> currentObjects;
+
+        BatchIterator(Iterator<List<ObjectId>> batches, BulkOpListener listener) {
+            this.batches = batches;
+            this.listener = listener;
+        }
+
+        @Override
+        protected RawObject computeNext() {
+            while (true) {
+                while (current.hasNext()) {
+                    ObjectId id = current.next();
+                    byte[] serialized = currentObjects.get(id);
+                    if (serialized == null) {
                         listener.notFound(id);
                     } else {
-                        listener.found(obj.getId(), null);
+                        listener.found(id, serialized.length);
+                        return new RawObject(id, serialized);
                     }
                 }
-                return obj == null ? endOfData() : obj;
+                while (pending.size() < MAX_PENDING_QUERIES && batches.hasNext()) {
+                    final List<ObjectId> batch = batches.next();
+                    final Future<Map<ObjectId, byte[]>> result;
+                    if (executor == null) {
+                        result = Futures.immediateFuture(fetch(batch));
+                    } else {
+                        result = executor.submit(new Callable<Map<ObjectId, byte[]>>() {
+                            @Override
+                            public Map<ObjectId, byte[]> call() {
+                                return fetch(batch);
+                            }
+                        });
+                    }
+                    pending.add(Maps.immutableEntry(batch, result));
+                }
+                Entry<List<ObjectId>, Future<Map<ObjectId, byte[]>>> next = pending.poll();
+                if (next == null) {
+                    return endOfData();
+                }
+                current = next.getKey().iterator();
+                try {
+                    currentObjects = next.getValue().get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw Throwables.propagate(Throwables.getRootCause(e));
+                }
+            }
+        }
+    }
+
+    private Map<ObjectId, byte[]> fetch(List<ObjectId> ids) {
+        Map<ObjectId, byte[]> objects = Maps.newHashMap();
+        DBObject query = new BasicDBObject(ID, new BasicDBObject("$in", Lists.transform(ids,
+                RAW_ID)));
+        DBCursor cursor = collection.find(query);
+        try {
+            while (cursor.hasNext()) {
+                DBObject record = cursor.next();
+                objects.put(new ObjectId((byte[]) record.get(ID)),
+                        (byte[]) record.get(SERIALIZED_OBJECT));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (legacyIds && objects.size() < ids.size()) {
+            List<String> missing = Lists.newArrayList();
+            for (ObjectId id : ids) {
+                if (!objects.containsKey(id)) {
+                    missing.add(id.toString());
+                }
             }
-        };
+            DBObject legacyQuery = new BasicDBObject(LEGACY_ID, new BasicDBObject("$in", missing));
+            cursor = collection.find(legacyQuery);
+            try {
+                while (cursor.hasNext()) {
+                    DBObject record = cursor.next();
+                    objects.put(ObjectId.valueOf((String) record.get(LEGACY_ID)),
+                            (byte[]) record.get(SERIALIZED_OBJECT));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return objects;
     }
 
+    private static final Function<ObjectId, byte[]> RAW_ID = new Function<ObjectId, byte[]>() {
+        @Override
+        public byte[] apply(ObjectId id) {
+            return id.getRawValue();
+        }
+    };
+
     public DBCollection getCollection(String name) {
         return db.getCollection(name);
     }
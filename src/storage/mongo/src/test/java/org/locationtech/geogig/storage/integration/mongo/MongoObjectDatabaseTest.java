@@ -0,0 +1,188 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.integration.mongo;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+import org.locationtech.geogig.storage.mongo.MongoConnectionManager;
+import org.locationtech.geogig.storage.mongo.MongoObjectDatabase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+
+public class MongoObjectDatabaseTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MongoClient client;
+
+    private DB mongoDb;
+
+    private ExecutorService executor;
+
+    private MongoConnectionManager manager;
+
+    private TestConfigDatabase config;
+
+    private MongoObjectDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        final IniMongoProperties properties = new IniMongoProperties();
+        final String uri = properties.get("mongodb.uri", String.class).or(
+                "mongodb://localhost:27017/");
+        final String database = properties.get("mongodb.database", String.class).or("geogig");
+        client = new MongoClient(new MongoClientURI(uri));
+        mongoDb = client.getDB(database);
+        mongoDb.dropDatabase();
+
+        File root = folder.getRoot();
+        folder.newFolder(".geogig");
+        TestPlatform platform = new TestPlatform(root);
+        platform.setUserHome(folder.newFolder("home"));
+        config = new TestConfigDatabase(platform);
+        executor = Executors.newFixedThreadPool(2);
+        manager = new MongoConnectionManager();
+        db = new MongoObjectDatabase(config, manager, executor);
+        db.open();
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+        executor.shutdownNow();
+        client.close();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        RevTree tree = tree(10);
+        assertTrue(db.put(tree));
+        assertFalse(db.put(tree));
+        assertTrue(db.exists(tree.getId()));
+        assertEquals(tree, db.getTree(tree.getId()));
+        assertNull(db.getIfPresent(ObjectId.forString("not there")));
+    }
+
+    @Test
+    public void testPutAllReportsExisting() {
+        List<RevTree> trees = trees(100);
+        db.putAll(trees.subList(0, 50).iterator());
+
+        CountingListener listener = new CountingListener();
+        db.putAll(trees.iterator(), listener);
+        assertEquals(50, listener.found());
+        assertEquals(50, listener.inserted());
+    }
+
+    @Test
+    public void testGetAllKeepsRequestOrder() {
+        List<RevTree> trees = trees(50);
+        db.putAll(trees.iterator());
+
+        List<ObjectId> ids = Lists.newArrayList();
+        for (RevTree tree : Lists.reverse(trees)) {
+            ids.add(tree.getId());
+        }
+        ids.add(ObjectId.forString("not there"));
+        CountingListener listener = new CountingListener();
+        List<RevObject> found = ImmutableList.copyOf(db.getAll(ids, listener));
+        assertEquals(Lists.reverse(trees), found);
+        assertEquals(50, listener.found());
+        assertEquals(1, listener.notFound());
+    }
+
+    @Test
+    public void testLookUp() {
+        List<RevTree> trees = trees(50);
+        db.putAll(trees.iterator());
+        for (RevTree tree : trees) {
+            String partialId = tree.getId().toString().substring(0, 9);
+            assertEquals(ImmutableList.of(tree.getId()), db.lookUp(partialId));
+        }
+    }
+
+    @Test
+    public void testLegacyIds() {
+        db.close();
+        RevTree legacy = tree(5);
+        // write the object the way it was stored before objects were keyed by their raw id
+        MongoObjectDatabase writer = new MongoObjectDatabase(config, manager, executor);
+        writer.open();
+        writer.put(legacy);
+        DBCollection collection = mongoDb.getCollection("objects");
+        byte[] serialized = (byte[]) collection.findOne().get("serialized_object");
+        collection.drop();
+        collection.insert(new BasicDBObject("oid", legacy.getId().toString()).append(
+                "serialized_object", serialized));
+        collection.ensureIndex("oid");
+        writer.close();
+
+        db.open();
+        assertTrue(db.exists(legacy.getId()));
+        assertEquals(legacy, db.getTree(legacy.getId()));
+        assertEquals(ImmutableList.of(legacy.getId()),
+                db.lookUp(legacy.getId().toString().substring(0, 8)));
+        assertFalse(db.put(legacy));
+
+        RevTree tree = tree(6);
+        assertTrue(db.put(tree));
+        assertEquals(ImmutableList.of(legacy, tree),
+                ImmutableList.copyOf(db.getAll(ImmutableList.of(legacy.getId(), tree.getId()))));
+        assertTrue(db.delete(legacy.getId()));
+        assertFalse(db.exists(legacy.getId()));
+    }
+
+    private List<RevTree> trees(int count) {
+        List<RevTree> trees = Lists.newArrayList();
+        for (int i = 1; i <= count; i++) {
+            trees.add(tree(i));
+        }
+        return trees;
+    }
+
+    private RevTree tree(int size) {
+        ObjectDatabase db = new HeapObjectDatabse();
+        db.open();
+        RevTreeBuilder builder = new RevTreeBuilder(db);
+        for (int i = 0; i < size; i++) {
+            builder.put(Node.create("f" + i, ObjectId.forString("f" + i), ObjectId.NULL,
+                    TYPE.FEATURE, null));
+        }
+        return builder.build();
+    }
+}
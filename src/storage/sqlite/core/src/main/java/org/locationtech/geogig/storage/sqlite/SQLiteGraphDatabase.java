@@ -24,6 +24,7 @@ import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -151,6 +152,11 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
         property(commitId.toString(), name, value, cx);
     }
 
+    @Override
+    public Optional<String> getProperty(ObjectId commitId, String name) {
+        return Optional.fromNullable(property(commitId.toString(), name, cx));
+    }
+
     @Override
     public void truncate() {
     }
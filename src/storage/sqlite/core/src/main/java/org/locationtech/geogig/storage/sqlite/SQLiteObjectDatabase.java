@@ -37,11 +37,16 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 
 /**
  * Base class for SQLite based object database.
@@ -77,6 +82,10 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
     @Override
     public void configure() throws RepositoryConnectionException {
         RepositoryConnectionException.StorageType.OBJECT.configure(configdb, FORMAT_NAME, VERSION);
+        if (!configdb.get(ObjectDatabase.PREFETCH_CONFIG_KEY).isPresent()) {
+            // reads are blocking disk accesses, prefetching trees pays off
+            configdb.put(ObjectDatabase.PREFETCH_CONFIG_KEY, true);
+        }
     }
 
     @Override
@@ -212,6 +221,48 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
         }
     }
 
+    /**
+     * @return the format of the objects as stored in the objects table, that is, serialized by the
+     *         {@link #serializer} and not compressed
+     */
+    @Override
+    public Optional<String> getRawFormat() {
+        return Optional.of(RawObject.format(serializer, false));
+    }
+
+    @Override
+    public Iterator<RawObject> getAllRaw(Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return filter(transform(ids, new Function<ObjectId, RawObject>() {
+            @Override
+            public RawObject apply(ObjectId id) {
+                InputStream in = get(id.toString(), cx);
+                if (in == null) {
+                    listener.notFound(id);
+                    return null;
+                }
+                byte[] data;
+                try {
+                    data = ByteStreams.toByteArray(in);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                } finally {
+                    Closeables.closeQuietly(in);
+                }
+                listener.found(id, data.length);
+                return new RawObject(id, data);
+            }
+        }), Predicates.notNull()).iterator();
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RawObject obj = objects.next();
+            put(obj.getId().toString(), new ByteArrayInputStream(obj.getData()), cx);
+            listener.inserted(obj.getId(), obj.getData().length);
+        }
+    }
+
     @Override
     public boolean delete(ObjectId objectId) {
         return delete(objectId.toString(), cx);
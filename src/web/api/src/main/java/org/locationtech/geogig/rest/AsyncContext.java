@@ -10,26 +10,46 @@
 package org.locationtech.geogig.rest;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.GeogigTransaction;
+import org.locationtech.geogig.repository.Repository;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Runs commands asynchronously on behalf of the web API.
+ * <p>
+ * Commands are queued by {@link Priority priority}, and in submission order within the same
+ * priority, and the first queued command that doesn't exceed the concurrency limits is started
+ * whenever a running one finishes. The limits are the number of threads, the number of commands
+ * running against the same repository and the number of commands of the same type running at the
+ * same time, and can be set through the
+ * {@code org.locationtech.geogig.web.async.maxPerRepository} and
+ * {@code org.locationtech.geogig.web.async.maxPerCommandType} system properties. Commands are
+ * rejected with a {@link RejectedCommandException} once
+ * {@code org.locationtech.geogig.web.async.maxQueued} commands are waiting.
+ */
 public class AsyncContext {
 
     public static final String CONTEXT_KEY = "GeoGigAsyncContext";
@@ -38,6 +58,36 @@ public class AsyncContext {
         WAITING, RUNNING, FINISHED, FAILED, CANCELLED
     }
 
+    /**
+     * Scheduling priority of an async command, higher priority commands are started first
+     */
+    public static enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    /**
+     * Thrown when a command can't be queued because the queue is full, tells how long to wait
+     * before trying again
+     */
+    public static class RejectedCommandException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int retryAfterSeconds;
+
+        public RejectedCommandException(String message, int retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * @return an estimate of the number of seconds until the queue has room for more commands
+         */
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
     private static AsyncContext INSTANCE;
 
     public static synchronized AsyncContext get() {
@@ -47,16 +97,73 @@ public class AsyncContext {
         return INSTANCE;
     }
 
+    private static final AtomicLong SUBMIT_SEQ = new AtomicLong();
+
     private Map<String, AsyncCommand<?>> commands = new ConcurrentHashMap<>();
 
-    private ScheduledExecutorService commandExecutor;
+    private final ScheduledExecutorService commandExecutor;
+
+    private final int maxRunning;
+
+    private final int maxPerRepository;
+
+    private final int maxPerCommandType;
+
+    private final int maxQueued;
+
+    /**
+     * Waiting commands, by priority and then submission order. Guarded by {@code this}, like the
+     * running command counts.
+     */
+    private final NavigableSet<CommandCall<?>> queue = Sets
+            .newTreeSet(new Comparator<CommandCall<?>>() {
+                @Override
+                public int compare(CommandCall<?> c1, CommandCall<?> c2) {
+                    int c = c1.priority.compareTo(c2.priority);
+                    return c != 0 ? c : Long.compare(c1.sequence, c2.sequence);
+                }
+            });
+
+    private int running;
+
+    private final Multiset<String> runningPerRepository = HashMultiset.create();
+
+    private final Multiset<Class<?>> runningPerCommandType = HashMultiset.create();
+
+    /**
+     * Moving average of how long commands take to run, to estimate when to retry rejected commands
+     */
+    private double averageRunSeconds = 10;
 
     private AsyncContext() {
-        int nThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private AsyncContext(int nThreads) {
+        this(newExecutor(nThreads), nThreads, Integer.getInteger(
+                "org.locationtech.geogig.web.async.maxPerRepository", 2), Integer.getInteger(
+                "org.locationtech.geogig.web.async.maxPerCommandType", Math.max(1, nThreads / 2)),
+                Integer.getInteger("org.locationtech.geogig.web.async.maxQueued", 100));
+    }
+
+    /**
+     * @param commandExecutor the executor to run the commands on, with at least {@code maxRunning}
+     *        threads
+     */
+    AsyncContext(ScheduledExecutorService commandExecutor, int maxRunning, int maxPerRepository,
+            int maxPerCommandType, int maxQueued) {
+        this.commandExecutor = commandExecutor;
+        this.commandExecutor.scheduleAtFixedRate(new PruneTask(), 0, 10, TimeUnit.MINUTES);
+        this.maxRunning = maxRunning;
+        this.maxPerRepository = maxPerRepository;
+        this.maxPerCommandType = maxPerCommandType;
+        this.maxQueued = maxQueued;
+    }
+
+    private static ScheduledExecutorService newExecutor(int nThreads) {
         ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
                 .setNameFormat("GeoGIG async tasks-%d").build();
-        this.commandExecutor = Executors.newScheduledThreadPool(nThreads, threadFactory);
-        this.commandExecutor.scheduleAtFixedRate(new PruneTask(), 0, 10, TimeUnit.MINUTES);
+        return Executors.newScheduledThreadPool(nThreads, threadFactory);
     }
 
     private class PruneTask implements Runnable {
@@ -74,14 +181,71 @@ public class AsyncContext {
     }
 
     public <T> AsyncCommand<T> run(AbstractGeoGigOp<T> command, String description) {
+        return run(command, description, Priority.NORMAL);
+    }
 
-        CommandCall<T> callable = new CommandCall<T>(command);
-        Future<T> future = commandExecutor.submit(callable);
-        AsyncCommand<T> asyncCommand = new AsyncCommand<T>(callable, future, description);
+    /**
+     * Queues the command to be run as soon as the concurrency limits allow.
+     * 
+     * @throws RejectedCommandException if the queue is full
+     */
+    public synchronized <T> AsyncCommand<T> run(AbstractGeoGigOp<T> command, String description,
+            Priority priority) throws RejectedCommandException {
+        if (queue.size() >= maxQueued) {
+            int retryAfter = (int) Math.ceil(averageRunSeconds * (queue.size() + 1) / maxRunning);
+            throw new RejectedCommandException(String.format(
+                    "Too many queued tasks, retry after %d seconds", retryAfter),
+                    Math.max(1, retryAfter));
+        }
+        CommandCall<T> callable = new CommandCall<T>(command, priority);
+        AsyncCommand<T> asyncCommand = new AsyncCommand<T>(callable, description);
         commands.put(asyncCommand.getTaskId(), asyncCommand);
+        queue.add(callable);
+        dispatch();
         return asyncCommand;
     }
 
+    /**
+     * Starts as many queued commands as the limits allow, in queue order, skipping the commands
+     * whose repository or type already run as many commands as allowed
+     */
+    private synchronized void dispatch() {
+        Iterator<CommandCall<?>> it = queue.iterator();
+        while (running < maxRunning && it.hasNext()) {
+            CommandCall<?> call = it.next();
+            if (runningPerRepository.count(call.repository) >= maxPerRepository
+                    || runningPerCommandType.count(call.commandClass) >= maxPerCommandType) {
+                continue;
+            }
+            it.remove();
+            running++;
+            runningPerRepository.add(call.repository);
+            runningPerCommandType.add(call.commandClass);
+            commandExecutor.execute(call);
+        }
+    }
+
+    /**
+     * @param started whether the command actually ran, commands cancelled before starting are not
+     *        counted in the average run time
+     */
+    private synchronized void finished(CommandCall<?> call, boolean started, double runSeconds) {
+        running--;
+        runningPerRepository.remove(call.repository);
+        runningPerCommandType.remove(call.commandClass);
+        if (started) {
+            averageRunSeconds = 0.8 * averageRunSeconds + 0.2 * runSeconds;
+        }
+        dispatch();
+    }
+
+    /**
+     * @return whether the command was still waiting and hence removed from the queue
+     */
+    private synchronized boolean dequeue(CommandCall<?> call) {
+        return queue.remove(call);
+    }
+
     public Optional<AsyncCommand<?>> getAndPruneIfFinished(final String taskId) {
         Optional<AsyncCommand<?>> cmd = get(taskId);
         if (cmd.isPresent() && cmd.get().isDone()) {
@@ -101,15 +265,12 @@ public class AsyncContext {
 
         private final CommandCall<T> command;
 
-        private final Future<T> future;
-
         private final String taskId;
 
         private String description;
 
-        public AsyncCommand(CommandCall<T> command, Future<T> future, String description) {
+        private AsyncCommand(CommandCall<T> command, String description) {
             this.command = command;
-            this.future = future;
             this.description = description;
             this.taskId = String.valueOf(ID_SEQ.incrementAndGet());
         }
@@ -128,6 +289,10 @@ public class AsyncContext {
             return command.status;
         }
 
+        public Priority getPriority() {
+            return command.priority;
+        }
+
         public String getStatusLine() {
             return command.progress.getDescription();
         }
@@ -137,11 +302,27 @@ public class AsyncContext {
         }
 
         public boolean isDone() {
-            return future.isDone();
+            return command.future.isDone();
+        }
+
+        /**
+         * Waits up to the given time for the command to be done.
+         * 
+         * @return {@code true} if the command is done, {@code false} if the time elapsed first
+         */
+        public boolean awaitDone(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                command.future.get(timeout, unit);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                // failed, but done
+            }
+            return true;
         }
 
         public T get() throws InterruptedException, ExecutionException {
-            return future.get();
+            return command.future.get();
         }
 
         public String getTaskId() {
@@ -157,48 +338,80 @@ public class AsyncContext {
             return (Class<? extends AbstractGeoGigOp<?>>) command.commandClass;
         }
 
+        /**
+         * Cancels the command right away if it's still waiting, or asks it to stop through its
+         * {@link AbstractGeoGigOp#getProgressListener() progress listener} if it's running.
+         */
         public void tryCancel() {
             if (!isDone()) {
-                command.command.getProgressListener().cancel();
+                command.cancel();
             }
         }
     }
 
-    private static class CommandCall<T> implements Callable<T> {
+    private class CommandCall<T> implements Runnable {
 
         private final AbstractGeoGigOp<T> command;
 
         private final Class<?> commandClass;
 
-        private Status status;
+        private final String repository;
+
+        private final Priority priority;
+
+        private final long sequence;
+
+        private volatile Status status;
 
         private final DefaultProgressListener progress = new DefaultProgressListener();
 
-        public CommandCall(AbstractGeoGigOp<T> command) {
+        private final SettableFuture<T> future = SettableFuture.create();
+
+        public CommandCall(AbstractGeoGigOp<T> command, Priority priority) {
             this.command = command;
             this.commandClass = command.getClass();
+            Context context = command.context();
+            Repository repo = context == null ? null : context.repository();
+            this.repository = String.valueOf(repo == null ? null : repo.getLocation());
+            this.priority = priority;
+            this.sequence = SUBMIT_SEQ.incrementAndGet();
             this.status = Status.WAITING;
+            // set right away for cancellation to reach the command even before it starts
+            command.setProgressListener(progress);
         }
 
-        @Override
-        public T call() throws Exception {
-            if (command.getProgressListener().isCanceled()) {
+        void cancel() {
+            progress.cancel();
+            if (dequeue(this)) {
                 this.status = Status.CANCELLED;
-                return null;
+                future.set(null);
             }
-            this.status = Status.RUNNING;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            boolean started = false;
             try {
-                command.setProgressListener(progress);
+                if (progress.isCanceled()) {
+                    this.status = Status.CANCELLED;
+                    future.set(null);
+                    return;
+                }
+                started = true;
+                this.status = Status.RUNNING;
                 T result = command.call();
-                if (command.getProgressListener().isCanceled()) {
+                if (progress.isCanceled()) {
                     this.status = Status.CANCELLED;
                 } else {
                     this.status = Status.FINISHED;
                 }
-                return result;
+                future.set(result);
             } catch (Throwable e) {
                 this.status = Status.FAILED;
-                throw e;
+                future.setException(e);
+            } finally {
+                finished(this, started, (System.nanoTime() - start) / 1e9);
             }
         }
     }
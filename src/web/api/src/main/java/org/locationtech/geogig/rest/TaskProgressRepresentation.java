@@ -0,0 +1,92 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.AsyncContext.Status;
+import org.restlet.data.MediaType;
+
+import com.google.common.base.Strings;
+
+/**
+ * Streams the progress of an async command as <a
+ * href="http://www.w3.org/TR/eventsource/">server-sent events</a> until the command is done, so
+ * that clients don't need to poll the task status.
+ * <p>
+ * Each event is a {@code progress} event whose data is a JSON object with the task {@code id},
+ * {@code status}, and the current {@code task} and {@code amount} of progress if known. An event
+ * is sent whenever any of them changes, and the stream ends with the event for the final status.
+ * The result of the command is then available at the task's status resource.
+ */
+class TaskProgressRepresentation extends WriterRepresentation {
+
+    static final MediaType EVENT_STREAM = new MediaType("text/event-stream",
+            "Server-sent events");
+
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * Number of polls with no changes after which a comment is sent to keep the connection alive
+     */
+    private static final int KEEP_ALIVE_POLLS = 60;
+
+    private final AsyncCommand<?> cmd;
+
+    public TaskProgressRepresentation(AsyncCommand<?> cmd) {
+        super(EVENT_STREAM);
+        this.cmd = cmd;
+    }
+
+    @Override
+    public void write(Writer writer) throws IOException {
+        String last = null;
+        int idlePolls = 0;
+        boolean done;
+        do {
+            try {
+                done = cmd.awaitDone(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            String event = event(cmd.getStatus());
+            if (!event.equals(last)) {
+                writer.write("event: progress\ndata: ");
+                writer.write(event);
+                writer.write("\n\n");
+                writer.flush();
+                last = event;
+                idlePolls = 0;
+            } else if (++idlePolls == KEEP_ALIVE_POLLS) {
+                writer.write(":\n\n");
+                writer.flush();
+                idlePolls = 0;
+            }
+        } while (!done);
+    }
+
+    private String event(Status status) {
+        StringBuilder sb = new StringBuilder("{\"id\":").append(JSONObject.quote(cmd.getTaskId()))
+                .append(",\"status\":").append(JSONObject.quote(status.toString()));
+        if (status == Status.RUNNING) {
+            String statusLine = cmd.getStatusLine();
+            if (!Strings.isNullOrEmpty(statusLine)) {
+                sb.append(",\"task\":").append(JSONObject.quote(statusLine));
+            }
+            sb.append(",\"amount\":").append(cmd.getProgress());
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -42,6 +42,9 @@ import com.google.common.base.Strings;
  * 10 minutes.
  * <li>prune: boolean, whether to prune a finished task (requires a taskId)
  * <li>cancel: boolean, if true, an attempt to cancel the tasks given by {@code taskId} is made.
+ * <li>stream: boolean, if true, the progress of the task given by {@code taskId} is streamed as
+ * server-sent events until it's done, instead of returning its current status. See
+ * {@link TaskProgressRepresentation}.
  * </ul>
  */
 public class TaskStatusResource extends Resource {
@@ -68,6 +71,8 @@ public class TaskStatusResource extends Resource {
                 .getFirstValue("prune"));
         final boolean cancel = Boolean.valueOf(getRequest().getResourceRef().getQueryAsForm()
                 .getFirstValue("cancel"));
+        final boolean stream = Boolean.valueOf(getRequest().getResourceRef().getQueryAsForm()
+                .getFirstValue("stream"));
         final AsyncContext asyncContext = AsyncContext.get();
 
         MediaType mediaType = variant.getMediaType();
@@ -90,6 +95,9 @@ public class TaskStatusResource extends Resource {
         }
 
         AsyncCommand<?> command = cmd.get();
+        if (stream && !cancel) {
+            return new TaskProgressRepresentation(command);
+        }
         if (cancel) {
             command.tryCancel();
             try {
@@ -22,12 +22,22 @@ public class Variants {
     public static final MediaType CSV_MEDIA_TYPE = new MediaType("text/csv",
             "Comma-separated Values");
 
+    /**
+     * Compact binary encoding of the web API command responses
+     * 
+     * @see org.locationtech.geogig.web.api.BinaryXMLStreamWriter
+     */
+    public static final MediaType BINARY_MEDIA_TYPE = new MediaType(
+            "application/x-geogig-binary", "GeoGig binary response");
+
     public static final Variant JSON = new Variant(MediaType.APPLICATION_JSON);
 
     public static final Variant XML = new Variant(MediaType.APPLICATION_XML);
 
     public static final Variant CSV = new Variant(CSV_MEDIA_TYPE);
 
+    public static final Variant BINARY = new Variant(BINARY_MEDIA_TYPE);
+
     public static Optional<Variant> getVariantByExtension(Request request, List<Variant> supported) {
         String extension = RESTUtils.getStringAttribute(request, "extension");
         Variant v = null;
@@ -37,6 +47,8 @@ public class Variants {
             v = JSON;
         } else if ("csv".equals(extension) && supported.contains(CSV)) {
             v = CSV;
+        } else if ("bin".equals(extension) && supported.contains(BINARY)) {
+            v = BINARY;
         }
         return Optional.fromNullable(v);
     }
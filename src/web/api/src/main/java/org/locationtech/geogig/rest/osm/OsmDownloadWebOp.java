@@ -23,6 +23,9 @@ import org.locationtech.geogig.osm.internal.OSMUpdateOp;
 import org.locationtech.geogig.osm.internal.OSMUtils;
 import org.locationtech.geogig.rest.AsyncContext;
 import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.AsyncContext.Priority;
+import org.locationtech.geogig.rest.AsyncContext.RejectedCommandException;
+import org.locationtech.geogig.rest.RestletException;
 import org.locationtech.geogig.rest.TransactionalResource;
 import org.locationtech.geogig.rest.Variants;
 import org.locationtech.geogig.web.api.CommandSpecException;
@@ -30,6 +33,7 @@ import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
 import org.restlet.resource.Representation;
 import org.restlet.resource.Variant;
 
@@ -112,7 +116,13 @@ public class OsmDownloadWebOp extends TransactionalResource {
         String description = String
                 .format("osm download filter: %s, bbox: %s, mapping: %s, update: %s, rebase: %s, repository: %s",
                         filterFileArg, bboxArg, mappingFileArg, update, rebase, repo);
-        asyncCommand = AsyncContext.get().run(command, description);
+        try {
+            // full downloads are queued behind shorter tasks, like updates
+            Priority priority = update ? Priority.NORMAL : Priority.LOW;
+            asyncCommand = AsyncContext.get().run(command, description, priority);
+        } catch (RejectedCommandException e) {
+            throw new RestletException(e.getMessage(), Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        }
 
         final String rootPath = request.getRootRef().toString();
         MediaType mediaType = variant.getMediaType();
@@ -17,6 +17,9 @@ import org.locationtech.geogig.osm.internal.OSMImportOp;
 import org.locationtech.geogig.osm.internal.OSMReport;
 import org.locationtech.geogig.rest.AsyncContext;
 import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.AsyncContext.Priority;
+import org.locationtech.geogig.rest.AsyncContext.RejectedCommandException;
+import org.locationtech.geogig.rest.RestletException;
 import org.locationtech.geogig.rest.TransactionalResource;
 import org.locationtech.geogig.rest.Variants;
 import org.locationtech.geogig.web.api.CommandSpecException;
@@ -24,6 +27,7 @@ import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
 import org.restlet.resource.Representation;
 import org.restlet.resource.Variant;
 
@@ -79,7 +83,12 @@ public class OsmImportWebOp extends TransactionalResource {
 
         URL repo = context.repository().getLocation();
         String description = String.format("osm import %s, repository: %s", urlOrFilepath, repo);
-        asyncCommand = AsyncContext.get().run(command, description);
+        try {
+            // full imports are queued behind shorter tasks
+            asyncCommand = AsyncContext.get().run(command, description, Priority.LOW);
+        } catch (RejectedCommandException e) {
+            throw new RestletException(e.getMessage(), Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        }
 
         final String rootPath = request.getRootRef().toString();
         MediaType mediaType = variant.getMediaType();
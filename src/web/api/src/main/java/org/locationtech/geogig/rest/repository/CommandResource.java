@@ -9,6 +9,8 @@
  */
 package org.locationtech.geogig.rest.repository;
 
+import static org.locationtech.geogig.rest.Variants.BINARY;
+import static org.locationtech.geogig.rest.Variants.BINARY_MEDIA_TYPE;
 import static org.locationtech.geogig.rest.Variants.CSV;
 import static org.locationtech.geogig.rest.Variants.CSV_MEDIA_TYPE;
 import static org.locationtech.geogig.rest.Variants.JSON;
@@ -17,6 +19,7 @@ import static org.locationtech.geogig.rest.Variants.getVariantByExtension;
 import static org.locationtech.geogig.rest.repository.RESTUtils.getGeogig;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.List;
 import java.util.UUID;
@@ -32,6 +35,7 @@ import org.codehaus.jettison.mapped.MappedXMLStreamWriter;
 import org.locationtech.geogig.api.GeoGIG;
 import org.locationtech.geogig.rest.RestletException;
 import org.locationtech.geogig.rest.WriterRepresentation;
+import org.locationtech.geogig.web.api.BinaryXMLStreamWriter;
 import org.locationtech.geogig.web.api.CommandBuilder;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
@@ -64,6 +68,7 @@ public class CommandResource extends Resource {
         variants.add(XML);
         variants.add(JSON);
         variants.add(CSV);
+        variants.add(BINARY);
     }
 
     @Override
@@ -156,6 +161,8 @@ public class CommandResource extends Resource {
                 retval = MediaType.APPLICATION_JSON;
             } else if (requested.equalsIgnoreCase("csv")) {
                 retval = CSV_MEDIA_TYPE;
+            } else if (requested.equalsIgnoreCase("binary")) {
+                retval = BINARY_MEDIA_TYPE;
             } else {
                 throw new RestletException("Invalid output_format '" + requested + "'",
                         org.restlet.data.Status.CLIENT_ERROR_BAD_REQUEST);
@@ -189,9 +196,11 @@ public class CommandResource extends Resource {
                 }
                 return new StreamWriterRepresentation(format, streamContent);
             }
-            if (format != MediaType.APPLICATION_JSON && format != MediaType.APPLICATION_XML) {
+            if (format != MediaType.APPLICATION_JSON && format != MediaType.APPLICATION_XML
+                    && format != BINARY_MEDIA_TYPE) {
                 throw new CommandSpecException(
-                        "Unsupported Media Type: This response is only compatible with application/json and application/xml.");
+                        "Unsupported Media Type: This response is only compatible with application/json, application/xml and "
+                                + BINARY_MEDIA_TYPE.getName() + ".");
             }
             return new JettisonRepresentation(format, responseContent, callback);
         }
@@ -219,6 +228,26 @@ public class CommandResource extends Resource {
             this.callback = callback;
         }
 
+        /**
+         * Writes the binary format straight to the output stream, the text formats through
+         * {@link #write(Writer)}
+         */
+        @Override
+        public void write(OutputStream outputStream) throws IOException {
+            if (getMediaType() != BINARY_MEDIA_TYPE) {
+                super.write(outputStream);
+                return;
+            }
+            try {
+                XMLStreamWriter binary = new BinaryXMLStreamWriter(outputStream);
+                impl.write(new ResponseWriter(binary));
+                binary.flush();
+                binary.close();
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            }
+        }
+
         private XMLStreamWriter createWriter(Writer writer) {
             final MediaType mediaType = getMediaType();
             XMLStreamWriter xml;
@@ -24,9 +24,10 @@ import org.locationtech.geogig.api.GeoGIG;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RepositoryFilter;
 import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.plumbing.DiffTree;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
-import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.remote.BinaryPackedChanges;
+import org.locationtech.geogig.remote.FilterBoundsPredicate;
 import org.locationtech.geogig.remote.FilteredDiffIterator;
 import org.locationtech.geogig.repository.Repository;
 import org.restlet.Context;
@@ -40,6 +41,7 @@ import org.restlet.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -154,9 +156,13 @@ public class FilteredChangesResource extends Finder {
                     parent = commit.getParentIds().get(0);
                 }
 
-                Iterator<DiffEntry> changes = ggit.command(DiffOp.class)
-                        .setNewVersion(commit.getId()).setOldVersion(parent).setReportTrees(true)
-                        .call();
+                // prune the buckets and features out of the filter extent while walking the trees
+                Optional<FilterBoundsPredicate> boundsFilter = FilterBoundsPredicate.create(filter,
+                        tracked, repository.objectDatabase());
+                Iterator<DiffEntry> changes = ggit.command(DiffTree.class)
+                        .setNewVersion(commit.getId().toString())
+                        .setOldVersion(parent.toString()).setReportTrees(true)
+                        .setCustomFilter(boundsFilter.orNull()).call();
                 FilteredDiffIterator filteredChanges = new FilteredDiffIterator(changes,
                         repository, filter) {
                     @Override
@@ -169,6 +175,8 @@ public class FilteredChangesResource extends Finder {
                         return false;
                     }
                 };
+                // the changes pruned by the bounds filter make the commit sparse too
+                filteredChanges.setBoundsFilter(boundsFilter.orNull());
 
                 getResponse().setEntity(
                         new FilteredDiffIteratorRepresentation(new BinaryPackedChanges(repository),
@@ -0,0 +1,398 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An {@link XMLStreamWriter} that encodes the response elements in a compact binary form instead
+ * of XML or JSON text, so that machine clients can consume large responses with much less parsing
+ * effort, and written straight to the output stream as they're produced.
+ * <p>
+ * The stream starts with the {@code GGXB} magic bytes and a format version byte, followed by a
+ * sequence of tokens, each one a token type byte and its arguments:
+ * <ul>
+ * <li>{@code 1} start element: name
+ * <li>{@code 2} attribute of the last started element: name, value
+ * <li>{@code 3} character content: value
+ * <li>{@code 4} end element
+ * <li>{@code 5} end of document
+ * </ul>
+ * Strings are encoded as their UTF-8 length as a variable length integer followed by the UTF-8
+ * bytes. Names are encoded as a variable length integer index into a table of the names already
+ * seen in the stream, and the first time a name appears its index is the table size and it's
+ * followed by the name string. Consecutive character content tokens shall be concatenated.
+ * <p>
+ * Comments, processing instructions and DTDs are not encoded, and namespace declarations are
+ * encoded as {@code xmlns} attributes. Use {@link #replay(InputStream, XMLStreamWriter)} to
+ * decode a binary stream.
+ */
+public class BinaryXMLStreamWriter implements XMLStreamWriter {
+
+    private static final byte[] MAGIC = { 'G', 'G', 'X', 'B' };
+
+    private static final int VERSION = 1;
+
+    private static final int START_ELEMENT = 1, ATTRIBUTE = 2, CHARACTERS = 3, END_ELEMENT = 4,
+            END_DOCUMENT = 5;
+
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> names = Maps.newHashMap();
+
+    private boolean headerWritten;
+
+    /**
+     * Whether the last started element was an empty one, and hence needs to be ended before the
+     * next token that's not one of its attributes
+     */
+    private boolean emptyElement;
+
+    private NamespaceContext namespaceContext;
+
+    /**
+     * @param out the stream to write to, it's not closed by {@link #close()}
+     */
+    public BinaryXMLStreamWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+    }
+
+    private void token(int type) throws XMLStreamException {
+        try {
+            if (!headerWritten) {
+                out.write(MAGIC);
+                out.write(VERSION);
+                headerWritten = true;
+            }
+            if (emptyElement && type != ATTRIBUTE) {
+                emptyElement = false;
+                out.write(END_ELEMENT);
+            }
+            out.write(type);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void name(String name) throws XMLStreamException {
+        try {
+            Integer index = names.get(name);
+            if (index == null) {
+                int newIndex = names.size();
+                names.put(name, Integer.valueOf(newIndex));
+                writeVarInt(newIndex);
+                writeString(name);
+            } else {
+                writeVarInt(index.intValue());
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void string(String value) throws XMLStreamException {
+        try {
+            writeString(value);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        token(START_ELEMENT);
+        name(localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+            throws XMLStreamException {
+        writeStartElement(localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        writeStartElement(qualifiedName(prefix, localName));
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeStartElement(localName);
+        emptyElement = true;
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+            throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        writeEmptyElement(qualifiedName(prefix, localName));
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        token(END_ELEMENT);
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        token(END_DOCUMENT);
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        token(ATTRIBUTE);
+        name(localName);
+        string(value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        writeAttribute(qualifiedName(prefix, localName), value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (prefix == null || prefix.isEmpty() || "xmlns".equals(prefix)) {
+            writeDefaultNamespace(namespaceURI);
+        } else {
+            writeAttribute("xmlns:" + prefix, namespaceURI);
+        }
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        writeAttribute("xmlns", namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        // not encoded
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        // not encoded
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+            throws XMLStreamException {
+        // not encoded
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        // not encoded
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references are not supported");
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        // the header is written before the first token
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        token(CHARACTERS);
+        string(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return namespaceContext == null ? null : namespaceContext.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        // prefixes are encoded as part of the element and attribute names
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        // namespaces are encoded as attributes
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        this.namespaceContext = context;
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return namespaceContext;
+    }
+
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+
+    /**
+     * Decodes a stream written by a {@code BinaryXMLStreamWriter}, writing its contents to
+     * {@code target}, up to the end of the document.
+     *
+     * @param in the binary stream to decode
+     * @param target where to write the decoded document, for example an XML or JSON writer
+     */
+    public static void replay(InputStream in, XMLStreamWriter target) throws IOException,
+            XMLStreamException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a binary response stream");
+        }
+        int version = data.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary response version: " + version);
+        }
+        List<String> names = Lists.newArrayList();
+        target.writeStartDocument();
+        while (true) {
+            int type = data.read();
+            switch (type) {
+            case START_ELEMENT:
+                target.writeStartElement(readName(data, names));
+                break;
+            case ATTRIBUTE:
+                target.writeAttribute(readName(data, names), readString(data));
+                break;
+            case CHARACTERS:
+                target.writeCharacters(readString(data));
+                break;
+            case END_ELEMENT:
+                target.writeEndElement();
+                break;
+            case END_DOCUMENT:
+                target.writeEndDocument();
+                target.flush();
+                return;
+            case -1:
+                throw new EOFException("Binary response stream ended before the end of document");
+            default:
+                throw new IOException("Unknown token type: " + type);
+            }
+        }
+    }
+
+    private static String readName(DataInputStream in, List<String> names) throws IOException {
+        int index = readVarInt(in);
+        if (index == names.size()) {
+            names.add(readString(in));
+        } else if (index > names.size()) {
+            throw new IOException("Invalid name index: " + index);
+        }
+        return names.get(index);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
@@ -94,6 +94,10 @@ public class BlameWebOp extends AbstractWebAPICommand {
                 throw new CommandSpecException("The supplied path does not resolve to a feature");
             case FEATURE_NOT_FOUND:
                 throw new CommandSpecException("The supplied path does not exist");
+            case PATH_NOT_TREE:
+                throw new CommandSpecException("The supplied path does not resolve to a tree");
+            default:
+                throw e;
             }
         }
     }
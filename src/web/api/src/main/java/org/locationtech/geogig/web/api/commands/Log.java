@@ -31,6 +31,7 @@ import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.api.plumbing.ParseTimestamp;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.RevParse;
+import org.locationtech.geogig.api.plumbing.diff.CommitChangeCounts;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.api.porcelain.LogOp;
@@ -275,8 +276,15 @@ public class Log extends AbstractWebAPICommand {
                     int modified = 0;
                     int removed = 0;
 
-                    // If it's a shallow clone, the commit may not exist
-                    if (parent.equals(ObjectId.NULL) || geogig.stagingDatabase().exists(parent)) {
+                    Optional<CommitChangeCounts> counts = CommitChangeCounts.read(
+                            geogig.graphDatabase(), input.getId());
+                    if (counts.isPresent() && counts.get().covers(pathFilter)) {
+                        added = (int) counts.get().getAdded(pathFilter);
+                        modified = (int) counts.get().getModified(pathFilter);
+                        removed = (int) counts.get().getRemoved(pathFilter);
+                    } else if (parent.equals(ObjectId.NULL)
+                            || geogig.stagingDatabase().exists(parent)) {
+                        // If it's a shallow clone, the commit may not exist
                         final Iterator<DiffEntry> diff = geogig.command(DiffOp.class)
                                 .setOldVersion(parent).setNewVersion(input.getId())
                                 .setFilter(pathFilter).call();
@@ -20,6 +20,7 @@ import org.locationtech.geogig.api.GeogigTransaction;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.BuildChangedPathIndex;
 import org.locationtech.geogig.api.plumbing.RefParse;
 import org.locationtech.geogig.api.plumbing.ResolveTreeish;
 import org.locationtech.geogig.api.plumbing.TransactionBegin;
@@ -74,7 +75,8 @@ public class PushManager {
      * This is called when the machine at the specified ip address is finished pushing objects to
      * the server. This causes the ref given by {@code refSpec} to be updated to point to the given
      * {@code newCommit} object id, as well as the {@link Ref#WORK_HEAD WORK_HEAD} and
-     * {@link Ref#STAGE_HEAD STAGE_HEAD} refs if {@code refSpec} is the current branch.
+     * {@link Ref#STAGE_HEAD STAGE_HEAD} refs if {@code refSpec} is the current branch. The changed
+     * paths index of the pushed commits is updated afterwards.
      * 
      * @param geogig the geogig of the local repository
      * @param ipAddress the remote machine that is pushing objects
@@ -86,7 +88,8 @@ public class PushManager {
             throw new RuntimeException("Tried to end a connection that didn't exist.");
         }
 
-        // Do not use the geogig instance after this, but the tx one!
+        ObjectId oldCommit = ObjectId.NULL;
+        // Do not use the geogig instance within the transaction, but the tx one!
         GeogigTransaction tx = geogig.command(TransactionBegin.class).call();
         try {
             Optional<Ref> oldRef = tx.command(RefParse.class).setName(refspec).call();
@@ -100,6 +103,7 @@ public class PushManager {
                 LOGGER.info("Updating ref '{}'[{}] -> {}", refName, oldRef.get().getObjectId(),
                         newCommit);
                 refName = oldRef.get().getName();
+                oldCommit = oldRef.get().getObjectId();
             } else {
                 LOGGER.info("Creating new ref '{}' -> {}", refName, newCommit);
             }
@@ -122,5 +126,14 @@ public class PushManager {
             tx.abort();
             throw Throwables.propagate(e);
         }
+
+        // the graph database is not transactional, so index the pushed commits once the ref
+        // update is committed
+        BuildChangedPathIndex buildChangedPaths = geogig.command(BuildChangedPathIndex.class)
+                .addTip(newCommit);
+        if (!oldCommit.isNull()) {
+            buildChangedPaths.addBoundary(oldCommit);
+        }
+        buildChangedPaths.call();
     }
 }
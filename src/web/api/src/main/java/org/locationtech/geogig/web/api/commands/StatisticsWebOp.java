@@ -12,18 +12,22 @@ package org.locationtech.geogig.web.api.commands;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.geotools.util.Range;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevPerson;
+import org.locationtech.geogig.api.plumbing.DiffCount;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.plumbing.ParseTimestamp;
 import org.locationtech.geogig.api.plumbing.RevParse;
-import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
-import org.locationtech.geogig.api.porcelain.DiffOp;
+import org.locationtech.geogig.api.plumbing.diff.CommitHistorySummary;
+import org.locationtech.geogig.api.plumbing.diff.DiffObjectCount;
 import org.locationtech.geogig.api.porcelain.LogOp;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandContext;
@@ -32,7 +36,10 @@ import org.locationtech.geogig.web.api.ResponseWriter;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * List certain statistics of repository.
@@ -60,91 +67,121 @@ public class StatisticsWebOp extends AbstractWebAPICommand {
 
     /**
      * Runs the command and builds the appropriate response
+     * <p>
+     * When neither {@code path} nor {@code since} are given, the commit counts and authors are
+     * read from the {@link CommitHistorySummary history summary} of the requested commit, and the
+     * feature type sizes too if the working tree is at that commit, instead of walking the history
+     * and the trees. Summaries are only read here, commits with no stored summary fall back to
+     * walking the history, as a request for statistics doesn't write to the repository.
      * 
      * @param context - the context to use for this command
      */
     @Override
     public void run(CommandContext context) {
         final Context geogig = this.getCommandLocator(context);
-        final List<FeatureTypeStats> stats = Lists.newArrayList();
-        LogOp logOp = geogig.command(LogOp.class).setFirstParentOnly(true);
-        final Iterator<RevCommit> log;
-        if (since != null && !since.trim().isEmpty()) {
-            Date untilTime = new Date();
-            Date sinceTime = new Date(geogig.command(ParseTimestamp.class).setString(since).call());
-            logOp.setTimeRange(new Range<Date>(Date.class, sinceTime, untilTime));
-        }
+        final boolean hasPath = path != null && !path.trim().isEmpty();
+        final boolean hasSince = since != null && !since.trim().isEmpty();
+
+        Optional<ObjectId> tip = Optional.absent();
         if (this.until != null) {
-            Optional<ObjectId> until;
-            until = geogig.command(RevParse.class).setRefSpec(this.until).call();
-            Preconditions.checkArgument(until.isPresent(), "Object not found '%s'", this.until);
-            logOp.setUntil(until.get());
+            tip = geogig.command(RevParse.class).setRefSpec(this.until).call();
+            Preconditions.checkArgument(tip.isPresent(), "Object not found '%s'", this.until);
+        } else if (!hasPath && !hasSince) {
+            tip = geogig.command(RevParse.class).setRefSpec(Ref.HEAD).call();
         }
-
-        LsTreeOp lsTreeOp = geogig.command(LsTreeOp.class)
-                .setStrategy(LsTreeOp.Strategy.TREES_ONLY);
-        if (path != null && !path.trim().isEmpty()) {
-            lsTreeOp.setReference(path);
-            logOp.addPath(path);
+        Optional<CommitHistorySummary> summary = Optional.absent();
+        if (!hasPath && !hasSince && tip.isPresent()) {
+            summary = CommitHistorySummary.read(geogig.graphDatabase(), tip.get());
         }
-        final Iterator<NodeRef> treeIter = lsTreeOp.call();
+        final RevCommit tipCommit = summary.isPresent() ? geogig.repository().getCommit(
+                tip.get()) : null;
 
-        while (treeIter.hasNext()) {
-            NodeRef node = treeIter.next();
-            stats.add(new FeatureTypeStats(node.path(), context.getGeoGIG().getRepository()
-                    .getTree(node.objectId()).size()));
+        final List<FeatureTypeStats> stats = Lists.newArrayList();
+        final Optional<ObjectId> workTree = geogig.command(RevParse.class)
+                .setRefSpec(Ref.WORK_HEAD).call();
+        if (summary.isPresent() && workTree.isPresent()
+                && tipCommit.getTreeId().equals(workTree.get())) {
+            for (Entry<String, Long> size : summary.get().getTreeSizes(null).entrySet()) {
+                stats.add(new FeatureTypeStats(size.getKey(), size.getValue().longValue()));
+            }
+        } else {
+            LsTreeOp lsTreeOp = geogig.command(LsTreeOp.class).setStrategy(
+                    LsTreeOp.Strategy.TREES_ONLY);
+            if (hasPath) {
+                lsTreeOp.setReference(path);
+            }
+            final Iterator<NodeRef> treeIter = lsTreeOp.call();
+            while (treeIter.hasNext()) {
+                NodeRef node = treeIter.next();
+                stats.add(new FeatureTypeStats(node.path(), context.getGeoGIG().getRepository()
+                        .getTree(node.objectId()).size()));
+            }
         }
-        log = logOp.call();
 
         RevCommit firstCommit = null;
         RevCommit lastCommit = null;
         int totalCommits = 0;
-        final List<RevPerson> authors = Lists.newArrayList();
+        final List<RevPerson> authors;
+        if (summary.isPresent()) {
+            lastCommit = tipCommit;
+            if (summary.get().getNumCommits() > 1) {
+                firstCommit = geogig.repository().getCommit(summary.get().getRootCommitId());
+            }
+            totalCommits = (int) summary.get().getNumCommits();
+            authors = summary.get().getAuthors();
+        } else {
+            LogOp logOp = geogig.command(LogOp.class).setFirstParentOnly(true);
+            if (hasSince) {
+                Date untilTime = new Date();
+                Date sinceTime = new Date(geogig.command(ParseTimestamp.class).setString(since)
+                        .call());
+                logOp.setTimeRange(new Range<Date>(Date.class, sinceTime, untilTime));
+            }
+            if (tip.isPresent()) {
+                logOp.setUntil(tip.get());
+            }
+            if (hasPath) {
+                logOp.addPath(path);
+            }
+            final Iterator<RevCommit> log = logOp.call();
 
-        if (log.hasNext()) {
-            lastCommit = log.next();
-            authors.add(lastCommit.getAuthor());
-            totalCommits++;
-        }
-        while (log.hasNext()) {
-            firstCommit = log.next();
-            RevPerson newAuthor = firstCommit.getAuthor();
-            // If the author isn't defined, use the committer for the purposes of statistics.
-            if (!newAuthor.getName().isPresent() && !newAuthor.getEmail().isPresent()) {
-                newAuthor = firstCommit.getCommitter();
+            authors = Lists.newArrayList();
+            // name and email of the authors found so far
+            final Set<List<Optional<String>>> authorKeys = Sets.newHashSet();
+
+            if (log.hasNext()) {
+                lastCommit = log.next();
+                authors.add(lastCommit.getAuthor());
+                authorKeys.add(authorKey(lastCommit.getAuthor()));
+                totalCommits++;
             }
-            if (newAuthor.getName().isPresent() || newAuthor.getEmail().isPresent()) {
-                boolean authorFound = false;
-                for (RevPerson author : authors) {
-                    if (newAuthor.getName().equals(author.getName())
-                            && newAuthor.getEmail().equals(author.getEmail())) {
-                        authorFound = true;
-                        break;
-                    }
+            while (log.hasNext()) {
+                firstCommit = log.next();
+                RevPerson newAuthor = firstCommit.getAuthor();
+                // If the author isn't defined, use the committer for the purposes of statistics.
+                if (!newAuthor.getName().isPresent() && !newAuthor.getEmail().isPresent()) {
+                    newAuthor = firstCommit.getCommitter();
                 }
-                if (!authorFound) {
-                    authors.add(newAuthor);
+                if (newAuthor.getName().isPresent() || newAuthor.getEmail().isPresent()) {
+                    if (authorKeys.add(authorKey(newAuthor))) {
+                        authors.add(newAuthor);
+                    }
                 }
+                totalCommits++;
             }
-            totalCommits++;
         }
         int addedFeatures = 0;
         int modifiedFeatures = 0;
         int removedFeatures = 0;
-        if (since != null && !since.trim().isEmpty() && firstCommit != null && lastCommit != null) {
-            final Iterator<DiffEntry> diff = geogig.command(DiffOp.class)
-                    .setOldVersion(firstCommit.getId()).setNewVersion(lastCommit.getId())
-                    .setFilter(path).call();
-            while (diff.hasNext()) {
-                DiffEntry entry = diff.next();
-                if (entry.changeType() == DiffEntry.ChangeType.ADDED) {
-                    addedFeatures++;
-                } else if (entry.changeType() == DiffEntry.ChangeType.MODIFIED) {
-                    modifiedFeatures++;
-                } else {
-                    removedFeatures++;
-                }
-            }
+        if (hasSince && firstCommit != null && lastCommit != null) {
+            // only the counts are needed, so there's no need to build the diff entries
+            final DiffObjectCount diff = geogig.command(DiffCount.class)
+                    .setOldVersion(firstCommit.getId().toString())
+                    .setNewVersion(lastCommit.getId().toString())
+                    .addFilter(Strings.emptyToNull(path)).call();
+            addedFeatures = (int) diff.getFeaturesAdded();
+            modifiedFeatures = (int) diff.getFeaturesChanged();
+            removedFeatures = (int) diff.getFeaturesRemoved();
         }
 
         final RevCommit first = firstCommit;
@@ -163,6 +200,10 @@ public class StatisticsWebOp extends AbstractWebAPICommand {
         });
     }
 
+    private static List<Optional<String>> authorKey(RevPerson author) {
+        return ImmutableList.of(author.getName(), author.getEmail());
+    }
+
     public class FeatureTypeStats {
         long numFeatures;
 
@@ -0,0 +1,320 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.AsyncContext.AsyncCommand;
+import org.locationtech.geogig.rest.AsyncContext.Priority;
+import org.locationtech.geogig.rest.AsyncContext.RejectedCommandException;
+import org.locationtech.geogig.rest.AsyncContext.Status;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class AsyncContextTest extends Assert {
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * The names of the commands in the order they started
+     */
+    private final List<String> started = new CopyOnWriteArrayList<String>();
+
+    /**
+     * A command that runs until released, and returns its name
+     */
+    private class BlockingOp extends AbstractGeoGigOp<String> {
+
+        final String name;
+
+        final CountDownLatch running = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingOp(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected String _call() {
+            started.add(name);
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (getProgressListener().isCanceled()) {
+                return null;
+            }
+            return name;
+        }
+
+        void awaitRunning() throws InterruptedException {
+            assertTrue(name + " didn't start", running.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private class OtherBlockingOp extends BlockingOp {
+        OtherBlockingOp(String name) {
+            super(name);
+        }
+    }
+
+    private AsyncContext create(int maxRunning, int maxPerRepository, int maxPerCommandType,
+            int maxQueued) {
+        executor = new ScheduledThreadPoolExecutor(maxRunning);
+        return new AsyncContext(executor, maxRunning, maxPerRepository, maxPerCommandType,
+                maxQueued);
+    }
+
+    @After
+    public void after() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T extends AbstractGeoGigOp<?>> T onRepository(T op, String location)
+            throws Exception {
+        Repository repository = mock(Repository.class);
+        when(repository.getLocation()).thenReturn(new URL("file:/" + location));
+        Context context = mock(Context.class);
+        when(context.repository()).thenReturn(repository);
+        op.setContext(context);
+        return op;
+    }
+
+    private static void awaitDone(AsyncCommand<?> command) throws InterruptedException {
+        assertTrue(command.awaitDone(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        AsyncContext context = create(2, 2, 2, 10);
+        BlockingOp op = new BlockingOp("op");
+        AsyncCommand<String> command = context.run(op, "description");
+        assertEquals("description", command.getDescription());
+        assertEquals(Priority.NORMAL, command.getPriority());
+        assertEquals(BlockingOp.class, command.getCommandClass());
+        op.awaitRunning();
+        assertEquals(Status.RUNNING, command.getStatus());
+        assertFalse(command.isDone());
+
+        op.release.countDown();
+        awaitDone(command);
+        assertEquals(Status.FINISHED, command.getStatus());
+        assertEquals("op", command.get());
+        assertSame(command, context.getAndPruneIfFinished(command.getTaskId()).get());
+        assertFalse(context.get(command.getTaskId()).isPresent());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        AsyncContext context = create(2, 2, 2, 10);
+        AsyncCommand<String> command = context.run(new AbstractGeoGigOp<String>() {
+            @Override
+            protected String _call() {
+                throw new IllegalStateException("failed");
+            }
+        }, "failing");
+        awaitDone(command);
+        assertEquals(Status.FAILED, command.getStatus());
+    }
+
+    @Test
+    public void testMaxRunning() throws Exception {
+        AsyncContext context = create(2, 10, 10, 10);
+        BlockingOp op1 = onRepository(new BlockingOp("op1"), "repo1");
+        BlockingOp op2 = onRepository(new BlockingOp("op2"), "repo2");
+        BlockingOp op3 = onRepository(new BlockingOp("op3"), "repo3");
+        context.run(op1, "op1");
+        context.run(op2, "op2");
+        AsyncCommand<String> command3 = context.run(op3, "op3");
+        op1.awaitRunning();
+        op2.awaitRunning();
+        assertEquals(Status.WAITING, command3.getStatus());
+
+        op2.release.countDown();
+        op3.awaitRunning();
+        op1.release.countDown();
+        op3.release.countDown();
+        awaitDone(command3);
+        assertEquals(ImmutableList.of("op1", "op2", "op3"), started);
+    }
+
+    @Test
+    public void testMaxPerRepository() throws Exception {
+        AsyncContext context = create(4, 1, 10, 10);
+        BlockingOp op1 = onRepository(new BlockingOp("op1"), "repo1");
+        BlockingOp op2 = onRepository(new BlockingOp("op2"), "repo1");
+        BlockingOp op3 = onRepository(new BlockingOp("op3"), "repo2");
+        context.run(op1, "op1");
+        AsyncCommand<String> command2 = context.run(op2, "op2");
+        context.run(op3, "op3");
+        op1.awaitRunning();
+        // a command on another repository is not held back by the waiting one
+        op3.awaitRunning();
+        assertEquals(Status.WAITING, command2.getStatus());
+
+        op1.release.countDown();
+        op2.awaitRunning();
+        op2.release.countDown();
+        op3.release.countDown();
+        awaitDone(command2);
+    }
+
+    @Test
+    public void testMaxPerCommandType() throws Exception {
+        AsyncContext context = create(4, 10, 1, 10);
+        BlockingOp op1 = onRepository(new BlockingOp("op1"), "repo1");
+        BlockingOp op2 = onRepository(new BlockingOp("op2"), "repo2");
+        BlockingOp op3 = onRepository(new OtherBlockingOp("op3"), "repo3");
+        context.run(op1, "op1");
+        AsyncCommand<String> command2 = context.run(op2, "op2");
+        context.run(op3, "op3");
+        op1.awaitRunning();
+        op3.awaitRunning();
+        assertEquals(Status.WAITING, command2.getStatus());
+
+        op1.release.countDown();
+        op2.awaitRunning();
+        op2.release.countDown();
+        op3.release.countDown();
+        awaitDone(command2);
+    }
+
+    @Test
+    public void testPriorities() throws Exception {
+        AsyncContext context = create(1, 10, 10, 10);
+        BlockingOp first = new BlockingOp("first");
+        context.run(first, "first");
+        first.awaitRunning();
+
+        List<AsyncCommand<String>> commands = Lists.newArrayList();
+        String[] names = { "low1", "normal1", "high", "low2", "normal2" };
+        Priority[] priorities = { Priority.LOW, Priority.NORMAL, Priority.HIGH, Priority.LOW,
+                Priority.NORMAL };
+        for (int i = 0; i < names.length; i++) {
+            BlockingOp op = new BlockingOp(names[i]);
+            op.release.countDown();
+            commands.add(context.run(op, names[i], priorities[i]));
+        }
+        first.release.countDown();
+        for (AsyncCommand<String> command : commands) {
+            awaitDone(command);
+        }
+        assertEquals(ImmutableList.of("first", "high", "normal1", "normal2", "low1", "low2"),
+                started);
+    }
+
+    @Test
+    public void testCancelWaiting() throws Exception {
+        AsyncContext context = create(1, 10, 10, 10);
+        BlockingOp op1 = new BlockingOp("op1");
+        BlockingOp op2 = new BlockingOp("op2");
+        AsyncCommand<String> command1 = context.run(op1, "op1");
+        AsyncCommand<String> command2 = context.run(op2, "op2");
+        op1.awaitRunning();
+
+        command2.tryCancel();
+        assertTrue(command2.isDone());
+        assertEquals(Status.CANCELLED, command2.getStatus());
+        assertNull(command2.get());
+
+        op1.release.countDown();
+        awaitDone(command1);
+        assertEquals(Status.FINISHED, command1.getStatus());
+        assertEquals(ImmutableList.of("op1"), started);
+    }
+
+    @Test
+    public void testCancelRunning() throws Exception {
+        AsyncContext context = create(1, 10, 10, 10);
+        BlockingOp op = new BlockingOp("op");
+        AsyncCommand<String> command = context.run(op, "op");
+        op.awaitRunning();
+
+        command.tryCancel();
+        assertTrue(op.getProgressListener().isCanceled());
+        op.release.countDown();
+        awaitDone(command);
+        assertEquals(Status.CANCELLED, command.getStatus());
+        assertNull(command.get());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        AsyncContext context = create(1, 10, 10, 1);
+        BlockingOp op1 = new BlockingOp("op1");
+        context.run(op1, "op1");
+        op1.awaitRunning();
+        AsyncCommand<String> command2 = context.run(new BlockingOp("op2"), "op2");
+        try {
+            context.run(new BlockingOp("op3"), "op3");
+            fail("Expected RejectedCommandException");
+        } catch (RejectedCommandException e) {
+            // no command finished yet, so the default 10 seconds per command is assumed
+            assertEquals(20, e.getRetryAfterSeconds());
+        }
+        command2.tryCancel();
+        // there's room in the queue again
+        context.run(new BlockingOp("op4"), "op4").tryCancel();
+        op1.release.countDown();
+    }
+
+    @Test
+    public void testCancelledBeforeStartNotAveraged() throws Exception {
+        // holds the commands instead of running them, to cancel one after it's dispatched
+        final List<Runnable> dispatched = new CopyOnWriteArrayList<Runnable>();
+        executor = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public void execute(Runnable command) {
+                dispatched.add(command);
+            }
+        };
+        AsyncContext context = new AsyncContext(executor, 1, 10, 10, 1);
+
+        AsyncCommand<String> cancelled = context.run(new BlockingOp("cancelled"), "cancelled");
+        assertEquals(1, dispatched.size());
+        cancelled.tryCancel();
+        // already dispatched, so it's up to the command to notice it's been cancelled
+        assertEquals(Status.WAITING, cancelled.getStatus());
+        dispatched.get(0).run();
+        assertEquals(Status.CANCELLED, cancelled.getStatus());
+        assertTrue(started.isEmpty());
+
+        context.run(new BlockingOp("op1"), "op1");
+        context.run(new BlockingOp("op2"), "op2");
+        try {
+            context.run(new BlockingOp("op3"), "op3");
+            fail("Expected RejectedCommandException");
+        } catch (RejectedCommandException e) {
+            // had the cancelled command counted, the average would have dropped from 10 seconds
+            assertEquals(20, e.getRetryAfterSeconds());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+public class BinaryXMLStreamWriterTest extends Assert {
+
+    private static final String NS = "http://geogig.org/test";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Writes a response with attributes, namespaces, nested and empty elements and non-ASCII text
+     */
+    private static void writeResponse(XMLStreamWriter writer) throws XMLStreamException {
+        ResponseWriter out = new ResponseWriter(writer);
+        out.start(true);
+        writer.writeStartElement("commits");
+        writer.writeAttribute("count", "2");
+        writer.writeAttribute("branch", "mäster");
+        for (int i = 0; i < 2; i++) {
+            writer.writeStartElement("commit");
+            out.writeElement("id", Integer.toString(i));
+            writer.writeStartElement("author");
+            out.writeElement("name", "Jürgen Ødegård");
+            out.writeElement("email", "日本語@example.com");
+            writer.writeEndElement();
+            out.writeElement("message", "a <message> & \"quotes\" ✓");
+            out.writeElement("empty", null);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeStartElement("gg", "feature", NS);
+        writer.writeNamespace("gg", NS);
+        writer.writeAttribute("gg", NS, "fid", "roads.1");
+        writer.writeEmptyElement("gg", "geometry", NS);
+        writer.writeAttribute("srs", "EPSG:4326");
+        writer.writeCharacters("text after an empty element");
+        writer.writeEmptyElement("last");
+        writer.writeEndElement();
+        writer.writeStartElement("defaultNamespace");
+        writer.writeDefaultNamespace(NS);
+        writer.writeCharacters(new char[] { 'x', 'ñ', 'y', 'z' }, 1, 2);
+        writer.writeEndElement();
+        out.finish();
+        writer.flush();
+    }
+
+    private static String toXml(byte[] binary) throws Exception {
+        StringWriter xml = new StringWriter();
+        XMLStreamWriter target = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+        BinaryXMLStreamWriter.replay(new ByteArrayInputStream(binary), target);
+        return xml.toString();
+    }
+
+    private static byte[] toBinary() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryXMLStreamWriter writer = new BinaryXMLStreamWriter(binary);
+        writeResponse(writer);
+        writer.close();
+        return binary.toByteArray();
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(
+                new InputSource(new StringReader(xml)));
+        document.normalizeDocument();
+        return document;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        StringWriter direct = new StringWriter();
+        writeResponse(XMLOutputFactory.newInstance().createXMLStreamWriter(direct));
+
+        final String replayed = toXml(toBinary());
+
+        Document expected = parse(direct.toString());
+        Document actual = parse(replayed);
+        assertTrue("expected " + direct + " but got " + replayed,
+                expected.isEqualNode(actual));
+        assertEquals("Jürgen Ødegård", actual.getElementsByTagName("name").item(0)
+                .getTextContent());
+        assertEquals(NS, actual.getElementsByTagNameNS(NS, "geometry").item(0)
+                .getNamespaceURI());
+    }
+
+    @Test
+    public void testNamesAreEncodedOnce() throws Exception {
+        byte[] binary = toBinary();
+        String content = new String(binary, "UTF-8");
+        assertEquals(content.indexOf("author"), content.lastIndexOf("author"));
+        assertEquals(content.indexOf("email"), content.lastIndexOf("email"));
+    }
+
+    @Test
+    public void testNotABinaryStream() throws Exception {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Not a binary response stream");
+        toXml("<response/>".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void testTruncatedStream() throws Exception {
+        byte[] binary = toBinary();
+        thrown.expect(EOFException.class);
+        toXml(Arrays.copyOf(binary, binary.length - 1));
+    }
+}